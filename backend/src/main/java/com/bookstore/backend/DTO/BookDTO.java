@@ -49,6 +49,10 @@ public class BookDTO {
         @Min(value = 0, message = "Số lượng phải lớn hơn hoặc bằng 0")
         private Integer quantity;
 
+        // Số lượng client đọc được khi mở form sửa; khi cập nhật, quantity - originalQuantity được cộng
+        // vào tồn kho hiện tại để không ghi đè lượt giữ hàng của đơn đặt trong lúc đó
+        private Integer originalQuantity;
+
         @Min(value = 0, message = "Số lượng đã bán phải lớn hơn hoặc bằng 0")
         private Integer sold;
 
@@ -0,0 +1,18 @@
+package com.bookstore.backend.DTO;
+
+import com.bookstore.backend.model.enums.StatusOrder;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkOrderStatusRequestDTO {
+    private List<Long> orderIds;
+
+    // DELIVERY hoặc SUCCESS
+    private StatusOrder status;
+}
@@ -0,0 +1,29 @@
+package com.bookstore.backend.DTO;
+
+import com.bookstore.backend.model.enums.StatusOrder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+public class BulkOrderStatusResultDTO {
+    private StatusOrder status;
+
+    // Đơn đã chuyển sang status
+    private List<Long> updated = new ArrayList<>();
+
+    // Đơn vốn đã ở status, không làm gì
+    private List<Long> unchanged = new ArrayList<>();
+
+    // orderId -> lý do không chuyển được
+    private Map<Long, String> failures = new LinkedHashMap<>();
+
+    public BulkOrderStatusResultDTO(StatusOrder status) {
+        this.status = status;
+    }
+}
@@ -0,0 +1,25 @@
+package com.bookstore.backend.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CursorPageDTO<T> {
+
+    private List<T> content;
+
+    // Cursor để lấy trang tiếp theo, null nếu đã hết dữ liệu
+    private String nextCursor;
+
+    private boolean hasNext;
+
+    // null khi client yêu cầu skipCount=true
+    private Long totalElements;
+}
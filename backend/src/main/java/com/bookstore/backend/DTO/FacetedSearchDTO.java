@@ -0,0 +1,45 @@
+package com.bookstore.backend.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Page;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class FacetedSearchDTO {
+
+    // Trang kết quả
+    private Page<BookDTO> books;
+
+    // Số kết quả theo từng giá trị facet (tính trên toàn bộ kết quả, không chỉ trang hiện tại)
+    private List<FacetValueDTO> categories;
+    private List<FacetValueDTO> authors;
+    private List<FacetValueDTO> publishers;
+    private List<PriceRangeDTO> priceRanges;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class FacetValueDTO {
+        private Long id;
+        private String name;
+        private int count;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class PriceRangeDTO {
+        private Double minPrice;
+        private Double maxPrice; // null = không giới hạn trên
+        private int count;
+    }
+}
@@ -0,0 +1,10 @@
+package com.bookstore.backend.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+// Bật @Scheduled cho các tác vụ nền (làm mới pool sách ngẫu nhiên, ...)
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
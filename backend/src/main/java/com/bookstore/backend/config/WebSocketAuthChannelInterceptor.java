@@ -1,26 +1,39 @@
 package com.bookstore.backend.config;
 
 import com.bookstore.backend.utils.JwtUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageChannel;
 import org.springframework.messaging.simp.stomp.StompCommand;
 import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
 import org.springframework.messaging.support.ChannelInterceptor;
 import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.stereotype.Component;
-
-import java.util.List;
+import org.springframework.util.AntPathMatcher;
 
 @Component
 public class WebSocketAuthChannelInterceptor implements ChannelInterceptor {
 
+    private static final Logger logger = LoggerFactory.getLogger(WebSocketAuthChannelInterceptor.class);
+
+    // Topic chỉ admin được subscribe (số liệu doanh thu trực tiếp)
+    private static final String ADMIN_TOPIC_PREFIX = "/topic/admin/";
+    private static final String TOPIC_PREFIX = "/topic";
+    // Simple broker so khớp subscription dạng pattern bằng AntPathMatcher
+    private static final AntPathMatcher PATH_MATCHER = new AntPathMatcher();
+
     private final JwtUtils jwtUtils;
+    private final UserDetailsService userDetailsService;
 
-    public WebSocketAuthChannelInterceptor(JwtUtils jwtUtils) {
+    public WebSocketAuthChannelInterceptor(JwtUtils jwtUtils, UserDetailsService userDetailsService) {
         this.jwtUtils = jwtUtils;
+        this.userDetailsService = userDetailsService;
     }
 
     @Override
@@ -37,32 +50,52 @@ public class WebSocketAuthChannelInterceptor implements ChannelInterceptor {
             String authHeader = accessor.getFirstNativeHeader("Authorization");
 
             if (authHeader == null || !authHeader.startsWith("Bearer ")) {
-                System.out.println("❌ No JWT provided in WebSocket CONNECT");
+                logger.debug("WebSocket CONNECT không có JWT");
                 return message;
             }
 
             String token = authHeader.substring(7);
-            System.out.println("🔍 Extracted WS JWT = " + token);
 
             try {
                 // Extract email/username
                 String email = jwtUtils.extractEmail(token);
 
-                // Create Authentication object WITHOUT loading authorities
-                Authentication authentication =
-                        new UsernamePasswordAuthenticationToken(email, null, List.of());
+                // Load role để kiểm tra quyền subscribe topic admin
+                Authentication authentication = new UsernamePasswordAuthenticationToken(email, null,
+                        userDetailsService.loadUserByUsername(email).getAuthorities());
 
                 // Attach principal to WebSocket session
                 accessor.setUser(authentication);
 
 
-                System.out.println("✅ WebSocket authenticated user: " + accessor.getUser().getName());
+                logger.debug("WebSocket authenticated user: {}", accessor.getUser().getName());
 
             } catch (Exception e) {
-                System.out.println("❌ Invalid JWT in WebSocket CONNECT: " + e.getMessage());
+                logger.warn("JWT không hợp lệ trong WebSocket CONNECT: {}", e.getMessage());
+            }
+        }
+
+        if (StompCommand.SUBSCRIBE.equals(accessor.getCommand())) {
+            String destination = accessor.getDestination();
+            if (destination != null && isAdminOnly(destination) && !isAdmin(accessor)) {
+                logger.warn("Từ chối WebSocket SUBSCRIBE {} của {}", destination,
+                        accessor.getUser() != null ? accessor.getUser().getName() : "anonymous");
+                throw new AccessDeniedException("Chỉ admin được subscribe " + destination);
             }
         }
 
         return message;
     }
+
+    // Topic admin, hoặc pattern dưới /topic (/topic/**, /topic/*/metrics) có thể khớp cả topic admin
+    private static boolean isAdminOnly(String destination) {
+        return destination.startsWith(ADMIN_TOPIC_PREFIX)
+                || (destination.startsWith(TOPIC_PREFIX) && PATH_MATCHER.isPattern(destination));
+    }
+
+    private static boolean isAdmin(StompHeaderAccessor accessor) {
+        return accessor.getUser() instanceof Authentication authentication
+                && authentication.getAuthorities().stream()
+                .anyMatch(authority -> "ROLE_ADMIN".equals(authority.getAuthority()));
+    }
 }
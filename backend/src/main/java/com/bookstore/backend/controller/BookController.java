@@ -1,5 +1,6 @@
 package com.bookstore.backend.controller;
 
+import java.security.Principal;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -26,7 +27,13 @@ import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
 
 import com.bookstore.backend.DTO.BookDTO;
+import com.bookstore.backend.DTO.CursorPageDTO;
+import com.bookstore.backend.DTO.FacetedSearchDTO;
+import com.bookstore.backend.service.BookCursorPager;
 import com.bookstore.backend.service.BookService;
+import com.bookstore.backend.service.search.BestSellerRanking;
+import com.bookstore.backend.service.search.BookSearchIndex;
+import com.bookstore.backend.service.search.FacetEngine;
 
 import jakarta.validation.Valid;
 
@@ -37,6 +44,9 @@ public class BookController {
     @Autowired
     private BookService bookService;
 
+    @Autowired
+    private BookCursorPager bookCursorPager;
+
     // GET /books -> lấy tất cả sách, hỗ trợ pagination và sort
     @GetMapping
     public ResponseEntity<Page<BookDTO>> getAllBooks(
@@ -50,6 +60,21 @@ public class BookController {
         return ResponseEntity.ok(bookPage);
     }
 
+    // GET /books/cursor -> duyệt catalog theo cursor (infinite scroll), có thể lọc theo category.
+    // skipCount=true bỏ qua query đếm tổng để mỗi trang có chi phí như nhau
+    @GetMapping("/cursor")
+    public ResponseEntity<CursorPageDTO<BookDTO>> getBooksByCursor(
+            @RequestParam(required = false) String category,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "id") String sortBy,
+            @RequestParam(defaultValue = "desc") String sortOrder,
+            @RequestParam(defaultValue = "false") boolean skipCount) {
+        BookCursorPager.SortKey key = BookCursorPager.SortKey.from(sortBy);
+        boolean descending = !sortOrder.equalsIgnoreCase("asc");
+        return ResponseEntity.ok(bookCursorPager.browse(category, key, descending, cursor, size, skipCount));
+    }
+
     // GET /books/{id} -> lấy sách theo ID
     @GetMapping("/{id}")
     public ResponseEntity<BookDTO> getBookById(@PathVariable Long id) {
@@ -111,6 +136,35 @@ public class BookController {
         return ResponseEntity.ok(bookPage);
     }
 
+    // GET /books/search/cursor -> như /search nhưng phân trang theo cursor
+    @GetMapping("/search/cursor")
+    public ResponseEntity<CursorPageDTO<BookDTO>> searchBooksByCursor(
+            @RequestParam(required = false) String title,
+            @RequestParam(required = false) String category,
+            @RequestParam(required = false) String author,
+            @RequestParam(required = false) String publisher,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "id") String sortBy,
+            @RequestParam(defaultValue = "desc") String sortOrder,
+            @RequestParam(defaultValue = "false") boolean skipCount) {
+        BookCursorPager.SortKey key = BookCursorPager.SortKey.from(sortBy);
+        boolean descending = !sortOrder.equalsIgnoreCase("asc");
+        CursorPageDTO<BookDTO> result;
+
+        if (title != null) {
+            result = bookCursorPager.search(title, BookSearchIndex.Field.TITLE, key, descending, cursor, size, skipCount);
+        } else if (author != null) {
+            result = bookCursorPager.search(author, BookSearchIndex.Field.AUTHOR, key, descending, cursor, size, skipCount);
+        } else if (publisher != null) {
+            result = bookCursorPager.search(publisher, BookSearchIndex.Field.PUBLISHER, key, descending, cursor, size, skipCount);
+        } else {
+            result = bookCursorPager.browse(category, key, descending, cursor, size, skipCount);
+        }
+
+        return ResponseEntity.ok(result);
+    }
+
     // GET /books/searchKey -> tìm kiếm sách theo keyword tổng hợp (title, category,
     // GET /books/searchKey -> tìm kiếm sách theo keyword tổng hợp và lọc theo giá
     @GetMapping("/searchKey")
@@ -120,11 +174,14 @@ public class BookController {
             @RequestParam(required = false) Double maxPrice,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
-            @RequestParam(defaultValue = "id") String sortBy,
+            @RequestParam(required = false) String sortBy,
             @RequestParam(defaultValue = "desc") String sortOrder) {
         
         Sort.Direction direction = sortOrder.equalsIgnoreCase("asc") ? Sort.Direction.ASC : Sort.Direction.DESC;
-        Pageable pageable = PageRequest.of(page, size, Sort.by(direction, sortBy));
+        // Có keyword mà không chỉ định sortBy -> sắp theo độ liên quan
+        Sort sort = sortBy != null ? Sort.by(direction, sortBy)
+                : keyWord != null ? Sort.unsorted() : Sort.by(direction, "id");
+        Pageable pageable = PageRequest.of(page, size, sort);
         Page<BookDTO> bookPage;
 
         // Nếu có filter theo giá hoặc keyword, dùng query mới
@@ -137,19 +194,57 @@ public class BookController {
         return ResponseEntity.ok(bookPage);
     }
 
+    // GET /books/searchKey/faceted -> như /searchKey, kèm số kết quả theo từng category, author,
+    // publisher và khoảng giá; có thể lọc thêm theo categoryId, authorId, publisherId
+    @GetMapping("/searchKey/faceted")
+    public ResponseEntity<FacetedSearchDTO> searchBooksFaceted(
+            @RequestParam(required = false) String keyWord,
+            @RequestParam(required = false) Double minPrice,
+            @RequestParam(required = false) Double maxPrice,
+            @RequestParam(required = false) Long categoryId,
+            @RequestParam(required = false) Long authorId,
+            @RequestParam(required = false) Long publisherId,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(required = false) String sortBy,
+            @RequestParam(defaultValue = "desc") String sortOrder) {
+
+        Sort.Direction direction = sortOrder.equalsIgnoreCase("asc") ? Sort.Direction.ASC : Sort.Direction.DESC;
+        Sort sort = sortBy != null ? Sort.by(direction, sortBy)
+                : keyWord != null ? Sort.unsorted() : Sort.by(direction, "id");
+        Pageable pageable = PageRequest.of(page, size, sort);
+        FacetEngine.Filter filter = new FacetEngine.Filter(minPrice, maxPrice, categoryId, authorId, publisherId);
+
+        return ResponseEntity.ok(bookService.getFacetedBooks(keyWord, filter, pageable));
+    }
+
     @GetMapping("/suggest")
     public List<String> suggest (@RequestParam String keyword) {
         return bookService.suggestKey(keyword);
     }
 
+    // GET /books/random -> sách ngẫu nhiên cho trang chủ; seed (hoặc user đang đăng nhập)
+    // giữ cho danh sách không đổi trong cùng một phiên
     @GetMapping("/random")
-    public ResponseEntity<List<BookDTO>> randomBooks() {
-        return ResponseEntity.ok(bookService.getRandomBooks());
+    public ResponseEntity<List<BookDTO>> randomBooks(@RequestParam(required = false) String seed, Principal principal) {
+        String sessionKey = seed != null ? seed : principal != null ? principal.getName() : null;
+        return ResponseEntity.ok(bookService.getRandomBooks(sessionKey));
     }
 
+    // GET /books/trendingManga -> sách của category xếp theo mức bán chạy gần đây
     @GetMapping("/trendingManga")
     public ResponseEntity<Page<BookDTO>> getBookCategory(@RequestParam(required = false) String category, Pageable pageable) {
-        return ResponseEntity.ok(bookService.getBooksByCategory(category, pageable));
+        return ResponseEntity.ok(bookService.getTrendingBooks(category, pageable));
+    }
+
+    // GET /books/best-sellers -> top sách bán chạy (toàn catalog hoặc theo category);
+    // window=TRENDING: "bán chạy tuần này", giảm dần theo thời gian
+    @GetMapping("/best-sellers")
+    public ResponseEntity<List<BookDTO>> getBestSellers(
+            @RequestParam(required = false) String category,
+            @RequestParam(defaultValue = "ALL_TIME") BestSellerRanking.Window window,
+            @RequestParam(defaultValue = "20") int limit) {
+        return ResponseEntity.ok(bookService.getBestSellers(category, window, limit));
     }
 
 
@@ -1,24 +1,26 @@
 package com.bookstore.backend.controller;
 
-import com.bookstore.backend.DTO.NotificationRequestDTO;
 import com.bookstore.backend.DTO.OrderCreationRequestDTO;
 import com.bookstore.backend.DTO.OrderDetailDTO;
 import com.bookstore.backend.DTO.OrdersDTO;
 import com.bookstore.backend.model.Users;
 import com.bookstore.backend.model.enums.PaymentType;
-import com.bookstore.backend.service.EmailService;
-import com.bookstore.backend.service.NotificationService;
+import com.bookstore.backend.service.IdempotencyService;
 import com.bookstore.backend.service.OrdersService;
 import com.bookstore.backend.service.PaymentService;
 import com.bookstore.backend.service.VNPayService;
 import com.bookstore.backend.utils.SecurityUtils;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.hash.Hashing;
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -31,30 +33,50 @@ public class CheckoutController {
     private final OrdersService ordersService;
     private final PaymentService paymentService;
     private final VNPayService vnPayService;
-    private final NotificationService notificationService;
-    private final EmailService emailService;
     private final SecurityUtils securityUtils;
+    private final IdempotencyService idempotencyService;
+    private final ObjectMapper objectMapper;
 
     @Autowired
     public CheckoutController(OrdersService ordersService, 
                              PaymentService paymentService,
                              VNPayService vnPayService, 
-                             NotificationService notificationService, 
-                             EmailService emailService,
-                             SecurityUtils securityUtils) {
+                             SecurityUtils securityUtils,
+                             IdempotencyService idempotencyService,
+                             ObjectMapper objectMapper) {
         this.ordersService = ordersService;
         this.paymentService = paymentService;
         this.vnPayService = vnPayService;
-        this.notificationService = notificationService;
-        this.emailService = emailService;
         this.securityUtils = securityUtils;
+        this.idempotencyService = idempotencyService;
+        this.objectMapper = objectMapper;
     }
 
+    // Client gửi header Idempotency-Key (một key cho mỗi lần bấm đặt hàng) để retry không tạo đơn trùng
     @PostMapping("")
     public ResponseEntity<Map<String, Object>> createOrderAndGetPaymentUrl(
             @RequestBody OrderCreationRequestDTO request,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
             HttpServletRequest httpRequest) {
+        Users currentUser = securityUtils.getCurrentUser();
+        String scope = currentUser != null ? String.valueOf(currentUser.getId()) : "anonymous";
+        return idempotencyService.execute(scope, idempotencyKey, fingerprint(request),
+                () -> placeOrder(request, httpRequest));
+    }
 
+    // Hash nội dung request: cùng key nhưng khác nội dung thì không được replay
+    private String fingerprint(OrderCreationRequestDTO request) {
+        try {
+            return Hashing.sha256()
+                    .hashString(objectMapper.writeValueAsString(request), StandardCharsets.UTF_8)
+                    .toString();
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Request không hợp lệ", e);
+        }
+    }
+
+    private ResponseEntity<Map<String, Object>> placeOrder(OrderCreationRequestDTO request,
+                                                           HttpServletRequest httpRequest) {
         Map<String, Object> response = new HashMap<>();
 
         try {
@@ -121,27 +143,7 @@ public class CheckoutController {
                 response.put("message", "Order created successfully (COD)");
                 response.put("orderId", createdOrder.getId());
                 response.put("requiresPayment", false);
-                
-                Users currentUser = securityUtils.getCurrentUser();
-                NotificationRequestDTO notificationRequest = NotificationRequestDTO.builder()
-                    .content("Thanh toán thành công cho đơn hàng #" + createdOrder.getId() + " của bạn")
-                    .url("http://localhost:5173/payment/pending?orderId=" + createdOrder.getId())
-                    .type(com.bookstore.backend.model.enums.NotificationType.PERSONAL)
-                    .userId(currentUser.getId())
-                    .build();
-                notificationService.sendNotification(notificationRequest);
-                
-                // Gửi email xác nhận đơn hàng cho COD
-                try {
-                    emailService.sendOrderConfirmationEmail(
-                        currentUser.getEmail(),
-                        currentUser.getFullName(),
-                        createdOrder
-                    );
-                    System.out.println("📧 Order confirmation email sent to: " + currentUser.getEmail());
-                } catch (Exception e) {
-                    System.err.println("⚠️ Failed to send order confirmation email: " + e.getMessage());
-                }
+                // Thông báo + email xác nhận đã được createOrder ghi vào outbox
             }
 
             return ResponseEntity.ok(response);
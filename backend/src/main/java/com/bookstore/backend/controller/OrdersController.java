@@ -13,7 +13,15 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import java.util.Map;
 import com.bookstore.backend.DTO.OrdersDTO;
+import com.bookstore.backend.model.enums.PaymentStatus;
+import com.bookstore.backend.model.enums.StatusOrder;
+import com.bookstore.backend.service.OrderPageReader;
 import com.bookstore.backend.service.OrdersService;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.format.annotation.DateTimeFormat;
+import java.time.LocalDate;
 
 @RestController
 @RequestMapping("/api/orders")
@@ -45,6 +53,24 @@ public class OrdersController {
         return ResponseEntity.ok(orders);
     }
 
+    // Customer: lịch sử đơn hàng theo trang, lọc theo trạng thái và khoảng ngày
+    @GetMapping("/user/page")
+    public ResponseEntity<Page<OrdersDTO>> getOrdersByUserPage(
+            @RequestParam(required = false) StatusOrder status,
+            @RequestParam(required = false) PaymentStatus paymentStatus,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size) {
+        OrderPageReader.Filter filter = new OrderPageReader.Filter(status, paymentStatus,
+                from != null ? from.atStartOfDay() : null,
+                to != null ? to.plusDays(1).atStartOfDay() : null,
+                null);
+        PageRequest pageable = PageRequest.of(Math.max(page, 0), Math.max(1, Math.min(size, 100)),
+                Sort.by("orderDate").descending());
+        return ResponseEntity.ok(ordersService.getOrdersByUser(filter, pageable));
+    }
+
     // Admin: cập nhật trạng thái đơn hàng -> trả về DTO
     @PutMapping("/{orderId}/status")
     public ResponseEntity<?> updateOrderStatus(@PathVariable Long orderId, @RequestBody OrdersDTO dto) {
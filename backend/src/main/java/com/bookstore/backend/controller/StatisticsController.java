@@ -1,10 +1,13 @@
 package com.bookstore.backend.controller;
 
 import com.bookstore.backend.service.StatisticsService;
+import com.bookstore.backend.service.metrics.LiveSalesMetrics;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDate;
 import java.util.Map;
 
 @RestController
@@ -13,6 +16,7 @@ import java.util.Map;
 public class StatisticsController {
 
     private final StatisticsService statisticsService;
+    private final LiveSalesMetrics liveSalesMetrics;
 
     @GetMapping("/revenue/last-6-months")
     public ResponseEntity<Map<String, Object>> getRevenueLast6Months() {
@@ -23,4 +27,18 @@ public class StatisticsController {
     public ResponseEntity<Map<String, Object>> getRevenueCurrentYear() {
         return ResponseEntity.ok(statisticsService.getRevenueCurrentYear());
     }
+
+    // Snapshot hiện tại của số liệu trực tiếp (dashboard gọi một lần rồi nghe /topic/admin/metrics)
+    @GetMapping("/live")
+    public ResponseEntity<LiveSalesMetrics.Snapshot> getLiveMetrics() {
+        return ResponseEntity.ok(liveSalesMetrics.snapshot());
+    }
+
+    // Tính lại bảng daily_sales từ đơn hàng trong khoảng ngày (tính cả ngày to)
+    @PostMapping("/daily-sales/backfill")
+    public ResponseEntity<Map<String, Object>> backfillDailySales(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return ResponseEntity.ok(statisticsService.backfill(from, to));
+    }
 }
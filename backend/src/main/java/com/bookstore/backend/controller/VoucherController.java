@@ -12,6 +12,7 @@ import org.springframework.web.bind.annotation.*;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -119,16 +120,13 @@ public class VoucherController {
     @PostMapping("/validate")
     public ResponseEntity<Map<String, Object>> validateVoucher(@RequestBody Map<String, String> request) {
         String code = request.get("code");
-        boolean isValid = voucherService.validateVoucher(code);
+        Optional<Voucher> voucher = voucherService.findActiveVoucher(code);
         
         Map<String, Object> response = new HashMap<>();
         response.put("code", code);
-        response.put("isValid", isValid);
+        response.put("isValid", voucher.isPresent());
         
-        if (isValid) {
-            Voucher voucher = voucherService.getVoucherByCode(code);
-            response.put("voucher", voucherService.convertToDTO(voucher));
-        }
+        voucher.ifPresent(value -> response.put("voucher", voucherService.convertToDTO(value)));
         
         return ResponseEntity.ok(response);
     }
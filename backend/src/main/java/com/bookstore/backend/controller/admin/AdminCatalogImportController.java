@@ -0,0 +1,54 @@
+package com.bookstore.backend.controller.admin;
+
+import com.bookstore.backend.model.CatalogImportJob;
+import com.bookstore.backend.service.importer.CatalogImportService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/api/admin/catalog/import")
+public class AdminCatalogImportController {
+
+    private final CatalogImportService catalogImportService;
+
+    // Upload data.csv (+ categories.csv tùy chọn), import chạy nền; resumeJobId để chạy tiếp job bị lỗi
+    @PostMapping(consumes = "multipart/form-data")
+    public ResponseEntity<CatalogImportJob> startImport(
+            @RequestParam("data") MultipartFile data,
+            @RequestParam(value = "categories", required = false) MultipartFile categories,
+            @RequestParam(value = "resumeJobId", required = false) Long resumeJobId) throws IOException {
+        if (data.isEmpty()) {
+            throw new IllegalArgumentException("File data không được để trống");
+        }
+        // Copy ra file tạm vì MultipartFile bị dọn khi request kết thúc
+        Path dataFile = copyToTemp(data);
+        Path categoriesFile = categories != null && !categories.isEmpty() ? copyToTemp(categories) : null;
+
+        String sourceName = data.getOriginalFilename() != null ? data.getOriginalFilename() : "data.csv";
+        CatalogImportJob job = catalogImportService.startImport(dataFile, categoriesFile, sourceName, resumeJobId);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
+    }
+
+    @GetMapping("/{jobId}")
+    public ResponseEntity<CatalogImportJob> getJob(@PathVariable Long jobId) {
+        return ResponseEntity.ok(catalogImportService.getJob(jobId));
+    }
+
+    private static Path copyToTemp(MultipartFile file) throws IOException {
+        Path target = Files.createTempFile("catalog-import-", ".csv");
+        try (InputStream in = file.getInputStream()) {
+            Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return target;
+    }
+}
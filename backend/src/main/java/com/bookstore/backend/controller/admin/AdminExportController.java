@@ -0,0 +1,64 @@
+package com.bookstore.backend.controller.admin;
+
+import com.bookstore.backend.model.enums.StatusOrder;
+import com.bookstore.backend.service.exporter.ExportFormat;
+import com.bookstore.backend.service.exporter.OrderExportService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.LocalDate;
+
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/api/admin/exports")
+public class AdminExportController {
+
+    private final OrderExportService orderExportService;
+
+    // Danh sách đơn hàng theo khoảng ngày đặt / trạng thái, ghi dần ra response
+    @GetMapping("/orders")
+    public ResponseEntity<StreamingResponseBody> exportOrders(
+            @RequestParam(defaultValue = "CSV") ExportFormat format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) StatusOrder status) {
+        StreamingResponseBody body = orderExportService.exportOrders(format,
+                new OrderExportService.Filter(from, to, status));
+        return attachment("orders", format, body);
+    }
+
+    // Từng dòng sản phẩm của các đơn, cùng bộ lọc với /orders
+    @GetMapping("/order-details")
+    public ResponseEntity<StreamingResponseBody> exportOrderDetails(
+            @RequestParam(defaultValue = "CSV") ExportFormat format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) StatusOrder status) {
+        StreamingResponseBody body = orderExportService.exportOrderDetails(format,
+                new OrderExportService.Filter(from, to, status));
+        return attachment("order-details", format, body);
+    }
+
+    // Doanh thu theo ngày (bảng daily_sales)
+    @GetMapping("/revenue")
+    public ResponseEntity<StreamingResponseBody> exportRevenue(
+            @RequestParam(defaultValue = "CSV") ExportFormat format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return attachment("revenue", format, orderExportService.exportRevenue(format, from, to));
+    }
+
+    private static ResponseEntity<StreamingResponseBody> attachment(String name, ExportFormat format,
+                                                                   StreamingResponseBody body) {
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"" + name + "-" + LocalDate.now() + "." + format.extension() + "\"")
+                .contentType(MediaType.parseMediaType(format.contentType()))
+                .body(body);
+    }
+}
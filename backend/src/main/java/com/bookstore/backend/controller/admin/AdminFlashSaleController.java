@@ -0,0 +1,34 @@
+package com.bookstore.backend.controller.admin;
+
+import com.bookstore.backend.service.FlashSaleInventory;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/api/admin/flash-sale")
+public class AdminFlashSaleController {
+
+    private final FlashSaleInventory flashSaleInventory;
+
+    // Các variant đang flash sale và số hàng còn lại trong counter
+    @GetMapping("/variants")
+    public ResponseEntity<List<FlashSaleInventory.Status>> activeSales() {
+        return ResponseEntity.ok(flashSaleInventory.activeSales());
+    }
+
+    // Bật flash sale: toàn bộ tồn kho hiện có của variant chuyển sang counter in-memory
+    @PostMapping("/variants/{variantId}")
+    public ResponseEntity<FlashSaleInventory.Status> enable(@PathVariable Long variantId) {
+        return ResponseEntity.ok(flashSaleInventory.enable(variantId));
+    }
+
+    // Tắt flash sale: phần còn lại ghi trả về tồn kho của variant
+    @DeleteMapping("/variants/{variantId}")
+    public ResponseEntity<FlashSaleInventory.Status> disable(@PathVariable Long variantId) {
+        return ResponseEntity.ok(flashSaleInventory.disable(variantId));
+    }
+}
@@ -0,0 +1,35 @@
+package com.bookstore.backend.controller.admin;
+
+import com.bookstore.backend.service.LowStockMonitor;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/api/admin/low-stock")
+public class AdminLowStockController {
+
+    private static final int MAX_PAGE_SIZE = 100;
+
+    private final LowStockMonitor lowStockMonitor;
+
+    // Các variant đang dưới ngưỡng tồn kho, ít hàng nhất trước
+    @GetMapping
+    public ResponseEntity<Page<LowStockMonitor.Entry>> lowStock(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(lowStockMonitor.page(
+                PageRequest.of(Math.max(page, 0), Math.max(1, Math.min(size, MAX_PAGE_SIZE)))));
+    }
+
+    // Đặt ngưỡng cảnh báo cho một variant; bỏ threshold = dùng ngưỡng mặc định
+    @PutMapping("/variants/{variantId}/threshold")
+    public ResponseEntity<Void> updateThreshold(@PathVariable Long variantId,
+                                                @RequestParam(required = false) Integer threshold) {
+        lowStockMonitor.updateThreshold(variantId, threshold);
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -0,0 +1,72 @@
+package com.bookstore.backend.controller.admin;
+
+import com.bookstore.backend.DTO.BulkOrderStatusRequestDTO;
+import com.bookstore.backend.DTO.BulkOrderStatusResultDTO;
+import com.bookstore.backend.DTO.OrdersDTO;
+import com.bookstore.backend.model.enums.PaymentStatus;
+import com.bookstore.backend.model.enums.StatusOrder;
+import com.bookstore.backend.service.OrderPageReader;
+import com.bookstore.backend.service.OrdersService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/api/admin/orders")
+public class AdminOrderController {
+
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int MAX_BULK_SIZE = 1000;
+
+    private final OrdersService ordersService;
+
+    // Danh sách đơn theo trang, lọc theo trạng thái, thanh toán, khoảng ngày (from..to, tính cả ngày to) và user
+    @GetMapping
+    public ResponseEntity<Page<OrdersDTO>> searchOrders(
+            @RequestParam(required = false) StatusOrder status,
+            @RequestParam(required = false) PaymentStatus paymentStatus,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) Long userId,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(defaultValue = "orderDate") String sortBy,
+            @RequestParam(defaultValue = "desc") String sortOrder) {
+        OrderPageReader.Filter filter = new OrderPageReader.Filter(status, paymentStatus,
+                from != null ? from.atStartOfDay() : null,
+                to != null ? to.plusDays(1).atStartOfDay() : null,
+                userId);
+        return ResponseEntity.ok(ordersService.searchOrders(filter, pageRequest(page, size, sortBy, sortOrder)));
+    }
+
+    // Chuyển trạng thái hàng loạt (DELIVERY / SUCCESS); đơn lỗi nằm trong failures, không làm hỏng cả lô
+    @PostMapping("/bulk-status")
+    public ResponseEntity<BulkOrderStatusResultDTO> bulkUpdateStatus(@RequestBody BulkOrderStatusRequestDTO request) {
+        if (request.getOrderIds() == null || request.getOrderIds().isEmpty() || request.getStatus() == null) {
+            throw new IllegalArgumentException("orderIds và status là bắt buộc");
+        }
+        if (request.getOrderIds().size() > MAX_BULK_SIZE) {
+            throw new IllegalArgumentException("Tối đa " + MAX_BULK_SIZE + " đơn mỗi lần");
+        }
+        return ResponseEntity.ok(ordersService.bulkUpdateOrderStatus(request.getOrderIds(), request.getStatus()));
+    }
+
+    // Số đơn theo trạng thái (hiển thị trên các tab)
+    @GetMapping("/status-counts")
+    public ResponseEntity<Map<StatusOrder, Long>> countByStatus() {
+        return ResponseEntity.ok(ordersService.countOrdersByStatus());
+    }
+
+    private static PageRequest pageRequest(int page, int size, String sortBy, String sortOrder) {
+        Sort sort = sortOrder.equalsIgnoreCase("asc") ? Sort.by(sortBy).ascending() : Sort.by(sortBy).descending();
+        return PageRequest.of(Math.max(page, 0), Math.max(1, Math.min(size, MAX_PAGE_SIZE)), sort);
+    }
+}
@@ -1,5 +1,6 @@
 package com.bookstore.backend.model;
 
+import com.bookstore.backend.service.search.CatalogReferenceListener;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
@@ -9,6 +10,7 @@ import java.util.Objects;
 import java.util.Set;
 
 @Entity
+@EntityListeners(CatalogReferenceListener.class)
 @Table(name = "author")
 @Getter
 @Setter
@@ -12,7 +12,10 @@ import java.util.Set;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
 @Entity
-@Table(name = "book")
+@Table(name = "book", indexes = {
+        // Phục vụ phân trang keyset theo (title, id)
+        @Index(name = "idx_book_title_id", columnList = "title, id")
+})
 @Getter
 @Setter
 @NoArgsConstructor
@@ -4,11 +4,15 @@ import jakarta.persistence.*;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotNull;
 import lombok.*;
+import org.hibernate.annotations.DynamicUpdate;
+
 import java.util.List;
 import java.util.Objects;
 
 @Entity
 @Table(name = "book_variants")
+// Chỉ UPDATE cột thực sự đổi: sửa giá / ISBN không ghi lại quantity đã load (đơn hàng trừ kho bằng UPDATE riêng)
+@DynamicUpdate
 @Getter
 @Setter
 @NoArgsConstructor
@@ -39,6 +43,10 @@ public class BookVariants {
     @Builder.Default
     private Integer sold = 0;
 
+    // Ngưỡng cảnh báo sắp hết hàng (quantity <= ngưỡng); null = ngưỡng mặc định inventory.low-stock.default-threshold
+    @Min(value = 0, message = "Ngưỡng tồn kho phải lớn hơn hoặc bằng 0")
+    private Integer lowStockThreshold;
+
     @NotNull(message = "Trạng thái không được trống")
     @Column(nullable = false)
     private String status;
@@ -0,0 +1,49 @@
+package com.bookstore.backend.model;
+
+import com.bookstore.backend.model.enums.ImportStatus;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Một lượt import catalog từ CSV; processedRows là checkpoint để chạy tiếp khi bị lỗi
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "catalog_import_job")
+public class CatalogImportJob {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Tên và kích thước file nguồn, dùng để kiểm tra khi resume
+    private String sourceName;
+    private Long sourceSize;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private ImportStatus status;
+
+    // Số dòng dữ liệu (không tính header) đã được commit
+    @Builder.Default
+    private long processedRows = 0;
+
+    @Builder.Default
+    private long importedBooks = 0;
+
+    // Dòng bị bỏ qua do trùng ISBN
+    @Builder.Default
+    private long skippedRows = 0;
+
+    @Column(columnDefinition = "TEXT")
+    private String message;
+
+    private LocalDateTime startedAt;
+    private LocalDateTime updatedAt;
+    private LocalDateTime finishedAt;
+}
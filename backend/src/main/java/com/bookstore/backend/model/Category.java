@@ -1,5 +1,6 @@
 package com.bookstore.backend.model;
 
+import com.bookstore.backend.service.search.CatalogReferenceListener;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
@@ -10,6 +11,7 @@ import java.util.Objects;
 import java.util.Set;
 
 @Entity
+@EntityListeners(CatalogReferenceListener.class)
 @Table(name = "category")
 @Getter
 @Setter
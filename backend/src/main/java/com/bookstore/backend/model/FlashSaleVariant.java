@@ -0,0 +1,45 @@
+package com.bookstore.backend.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+// Một phiên flash sale của variant: tồn kho được chuyển sang counter in-memory trong suốt phiên
+@Entity
+@Table(name = "flash_sale_variant", indexes = {
+        @Index(name = "idx_flash_sale_variant_active", columnList = "book_variant_id, active")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class FlashSaleVariant {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "book_variant_id", nullable = false)
+    @ToString.Exclude
+    private BookVariants bookVariant;
+
+    // quantity của variant tại lúc bật phiên
+    @Column(nullable = false)
+    private Integer allocated;
+
+    // Giá trị counter đã ghi xuống book_variants.quantity ở lần flush gần nhất
+    @Column(nullable = false)
+    private Integer remaining;
+
+    @Column(nullable = false)
+    private boolean active;
+
+    private LocalDateTime startedAt;
+
+    private LocalDateTime endedAt;
+
+    private LocalDateTime flushedAt;
+}
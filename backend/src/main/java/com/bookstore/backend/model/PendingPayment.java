@@ -0,0 +1,42 @@
+package com.bookstore.backend.model;
+
+import com.bookstore.backend.model.enums.PaymentStatus;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+// Một lượt thanh toán VNPay: paymentKey (vnp_TxnRef) -> đơn hàng, dùng chung giữa các node và qua restart
+@Entity
+@Table(name = "pending_payment", indexes = {
+        @Index(name = "idx_pending_payment_expires", columnList = "expires_at"),
+        @Index(name = "idx_pending_payment_completed", columnList = "completed_at")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PendingPayment {
+
+    @Id
+    @Column(length = 64)
+    private String paymentKey;
+
+    @Column(name = "order_id", nullable = false)
+    private Long orderId;
+
+    // PENDING -> PAID / FAILED, chỉ chuyển một lần
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private PaymentStatus status;
+
+    private String transactionNo;
+
+    private LocalDateTime createdAt;
+
+    // trùng vnp_ExpireDate
+    private LocalDateTime expiresAt;
+
+    private LocalDateTime completedAt;
+}
@@ -1,5 +1,6 @@
 package com.bookstore.backend.model;
 
+import com.bookstore.backend.service.search.CatalogReferenceListener;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
@@ -7,6 +8,7 @@ import lombok.*;
 import java.util.Set;
 
 @Entity
+@EntityListeners(CatalogReferenceListener.class)
 @Table(name = "publisher")
 @Data
 @NoArgsConstructor
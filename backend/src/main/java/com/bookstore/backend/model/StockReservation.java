@@ -0,0 +1,52 @@
+package com.bookstore.backend.model;
+
+import com.bookstore.backend.model.enums.ReservationStatus;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+// Lượng hàng được giữ cho một dòng đơn hàng; quantity của variant đã bị trừ tại thời điểm giữ
+@Entity
+@Table(name = "stock_reservation", indexes = {
+        @Index(name = "idx_reservation_order", columnList = "order_id"),
+        @Index(name = "idx_reservation_status_expires", columnList = "status, expires_at")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StockReservation {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "order_id", nullable = false)
+    @ToString.Exclude
+    private Orders orders;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "book_variant_id", nullable = false)
+    @ToString.Exclude
+    private BookVariants bookVariant;
+
+    @Column(nullable = false)
+    private Integer quantity;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private ReservationStatus status;
+
+    private LocalDateTime createdAt;
+
+    private LocalDateTime updatedAt;
+
+    // null = không hết hạn (COD hoặc đơn BANKING đã thanh toán)
+    private LocalDateTime expiresAt;
+
+    // Phiên flash sale cấp hàng cho reservation; null = trừ thẳng book_variants.quantity
+    private Long flashSaleId;
+}
@@ -0,0 +1,41 @@
+package com.bookstore.backend.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+// Mỗi user chỉ dùng một voucher một lần: unique (voucher_id, user_id) chặn cả hai checkout đồng thời
+@Entity
+@Table(name = "voucher_redemption", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_voucher_redemption_user", columnNames = {"voucher_id", "user_id"})
+}, indexes = {
+        @Index(name = "idx_voucher_redemption_order", columnList = "order_id")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class VoucherRedemption {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "voucher_id", nullable = false)
+    @ToString.Exclude
+    private Voucher voucher;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false)
+    @ToString.Exclude
+    private Users user;
+
+    private LocalDateTime redeemedAt;
+
+    // Đơn đã dùng lượt này; hủy đơn thì xóa dòng và trả lại lượt cho voucher. null = lượt ghi trước khi có cột này
+    @Column(name = "order_id")
+    private Long orderId;
+}
@@ -0,0 +1,7 @@
+package com.bookstore.backend.model.enums;
+
+public enum ImportStatus {
+    RUNNING,
+    COMPLETED,
+    FAILED
+}
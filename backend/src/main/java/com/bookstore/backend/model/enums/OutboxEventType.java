@@ -0,0 +1,6 @@
+package com.bookstore.backend.model.enums;
+
+public enum OutboxEventType {
+    NOTIFICATION,              // payload: NotificationRequestDTO
+    ORDER_CONFIRMATION_EMAIL   // payload: OutboxService.OrderEmail
+}
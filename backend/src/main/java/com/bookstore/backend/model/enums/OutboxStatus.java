@@ -0,0 +1,8 @@
+package com.bookstore.backend.model.enums;
+
+public enum OutboxStatus {
+    PENDING,     // chờ gửi (lần đầu hoặc chờ retry theo nextAttemptAt)
+    PROCESSING,  // đã được worker nhận, đang gửi
+    SENT,        // gửi thành công
+    FAILED       // hết số lần thử, cần xử lý tay
+}
@@ -0,0 +1,8 @@
+package com.bookstore.backend.model.enums;
+
+public enum ReservationStatus {
+    RESERVED,   // đã trừ quantity, chờ giao hàng
+    CONFIRMED,  // đơn chuyển sang DELIVERY, đã cộng sold
+    RELEASED,   // hủy / hết hạn, đã trả lại quantity
+    RESTORED    // hoàn hàng sau khi giao, đã trả lại quantity và trừ sold
+}
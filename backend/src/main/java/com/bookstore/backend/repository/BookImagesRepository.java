@@ -2,10 +2,22 @@ package com.bookstore.backend.repository;
 
 import com.bookstore.backend.model.BookImages;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface BookImagesRepository extends JpaRepository<BookImages, Long> {
     List<BookImages> findByBookVariantId(Long bookVariantId);
+
+    // (variantId, imageUrl) của tất cả ảnh thuộc một trang sách
+    @Query("""
+        SELECT i.bookVariant.id, i.imageUrl
+        FROM BookImages i
+        WHERE i.bookVariant.book.id IN :bookIds
+        ORDER BY i.id
+    """)
+    List<Object[]> findUrlRowsByBookIds(@Param("bookIds") Collection<Long> bookIds);
 }
\ No newline at end of file
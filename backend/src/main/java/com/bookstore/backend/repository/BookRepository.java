@@ -7,14 +7,15 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface BookRepository extends JpaRepository<Book, Long> {
 
-    // Lấy toàn bộ sách sắp xếp theo id
+    // Lấy id sách theo trang (dữ liệu chi tiết được load theo lô bởi BookCatalogReader)
     @Query(
             value = """
-            SELECT b
+            SELECT b.id
             FROM Book b
           """,
             countQuery = """
@@ -22,90 +23,114 @@ public interface BookRepository extends JpaRepository<Book, Long> {
             FROM Book b
           """
     )
-    Page<Book> findAllBooks(Pageable pageable);
+    Page<Long> findAllBookIds(Pageable pageable);
     
-    // Tìm sách theo tên category (có phân trang)
+    // Lấy id sách theo tên category (có phân trang)
     @Query(
             value = """
-            SELECT DISTINCT b
+            SELECT b.id
             FROM Book b
-            JOIN b.categories c
-            WHERE c.name = :categoryName
+            WHERE EXISTS (
+                SELECT c.id FROM b.categories c
+                WHERE c.name = :categoryName
+            )
           """,
             countQuery = """
-            SELECT COUNT(DISTINCT b)
+            SELECT COUNT(b)
             FROM Book b
-            JOIN b.categories c
-            WHERE c.name = :categoryName
+            WHERE EXISTS (
+                SELECT c.id FROM b.categories c
+                WHERE c.name = :categoryName
+            )
           """
     )
-    Page<Book> findByCategoriesName(@Param("categoryName") String categoryName, Pageable pageable);
+    Page<Long> findIdsByCategoryName(@Param("categoryName") String categoryName, Pageable pageable);
 
-    // Tìm sách theo tên tác giả (có phân trang)
-    Page<Book> findByAuthorsName(String authorName, Pageable pageable);
+    // Lấy id sách có tiêu đề đúng bằng title (có phân trang)
+    @Query(
+            value = """
+            SELECT b.id
+            FROM Book b
+            WHERE b.title = :title
+          """,
+            countQuery = """
+            SELECT COUNT(b)
+            FROM Book b
+            WHERE b.title = :title
+          """
+    )
+    Page<Long> findIdsByTitle(@Param("title") String title, Pageable pageable);
 
-    // Tìm sách theo tên nhà xuất bản (có phân trang)
-    Page<Book> findByPublisherName(String publisherName, Pageable pageable);
+    // Tìm id sách theo ISBN trong bảng variants (một sách có thể có nhiều biến thể với ISBN khác nhau)
+    @Query("""
+        SELECT DISTINCT v.book.id
+        FROM BookVariants v
+        WHERE v.isbn = :isbn
+    """)
+    List<Long> findIdsByIsbn(@Param("isbn") String isbn);
 
-    // Tìm sách theo tiêu đề chính xác (có phân trang)
-    Page<Book> findByTitle(String keyword, Pageable pageable);
+    // Các query theo lô cho một trang sách (BookCatalogReader)
+    @Query("""
+        SELECT b.id, b.title, b.description, b.publisherYear, p.id, p.name
+        FROM Book b
+        LEFT JOIN b.publisher p
+        WHERE b.id IN :ids
+    """)
+    List<Object[]> findCatalogRows(@Param("ids") Collection<Long> ids);
 
-    // Lấy danh sách tối đa 5 tiêu đề sách có chứa keyword (gợi ý search)
     @Query("""
-        SELECT b.title
+        SELECT b.id, a.id, a.name
         FROM Book b
-        WHERE LOWER(b.title) LIKE LOWER(CONCAT('%', :keyword, '%'))
-        ORDER BY b.title ASC
+        JOIN b.authors a
+        WHERE b.id IN :ids
     """)
-    List<String> findTop5Titles(@Param("keyword") String keyword, Pageable pageable);
+    List<Object[]> findAuthorRowsByBookIds(@Param("ids") Collection<Long> ids);
 
-    // Tìm sách theo keyword trong title, category, author hoặc publisher (search tổng hợp, có phân trang)
     @Query("""
-        SELECT DISTINCT b
+        SELECT b.id, c.id, c.name
+        FROM Book b
+        JOIN b.categories c
+        WHERE b.id IN :ids
+    """)
+    List<Object[]> findCategoryRowsByBookIds(@Param("ids") Collection<Long> ids);
+
+    // Các query phẳng dùng để build index tìm kiếm in-memory lúc khởi động
+    @Query("""
+        SELECT b.id, b.title, p.id, p.name, b.publisherYear
         FROM Book b
-        LEFT JOIN b.categories c
-        LEFT JOIN b.authors a
         LEFT JOIN b.publisher p
-        WHERE 
-            LOWER(b.title) LIKE LOWER(CONCAT('%', :keyword, '%'))
-            OR LOWER(c.name) LIKE LOWER(CONCAT('%', :keyword, '%'))
-            OR LOWER(a.name) LIKE LOWER(CONCAT('%', :keyword, '%'))
-            OR LOWER(p.name) LIKE LOWER(CONCAT('%', :keyword, '%'))
     """)
-    Page<Book> findByKey(@Param("keyword") String keyword, Pageable pageable);
+    List<Object[]> findAllIndexRows();
 
-    @Query(value = "SELECT * FROM Book ORDER BY RANDOM() LIMIT 90", nativeQuery = true)
-    List<Book> findRandomBooks();
+    @Query("""
+        SELECT b.id, a.id, a.name
+        FROM Book b
+        JOIN b.authors a
+    """)
+    List<Object[]> findAllAuthorRows();
 
-    // Tìm sách theo ISBN trong bảng variants (một sách có thể có nhiều biến thể với ISBN khác nhau)
     @Query("""
-        SELECT DISTINCT b 
-        FROM Book b 
-        JOIN b.variants v 
-        WHERE v.isbn = :isbn
+        SELECT b.id, c.id, c.name
+        FROM Book b
+        JOIN b.categories c
     """)
-    List<Book> findByIsbn(@Param("isbn") String isbn);
+    List<Object[]> findAllCategoryRows();
 
-    // Tìm sách theo keyword và lọc theo khoảng giá (hỗ trợ backend filtering)
+    // Cùng dạng với các query trên nhưng chỉ cho một nhóm sách (index lại khi tên tác giả / category / NXB đổi)
     @Query("""
-        SELECT DISTINCT b
+        SELECT b.id, b.title, p.id, p.name, b.publisherYear
         FROM Book b
-        LEFT JOIN b.categories c
-        LEFT JOIN b.authors a
         LEFT JOIN b.publisher p
-        JOIN b.variants v
-        WHERE (:keyword IS NULL OR 
-               LOWER(b.title) LIKE LOWER(CONCAT('%', :keyword, '%')) OR
-               LOWER(c.name) LIKE LOWER(CONCAT('%', :keyword, '%')) OR
-               LOWER(a.name) LIKE LOWER(CONCAT('%', :keyword, '%')) OR
-               LOWER(p.name) LIKE LOWER(CONCAT('%', :keyword, '%')))
-          AND (:minPrice IS NULL OR v.price >= :minPrice)
-          AND (:maxPrice IS NULL OR v.price <= :maxPrice)
+        WHERE b.id IN :ids
     """)
-    Page<Book> findByKeywordAndPrice(
-        @Param("keyword") String keyword,
-        @Param("minPrice") Double minPrice,
-        @Param("maxPrice") Double maxPrice,
-        Pageable pageable
-    );
-}
\ No newline at end of file
+    List<Object[]> findIndexRowsByIds(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT b.id FROM Book b JOIN b.authors a WHERE a.id = :authorId")
+    List<Long> findIdsByAuthorId(@Param("authorId") Long authorId);
+
+    @Query("SELECT b.id FROM Book b JOIN b.categories c WHERE c.id = :categoryId")
+    List<Long> findIdsByCategoryId(@Param("categoryId") Long categoryId);
+
+    @Query("SELECT b.id FROM Book b WHERE b.publisher.id = :publisherId")
+    List<Long> findIdsByPublisherId(@Param("publisherId") Long publisherId);
+}
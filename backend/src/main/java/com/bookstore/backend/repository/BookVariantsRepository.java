@@ -1,10 +1,97 @@
 package com.bookstore.backend.repository;
 
 import com.bookstore.backend.model.BookVariants;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
 public interface BookVariantsRepository extends JpaRepository<BookVariants, Long> {
 
     // Kiểm tra xem ISBN đã tồn tại hay chưa (để validate unique)
     boolean existsByIsbn(String isbn);
+
+    // Load cả lô variant kèm book trong một query (dòng đơn hàng, giỏ hàng)
+    @Query("SELECT v FROM BookVariants v JOIN FETCH v.book WHERE v.id IN :ids")
+    List<BookVariants> findAllWithBookByIdIn(@Param("ids") Collection<Long> ids);
+
+    // (variantId, bookId)
+    @Query("SELECT v.id, v.book.id FROM BookVariants v WHERE v.id IN :ids")
+    List<Object[]> findBookIds(@Param("ids") Collection<Long> ids);
+
+    // (isbn, variantId) của các ISBN đã tồn tại, validate cả lô ISBN bằng một query
+    @Query("SELECT v.isbn, v.id FROM BookVariants v WHERE v.isbn IN :isbns")
+    List<Object[]> findIsbnOwners(@Param("isbns") Collection<String> isbns);
+
+    // (bookId, price, sold) của tất cả variant, dùng để build index tìm kiếm
+    @Query("SELECT v.book.id, v.price, v.sold FROM BookVariants v")
+    List<Object[]> findAllVariantRows();
+
+    @Query("SELECT v.book.id, v.price, v.sold FROM BookVariants v WHERE v.book.id IN :bookIds")
+    List<Object[]> findVariantRowsByBookIds(@Param("bookIds") Collection<Long> bookIds);
+
+    // (bookId, id, price, quantity, sold, status, isbn) của các variant thuộc một trang sách
+    @Query("""
+        SELECT v.book.id, v.id, v.price, v.quantity, v.sold, v.status, v.isbn
+        FROM BookVariants v
+        WHERE v.book.id IN :bookIds
+        ORDER BY v.id
+    """)
+    List<Object[]> findCatalogRowsByBookIds(@Param("bookIds") Collection<Long> bookIds);
+
+    // Trừ kho nguyên tử: chỉ thành công khi còn đủ hàng, trả về 0 nếu không đủ
+    @Modifying
+    @Query("UPDATE BookVariants v SET v.quantity = v.quantity - :qty WHERE v.id = :id AND v.quantity >= :qty")
+    int reserveStock(@Param("id") Long id, @Param("qty") int qty);
+
+    // Cộng/trừ quantity và sold trong DB, không đọc-sửa-ghi qua entity
+    @Modifying
+    @Query("""
+        UPDATE BookVariants v
+        SET v.quantity = v.quantity + :quantityDelta, v.sold = v.sold + :soldDelta
+        WHERE v.id = :id
+    """)
+    int adjustStock(@Param("id") Long id,
+                    @Param("quantityDelta") int quantityDelta,
+                    @Param("soldDelta") int soldDelta);
+
+    // Admin sửa số lượng: cộng chênh lệch vào tồn kho hiện tại, không cho âm, status theo số lượng mới
+    @Modifying
+    @Query("""
+        UPDATE BookVariants v
+        SET v.quantity = v.quantity + :delta,
+            v.status = CASE WHEN v.quantity + :delta > 0 THEN 'AVAILABLE' ELSE 'OUT_OF_STOCK' END
+        WHERE v.id = :id AND v.quantity + :delta >= 0
+    """)
+    int applyQuantityDelta(@Param("id") Long id, @Param("delta") int delta);
+
+    // Khóa dòng variant khi bật / tắt flash sale để không có lượt trừ kho nào chen vào giữa
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT v FROM BookVariants v JOIN FETCH v.book WHERE v.id = :id")
+    Optional<BookVariants> lockById(@Param("id") Long id);
+
+    // (variantId, bookId, title, isbn, quantity, lowStockThreshold) cho bộ theo dõi tồn kho thấp
+    @Query("SELECT v.id, v.book.id, v.book.title, v.isbn, v.quantity, v.lowStockThreshold FROM BookVariants v WHERE v.id IN :ids")
+    List<Object[]> findStockRows(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT v.id, v.book.id, v.book.title, v.isbn, v.quantity, v.lowStockThreshold FROM BookVariants v WHERE v.book.id IN :bookIds")
+    List<Object[]> findStockRowsByBookIds(@Param("bookIds") Collection<Long> bookIds);
+
+    // Các variant đang dưới ngưỡng, chỉ dùng lúc dựng lại bộ theo dõi khi khởi động
+    @Query("""
+        SELECT v.id, v.book.id, v.book.title, v.isbn, v.quantity, v.lowStockThreshold
+        FROM BookVariants v
+        WHERE v.quantity <= COALESCE(v.lowStockThreshold, :defaultThreshold)
+    """)
+    List<Object[]> findLowStockRows(@Param("defaultThreshold") int defaultThreshold);
+
+    @Modifying
+    @Query("UPDATE BookVariants v SET v.lowStockThreshold = :threshold WHERE v.id = :id")
+    int updateLowStockThreshold(@Param("id") Long id, @Param("threshold") Integer threshold);
 }
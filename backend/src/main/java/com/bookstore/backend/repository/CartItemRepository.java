@@ -2,9 +2,18 @@ package com.bookstore.backend.repository;
 
 import com.bookstore.backend.model.CartItems;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
 
 public interface CartItemRepository extends JpaRepository<CartItems, Long> {
 
     // Kiểm tra xem có tồn tại CartItem nào với bookVariant có id tương ứng hay không
     boolean existsByBookVariantId(Long variantId);
+
+    // Các variant (trong danh sách) đang nằm trong giỏ hàng của ai đó
+    @Query("SELECT DISTINCT c.bookVariant.id FROM CartItems c WHERE c.bookVariant.id IN :variantIds")
+    List<Long> findVariantIdsInCarts(@Param("variantIds") Collection<Long> variantIds);
 }
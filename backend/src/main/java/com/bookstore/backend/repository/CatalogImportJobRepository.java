@@ -0,0 +1,9 @@
+package com.bookstore.backend.repository;
+
+import com.bookstore.backend.model.CatalogImportJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface CatalogImportJobRepository extends JpaRepository<CatalogImportJob, Long> {
+}
@@ -0,0 +1,67 @@
+package com.bookstore.backend.repository;
+
+import com.bookstore.backend.model.DailySales;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+public interface DailySalesRepository extends JpaRepository<DailySales, LocalDate> {
+
+    List<DailySales> findBySaleDateBetweenOrderBySaleDate(LocalDate from, LocalDate to);
+
+    // Tạo sẵn dòng 0 cho các ngày đặt hàng của các đơn; upsert đồng thời của cùng ngày chờ nhau ở khóa chính
+    @Modifying
+    @Query(value = """
+        INSERT INTO daily_sales (sale_date, books_sold, revenue, order_count)
+        SELECT DISTINCT CAST(o.order_date AS DATE), 0, 0, 0
+        FROM orders o
+        JOIN orders_details d ON d.order_id = o.id
+        WHERE o.id IN (:orderIds)
+        ON CONFLICT DO NOTHING
+    """, nativeQuery = true)
+    int ensureDays(@Param("orderIds") Collection<Long> orderIds);
+
+    // Cộng (sign = 1) hoặc trừ (sign = -1) doanh số của các đơn vào ngày đặt hàng tương ứng (dòng đã có từ ensureDays).
+    // UPDATE cộng dồn trên dòng đã khóa nên hai transaction cùng ngày không ghi đè nhau
+    @Modifying
+    @Query(value = """
+        UPDATE daily_sales SET
+            books_sold = books_sold + :sign * (
+                SELECT COALESCE(SUM(d.quantity), 0) FROM orders o JOIN orders_details d ON d.order_id = o.id
+                WHERE o.id IN (:orderIds) AND CAST(o.order_date AS DATE) = daily_sales.sale_date),
+            revenue = revenue + :sign * (
+                SELECT COALESCE(SUM(d.quantity * d.price_purchased), 0) FROM orders o JOIN orders_details d ON d.order_id = o.id
+                WHERE o.id IN (:orderIds) AND CAST(o.order_date AS DATE) = daily_sales.sale_date),
+            order_count = order_count + :sign * (
+                SELECT COUNT(DISTINCT o.id) FROM orders o JOIN orders_details d ON d.order_id = o.id
+                WHERE o.id IN (:orderIds) AND CAST(o.order_date AS DATE) = daily_sales.sale_date)
+        WHERE sale_date IN (SELECT CAST(o.order_date AS DATE) FROM orders o WHERE o.id IN (:orderIds))
+    """, nativeQuery = true)
+    int addOrders(@Param("orderIds") Collection<Long> orderIds, @Param("sign") int sign);
+
+    @Modifying
+    @Query("DELETE FROM DailySales s WHERE s.saleDate >= :from AND s.saleDate < :to")
+    int deleteRange(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    // Tính lại từ đầu các ngày trong [from, to) từ bảng đơn hàng.
+    // So sánh theo ngày trong DB (cùng cách tính sale_date), tránh lệch múi giờ khi bind LocalDateTime
+    @Modifying
+    @Query(value = """
+        INSERT INTO daily_sales (sale_date, books_sold, revenue, order_count)
+        SELECT CAST(o.order_date AS DATE),
+               SUM(d.quantity),
+               SUM(d.quantity * d.price_purchased),
+               COUNT(DISTINCT o.id)
+        FROM orders o
+        JOIN orders_details d ON d.order_id = o.id
+        WHERE o.status IN ('DELIVERY', 'SUCCESS')
+          AND CAST(o.order_date AS DATE) >= :from AND CAST(o.order_date AS DATE) < :to
+        GROUP BY CAST(o.order_date AS DATE)
+    """, nativeQuery = true)
+    int insertRange(@Param("from") LocalDate from, @Param("to") LocalDate to);
+}
@@ -0,0 +1,37 @@
+package com.bookstore.backend.repository;
+
+import com.bookstore.backend.model.FlashSaleVariant;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+public interface FlashSaleVariantRepository extends JpaRepository<FlashSaleVariant, Long> {
+
+    // (saleId, variantId, bookId, allocated, remaining) của các phiên đang chạy, dùng để dựng lại counter
+    @Query("""
+        SELECT s.id, v.id, v.book.id, s.allocated, s.remaining
+        FROM FlashSaleVariant s JOIN s.bookVariant v
+        WHERE s.active = true
+    """)
+    List<Object[]> findActiveRows();
+
+    @Query("SELECT s FROM FlashSaleVariant s WHERE s.bookVariant.id = :variantId AND s.active = true")
+    Optional<FlashSaleVariant> findActiveByVariantId(@Param("variantId") Long variantId);
+
+    @Modifying
+    @Query("UPDATE FlashSaleVariant s SET s.remaining = :remaining, s.flushedAt = :now WHERE s.id = :id")
+    int updateRemaining(@Param("id") Long id, @Param("remaining") int remaining, @Param("now") LocalDateTime now);
+
+    // Kết thúc phiên, chỉ một lần
+    @Modifying
+    @Query("""
+        UPDATE FlashSaleVariant s SET s.remaining = :remaining, s.active = false, s.endedAt = :now, s.flushedAt = :now
+        WHERE s.id = :id AND s.active = true
+    """)
+    int close(@Param("id") Long id, @Param("remaining") int remaining, @Param("now") LocalDateTime now);
+}
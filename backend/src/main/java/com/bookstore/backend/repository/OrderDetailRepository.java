@@ -5,6 +5,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface OrderDetailRepository extends JpaRepository<OrderDetails, Integer> {
@@ -21,4 +22,8 @@ public interface OrderDetailRepository extends JpaRepository<OrderDetails, Integ
             "WHERE od.bookVariant.id = :variantId " +
             "AND od.orders.status != 'SUCCESS'")
     boolean existsByBookVariantAndOrderNotCompleted(@Param("variantId") Long variantId);
+
+    // Các variant (trong danh sách) đã xuất hiện trong bất kỳ đơn hàng nào
+    @Query("SELECT DISTINCT od.bookVariant.id FROM OrderDetails od WHERE od.bookVariant.id IN :variantIds")
+    List<Long> findOrderedVariantIds(@Param("variantIds") Collection<Long> variantIds);
 }
@@ -2,7 +2,14 @@ package com.bookstore.backend.repository;
 
 import com.bookstore.backend.model.Orders;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import com.bookstore.backend.model.enums.StatusOrder;
+
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -10,4 +17,31 @@ public interface OrdersRepository extends JpaRepository<Orders, Long> {
     List<Orders> findByUsersId(Long userId);
     Optional<Orders> findById(Long id);
     List<Orders> findAllByOrderDateBetween(LocalDateTime startDate, LocalDateTime endDate);
+
+    @Query("SELECT MIN(o.orderDate) FROM Orders o")
+    LocalDateTime findFirstOrderDate();
+
+    // (status, số đơn) cho các tab của trang quản lý đơn
+    @Query("SELECT o.status, COUNT(o) FROM Orders o GROUP BY o.status")
+    List<Object[]> countByStatus();
+
+    // Hủy đơn hết hạn giữ hàng, chỉ khi đơn vẫn PENDING và chưa thanh toán
+    @Modifying
+    @Query("""
+        UPDATE Orders o
+        SET o.status = com.bookstore.backend.model.enums.StatusOrder.CANCELLED,
+            o.paymentStatus = com.bookstore.backend.model.enums.PaymentStatus.FAILED
+        WHERE o.id = :id
+          AND o.status = com.bookstore.backend.model.enums.StatusOrder.PENDING
+          AND o.paymentStatus <> com.bookstore.backend.model.enums.PaymentStatus.PAID
+    """)
+    int cancelUnpaid(@Param("id") Long id);
+
+    // (id, status) của các đơn, khóa dòng tới hết transaction để chuyển trạng thái hàng loạt
+    @Query(value = "SELECT id, status FROM orders WHERE id IN (:ids) ORDER BY id FOR UPDATE", nativeQuery = true)
+    List<Object[]> lockStatuses(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("UPDATE Orders o SET o.status = :status WHERE o.id IN :ids")
+    int updateStatus(@Param("ids") Collection<Long> ids, @Param("status") StatusOrder status);
 }
\ No newline at end of file
@@ -0,0 +1,80 @@
+package com.bookstore.backend.repository;
+
+import com.bookstore.backend.model.OutboxEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    @Query("""
+        SELECT e.id FROM OutboxEvent e
+        WHERE e.status = com.bookstore.backend.model.enums.OutboxStatus.PENDING
+          AND e.nextAttemptAt <= :now
+        ORDER BY e.id
+    """)
+    List<Long> findDueIds(@Param("now") LocalDateTime now, Pageable pageable);
+
+    // Nhận event có điều kiện: nhiều instance cùng poll thì chỉ một bên nhận được
+    @Modifying
+    @Query("""
+        UPDATE OutboxEvent e SET e.status = com.bookstore.backend.model.enums.OutboxStatus.PROCESSING,
+            e.lockedAt = :now, e.attempts = e.attempts + 1
+        WHERE e.id = :id
+          AND e.status = com.bookstore.backend.model.enums.OutboxStatus.PENDING
+    """)
+    int claim(@Param("id") Long id, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("""
+        UPDATE OutboxEvent e SET e.status = com.bookstore.backend.model.enums.OutboxStatus.SENT,
+            e.processedAt = :now, e.lockedAt = NULL
+        WHERE e.id = :id
+          AND e.status = com.bookstore.backend.model.enums.OutboxStatus.PROCESSING
+    """)
+    int markSent(@Param("id") Long id, @Param("now") LocalDateTime now);
+
+    // Gửi lỗi: quay về PENDING và chờ tới nextAttemptAt
+    @Modifying
+    @Query("""
+        UPDATE OutboxEvent e SET e.status = com.bookstore.backend.model.enums.OutboxStatus.PENDING,
+            e.nextAttemptAt = :nextAttemptAt, e.lastError = :error, e.lockedAt = NULL
+        WHERE e.id = :id
+          AND e.status = com.bookstore.backend.model.enums.OutboxStatus.PROCESSING
+    """)
+    int reschedule(@Param("id") Long id,
+                   @Param("nextAttemptAt") LocalDateTime nextAttemptAt,
+                   @Param("error") String error);
+
+    @Modifying
+    @Query("""
+        UPDATE OutboxEvent e SET e.status = com.bookstore.backend.model.enums.OutboxStatus.FAILED,
+            e.processedAt = :now, e.lastError = :error, e.lockedAt = NULL
+        WHERE e.id = :id
+          AND e.status = com.bookstore.backend.model.enums.OutboxStatus.PROCESSING
+    """)
+    int markFailed(@Param("id") Long id, @Param("now") LocalDateTime now, @Param("error") String error);
+
+    // Event PROCESSING quá lâu (server tắt khi đang gửi) -> cho gửi lại
+    @Modifying
+    @Query("""
+        UPDATE OutboxEvent e SET e.status = com.bookstore.backend.model.enums.OutboxStatus.PENDING,
+            e.lockedAt = NULL
+        WHERE e.status = com.bookstore.backend.model.enums.OutboxStatus.PROCESSING
+          AND e.lockedAt < :before
+    """)
+    int recoverStuck(@Param("before") LocalDateTime before);
+
+    @Modifying
+    @Query("""
+        DELETE FROM OutboxEvent e
+        WHERE e.status = com.bookstore.backend.model.enums.OutboxStatus.SENT
+          AND e.processedAt < :before
+    """)
+    int deleteSentBefore(@Param("before") LocalDateTime before);
+}
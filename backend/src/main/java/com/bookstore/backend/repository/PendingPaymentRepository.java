@@ -0,0 +1,43 @@
+package com.bookstore.backend.repository;
+
+import com.bookstore.backend.model.PendingPayment;
+import com.bookstore.backend.model.enums.PaymentStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+
+public interface PendingPaymentRepository extends JpaRepository<PendingPayment, String> {
+
+    // Chỉ callback đầu tiên chuyển được PENDING -> PAID/FAILED, callback trùng (hoặc node khác) nhận 0
+    @Modifying
+    @Query("""
+        UPDATE PendingPayment p SET p.status = :status, p.transactionNo = :transactionNo, p.completedAt = :now
+        WHERE p.paymentKey = :paymentKey
+          AND p.status = com.bookstore.backend.model.enums.PaymentStatus.PENDING
+    """)
+    int complete(@Param("paymentKey") String paymentKey,
+                 @Param("status") PaymentStatus status,
+                 @Param("transactionNo") String transactionNo,
+                 @Param("now") LocalDateTime now);
+
+    // Lượt bỏ dở: chưa từng nhận callback
+    @Modifying
+    @Query("""
+        DELETE FROM PendingPayment p
+        WHERE p.status = com.bookstore.backend.model.enums.PaymentStatus.PENDING
+          AND p.expiresAt < :before
+    """)
+    int deleteAbandonedBefore(@Param("before") LocalDateTime before);
+
+    // Lượt đã PAID / FAILED: là bằng chứng chống xử lý callback / IPN lặp lại nên giữ lâu hơn
+    @Modifying
+    @Query("""
+        DELETE FROM PendingPayment p
+        WHERE p.status <> com.bookstore.backend.model.enums.PaymentStatus.PENDING
+          AND p.completedAt < :before
+    """)
+    int deleteCompletedBefore(@Param("before") LocalDateTime before);
+}
@@ -0,0 +1,107 @@
+package com.bookstore.backend.repository;
+
+import com.bookstore.backend.model.StockReservation;
+import com.bookstore.backend.model.enums.ReservationStatus;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface StockReservationRepository extends JpaRepository<StockReservation, Long> {
+
+    // Reservation của đơn theo trạng thái, kèm variant + book để biết bookId
+    @Query("""
+        SELECT r FROM StockReservation r
+        JOIN FETCH r.bookVariant v
+        JOIN FETCH v.book
+        WHERE r.orders.id = :orderId AND r.status = :status
+        ORDER BY v.id
+    """)
+    List<StockReservation> findByOrderAndStatus(@Param("orderId") Long orderId,
+                                                @Param("status") ReservationStatus status);
+
+    boolean existsByOrdersId(Long orderId);
+
+    // Reservation của nhiều đơn, khóa dòng để chuyển trạng thái cả lô bằng một câu UPDATE
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("""
+        SELECT r FROM StockReservation r
+        WHERE r.orders.id IN :orderIds AND r.status = :status
+        ORDER BY r.id
+    """)
+    List<StockReservation> lockByOrdersAndStatus(@Param("orderIds") Collection<Long> orderIds,
+                                                 @Param("status") ReservationStatus status);
+
+    @Modifying
+    @Query("""
+        UPDATE StockReservation r SET r.status = :to, r.updatedAt = :now
+        WHERE r.id IN :ids AND r.status = :from
+    """)
+    int transitionAll(@Param("ids") Collection<Long> ids,
+                      @Param("from") ReservationStatus from,
+                      @Param("to") ReservationStatus to,
+                      @Param("now") LocalDateTime now);
+
+    // Chuyển trạng thái có điều kiện: chỉ một luồng (staff / job hết hạn) thắng
+    @Modifying
+    @Query("""
+        UPDATE StockReservation r SET r.status = :to, r.updatedAt = :now
+        WHERE r.id = :id AND r.status = :from
+    """)
+    int transition(@Param("id") Long id,
+                   @Param("from") ReservationStatus from,
+                   @Param("to") ReservationStatus to,
+                   @Param("now") LocalDateTime now);
+
+    // Như transition RESERVED -> RELEASED nhưng chỉ khi vẫn còn hết hạn (chưa được thanh toán)
+    @Modifying
+    @Query("""
+        UPDATE StockReservation r SET r.status = com.bookstore.backend.model.enums.ReservationStatus.RELEASED,
+            r.updatedAt = :now
+        WHERE r.id = :id
+          AND r.status = com.bookstore.backend.model.enums.ReservationStatus.RESERVED
+          AND r.expiresAt < :now
+    """)
+    int expire(@Param("id") Long id, @Param("now") LocalDateTime now);
+
+    // Đơn đã thanh toán -> giữ hàng đến khi giao
+    @Modifying
+    @Query("""
+        UPDATE StockReservation r SET r.expiresAt = NULL
+        WHERE r.orders.id = :orderId
+          AND r.status = com.bookstore.backend.model.enums.ReservationStatus.RESERVED
+    """)
+    int clearExpiry(@Param("orderId") Long orderId);
+
+    @Query("""
+        SELECT DISTINCT r.orders.id FROM StockReservation r
+        WHERE r.status = com.bookstore.backend.model.enums.ReservationStatus.RESERVED
+          AND r.expiresAt < :now
+    """)
+    List<Long> findExpiredOrderIds(@Param("now") LocalDateTime now);
+
+    // Số hàng phiên flash sale đang cấp ra (chưa được trả lại)
+    @Query("""
+        SELECT COALESCE(SUM(r.quantity), 0) FROM StockReservation r
+        WHERE r.flashSaleId = :saleId
+          AND r.status IN (com.bookstore.backend.model.enums.ReservationStatus.RESERVED,
+                           com.bookstore.backend.model.enums.ReservationStatus.CONFIRMED)
+    """)
+    long sumOutstandingByFlashSale(@Param("saleId") Long saleId);
+
+    // (bookId, ngày, số lượng) đã xác nhận từ since, để dựng lại điểm trending của bảng bán chạy
+    @Query("""
+        SELECT v.book.id, CAST(r.updatedAt AS LocalDate), SUM(r.quantity)
+        FROM StockReservation r JOIN r.bookVariant v
+        WHERE r.status = com.bookstore.backend.model.enums.ReservationStatus.CONFIRMED
+          AND r.updatedAt >= :since
+        GROUP BY v.book.id, CAST(r.updatedAt AS LocalDate)
+    """)
+    List<Object[]> sumConfirmedByBookAndDay(@Param("since") LocalDateTime since);
+}
@@ -1,5 +1,7 @@
 package com.bookstore.backend.repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 import com.bookstore.backend.model.Account;
@@ -9,6 +11,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.bookstore.backend.model.Users;
+import com.bookstore.backend.model.enums.UserRole;
 
 @Repository
 public interface UserRepository extends JpaRepository<Users, Long> {
@@ -22,4 +25,8 @@ public interface UserRepository extends JpaRepository<Users, Long> {
     Optional<Users> findByVerificationToken(@Param("token") String token);
     
     Boolean existsByEmail(String email);
+
+    // id của nhân viên / admin nhận cảnh báo nội bộ
+    @Query("SELECT u.id FROM Users u WHERE u.role IN :roles")
+    List<Long> findIdsByRoleIn(@Param("roles") Collection<UserRole> roles);
 }
\ No newline at end of file
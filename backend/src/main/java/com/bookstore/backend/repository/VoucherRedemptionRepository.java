@@ -0,0 +1,24 @@
+package com.bookstore.backend.repository;
+
+import com.bookstore.backend.model.VoucherRedemption;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+public interface VoucherRedemptionRepository extends JpaRepository<VoucherRedemption, Long> {
+
+    boolean existsByVoucherIdAndUserId(Long voucherId, Long userId);
+
+    long countByVoucherId(Long voucherId);
+
+    @Query("SELECT r.id, r.voucher.id FROM VoucherRedemption r WHERE r.orderId = :orderId")
+    List<Object[]> findByOrderId(@Param("orderId") Long orderId);
+
+    // 1 nếu lượt gọi này xóa được dòng: hai lượt hủy đồng thời chỉ một lượt trả lại voucher
+    @Modifying
+    @Query("DELETE FROM VoucherRedemption r WHERE r.id = :id")
+    int deleteRedemption(@Param("id") Long id);
+}
@@ -2,6 +2,9 @@ package com.bookstore.backend.repository;
 
 import com.bookstore.backend.model.Voucher;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.time.LocalDateTime;
 import java.util.List;
@@ -31,4 +34,37 @@ public interface VoucherRepository extends JpaRepository<Voucher, Long> {
     
     // Tìm voucher theo code hoặc name
     List<Voucher> findByCodeContainingIgnoreCaseOrNameContainingIgnoreCase(String code, String name);
+
+    // Lấy một lượt dùng bằng một câu UPDATE có điều kiện: không mất lượt tăng, không vượt quantity.
+    // Vế phải của SET đọc giá trị cũ, nên lượt cuối cùng chuyển luôn sang EXPIRED trong cùng câu lệnh.
+    @Modifying
+    @Query("""
+        UPDATE Voucher v SET v.usedCount = COALESCE(v.usedCount, 0) + 1,
+            v.status = CASE
+                WHEN v.quantity IS NOT NULL AND COALESCE(v.usedCount, 0) + 1 >= v.quantity
+                    THEN com.bookstore.backend.model.Voucher.VoucherStatus.EXPIRED
+                ELSE v.status END,
+            v.updatedAt = :now
+        WHERE v.id = :id
+          AND v.status = com.bookstore.backend.model.Voucher.VoucherStatus.ACTIVE
+          AND (v.quantity IS NULL OR COALESCE(v.usedCount, 0) < v.quantity)
+          AND (v.startDate IS NULL OR v.startDate < :now)
+          AND (v.endDate IS NULL OR v.endDate > :now)
+    """)
+    int redeem(@Param("id") Long id, @Param("now") LocalDateTime now);
+
+    // Trả lại một lượt dùng (đơn bị hủy). Voucher bị EXPIRED vì hết lượt (chưa quá endDate) được mở lại ACTIVE
+    @Modifying
+    @Query("""
+        UPDATE Voucher v SET v.usedCount = v.usedCount - 1,
+            v.status = CASE
+                WHEN v.status = com.bookstore.backend.model.Voucher.VoucherStatus.EXPIRED
+                    AND v.quantity IS NOT NULL AND v.usedCount >= v.quantity
+                    AND (v.endDate IS NULL OR v.endDate > :now)
+                    THEN com.bookstore.backend.model.Voucher.VoucherStatus.ACTIVE
+                ELSE v.status END,
+            v.updatedAt = :now
+        WHERE v.id = :id AND v.usedCount > 0
+    """)
+    int unredeem(@Param("id") Long id, @Param("now") LocalDateTime now);
 }
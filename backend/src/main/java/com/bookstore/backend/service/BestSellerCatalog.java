@@ -0,0 +1,77 @@
+package com.bookstore.backend.service;
+
+import com.bookstore.backend.DTO.BookDTO;
+import com.bookstore.backend.service.search.BestSellerRanking;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Danh sách sách bán chạy (toàn catalog / theo category, tổng hoặc trending) cho trang chủ và trang trending.
+ * Top-K của mỗi danh sách được load thành BookDTO một lần và giữ trong bộ nhớ tới lượt làm mới,
+ * nên request đọc trong phạm vi top-K không chạm DB. Trang nằm ngoài top-K mới load theo id.
+ */
+@Component
+public class BestSellerCatalog {
+
+    private record Key(String category, BestSellerRanking.Window window) {
+    }
+
+    private final BestSellerRanking bestSellerRanking;
+    private final BookCatalogReader bookCatalogReader;
+    private final int topSize;
+    private final LoadingCache<Key, List<BookDTO>> tops;
+
+    public BestSellerCatalog(BestSellerRanking bestSellerRanking,
+                             BookCatalogReader bookCatalogReader,
+                             @Value("${catalog.best-sellers.size:100}") int topSize,
+                             @Value("${catalog.best-sellers.refresh:PT1M}") Duration refresh) {
+        this.bestSellerRanking = bestSellerRanking;
+        this.bookCatalogReader = bookCatalogReader;
+        this.topSize = topSize;
+        this.tops = CacheBuilder.newBuilder()
+                .maximumSize(1000)
+                .expireAfterWrite(refresh)
+                .build(CacheLoader.from(this::loadTop));
+    }
+
+    public int topSize() {
+        return topSize;
+    }
+
+    // category null = toàn catalog; limit tối đa topSize
+    public List<BookDTO> top(String category, BestSellerRanking.Window window, int limit) {
+        List<BookDTO> books = tops.getUnchecked(new Key(category, window));
+        return books.subList(0, Math.min(Math.max(limit, 0), books.size()));
+    }
+
+    // Duyệt cả category theo thứ tự bán chạy; các trang nằm trong top-K lấy từ bộ nhớ
+    public Page<BookDTO> page(String category, BestSellerRanking.Window window, Pageable pageable) {
+        if (pageable.isUnpaged()) {
+            BestSellerRanking.Slice all = bestSellerRanking.slice(category, window, 0, Integer.MAX_VALUE);
+            return new PageImpl<>(bookCatalogReader.loadBooks(all.ids()), pageable, all.total());
+        }
+        long offset = pageable.getOffset();
+        if (offset + pageable.getPageSize() <= topSize) {
+            List<BookDTO> books = tops.getUnchecked(new Key(category, window));
+            long total = bestSellerRanking.slice(category, window, 0, 0).total();
+            int from = (int) Math.min(offset, books.size());
+            int to = (int) Math.min(offset + pageable.getPageSize(), books.size());
+            return new PageImpl<>(books.subList(from, to), pageable, total);
+        }
+        BestSellerRanking.Slice slice = bestSellerRanking.slice(category, window, (int) offset, pageable.getPageSize());
+        return bookCatalogReader.loadPage(new PageImpl<>(slice.ids(), pageable, slice.total()));
+    }
+
+    private List<BookDTO> loadTop(Key key) {
+        return List.copyOf(bookCatalogReader.loadBooks(bestSellerRanking.top(key.category(), key.window(), topSize)));
+    }
+}
@@ -0,0 +1,114 @@
+package com.bookstore.backend.service;
+
+import com.bookstore.backend.DTO.BookDTO;
+import com.bookstore.backend.DTO.BookDTO.BookVariantDTO;
+import com.bookstore.backend.repository.BookImagesRepository;
+import com.bookstore.backend.repository.BookRepository;
+import com.bookstore.backend.repository.BookVariantsRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Đường đọc catalog theo lô: load cả một trang sách bằng số query cố định
+ * (sách + publisher, authors, categories, variants, images) thay vì lazy-load từng sách.
+ * Chỉ đọc các cột cần cho BookDTO, không tạo entity nên không bị N+1.
+ */
+@Component
+@RequiredArgsConstructor
+@Transactional(readOnly = true)
+public class BookCatalogReader {
+
+    private final BookRepository bookRepository;
+    private final BookVariantsRepository bookVariantsRepository;
+    private final BookImagesRepository bookImagesRepository;
+
+    // Chuyển trang id thành trang BookDTO (giữ nguyên thứ tự và tổng số phần tử)
+    public Page<BookDTO> loadPage(Page<Long> ids) {
+        Map<Long, BookDTO> books = loadByIds(ids.getContent());
+        return ids.map(books::get);
+    }
+
+    // Load danh sách sách theo id, giữ nguyên thứ tự, bỏ qua id không tồn tại
+    public List<BookDTO> loadBooks(List<Long> ids) {
+        Map<Long, BookDTO> books = loadByIds(ids);
+        List<BookDTO> result = new ArrayList<>(books.size());
+        for (Long id : ids) {
+            BookDTO dto = books.get(id);
+            if (dto != null) {
+                result.add(dto);
+            }
+        }
+        return result;
+    }
+
+    private Map<Long, BookDTO> loadByIds(List<Long> ids) {
+        Map<Long, BookDTO> books = new HashMap<>();
+        if (ids.isEmpty()) {
+            return books;
+        }
+
+        for (Object[] row : bookRepository.findCatalogRows(ids)) {
+            BookDTO dto = new BookDTO();
+            dto.setId((Long) row[0]);
+            dto.setTitle((String) row[1]);
+            dto.setDescription((String) row[2]);
+            dto.setPublisherYear((Integer) row[3]);
+            dto.setPublisherId((Long) row[4]);
+            dto.setPublisherName((String) row[5]);
+            dto.setAuthorIds(new LinkedHashSet<>());
+            dto.setAuthorNames(new LinkedHashSet<>());
+            dto.setCategoryIds(new LinkedHashSet<>());
+            dto.setCategoryNames(new LinkedHashSet<>());
+            dto.setVariants(new ArrayList<>());
+            books.put(dto.getId(), dto);
+        }
+        if (books.isEmpty()) {
+            return books;
+        }
+
+        for (Object[] row : bookRepository.findAuthorRowsByBookIds(books.keySet())) {
+            BookDTO dto = books.get((Long) row[0]);
+            dto.getAuthorIds().add((Long) row[1]);
+            dto.getAuthorNames().add((String) row[2]);
+        }
+
+        for (Object[] row : bookRepository.findCategoryRowsByBookIds(books.keySet())) {
+            BookDTO dto = books.get((Long) row[0]);
+            dto.getCategoryIds().add((Long) row[1]);
+            dto.getCategoryNames().add((String) row[2]);
+        }
+
+        Map<Long, BookVariantDTO> variants = new HashMap<>();
+        for (Object[] row : bookVariantsRepository.findCatalogRowsByBookIds(books.keySet())) {
+            BookVariantDTO vdto = new BookVariantDTO();
+            vdto.setId((Long) row[1]);
+            vdto.setPrice((Double) row[2]);
+            vdto.setQuantity((Integer) row[3]);
+            vdto.setSold((Integer) row[4]);
+            vdto.setStatus((String) row[5]);
+            vdto.setIsbn((String) row[6]);
+            vdto.setImageUrls(new ArrayList<>());
+            books.get((Long) row[0]).getVariants().add(vdto);
+            variants.put(vdto.getId(), vdto);
+        }
+
+        // Không có variant thì cũng không có ảnh -> bỏ qua query cuối
+        if (!variants.isEmpty()) {
+            for (Object[] row : bookImagesRepository.findUrlRowsByBookIds(books.keySet())) {
+                BookVariantDTO vdto = variants.get((Long) row[0]);
+                if (vdto != null) {
+                    vdto.getImageUrls().add((String) row[1]);
+                }
+            }
+        }
+        return books;
+    }
+}
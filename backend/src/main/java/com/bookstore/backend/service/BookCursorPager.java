@@ -0,0 +1,230 @@
+package com.bookstore.backend.service;
+
+import com.bookstore.backend.DTO.BookDTO;
+import com.bookstore.backend.DTO.CursorPageDTO;
+import com.bookstore.backend.service.search.BookDocument;
+import com.bookstore.backend.service.search.BookSearchIndex;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+
+/**
+ * Phân trang theo keyset (sort key, id) cho catalog và tìm kiếm.
+ * Mỗi trang chỉ cần "WHERE (key, id) > cursor ORDER BY key, id LIMIT n",
+ * chi phí không tăng theo độ sâu như OFFSET. Cursor là chuỗi base64 mờ với client.
+ */
+@Service
+@RequiredArgsConstructor
+@Transactional(readOnly = true)
+public class BookCursorPager {
+
+    private static final int MAX_PAGE_SIZE = 100;
+    // Cùng thứ tự title với đường phân trang offset trong BookService (không phân biệt hoa thường)
+    private static final Comparator<String> TITLE_ORDER = String.CASE_INSENSITIVE_ORDER;
+
+    // Chỉ cho phép sort theo các cột đã có index (key, id)
+    public enum SortKey {
+        ID("id", "b.id"),
+        TITLE("title", "b.title"),
+        PUBLISHER_YEAR("publisherYear", "COALESCE(b.publisherYear, 0)");
+
+        private final String param;
+        private final String expression;
+
+        SortKey(String param, String expression) {
+            this.param = param;
+            this.expression = expression;
+        }
+
+        public static SortKey from(String sortBy) {
+            for (SortKey key : values()) {
+                if (key.param.equals(sortBy)) {
+                    return key;
+                }
+            }
+            throw new IllegalArgumentException("Không hỗ trợ sắp xếp theo: " + sortBy);
+        }
+    }
+
+    // Vị trí của phần tử cuối cùng trang trước
+    private record Cursor(SortKey key, boolean descending, long id, String value) {
+    }
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final BookCatalogReader bookCatalogReader;
+    private final BookSearchIndex bookSearchIndex;
+
+    // Duyệt toàn bộ catalog (categoryName null) hoặc theo category bằng keyset SQL
+    public CursorPageDTO<BookDTO> browse(String categoryName, SortKey key, boolean descending,
+                                         String cursor, int size, boolean skipCount) {
+        Cursor position = decode(cursor, key, descending);
+        int limit = clampSize(size);
+
+        StringBuilder where = new StringBuilder(" WHERE 1 = 1");
+        if (categoryName != null) {
+            where.append(" AND EXISTS (SELECT c.id FROM b.categories c WHERE c.name = :categoryName)");
+        }
+        String filter = where.toString();
+
+        String op = descending ? " < " : " > ";
+        if (position != null) {
+            if (key == SortKey.ID) {
+                where.append(" AND b.id").append(op).append(":lastId");
+            } else {
+                where.append(" AND (").append(key.expression).append(op).append(":lastValue")
+                        .append(" OR (").append(key.expression).append(" = :lastValue AND b.id")
+                        .append(op).append(":lastId))");
+            }
+        }
+        String direction = descending ? " DESC" : " ASC";
+        String orderBy = key == SortKey.ID
+                ? " ORDER BY b.id" + direction
+                : " ORDER BY " + key.expression + direction + ", b.id" + direction;
+
+        TypedQuery<Object[]> query = entityManager.createQuery(
+                "SELECT b.id, " + key.expression + " FROM Book b" + where + orderBy, Object[].class);
+        if (categoryName != null) {
+            query.setParameter("categoryName", categoryName);
+        }
+        if (position != null) {
+            query.setParameter("lastId", position.id());
+            if (key != SortKey.ID) {
+                query.setParameter("lastValue", key == SortKey.TITLE
+                        ? position.value()
+                        : Integer.valueOf(position.value()));
+            }
+        }
+        List<Object[]> rows = query.setMaxResults(limit + 1).getResultList();
+
+        boolean hasNext = rows.size() > limit;
+        List<Object[]> pageRows = hasNext ? rows.subList(0, limit) : rows;
+        List<Long> ids = pageRows.stream().map(row -> (Long) row[0]).toList();
+
+        String nextCursor = null;
+        if (hasNext) {
+            Object[] last = pageRows.get(pageRows.size() - 1);
+            nextCursor = encode(new Cursor(key, descending, (Long) last[0], String.valueOf(last[1])));
+        }
+
+        Long total = null;
+        if (!skipCount) {
+            TypedQuery<Long> countQuery = entityManager.createQuery(
+                    "SELECT COUNT(b) FROM Book b" + filter, Long.class);
+            if (categoryName != null) {
+                countQuery.setParameter("categoryName", categoryName);
+            }
+            total = countQuery.getSingleResult();
+        }
+
+        return new CursorPageDTO<>(bookCatalogReader.loadBooks(ids), nextCursor, hasNext, total);
+    }
+
+    // Tìm qua index in-memory theo một field rồi cắt trang theo keyset, không query DB trừ trang kết quả
+    public CursorPageDTO<BookDTO> search(String keyword, BookSearchIndex.Field field, SortKey key, boolean descending,
+                                         String cursor, int size, boolean skipCount) {
+        Cursor position = decode(cursor, key, descending);
+        int limit = clampSize(size);
+
+        Comparator<BookDocument> order = switch (key) {
+            case ID -> Comparator.comparing(BookDocument::id);
+            case TITLE -> Comparator.comparing(BookDocument::title, TITLE_ORDER).thenComparing(BookDocument::id);
+            case PUBLISHER_YEAR -> Comparator.comparingInt(BookCursorPager::yearOf).thenComparing(BookDocument::id);
+        };
+        if (descending) {
+            order = order.reversed();
+        }
+
+        List<BookSearchIndex.Hit> hits = bookSearchIndex.search(keyword, EnumSet.of(field));
+        List<BookDocument> documents = new ArrayList<>();
+        for (BookSearchIndex.Hit hit : hits) {
+            if (position == null || isAfter(hit.document(), position)) {
+                documents.add(hit.document());
+            }
+        }
+        documents.sort(order);
+
+        boolean hasNext = documents.size() > limit;
+        List<BookDocument> page = hasNext ? documents.subList(0, limit) : documents;
+        String nextCursor = null;
+        if (hasNext) {
+            BookDocument last = page.get(page.size() - 1);
+            nextCursor = encode(new Cursor(key, descending, last.id(), valueOf(key, last)));
+        }
+
+        // Tổng số của toàn bộ kết quả, kể cả các trang trước cursor
+        Long total = skipCount ? null : (long) hits.size();
+
+        List<Long> ids = page.stream().map(BookDocument::id).toList();
+        return new CursorPageDTO<>(bookCatalogReader.loadBooks(ids), nextCursor, hasNext, total);
+    }
+
+    private static int yearOf(BookDocument doc) {
+        return doc.publisherYear() != null ? doc.publisherYear() : 0;
+    }
+
+    private static String valueOf(SortKey key, BookDocument doc) {
+        return switch (key) {
+            case ID -> String.valueOf(doc.id());
+            case TITLE -> doc.title();
+            case PUBLISHER_YEAR -> String.valueOf(yearOf(doc));
+        };
+    }
+
+    // So sánh (key, id) của sách với cursor theo đúng chiều sắp xếp
+    private static boolean isAfter(BookDocument doc, Cursor cursor) {
+        int cmp = switch (cursor.key()) {
+            case ID -> 0;
+            case TITLE -> TITLE_ORDER.compare(doc.title(), cursor.value());
+            case PUBLISHER_YEAR -> Integer.compare(yearOf(doc), Integer.parseInt(cursor.value()));
+        };
+        if (cmp == 0) {
+            cmp = Long.compare(doc.id(), cursor.id());
+        }
+        return cursor.descending() ? cmp < 0 : cmp > 0;
+    }
+
+    private static int clampSize(int size) {
+        return Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+    }
+
+    private static String encode(Cursor cursor) {
+        String raw = cursor.key().name() + ":" + (cursor.descending() ? "d" : "a") + ":"
+                + cursor.id() + ":" + cursor.value();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Cursor phải được tạo với cùng kiểu sắp xếp, nếu không sẽ bỏ sót/lặp phần tử
+    private static Cursor decode(String cursor, SortKey key, boolean descending) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        Cursor decoded;
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split(":", 4);
+            decoded = new Cursor(SortKey.valueOf(parts[0]), "d".equals(parts[1]),
+                    Long.parseLong(parts[2]), parts[3]);
+            if (decoded.key() == SortKey.PUBLISHER_YEAR) {
+                Integer.parseInt(decoded.value());
+            }
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException ex) {
+            throw new IllegalArgumentException("Cursor không hợp lệ", ex);
+        }
+        if (decoded.key() != key || decoded.descending() != descending) {
+            throw new IllegalArgumentException("Cursor không khớp với kiểu sắp xếp hiện tại");
+        }
+        return decoded;
+    }
+}
@@ -0,0 +1,89 @@
+package com.bookstore.backend.service;
+
+import com.bookstore.backend.DTO.BookDTO;
+import com.bookstore.backend.exception.ResourceNotFoundException;
+import com.bookstore.backend.utils.TransactionUtils;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Cache read-through BookDTO theo id cho trang chi tiết sách.
+ * Giới hạn theo "trọng lượng" ước tính của DTO (mô tả, số variant, số ảnh), loại bỏ theo LRU.
+ * LoadingCache đảm bảo mỗi id chỉ có một luồng load từ DB, các request khác chờ kết quả đó.
+ */
+@Component
+public class BookDetailCache {
+
+    private final BookCatalogReader bookCatalogReader;
+    private final LoadingCache<Long, BookDTO> cache;
+
+    public BookDetailCache(BookCatalogReader bookCatalogReader,
+                           ObjectProvider<MeterRegistry> meterRegistry,
+                           @Value("${catalog.detail-cache.max-weight:20000}") long maxWeight,
+                           @Value("${catalog.detail-cache.ttl:PT1M}") Duration ttl) {
+        this.bookCatalogReader = bookCatalogReader;
+        // TTL ngắn (mặc định 1 phút) chỉ là lưới an toàn: bản load cũ ghi đè sau khi vừa invalidate
+        // tồn tại tối đa chừng đó thời gian; việc làm mới chính vẫn do invalidateAfterCommit
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(maxWeight)
+                .weigher((Long id, BookDTO book) -> weigh(book))
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build(CacheLoader.from(this::load));
+        meterRegistry.ifAvailable(registry -> GuavaCacheMetrics.monitor(registry, cache, "book.detail"));
+    }
+
+    public BookDTO get(Long bookId) {
+        try {
+            return cache.getUnchecked(bookId);
+        } catch (UncheckedExecutionException ex) {
+            // Trả lại exception gốc (vd. ResourceNotFoundException) cho GlobalExceptionHandler
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw ex;
+        }
+    }
+
+    public void invalidate(Long bookId) {
+        cache.invalidate(bookId);
+    }
+
+    // Gọi trong transaction ghi: chỉ xóa cache sau khi commit để không load lại dữ liệu cũ
+    public void invalidateAfterCommit(Long bookId) {
+        TransactionUtils.afterCommit(() -> cache.invalidate(bookId));
+    }
+
+    private BookDTO load(Long bookId) {
+        return bookCatalogReader.loadBooks(List.of(bookId)).stream()
+                .findFirst()
+                .orElseThrow(() -> new ResourceNotFoundException("Book not found with id: " + bookId));
+    }
+
+    // Mỗi đơn vị ~ 1 KB: phần cố định + mô tả + variant + ảnh
+    private static int weigh(BookDTO book) {
+        int weight = 1;
+        if (book.getDescription() != null) {
+            weight += book.getDescription().length() / 1024;
+        }
+        if (book.getVariants() != null) {
+            for (BookDTO.BookVariantDTO variant : book.getVariants()) {
+                weight += 1;
+                if (variant.getImageUrls() != null) {
+                    weight += variant.getImageUrls().size() / 4;
+                }
+            }
+        }
+        return weight;
+    }
+}
@@ -0,0 +1,122 @@
+package com.bookstore.backend.service;
+
+import com.bookstore.backend.DTO.BookDTO;
+import com.bookstore.backend.DTO.BookDTO.BookVariantDTO;
+import com.bookstore.backend.exception.DuplicateIsbnException;
+import com.bookstore.backend.exception.ResourceNotFoundException;
+import com.bookstore.backend.model.Author;
+import com.bookstore.backend.model.Category;
+import com.bookstore.backend.model.Publisher;
+import com.bookstore.backend.repository.AuthorRepository;
+import com.bookstore.backend.repository.BookVariantsRepository;
+import com.bookstore.backend.repository.CategoryRepository;
+import com.bookstore.backend.repository.PublisherRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+
+/**
+ * Validate và resolve các tham chiếu của BookDTO theo lô: mỗi loại (publisher, author, category)
+ * một findAllById, toàn bộ ISBN một query IN. Báo tất cả id thiếu trong một lỗi duy nhất,
+ * entity đã resolve được truyền thẳng cho convertToEntity nên không phải load lại.
+ */
+@Component
+@RequiredArgsConstructor
+public class BookReferenceResolver {
+
+    // Entity đã load, dùng để map DTO -> Book
+    public record ResolvedReferences(Publisher publisher, Set<Author> authors, Set<Category> categories) {
+    }
+
+    private final PublisherRepository publisherRepository;
+    private final AuthorRepository authorRepository;
+    private final CategoryRepository categoryRepository;
+    private final BookVariantsRepository bookVariantsRepository;
+
+    public ResolvedReferences resolve(BookDTO dto) {
+        List<String> missing = new ArrayList<>();
+
+        Publisher publisher = null;
+        if (dto.getPublisherId() != null) {
+            Map<Long, Publisher> publishers = findAll(Set.of(dto.getPublisherId()),
+                    publisherRepository::findAllById, Publisher::getId, "Publisher", missing);
+            publisher = publishers.get(dto.getPublisherId());
+        }
+        Map<Long, Author> authors = findAll(dto.getAuthorIds(),
+                authorRepository::findAllById, Author::getId, "Author", missing);
+        Map<Long, Category> categories = findAll(dto.getCategoryIds(),
+                categoryRepository::findAllById, Category::getId, "Category", missing);
+
+        if (!missing.isEmpty()) {
+            throw new ResourceNotFoundException(String.join("; ", missing));
+        }
+
+        validateIsbns(dto.getVariants());
+
+        return new ResolvedReferences(publisher,
+                new HashSet<>(authors.values()),
+                new HashSet<>(categories.values()));
+    }
+
+    // Load một lần theo lô, ghi lại các id không tồn tại
+    private <T> Map<Long, T> findAll(Set<Long> ids, Function<Set<Long>, List<T>> loader,
+                                     Function<T, Long> idOf, String type, List<String> missing) {
+        Map<Long, T> found = new HashMap<>();
+        if (ids == null || ids.isEmpty()) {
+            return found;
+        }
+        Set<Long> requested = new HashSet<>(ids);
+        requested.remove(null);
+        for (T entity : loader.apply(requested)) {
+            found.put(idOf.apply(entity), entity);
+        }
+        Set<Long> notFound = new TreeSet<>(requested);
+        notFound.removeAll(found.keySet());
+        if (!notFound.isEmpty()) {
+            missing.add(type + " not found with id: " + notFound);
+        }
+        return found;
+    }
+
+    // ISBN bị trùng nếu đã thuộc về variant khác (giữ nguyên ISBN của chính variant đó thì hợp lệ)
+    private void validateIsbns(List<BookVariantDTO> variants) {
+        if (variants == null || variants.isEmpty()) {
+            return;
+        }
+        Map<String, Long> requested = new HashMap<>();
+        Set<String> duplicates = new LinkedHashSet<>();
+        for (BookVariantDTO variant : variants) {
+            String isbn = variant.getIsbn();
+            if (isbn == null || isbn.isEmpty()) {
+                continue;
+            }
+            // Trùng ngay trong request
+            if (requested.containsKey(isbn)) {
+                duplicates.add(isbn);
+            }
+            requested.put(isbn, variant.getId());
+        }
+        if (!requested.isEmpty()) {
+            for (Object[] row : bookVariantsRepository.findIsbnOwners(requested.keySet())) {
+                String isbn = (String) row[0];
+                Long ownerId = (Long) row[1];
+                if (!Objects.equals(ownerId, requested.get(isbn))) {
+                    duplicates.add(isbn);
+                }
+            }
+        }
+        if (!duplicates.isEmpty()) {
+            throw new DuplicateIsbnException("ISBN đã tồn tại: " + String.join(", ", duplicates));
+        }
+    }
+}
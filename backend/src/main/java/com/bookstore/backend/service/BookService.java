@@ -2,24 +2,31 @@ package com.bookstore.backend.service;
 
 import com.bookstore.backend.DTO.BookDTO;
 import com.bookstore.backend.DTO.BookDTO.BookVariantDTO;
+import com.bookstore.backend.DTO.FacetedSearchDTO;
 import com.bookstore.backend.exception.ResourceNotFoundException;
 import com.bookstore.backend.exception.BusinessException;
 import com.bookstore.backend.exception.DuplicateIsbnException;
 import com.bookstore.backend.model.*;
 import com.bookstore.backend.repository.BookRepository;
-import com.bookstore.backend.repository.AuthorRepository;
-import com.bookstore.backend.repository.CategoryRepository;
-import com.bookstore.backend.repository.PublisherRepository;
 import com.bookstore.backend.repository.CartItemRepository;
 import com.bookstore.backend.repository.BookVariantsRepository;
 import com.bookstore.backend.repository.OrderDetailRepository;
+import com.bookstore.backend.service.search.BestSellerRanking;
+import com.bookstore.backend.service.search.BookDocument;
+import com.bookstore.backend.service.search.BookSearchIndex;
+import com.bookstore.backend.service.search.CatalogIndexer;
+import com.bookstore.backend.service.search.FacetEngine;
+import com.bookstore.backend.service.search.TitleSuggester;
 import org.springframework.beans.factory.annotation.Autowired;  
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
-import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import org.hibernate.Hibernate;
 
 import java.util.*;
@@ -33,124 +40,191 @@ public class BookService {
     private BookRepository bookRepository;
 
     @Autowired
-    private AuthorRepository authorRepository;
+    private CartItemRepository cartItemRepository;
 
     @Autowired
-    private CategoryRepository categoryRepository;
+    private BookVariantsRepository bookVariantsRepository;
 
     @Autowired
-    private PublisherRepository publisherRepository;
+    private OrderDetailRepository orderDetailRepository;
 
     @Autowired
-    private CartItemRepository cartItemRepository;
+    private S3Service s3Service;
 
     @Autowired
-    private BookVariantsRepository bookVariantsRepository;
+    private BookSearchIndex bookSearchIndex;
 
     @Autowired
-    private OrderDetailRepository orderDetailRepository;
+    private CatalogIndexer catalogIndexer;
 
     @Autowired
-    private S3Service s3Service;
+    private TitleSuggester titleSuggester;
+
+    @Autowired
+    private BookCatalogReader bookCatalogReader;
+
+    @Autowired
+    private FacetEngine facetEngine;
+
+    @Autowired
+    private FlashSaleInventory flashSaleInventory;
+
+    @Autowired
+    private BestSellerCatalog bestSellerCatalog;
+
+    @Autowired
+    private LowStockMonitor lowStockMonitor;
+
+    @Autowired
+    private RandomBookPool randomBookPool;
+
+    @Autowired
+    private BookDetailCache bookDetailCache;
 
-    // Lấy chi tiết sách theo ID
+    @Autowired
+    private BookReferenceResolver bookReferenceResolver;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // Lấy chi tiết sách theo ID (qua cache; cache hit không cần mở transaction)
+    @Transactional(propagation = Propagation.SUPPORTS)
     public BookDTO getBookById(Long id) {
-        Book book = bookRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Book not found with id: " + id));
-        return convertToDTO(book);
+        return bookDetailCache.get(id);
     }
 
     // Lấy tất cả sách với phân trang
     public Page<BookDTO> getAllBooks(Pageable pageable) {
-        return bookRepository.findAllBooks(pageable).map(this::convertToDTO);
+        return bookCatalogReader.loadPage(bookRepository.findAllBookIds(pageable));
     }
 
-    // Tìm sách theo tiêu đề
-    public Page<BookDTO> getBooksByTitle(String keyword, Pageable pageable) {
-        return bookRepository.findByTitle(keyword, pageable).map(this::convertToDTO);
+    // Tìm sách có tiêu đề khớp chính xác (tìm theo từ khóa trong tiêu đề dùng /searchKey)
+    public Page<BookDTO> getBooksByTitle(String title, Pageable pageable) {
+        return bookCatalogReader.loadPage(bookRepository.findIdsByTitle(title, pageable));
     }
 
     // Tìm sách theo category
     public Page<BookDTO> getBooksByCategory(String categoryName, Pageable pageable) {
-        return bookRepository.findByCategoriesName(categoryName, pageable).map(this::convertToDTO);
+        return bookCatalogReader.loadPage(bookRepository.findIdsByCategoryName(categoryName, pageable));
     }
 
-    // Tìm sách theo author
+    // Sách của category xếp theo mức bán chạy gần đây (bảng xếp hạng in-memory), category null = toàn catalog
+    public Page<BookDTO> getTrendingBooks(String categoryName, Pageable pageable) {
+        return bestSellerCatalog.page(categoryName, BestSellerRanking.Window.TRENDING, pageable);
+    }
+
+    // Top sách bán chạy theo tổng số đã bán hoặc trending, tối đa BestSellerCatalog.topSize()
+    public List<BookDTO> getBestSellers(String categoryName, BestSellerRanking.Window window, int limit) {
+        return bestSellerCatalog.top(categoryName, window, Math.min(limit, bestSellerCatalog.topSize()));
+    }
+
+    // Tìm sách theo author (qua index in-memory)
     public Page<BookDTO> getBooksByAuthor(String authorName, Pageable pageable) {
-        return bookRepository.findByAuthorsName(authorName, pageable).map(this::convertToDTO);
+        return searchIndex(authorName, EnumSet.of(BookSearchIndex.Field.AUTHOR), null, null, pageable);
     }
 
-    // Tìm sách theo publisher
+    // Tìm sách theo publisher (qua index in-memory)
     public Page<BookDTO> getBooksByPublisher(String publisherName, Pageable pageable) {
-        return bookRepository.findByPublisherName(publisherName, pageable).map(this::convertToDTO);
+        return searchIndex(publisherName, EnumSet.of(BookSearchIndex.Field.PUBLISHER), null, null, pageable);
     }
 
     // Tìm sách theo keyword (title, category, author, publisher)
     public Page<BookDTO> getBookByKey(String keyword, Pageable pageable) {
-        return bookRepository.findByKey(keyword, pageable).map(this::convertToDTO);
+        return searchIndex(keyword, BookSearchIndex.ALL_FIELDS, null, null, pageable);
     }
 
-    // Tìm sách theo keyword và lọc theo khoảng giá (hỗ trợ filter từ backend)
+    // Tìm sách theo keyword và lọc theo khoảng giá (keyword null = toàn bộ catalog)
     public Page<BookDTO> getBooksByKeywordAndPrice(String keyword, Double minPrice, Double maxPrice, Pageable pageable) {
-        return bookRepository.findByKeywordAndPrice(keyword, minPrice, maxPrice, pageable)
-                .map(this::convertToDTO);
+        return searchIndex(keyword, BookSearchIndex.ALL_FIELDS, minPrice, maxPrice, pageable);
     }
 
-    public List<BookDTO> getRandomBooks(){
-        return bookRepository.findRandomBooks().stream().map(this::convertToDTO).toList();
+    // Tìm theo keyword kèm số lượng kết quả theo category, author, publisher và khoảng giá
+    public FacetedSearchDTO getFacetedBooks(String keyword, FacetEngine.Filter filter, Pageable pageable) {
+        List<Long> rankedIds = rankedDocuments(keyword, BookSearchIndex.ALL_FIELDS, pageable.getSort()).stream()
+                .map(BookDocument::id)
+                .toList();
+        FacetEngine.Result result = facetEngine.apply(rankedIds, filter);
+
+        return FacetedSearchDTO.builder()
+                .books(loadPage(result.bookIds(), pageable))
+                .categories(result.categories())
+                .authors(result.authors())
+                .publishers(result.publishers())
+                .priceRanges(result.priceRanges())
+                .build();
     }
 
-    // Gợi ý tối đa 5 tiêu đề sách theo keyword
-    public List<String> suggestKey(String keyword) {
-        Pageable limit = PageRequest.of(0, 5);
-        if (keyword == null) {
-            return List.of();
-        }
-        return bookRepository.findTop5Titles(keyword, limit);
+    // Tìm qua inverted index, lọc giá, sắp xếp rồi chỉ load từ DB các sách thuộc trang hiện tại
+    private Page<BookDTO> searchIndex(String keyword, Set<BookSearchIndex.Field> fields,
+                                      Double minPrice, Double maxPrice, Pageable pageable) {
+        List<Long> ids = rankedDocuments(keyword, fields, pageable.getSort()).stream()
+                .filter(doc -> doc.hasPriceBetween(minPrice, maxPrice))
+                .map(BookDocument::id)
+                .toList();
+        return loadPage(ids, pageable);
     }
 
-    // Tạo sách mới (validate publisher, author, category trước khi lưu)
-    public BookDTO createBook(BookDTO dto) {
-        // Kiểm tra publisher tồn tại
-        if (dto.getPublisherId() != null) {
-            publisherRepository.findById(dto.getPublisherId())
-                    .orElseThrow(() -> new ResourceNotFoundException(
-                            "Publisher not found with id: " + dto.getPublisherId()));
-        }
+    private List<BookDocument> rankedDocuments(String keyword, Set<BookSearchIndex.Field> fields, Sort sort) {
+        List<BookDocument> documents = bookSearchIndex.search(keyword, fields).stream()
+                .map(BookSearchIndex.Hit::document)
+                .collect(Collectors.toList());
+        sortDocuments(documents, sort);
+        return documents;
+    }
 
-        // Kiểm tra tất cả authors tồn tại
-        if (dto.getAuthorIds() != null && !dto.getAuthorIds().isEmpty()) {
-            for (Long authorId : dto.getAuthorIds()) {
-                authorRepository.findById(authorId)
-                        .orElseThrow(() -> new ResourceNotFoundException(
-                                "Author not found with id: " + authorId));
-            }
-        }
+    // Cắt trang từ danh sách id đã sắp xếp, chỉ load các sách của trang đó
+    private Page<BookDTO> loadPage(List<Long> ids, Pageable pageable) {
+        int from = (int) Math.min(pageable.getOffset(), ids.size());
+        int to = Math.min(from + pageable.getPageSize(), ids.size());
+        return new PageImpl<>(bookCatalogReader.loadBooks(ids.subList(from, to)), pageable, ids.size());
+    }
 
-        // Validate ISBN unique cho các variants
-        if (dto.getVariants() != null) {
-            for (BookVariantDTO variantDTO : dto.getVariants()) {
-                if (variantDTO.getIsbn() != null && !variantDTO.getIsbn().isEmpty()) {
-                    if (bookVariantsRepository.existsByIsbn(variantDTO.getIsbn())) {
-                        throw new DuplicateIsbnException(
-                                "ISBN đã tồn tại: " + variantDTO.getIsbn());
-                    }
-                }
+    // Không có sort -> giữ thứ tự relevance; sort ổn định nên relevance là tie-break
+    private void sortDocuments(List<BookDocument> documents, Sort sort) {
+        Comparator<BookDocument> comparator = null;
+        for (Sort.Order order : sort) {
+            Comparator<BookDocument> next = switch (order.getProperty()) {
+                case "id" -> Comparator.comparing(BookDocument::id);
+                case "title" -> Comparator.comparing(BookDocument::title, String.CASE_INSENSITIVE_ORDER);
+                case "publisherYear" -> Comparator.comparing(BookDocument::publisherYear,
+                        Comparator.nullsFirst(Comparator.naturalOrder()));
+                default -> null;
+            };
+            if (next == null) {
+                continue;
+            }
+            if (order.isDescending()) {
+                next = next.reversed();
             }
+            comparator = comparator == null ? next : comparator.thenComparing(next);
         }
+        if (comparator != null) {
+            documents.sort(comparator);
+        }
+    }
 
-        // Kiểm tra tất cả categories tồn tại
-        if (dto.getCategoryIds() != null && !dto.getCategoryIds().isEmpty()) {
-            for (Long categoryId : dto.getCategoryIds()) {
-                categoryRepository.findById(categoryId)
-                        .orElseThrow(() -> new ResourceNotFoundException(
-                                "Category not found with id: " + categoryId));
-            }
+    // 90 sách ngẫu nhiên cho trang chủ, lấy từ pool in-memory (cùng sessionKey giữ thứ tự qua các lần làm mới pool)
+    public List<BookDTO> getRandomBooks(String sessionKey) {
+        return randomBookPool.pick(sessionKey, 90);
+    }
+
+    // Gợi ý tối đa 5 tiêu đề sách theo keyword (trie in-memory, xếp theo số lượng đã bán)
+    public List<String> suggestKey(String keyword) {
+        if (keyword == null) {
+            return List.of();
         }
+        return titleSuggester.suggest(keyword, 5);
+    }
+
+    // Tạo sách mới (validate publisher, author, category, ISBN theo lô trước khi lưu)
+    public BookDTO createBook(BookDTO dto) {
+        BookReferenceResolver.ResolvedReferences references = bookReferenceResolver.resolve(dto);
 
         // Sau khi validate OK thì tạo book
-        Book book = convertToEntity(dto);
+        Book book = convertToEntity(dto, references);
         Book saved = bookRepository.save(book);
+        catalogIndexer.indexBook(saved);
+        lowStockMonitor.onBookChanged(saved.getId());
         return convertToDTO(saved);
     }
 
@@ -158,110 +232,138 @@ public class BookService {
     public BookDTO updateBook(Long id, BookDTO dto) {
         Book book = bookRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Book not found with id: " + id));
+        BookReferenceResolver.ResolvedReferences references = bookReferenceResolver.resolve(dto);
 
         // Cập nhật thông tin cơ bản
         book.setTitle(dto.getTitle());
         book.setDescription(dto.getDescription());
         book.setPublisherYear(dto.getPublisherYear());
+        book.setPublisher(references.publisher());
+        // Sửa tại chỗ thay vì gán Set mới, tránh Hibernate xóa rồi insert lại toàn bộ bảng nối
+        book.getAuthors().retainAll(references.authors());
+        book.getAuthors().addAll(references.authors());
+        book.getCategories().retainAll(references.categories());
+        book.getCategories().addAll(references.categories());
+
+        // Chỉ ghi những variant/ảnh thực sự thay đổi
+        Map<BookVariants, Integer> quantityDeltas = dto.getVariants() != null
+                ? syncVariants(book, dto.getVariants())
+                : Map.of();
 
-        // Map publisher
-        if (dto.getPublisherId() != null) {
-            Publisher publisher = publisherRepository.findById(dto.getPublisherId())
-                    .orElseThrow(() -> new ResourceNotFoundException(
-                            "Publisher not found with id: " + dto.getPublisherId()));
-            book.setPublisher(publisher);
-        } else {
-            book.setPublisher(null);
+        Book updated = bookRepository.save(book);
+        applyQuantityDeltas(quantityDeltas);
+        catalogIndexer.indexBook(updated);
+        bookDetailCache.invalidateAfterCommit(id);
+        lowStockMonitor.onBookChanged(id);
+        return convertToDTO(updated);
+    }
+
+    // So khớp variant theo id: cập nhật tại chỗ, thêm mới, xóa những variant không còn trong DTO.
+    // Không clear() cả collection nên các hàng không đổi giữ nguyên id (khóa ngoại cart/order không bị ảnh hưởng).
+    // Số lượng của variant có sẵn không gán tuyệt đối mà trả về chênh lệch để cộng bằng UPDATE nguyên tử.
+    // sold là bộ đếm do xác nhận / hoàn đơn cộng trừ, form admin không được ghi đè
+    private Map<BookVariants, Integer> syncVariants(Book book, List<BookVariantDTO> incoming) {
+        Map<Long, BookVariants> existing = new HashMap<>();
+        for (BookVariants variant : book.getVariants()) {
+            existing.put(variant.getId(), variant);
         }
 
-        // Map authors
-        if (dto.getAuthorIds() != null) {
-            Set<Author> authors = new HashSet<>();
-            for (Long authorId : dto.getAuthorIds()) {
-                Author author = authorRepository.findById(authorId)
-                        .orElseThrow(() -> new ResourceNotFoundException(
-                                "Author not found with id: " + authorId));
-                authors.add(author);
+        Set<Long> keptIds = new HashSet<>();
+        for (BookVariantDTO vdto : incoming) {
+            if (vdto.getId() != null && !existing.containsKey(vdto.getId())) {
+                throw new BusinessException("Variant " + vdto.getId() + " không thuộc sách " + book.getId());
+            }
+            if (vdto.getId() != null) {
+                keptIds.add(vdto.getId());
             }
-            book.setAuthors(authors);
-        } else {
-            book.setAuthors(new HashSet<>());
         }
 
-        // Map categories
-        // Validate & Map categories
-        if (dto.getCategoryIds() != null) {
-            Set<Category> categories = new HashSet<>();
-            for (Long categoryId : dto.getCategoryIds()) {
-                Category category = categoryRepository.findById(categoryId)
-                        .orElseThrow(() -> new ResourceNotFoundException(
-                                "Category not found with id: " + categoryId));
-                categories.add(category);
+        // Variant bị bỏ khỏi DTO: không xóa nếu còn nằm trong giỏ hàng hoặc đơn hàng
+        List<BookVariants> removed = book.getVariants().stream()
+                .filter(variant -> !keptIds.contains(variant.getId()))
+                .toList();
+        if (!removed.isEmpty()) {
+            List<Long> removedIds = removed.stream().map(BookVariants::getId).toList();
+            List<Long> inCarts = cartItemRepository.findVariantIdsInCarts(removedIds);
+            if (!inCarts.isEmpty()) {
+                throw new BusinessException("Không thể xóa variant đang có trong giỏ hàng: " + inCarts
+                        + ". Hãy chuyển sang trạng thái OUT_OF_STOCK.");
             }
-            book.setCategories(categories);
-        } else {
-            book.setCategories(new HashSet<>());
+            List<Long> ordered = orderDetailRepository.findOrderedVariantIds(removedIds);
+            if (!ordered.isEmpty()) {
+                throw new BusinessException("Không thể xóa variant đã có trong đơn hàng: " + ordered
+                        + ". Hãy chuyển sang trạng thái OUT_OF_STOCK.");
+            }
+            removed.forEach(book::removeVariant);
         }
 
-        // Map variants
-        if (dto.getVariants() != null) {
-            book.getVariants().clear();
-            for (BookVariantDTO vdto : dto.getVariants()) {
-                // Validate ISBN unique khi update (chỉ check nếu ISBN thay đổi)
-                if (vdto.getIsbn() != null && !vdto.getIsbn().isEmpty()) {
-                    // Nếu variant mới (id null) hoặc ISBN thay đổi
-                    if (vdto.getId() == null) {
-                        if (bookVariantsRepository.existsByIsbn(vdto.getIsbn())) {
-                            throw new DuplicateIsbnException(
-                                    "ISBN đã tồn tại: " + vdto.getIsbn());
-                        }
-                    } else {
-                        // Check nếu ISBN thay đổi
-                        BookVariants existingVariant = bookVariantsRepository.findById(vdto.getId()).orElse(null);
-                        if (existingVariant == null || !vdto.getIsbn().equals(existingVariant.getIsbn())) {
-                            if (bookVariantsRepository.existsByIsbn(vdto.getIsbn())) {
-                                throw new DuplicateIsbnException(
-                                        "ISBN đã tồn tại: " + vdto.getIsbn());
-                            }
-                        }
-                    }
-                }
+        Map<BookVariants, Integer> quantityDeltas = new HashMap<>();
+        for (BookVariantDTO vdto : incoming) {
+            BookVariants variant = vdto.getId() != null ? existing.get(vdto.getId()) : new BookVariants();
+            // Hibernate chỉ UPDATE khi giá trị khác với trạng thái đã load
+            variant.setPrice(vdto.getPrice());
 
-                BookVariants variant = new BookVariants();
-                if (vdto.getId() != null) {
-                    variant.setId(vdto.getId());
-                }
-                variant.setPrice(vdto.getPrice());
+            if (vdto.getId() == null) {
+                variant.setSold(vdto.getSold() != null ? vdto.getSold() : 0);
                 variant.setQuantity(vdto.getQuantity());
-                variant.setSold(vdto.getSold());
-                
-                // Tự động set status dựa trên quantity
-                String autoStatus = (vdto.getQuantity() != null && vdto.getQuantity() > 0) 
-                    ? "AVAILABLE" 
-                    : "OUT_OF_STOCK";
-                variant.setStatus(autoStatus);
-                
-                variant.setIsbn(vdto.getIsbn());
-                variant.setBook(book);
-                
-                // Map image URLs
-                if (vdto.getImageUrls() != null && !vdto.getImageUrls().isEmpty()) {
-                    List<BookImages> imageEntities = new ArrayList<>();
-                    for (String url : vdto.getImageUrls()) {
-                        BookImages image = new BookImages();
-                        image.setImageUrl(url);
-                        image.setBookVariant(variant);
-                        imageEntities.add(image);
+                variant.setStatus(stockStatus(vdto.getQuantity()));
+            } else {
+                // Client cũ không gửi originalQuantity: coi như đã đọc đúng giá trị hiện tại
+                int base = vdto.getOriginalQuantity() != null ? vdto.getOriginalQuantity() : variant.getQuantity();
+                int delta = (vdto.getQuantity() != null ? vdto.getQuantity() : base) - base;
+                if (delta != 0) {
+                    // Tồn kho của variant đang flash sale nằm trong counter in-memory, sửa tay sẽ lệch với counter
+                    if (flashSaleInventory.isActive(vdto.getId())) {
+                        throw new BusinessException("Không thể sửa số lượng của variant đang flash sale: " + vdto.getId());
                     }
-                    variant.setImages(imageEntities);
+                    quantityDeltas.put(variant, delta);
+                } else {
+                    variant.setStatus(stockStatus(variant.getQuantity()));
                 }
-                
-                book.getVariants().add(variant);
+            }
+            variant.setIsbn(vdto.getIsbn());
+
+            syncImages(variant, vdto.getImageUrls());
+            if (vdto.getId() == null) {
+                book.addVariant(variant);
             }
         }
+        return quantityDeltas;
+    }
 
-        Book updated = bookRepository.save(book);
-        return convertToDTO(updated);
+    // Cộng chênh lệch số lượng vào tồn kho hiện tại trong DB rồi nạp lại variant để trả về giá trị mới.
+    // Lượt giữ hàng đã trừ kho trong lúc admin sửa làm tồn kho không đủ để giảm -> từ chối, admin tải lại form
+    private void applyQuantityDeltas(Map<BookVariants, Integer> quantityDeltas) {
+        for (Map.Entry<BookVariants, Integer> entry : quantityDeltas.entrySet()) {
+            BookVariants variant = entry.getKey();
+            if (bookVariantsRepository.applyQuantityDelta(variant.getId(), entry.getValue()) == 0) {
+                throw new BusinessException("Tồn kho của variant " + variant.getId()
+                        + " đã thay đổi, không đủ để giảm " + (-entry.getValue()) + ". Hãy tải lại và thử lại.");
+            }
+            entityManager.refresh(variant);
+        }
+    }
+
+    private static String stockStatus(Integer quantity) {
+        return quantity != null && quantity > 0 ? "AVAILABLE" : "OUT_OF_STOCK";
+    }
+
+    // So khớp ảnh theo URL: giữ ảnh cũ, xóa URL không còn, thêm URL mới
+    private void syncImages(BookVariants variant, List<String> urls) {
+        if (variant.getImages() == null) {
+            variant.setImages(new ArrayList<>());
+        }
+        Set<String> wanted = urls != null ? new LinkedHashSet<>(urls) : new LinkedHashSet<>();
+        variant.getImages().removeIf(image -> !wanted.contains(image.getImageUrl()));
+        for (BookImages image : variant.getImages()) {
+            wanted.remove(image.getImageUrl());
+        }
+        for (String url : wanted) {
+            BookImages image = new BookImages();
+            image.setImageUrl(url);
+            image.setBookVariant(variant);
+            variant.getImages().add(image);
+        }
     }
 
     public void deleteBook(Long id) {
@@ -287,6 +389,9 @@ public class BookService {
 
         // Xóa (hoặc soft delete)
         bookRepository.delete(book);
+        catalogIndexer.removeBook(id);
+        bookDetailCache.invalidateAfterCommit(id);
+        lowStockMonitor.onBookChanged(id);
     }
 
     // Chuyển entity -> DTO (để trả về client)
@@ -346,54 +451,22 @@ public class BookService {
         return vdto;
     }
 
-    // Chuyển DTO -> entity (để lưu DB)
-    public Book convertToEntity(BookDTO dto) {
+    // Chuyển DTO -> entity (để lưu DB), publisher/author/category lấy từ kết quả resolve
+    public Book convertToEntity(BookDTO dto, BookReferenceResolver.ResolvedReferences references) {
         Book book = new Book();
         book.setTitle(dto.getTitle());
         book.setDescription(dto.getDescription());
         book.setPublisherYear(dto.getPublisherYear());
-
-        // Map publisher
-        if (dto.getPublisherId() != null) {
-            Publisher publisher = publisherRepository.findById(dto.getPublisherId())
-                    .orElseThrow(() -> new ResourceNotFoundException(
-                            "Publisher not found with id: " + dto.getPublisherId()));
-            book.setPublisher(publisher);
-        }
-
-        // Map authors
-        if (dto.getAuthorIds() != null) {
-            Set<Author> authors = new HashSet<>();
-            for (Long authorId : dto.getAuthorIds()) {
-                Author author = authorRepository.findById(authorId)
-                        .orElseThrow(() -> new ResourceNotFoundException(
-                                "Author not found with id: " + authorId));
-                authors.add(author);
-            }
-            book.setAuthors(authors);
-        } else {
-            book.setAuthors(new HashSet<>());
-        }
-
-        // Map categories
-        if (dto.getCategoryIds() != null) {
-            Set<Category> categories = new HashSet<>();
-            for (Long categoryId : dto.getCategoryIds()) {
-                Category category = categoryRepository.findById(categoryId)
-                        .orElseThrow(() -> new ResourceNotFoundException(
-                                "Category not found with id: " + categoryId));
-                categories.add(category);
-            }
-            book.setCategories(categories);
-        } else {
-            book.setCategories(new HashSet<>());
-        }
+        book.setPublisher(references.publisher());
+        book.setAuthors(references.authors());
+        book.setCategories(references.categories());
 
         // Map variants (các phiên bản sách: giá, số lượng, trạng thái...)
         if (dto.getVariants() != null) {
             for (BookVariantDTO vdto : dto.getVariants()) {
                 BookVariants variant = new BookVariants();
                 variant.setPrice(vdto.getPrice());
+                // Variant mới chưa có lượt giữ hàng nào nên gán thẳng số lượng
                 variant.setQuantity(vdto.getQuantity());
                 variant.setSold(vdto.getSold());
                 
@@ -427,10 +500,7 @@ public class BookService {
 
     // Tìm sách theo ISBN (trả về Page<BookDTO>)
     public Page<BookDTO> getBooksByIsbn(String isbn, Pageable pageable) {
-        List<Book> books = bookRepository.findByIsbn(isbn);
-        List<BookDTO> bookDTOs = books.stream()
-                .map(this::convertToDTO)
-                .toList();
+        List<BookDTO> bookDTOs = bookCatalogReader.loadBooks(bookRepository.findIdsByIsbn(isbn));
         return new PageImpl<>(bookDTOs, pageable, bookDTOs.size());
     }
 
@@ -447,6 +517,7 @@ public class BookService {
         // Cập nhật
         variants.setStatus(newStatus);
         bookVariantsRepository.save(variants);
+        bookDetailCache.invalidateAfterCommit(variants.getBook().getId());
     }
 
     // Upload hình ảnh sách lên S3
@@ -3,6 +3,7 @@ package com.bookstore.backend.service;
 import com.bookstore.backend.DTO.CartItemsDTO;
 import com.bookstore.backend.model.*;
 import com.bookstore.backend.repository.*;
+import com.bookstore.backend.service.metrics.LiveSalesMetrics;
 import com.bookstore.backend.utils.SecurityUtils;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -26,6 +27,7 @@ public class CartService {
     private final BookVariantsRepository bookVariantRepo;
     private final UserRepository userRepo;
     private final SecurityUtils mySecurityUtils;
+    private final LiveSalesMetrics liveSalesMetrics;
 
     private Users getCurrentUser() {
         var user = mySecurityUtils.getCurrentUser();
@@ -105,6 +107,7 @@ public class CartService {
             newItem.setQuantity(request.getQuantity());
             cartItemRepo.save(newItem);
         }
+        liveSalesMetrics.onCartActivity(currentUser.getId());
     }
 
     // Update item quantity in cart
@@ -126,6 +129,7 @@ public class CartService {
             item.setQuantity(newQuantity);
             cartItemRepo.save(item);
         }
+        liveSalesMetrics.onCartActivity(currentUser.getId());
     }
 
     // Remove item from cart
@@ -223,5 +227,9 @@ public class CartService {
             cart.getCartItems().removeAll(itemsToDelete);
             cartRepo.save(cart);
         }
+        // Đặt hàng hết giỏ -> không còn tính là giỏ đang hoạt động
+        if (cart.getCartItems().isEmpty()) {
+            liveSalesMetrics.onCartEmptied(currentUser.getId());
+        }
     }
 }
\ No newline at end of file
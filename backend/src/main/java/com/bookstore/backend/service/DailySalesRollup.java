@@ -0,0 +1,135 @@
+package com.bookstore.backend.service;
+
+import com.bookstore.backend.model.DailySales;
+import com.bookstore.backend.model.enums.StatusOrder;
+import com.bookstore.backend.repository.DailySalesRepository;
+import com.bookstore.backend.repository.OrdersRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Bảng daily_sales: doanh số theo ngày đặt hàng của các đơn đã tính doanh thu (DELIVERY / SUCCESS).
+ * Cập nhật cộng dồn trong cùng transaction với lần đổi trạng thái đơn (tạo dòng ngày nếu chưa có rồi UPDATE cộng dồn),
+ * nên thống kê chỉ cần đọc tối đa 366 dòng thay vì load toàn bộ đơn hàng.
+ * backfill() tính lại từ bảng đơn hàng cho dữ liệu cũ hoặc khi cần đối soát.
+ */
+@Component
+public class DailySalesRollup {
+
+    private static final Logger logger = LoggerFactory.getLogger(DailySalesRollup.class);
+
+    private static final Set<StatusOrder> COUNTED = EnumSet.of(StatusOrder.DELIVERY, StatusOrder.SUCCESS);
+    // Mỗi transaction backfill xử lý tối đa chừng này ngày
+    private static final int BACKFILL_CHUNK_DAYS = 31;
+
+    private final DailySalesRepository dailySalesRepository;
+    private final OrdersRepository ordersRepository;
+    private final TransactionTemplate transactionTemplate;
+    // Múi giờ DB lưu order_date (hibernate.jdbc.time_zone), ngày của daily_sales tính theo múi giờ này
+    private final ZoneId zone;
+
+    public DailySalesRollup(DailySalesRepository dailySalesRepository,
+                            OrdersRepository ordersRepository,
+                            TransactionTemplate transactionTemplate,
+                            @Value("${spring.jpa.properties.hibernate.jdbc.time_zone:Asia/Ho_Chi_Minh}") ZoneId zone) {
+        this.dailySalesRepository = dailySalesRepository;
+        this.ordersRepository = ordersRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.zone = zone;
+    }
+
+    public LocalDate today() {
+        return LocalDate.now(zone);
+    }
+
+    public static boolean isCounted(StatusOrder status) {
+        return status != null && COUNTED.contains(status);
+    }
+
+    // Gọi trong transaction đổi trạng thái đơn; chỉ ghi khi đơn vào / ra khỏi nhóm được tính doanh thu
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void onStatusChange(Long orderId, StatusOrder from, StatusOrder to) {
+        boolean before = isCounted(from);
+        boolean after = isCounted(to);
+        if (before != after) {
+            apply(List.of(orderId), after ? 1 : -1);
+        }
+    }
+
+    // Các đơn vừa chuyển từ trạng thái chưa tính sang DELIVERY / SUCCESS
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void addOrders(Collection<Long> orderIds) {
+        if (!orderIds.isEmpty()) {
+            apply(orderIds, 1);
+        }
+    }
+
+    private void apply(Collection<Long> orderIds, int sign) {
+        dailySalesRepository.ensureDays(orderIds);
+        dailySalesRepository.addOrders(orderIds, sign);
+    }
+
+    // Các ngày trong [from, to], đã sắp xếp; ngày không có đơn thì không có dòng
+    @Transactional(readOnly = true)
+    public List<DailySales> findRange(LocalDate from, LocalDate to) {
+        return dailySalesRepository.findBySaleDateBetweenOrderBySaleDate(from, to);
+    }
+
+    // Tính lại các ngày trong [from, to] từ bảng đơn hàng, mỗi đoạn BACKFILL_CHUNK_DAYS ngày một transaction.
+    // Xóa trước rồi mới INSERT ... SELECT: upsert đồng thời của cùng ngày chờ khóa dòng và được cộng sau.
+    public int backfill(LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("from phải trước hoặc bằng to");
+        }
+        LocalDate limit = to.plusDays(1);
+        int days = 0;
+        LocalDate start = from;
+        while (start.isBefore(limit)) {
+            LocalDate chunkStart = start;
+            LocalDate end = start.plusDays(BACKFILL_CHUNK_DAYS);
+            if (end.isAfter(limit)) {
+                end = limit;
+            }
+            LocalDate chunkEnd = end;
+            Integer written = transactionTemplate.execute(status -> {
+                dailySalesRepository.deleteRange(chunkStart, chunkEnd);
+                return dailySalesRepository.insertRange(chunkStart, chunkEnd);
+            });
+            days += written != null ? written : 0;
+            start = chunkEnd;
+        }
+        logger.info("Đã tính lại daily_sales từ {} đến {}: {} ngày có doanh số", from, to, days);
+        return days;
+    }
+
+    // Lần đầu chạy với bảng rỗng: dựng lại từ toàn bộ lịch sử đơn hàng
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        try {
+            if (dailySalesRepository.count() > 0) {
+                return;
+            }
+            LocalDateTime first = ordersRepository.findFirstOrderDate();
+            if (first != null) {
+                backfill(first.atZone(ZoneId.systemDefault()).withZoneSameInstant(zone).toLocalDate(), today());
+            }
+        } catch (RuntimeException ex) {
+            logger.error("Không thể backfill daily_sales lúc khởi động: {}", ex.getMessage(), ex);
+        }
+    }
+}
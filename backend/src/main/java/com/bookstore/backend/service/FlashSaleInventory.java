@@ -0,0 +1,270 @@
+package com.bookstore.backend.service;
+
+import com.bookstore.backend.exception.BusinessException;
+import com.bookstore.backend.exception.ResourceNotFoundException;
+import com.bookstore.backend.model.BookVariants;
+import com.bookstore.backend.model.FlashSaleVariant;
+import com.bookstore.backend.repository.BookVariantsRepository;
+import com.bookstore.backend.repository.FlashSaleVariantRepository;
+import com.bookstore.backend.repository.StockReservationRepository;
+import com.bookstore.backend.utils.TransactionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Chế độ flash sale theo variant: khi bật, tồn kho được chuyển từ book_variants.quantity sang một counter
+ * in-memory. Checkout giữ hàng bằng CAS trên counter, không khóa dòng variant trong DB.
+ * Job flush ghi counter xuống DB theo lô (mỗi variant tối đa một UPDATE mỗi chu kỳ).
+ * Khi restart, counter dựng lại từ DB: allocated - tổng reservation RESERVED/CONFIRMED của phiên.
+ * Counter nằm trong bộ nhớ của từng node nên chế độ này chỉ đúng khi chạy một instance.
+ */
+@Component
+public class FlashSaleInventory {
+
+    private static final Logger logger = LoggerFactory.getLogger(FlashSaleInventory.class);
+
+    // Counter âm = phiên đã đóng, mọi thao tác quay về đường DB
+    private static final int CLOSED = Integer.MIN_VALUE / 2;
+
+    public record Status(Long saleId, Long variantId, Long bookId, int allocated, int remaining, int flushed) {
+    }
+
+    private static final class Pool {
+        final Long saleId;
+        final Long bookId;
+        final int allocated;
+        final AtomicInteger remaining;
+        // Giá trị book_variants.quantity đang phản ánh; chỉ ghi trong flush/disable (synchronized)
+        volatile int flushed;
+
+        Pool(Long saleId, Long bookId, int allocated, int remaining, int flushed) {
+            this.saleId = saleId;
+            this.bookId = bookId;
+            this.allocated = allocated;
+            this.remaining = new AtomicInteger(remaining);
+            this.flushed = flushed;
+        }
+    }
+
+    private final FlashSaleVariantRepository flashSaleVariantRepository;
+    private final BookVariantsRepository bookVariantsRepository;
+    private final StockReservationRepository reservationRepository;
+    private final BookDetailCache bookDetailCache;
+    private final LowStockMonitor lowStockMonitor;
+    private final TransactionTemplate transactionTemplate;
+    // Dùng cho trả hàng chạy trong afterCompletion của transaction khác
+    private final TransactionTemplate newTransaction;
+    private final Map<Long, Pool> pools = new ConcurrentHashMap<>();
+    private volatile boolean loaded;
+
+    public FlashSaleInventory(FlashSaleVariantRepository flashSaleVariantRepository,
+                              BookVariantsRepository bookVariantsRepository,
+                              StockReservationRepository reservationRepository,
+                              BookDetailCache bookDetailCache,
+                              LowStockMonitor lowStockMonitor,
+                              PlatformTransactionManager transactionManager) {
+        this.flashSaleVariantRepository = flashSaleVariantRepository;
+        this.bookVariantsRepository = bookVariantsRepository;
+        this.reservationRepository = reservationRepository;
+        this.bookDetailCache = bookDetailCache;
+        this.lowStockMonitor = lowStockMonitor;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public boolean isActive(Long variantId) {
+        ensureLoaded();
+        Pool pool = pools.get(variantId);
+        return pool != null && pool.remaining.get() >= 0;
+    }
+
+    // Giữ qty từ counter. Trả về id phiên, hoặc null nếu variant không ở chế độ flash sale (caller trừ kho DB).
+    // Transaction gọi tới rollback -> hàng tự trả lại counter.
+    public Long reserve(Long variantId, int qty) {
+        ensureLoaded();
+        Pool pool = pools.get(variantId);
+        if (pool == null) {
+            return null;
+        }
+        while (true) {
+            int current = pool.remaining.get();
+            if (current < 0) {
+                return null;
+            }
+            if (current < qty) {
+                throw new BusinessException("Không đủ hàng cho biến thể: " + variantId);
+            }
+            if (pool.remaining.compareAndSet(current, current - qty)) {
+                break;
+            }
+        }
+        TransactionUtils.afterRollback(() -> release(pool, variantId, qty));
+        return pool.saleId;
+    }
+
+    // Trả qty của một reservation thuộc phiên saleId. false = phiên không còn chạy, caller tự cộng lại vào DB.
+    // Hàng chỉ về counter sau khi transaction commit (reservation đã chuyển trạng thái).
+    public boolean giveBack(Long saleId, Long variantId, int qty) {
+        ensureLoaded();
+        Pool pool = pools.get(variantId);
+        if (pool == null || !pool.saleId.equals(saleId) || pool.remaining.get() < 0) {
+            return false;
+        }
+        TransactionUtils.afterCommit(() -> release(pool, variantId, qty));
+        return true;
+    }
+
+    // Bật flash sale: toàn bộ quantity hiện có chuyển sang counter, book_variants.quantity về 0
+    // cho tới lần flush đầu tiên. Checkout đang chờ khóa dòng variant sẽ thấy hết hàng thay vì bán trùng.
+    public Status enable(Long variantId) {
+        ensureLoaded();
+        return transactionTemplate.execute(status -> {
+            BookVariants variant = bookVariantsRepository.lockById(variantId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy biến thể: " + variantId));
+            if (flashSaleVariantRepository.findActiveByVariantId(variantId).isPresent()) {
+                throw new BusinessException("Biến thể " + variantId + " đang trong flash sale");
+            }
+            int allocated = Math.max(0, variant.getQuantity());
+            LocalDateTime now = LocalDateTime.now();
+            FlashSaleVariant sale = flashSaleVariantRepository.save(FlashSaleVariant.builder()
+                    .bookVariant(variant)
+                    .allocated(allocated)
+                    .remaining(0)
+                    .active(true)
+                    .startedAt(now)
+                    .flushedAt(now)
+                    .build());
+            bookVariantsRepository.adjustStock(variantId, -allocated, 0);
+
+            Long bookId = variant.getBook().getId();
+            Pool pool = new Pool(sale.getId(), bookId, allocated, allocated, 0);
+            TransactionUtils.afterCommit(() -> pools.put(variantId, pool));
+            bookDetailCache.invalidateAfterCommit(bookId);
+            logger.info("Bật flash sale #{} cho variant {} với {} sản phẩm", sale.getId(), variantId, allocated);
+            return toStatus(variantId, pool);
+        });
+    }
+
+    // Tắt flash sale: đóng counter và ghi phần còn lại về book_variants.quantity
+    public synchronized Status disable(Long variantId) {
+        ensureLoaded();
+        Pool pool = pools.get(variantId);
+        if (pool == null) {
+            throw new ResourceNotFoundException("Biến thể " + variantId + " không trong flash sale");
+        }
+        Status closed = transactionTemplate.execute(status -> {
+            // Khóa dòng trước khi đóng counter: checkout quay về đường DB sẽ chờ tới khi quantity đã đúng
+            bookVariantsRepository.lockById(variantId);
+            int remaining = pool.remaining.getAndSet(CLOSED);
+            TransactionUtils.afterRollback(() -> pool.remaining.compareAndSet(CLOSED, remaining));
+            bookVariantsRepository.adjustStock(variantId, remaining - pool.flushed, 0);
+            flashSaleVariantRepository.close(pool.saleId, remaining, LocalDateTime.now());
+            bookDetailCache.invalidateAfterCommit(pool.bookId);
+            lowStockMonitor.onStockChanged(variantId);
+            return new Status(pool.saleId, variantId, pool.bookId, pool.allocated, remaining, remaining);
+        });
+        pools.remove(variantId, pool);
+        logger.info("Tắt flash sale #{} cho variant {}, còn {} sản phẩm", pool.saleId, variantId, closed.remaining());
+        return closed;
+    }
+
+    public List<Status> activeSales() {
+        ensureLoaded();
+        List<Status> result = new ArrayList<>();
+        pools.forEach((variantId, pool) -> {
+            if (pool.remaining.get() >= 0) {
+                result.add(toStatus(variantId, pool));
+            }
+        });
+        result.sort(Comparator.comparing(Status::saleId));
+        return result;
+    }
+
+    // Ghi counter xuống DB: một transaction cho cả lượt, chỉ các variant có thay đổi
+    @Scheduled(fixedDelayString = "${inventory.flash.flush-ms:500}")
+    public synchronized void flush() {
+        if (!loaded || pools.isEmpty()) {
+            return;
+        }
+        Map<Pool, Integer> written = new HashMap<>();
+        transactionTemplate.executeWithoutResult(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            pools.forEach((variantId, pool) -> {
+                int remaining = pool.remaining.get();
+                if (remaining < 0 || remaining == pool.flushed) {
+                    return;
+                }
+                bookVariantsRepository.adjustStock(variantId, remaining - pool.flushed, 0);
+                flashSaleVariantRepository.updateRemaining(pool.saleId, remaining, now);
+                bookDetailCache.invalidateAfterCommit(pool.bookId);
+                lowStockMonitor.onStockChanged(variantId);
+                written.put(pool, remaining);
+            });
+        });
+        // Chỉ ghi nhận sau khi commit, lỗi thì lượt sau tính lại chênh lệch từ giá trị cũ
+        written.forEach((pool, remaining) -> pool.flushed = remaining);
+    }
+
+    // Trả hàng về counter; phiên đã đóng thì cộng thẳng vào DB
+    private void release(Pool pool, Long variantId, int qty) {
+        while (true) {
+            int current = pool.remaining.get();
+            if (current < 0) {
+                break;
+            }
+            if (pool.remaining.compareAndSet(current, current + qty)) {
+                return;
+            }
+        }
+        newTransaction.executeWithoutResult(status -> {
+            bookVariantsRepository.adjustStock(variantId, qty, 0);
+            bookDetailCache.invalidateAfterCommit(pool.bookId);
+            lowStockMonitor.onStockChanged(variantId);
+        });
+    }
+
+    private void ensureLoaded() {
+        if (!loaded) {
+            load();
+        }
+    }
+
+    // Dựng lại counter từ DB: các reservation đã commit là nguồn sự thật, phần đang dở dang đã rollback
+    private synchronized void load() {
+        if (loaded) {
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            for (Object[] row : flashSaleVariantRepository.findActiveRows()) {
+                Long saleId = (Long) row[0];
+                Long variantId = (Long) row[1];
+                int allocated = (Integer) row[3];
+                int flushed = (Integer) row[4];
+                int outstanding = (int) reservationRepository.sumOutstandingByFlashSale(saleId);
+                int remaining = Math.max(0, allocated - outstanding);
+                pools.put(variantId, new Pool(saleId, (Long) row[2], allocated, remaining, flushed));
+                logger.info("Khôi phục flash sale #{} cho variant {}: còn {} / {}", saleId, variantId, remaining, allocated);
+            }
+        });
+        loaded = true;
+    }
+
+    private static Status toStatus(Long variantId, Pool pool) {
+        return new Status(pool.saleId, variantId, pool.bookId, pool.allocated, pool.remaining.get(), pool.flushed);
+    }
+}
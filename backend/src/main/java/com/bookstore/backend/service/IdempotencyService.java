@@ -0,0 +1,108 @@
+package com.bookstore.backend.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Chống gửi trùng request ghi (double-click, client retry) theo header Idempotency-Key.
+ * Lần đầu chạy thật và lưu response 2xx trong TTL; các lần lặp lại được trả đúng response đó.
+ * Request trùng đến khi lần đầu còn đang chạy sẽ chờ kết quả thay vì chạy song song.
+ */
+@Component
+public class IdempotencyService {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 255;
+    private static final Duration WAIT_TIMEOUT = Duration.ofSeconds(30);
+
+    // fingerprint: hash nội dung request, để phát hiện cùng key nhưng khác request
+    private record Entry(String fingerprint, CompletableFuture<ResponseEntity<?>> result) {
+    }
+
+    private final Cache<String, Entry> entries;
+
+    public IdempotencyService(@Value("${checkout.idempotency.ttl:PT30M}") Duration ttl,
+                              @Value("${checkout.idempotency.max-entries:100000}") long maxEntries) {
+        this.entries = CacheBuilder.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(maxEntries)
+                .build();
+    }
+
+    // scope tách key giữa các user; key null -> chạy bình thường, không chống trùng
+    @SuppressWarnings("unchecked")
+    public <T> ResponseEntity<T> execute(String scope, String key, String fingerprint,
+                                         Supplier<ResponseEntity<T>> action) {
+        if (key == null || key.isBlank()) {
+            return action.get();
+        }
+        if (key.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException(HEADER + " quá dài");
+        }
+
+        String cacheKey = scope + ":" + key;
+        Entry entry = new Entry(fingerprint, new CompletableFuture<>());
+        Entry existing = entries.asMap().putIfAbsent(cacheKey, entry);
+        if (existing != null) {
+            if (!existing.fingerprint().equals(fingerprint)) {
+                throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY,
+                        HEADER + " đã được dùng cho một request khác");
+            }
+            return replay((ResponseEntity<T>) await(existing));
+        }
+
+        try {
+            ResponseEntity<T> response = action.get();
+            entry.result().complete(response);
+            // Chỉ giữ kết quả thành công, lỗi thì cho phép thử lại với cùng key
+            if (!response.getStatusCode().is2xxSuccessful()) {
+                entries.asMap().remove(cacheKey, entry);
+            }
+            return response;
+        } catch (RuntimeException | Error ex) {
+            entry.result().completeExceptionally(ex);
+            entries.asMap().remove(cacheKey, entry);
+            throw ex;
+        }
+    }
+
+    private static ResponseEntity<?> await(Entry entry) {
+        try {
+            return entry.result().get(WAIT_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException ex) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT,
+                    "Request với " + HEADER + " này vẫn đang được xử lý");
+        } catch (ExecutionException ex) {
+            // Lần chạy đầu lỗi -> request trùng nhận cùng lỗi
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Request bị gián đoạn");
+        }
+    }
+
+    private static <T> ResponseEntity<T> replay(ResponseEntity<T> original) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.putAll(original.getHeaders());
+        headers.set(REPLAYED_HEADER, "true");
+        return ResponseEntity.status(original.getStatusCode()).headers(headers).body(original.getBody());
+    }
+}
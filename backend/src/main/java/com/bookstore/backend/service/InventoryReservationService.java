@@ -0,0 +1,290 @@
+package com.bookstore.backend.service;
+
+import com.bookstore.backend.exception.BusinessException;
+import com.bookstore.backend.model.BookVariants;
+import com.bookstore.backend.model.OrderDetails;
+import com.bookstore.backend.model.Orders;
+import com.bookstore.backend.model.StockReservation;
+import com.bookstore.backend.model.enums.PaymentType;
+import com.bookstore.backend.model.enums.ReservationStatus;
+import com.bookstore.backend.repository.BookVariantsRepository;
+import com.bookstore.backend.repository.OrderDetailRepository;
+import com.bookstore.backend.repository.OrdersRepository;
+import com.bookstore.backend.repository.StockReservationRepository;
+import com.bookstore.backend.service.search.CatalogIndexer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Giữ hàng cho đơn hàng bằng các câu UPDATE có điều kiện thay vì đọc-sửa-ghi entity:
+ * - createOrder: trừ quantity ngay (chỉ khi quantity >= qty) và ghi StockReservation RESERVED
+ * - DELIVERY: RESERVED -> CONFIRMED, cộng sold
+ * - hủy / hết hạn: RESERVED -> RELEASED, trả lại quantity
+ * - RESTORE sau khi giao: CONFIRMED -> RESTORED, trả lại quantity và trừ sold
+ * Mọi chuyển trạng thái đều là UPDATE có điều kiện nên hai luồng đồng thời không thể áp dụng hai lần.
+ * Variant đang flash sale lấy / trả hàng qua counter của FlashSaleInventory thay vì dòng book_variants.
+ */
+@Service
+@Transactional
+public class InventoryReservationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(InventoryReservationService.class);
+
+    private final StockReservationRepository reservationRepository;
+    private final BookVariantsRepository bookVariantsRepository;
+    private final OrderDetailRepository orderDetailRepository;
+    private final OrdersRepository ordersRepository;
+    private final CatalogIndexer catalogIndexer;
+    private final BookDetailCache bookDetailCache;
+    private final FlashSaleInventory flashSaleInventory;
+    private final LowStockMonitor lowStockMonitor;
+    private final VoucherService voucherService;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration reservationTtl;
+
+    public InventoryReservationService(StockReservationRepository reservationRepository,
+                                       BookVariantsRepository bookVariantsRepository,
+                                       OrderDetailRepository orderDetailRepository,
+                                       OrdersRepository ordersRepository,
+                                       CatalogIndexer catalogIndexer,
+                                       BookDetailCache bookDetailCache,
+                                       FlashSaleInventory flashSaleInventory,
+                                       LowStockMonitor lowStockMonitor,
+                                       VoucherService voucherService,
+                                       TransactionTemplate transactionTemplate,
+                                       @Value("${inventory.reservation.ttl:PT30M}") Duration reservationTtl) {
+        this.reservationRepository = reservationRepository;
+        this.bookVariantsRepository = bookVariantsRepository;
+        this.orderDetailRepository = orderDetailRepository;
+        this.ordersRepository = ordersRepository;
+        this.catalogIndexer = catalogIndexer;
+        this.bookDetailCache = bookDetailCache;
+        this.flashSaleInventory = flashSaleInventory;
+        this.lowStockMonitor = lowStockMonitor;
+        this.voucherService = voucherService;
+        this.transactionTemplate = transactionTemplate;
+        this.reservationTtl = reservationTtl;
+    }
+
+    // Giữ hàng cho các dòng của đơn; không đủ hàng -> BusinessException, transaction gọi tới bị rollback
+    public List<StockReservation> reserve(Orders order, Collection<OrderDetails> details) {
+        // Gộp theo variant và xử lý theo thứ tự id để các đơn đồng thời khóa hàng theo cùng thứ tự (tránh deadlock)
+        Map<Long, Integer> quantities = new TreeMap<>();
+        Map<Long, BookVariants> variants = new TreeMap<>();
+        for (OrderDetails detail : details) {
+            BookVariants variant = detail.getBookVariant();
+            if (detail.getQuantity() == null || detail.getQuantity() <= 0) {
+                throw new BusinessException("Số lượng không hợp lệ cho biến thể: " + variant.getId());
+            }
+            quantities.merge(variant.getId(), detail.getQuantity(), Integer::sum);
+            variants.put(variant.getId(), variant);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        // Chỉ đơn thanh toán online mới bị hủy giữ hàng khi quá hạn
+        LocalDateTime expiresAt = order.getPaymentType() == PaymentType.BANKING ? now.plus(reservationTtl) : null;
+
+        List<StockReservation> reservations = new ArrayList<>(quantities.size());
+        for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+            Long flashSaleId = flashSaleInventory.reserve(entry.getKey(), entry.getValue());
+            if (flashSaleId == null && bookVariantsRepository.reserveStock(entry.getKey(), entry.getValue()) == 0) {
+                throw new BusinessException("Không đủ hàng cho biến thể: " + entry.getKey());
+            }
+            BookVariants variant = variants.get(entry.getKey());
+            reservations.add(StockReservation.builder()
+                    .orders(order)
+                    .bookVariant(variant)
+                    .quantity(entry.getValue())
+                    .status(ReservationStatus.RESERVED)
+                    .createdAt(now)
+                    .updatedAt(now)
+                    .expiresAt(expiresAt)
+                    .flashSaleId(flashSaleId)
+                    .build());
+            // Flash sale: quantity trong DB do job flush cập nhật và invalidate
+            if (flashSaleId == null) {
+                bookDetailCache.invalidateAfterCommit(variant.getBook().getId());
+                lowStockMonitor.onStockChanged(variant.getId());
+            }
+        }
+        return reservationRepository.saveAll(reservations);
+    }
+
+    // Đơn chuyển sang DELIVERY: xác nhận phần hàng đã giữ và cộng sold
+    public void confirm(Orders order) {
+        List<StockReservation> reserved = reservationRepository.findByOrderAndStatus(order.getId(), ReservationStatus.RESERVED);
+        if (reserved.isEmpty()) {
+            if (!reservationRepository.findByOrderAndStatus(order.getId(), ReservationStatus.CONFIRMED).isEmpty()) {
+                return; // đã xác nhận trước đó
+            }
+            // Đơn cũ chưa có reservation, hoặc đã bị nhả (hết hạn / hoàn hàng): giữ lại hàng ngay bây giờ
+            reserved = reserve(order, orderDetailRepository.findByOrdersId(order.getId()));
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        for (StockReservation reservation : reserved) {
+            if (reservationRepository.transition(reservation.getId(),
+                    ReservationStatus.RESERVED, ReservationStatus.CONFIRMED, now) == 0) {
+                throw new BusinessException("Hàng giữ cho đơn #" + order.getId() + " đã bị nhả, vui lòng thử lại");
+            }
+            BookVariants variant = reservation.getBookVariant();
+            bookVariantsRepository.adjustStock(variant.getId(), 0, reservation.getQuantity());
+            catalogIndexer.adjustSold(variant.getBook().getId(), reservation.getQuantity());
+            bookDetailCache.invalidateAfterCommit(variant.getBook().getId());
+        }
+    }
+
+    // Xác nhận hàng giữ của nhiều đơn trong một lượt: reservation chuyển bằng một câu UPDATE,
+    // sold cộng dồn theo variant rồi cập nhật mỗi variant một câu.
+    // Trả về các đơn đã được xác nhận; đơn không có hàng đang giữ để caller xử lý riêng bằng confirm()
+    public Set<Long> confirmAll(Collection<Long> orderIds) {
+        if (orderIds.isEmpty()) {
+            return Set.of();
+        }
+        List<StockReservation> reserved = reservationRepository.lockByOrdersAndStatus(orderIds, ReservationStatus.RESERVED);
+        if (reserved.isEmpty()) {
+            return Set.of();
+        }
+
+        List<Long> reservationIds = new ArrayList<>(reserved.size());
+        Map<Long, Integer> soldByVariant = new TreeMap<>();
+        Set<Long> confirmed = new HashSet<>();
+        for (StockReservation reservation : reserved) {
+            reservationIds.add(reservation.getId());
+            soldByVariant.merge(reservation.getBookVariant().getId(), reservation.getQuantity(), Integer::sum);
+            confirmed.add(reservation.getOrders().getId());
+        }
+        // Các dòng đã bị khóa ở trên nên số dòng cập nhật phải khớp
+        if (reservationRepository.transitionAll(reservationIds,
+                ReservationStatus.RESERVED, ReservationStatus.CONFIRMED, LocalDateTime.now()) != reservationIds.size()) {
+            throw new BusinessException("Hàng giữ đã thay đổi trong lúc xác nhận, vui lòng thử lại");
+        }
+
+        Map<Long, Long> bookOfVariant = new HashMap<>();
+        for (Object[] row : bookVariantsRepository.findBookIds(soldByVariant.keySet())) {
+            bookOfVariant.put((Long) row[0], (Long) row[1]);
+        }
+        Map<Long, Integer> soldByBook = new HashMap<>();
+        soldByVariant.forEach((variantId, quantity) -> {
+            bookVariantsRepository.adjustStock(variantId, 0, quantity);
+            soldByBook.merge(bookOfVariant.get(variantId), quantity, Integer::sum);
+        });
+        soldByBook.forEach((bookId, quantity) -> {
+            catalogIndexer.adjustSold(bookId, quantity);
+            bookDetailCache.invalidateAfterCommit(bookId);
+        });
+        return confirmed;
+    }
+
+    // Hủy đơn: trả lại hàng còn đang giữ (không ảnh hưởng phần đã CONFIRMED)
+    public void release(Long orderId) {
+        LocalDateTime now = LocalDateTime.now();
+        for (StockReservation reservation : reservationRepository.findByOrderAndStatus(orderId, ReservationStatus.RESERVED)) {
+            if (reservationRepository.transition(reservation.getId(),
+                    ReservationStatus.RESERVED, ReservationStatus.RELEASED, now) == 1) {
+                giveBack(reservation, 0);
+            }
+        }
+    }
+
+    // Hoàn hàng sau khi đã giao: trả lại quantity và trừ sold
+    public void restore(Long orderId) {
+        if (!reservationRepository.existsByOrdersId(orderId)) {
+            // Đơn giao trước khi có reservation: hoàn theo chi tiết đơn như trước đây
+            for (OrderDetails detail : orderDetailRepository.findByOrdersId(orderId)) {
+                Long bookId = detail.getBookVariant().getBook().getId();
+                bookVariantsRepository.adjustStock(detail.getBookVariant().getId(), detail.getQuantity(), -detail.getQuantity());
+                catalogIndexer.adjustSold(bookId, -detail.getQuantity());
+                bookDetailCache.invalidateAfterCommit(bookId);
+                lowStockMonitor.onStockChanged(detail.getBookVariant().getId());
+            }
+            return;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        for (StockReservation reservation : reservationRepository.findByOrderAndStatus(orderId, ReservationStatus.CONFIRMED)) {
+            if (reservationRepository.transition(reservation.getId(),
+                    ReservationStatus.CONFIRMED, ReservationStatus.RESTORED, now) == 1) {
+                giveBack(reservation, reservation.getQuantity());
+                catalogIndexer.adjustSold(reservation.getBookVariant().getBook().getId(), -reservation.getQuantity());
+            }
+        }
+    }
+
+    // Thanh toán online thành công -> không còn hết hạn giữ hàng.
+    // Trả về số reservation còn đang giữ; 0 = job quá hạn có thể đã nhả hàng và hủy đơn trước khi tiền về
+    public int markPaid(Long orderId) {
+        return reservationRepository.clearExpiry(orderId);
+    }
+
+    // Nhả hàng của các đơn BANKING quá hạn chưa thanh toán, hủy đơn và trả lại lượt dùng voucher
+    @Scheduled(fixedDelayString = "${inventory.reservation.sweep-ms:60000}")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public int releaseExpired() {
+        List<Long> orderIds = reservationRepository.findExpiredOrderIds(LocalDateTime.now());
+        int released = 0;
+        for (Long orderId : orderIds) {
+            try {
+                Boolean done = transactionTemplate.execute(status -> expireOrder(orderId));
+                if (Boolean.TRUE.equals(done)) {
+                    released++;
+                }
+            } catch (RuntimeException ex) {
+                logger.warn("Không nhả được hàng giữ cho đơn #{}: {}", orderId, ex.getMessage());
+            }
+        }
+        if (released > 0) {
+            logger.info("Đã nhả hàng giữ của {} đơn quá hạn thanh toán", released);
+        }
+        return released;
+    }
+
+    private boolean expireOrder(Long orderId) {
+        LocalDateTime now = LocalDateTime.now();
+        boolean any = false;
+        for (StockReservation reservation : reservationRepository.findByOrderAndStatus(orderId, ReservationStatus.RESERVED)) {
+            // Điều kiện expiresAt < now: nếu vừa thanh toán (clearExpiry) thì không nhả
+            if (reservationRepository.expire(reservation.getId(), now) == 1) {
+                giveBack(reservation, 0);
+                any = true;
+            }
+        }
+        if (any && ordersRepository.cancelUnpaid(orderId) == 1) {
+            voucherService.releaseVoucher(orderId);
+        }
+        return any;
+    }
+
+    private void giveBack(StockReservation reservation, int soldDelta) {
+        BookVariants variant = reservation.getBookVariant();
+        if (reservation.getFlashSaleId() != null
+                && flashSaleInventory.giveBack(reservation.getFlashSaleId(), variant.getId(), reservation.getQuantity())) {
+            // quantity về lại counter của phiên, DB chỉ còn phần sold
+            if (soldDelta != 0) {
+                bookVariantsRepository.adjustStock(variant.getId(), 0, -soldDelta);
+                bookDetailCache.invalidateAfterCommit(variant.getBook().getId());
+            }
+            return;
+        }
+        bookVariantsRepository.adjustStock(variant.getId(), reservation.getQuantity(), -soldDelta);
+        bookDetailCache.invalidateAfterCommit(variant.getBook().getId());
+        lowStockMonitor.onStockChanged(variant.getId());
+    }
+}
@@ -0,0 +1,286 @@
+package com.bookstore.backend.service;
+
+import com.bookstore.backend.DTO.NotificationRequestDTO;
+import com.bookstore.backend.exception.ResourceNotFoundException;
+import com.bookstore.backend.model.enums.NotificationType;
+import com.bookstore.backend.model.enums.UserRole;
+import com.bookstore.backend.repository.BookVariantsRepository;
+import com.bookstore.backend.repository.UserRepository;
+import com.bookstore.backend.service.outbox.OutboxService;
+import com.bookstore.backend.utils.TransactionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Theo dõi các variant sắp hết hàng (quantity <= ngưỡng của variant, mặc định inventory.low-stock.default-threshold).
+ * Mỗi lần tồn kho đổi (giữ / trả hàng của đơn, hoàn hàng, admin sửa sách, flush flash sale) chỉ ghi id variant / sách
+ * vào hàng chờ sau khi commit; job định kỳ đọc lại đúng các dòng đó trong một query và cập nhật tập có thứ tự in-memory,
+ * nên trang "sắp hết hàng" của admin không quét bảng book_variants.
+ * Variant vừa rơi xuống dưới ngưỡng được báo cho nhân viên một lần qua outbox; chỉ báo lại khi đã hồi lên trên ngưỡng
+ * và quá thời gian realert-after. Lượt báo chỉ được ghi nhận sau khi outbox commit, lỗi thì lượt sau báo lại.
+ * Danh sách nạp lúc ứng dụng sẵn sàng; các variant đang thấp lúc đó được coi là đã báo.
+ */
+@Component
+public class LowStockMonitor {
+
+    private static final Logger logger = LoggerFactory.getLogger(LowStockMonitor.class);
+
+    // Số variant liệt kê trong một thông báo, phần còn lại chỉ ghi số lượng
+    private static final int NOTIFY_LIST_SIZE = 5;
+
+    public record Entry(Long variantId, Long bookId, String title, String isbn, int quantity, int threshold) {
+    }
+
+    // Ít hàng nhất lên đầu; cùng số lượng thì ngưỡng cao hơn (thiếu nhiều hơn) trước
+    private static final Comparator<Entry> ORDER = Comparator
+            .comparingInt(Entry::quantity)
+            .thenComparing(Comparator.comparingInt(Entry::threshold).reversed())
+            .thenComparing(Entry::variantId);
+
+    private final BookVariantsRepository bookVariantsRepository;
+    private final UserRepository userRepository;
+    private final OutboxService outboxService;
+    private final TransactionTemplate transactionTemplate;
+    private final int defaultThreshold;
+    private final long realertMillis;
+
+    // Chỉ chứa variant đang dưới ngưỡng; chỉ job (synchronized) ghi, admin đọc đồng thời
+    private final ConcurrentSkipListSet<Entry> lowStock = new ConcurrentSkipListSet<>(ORDER);
+    private final Map<Long, Entry> byVariant = new ConcurrentHashMap<>();
+    // variantId -> lần báo gần nhất
+    private final Map<Long, Long> alertedAt = new ConcurrentHashMap<>();
+    private final Set<Long> pendingVariants = ConcurrentHashMap.newKeySet();
+    private final Set<Long> pendingBooks = ConcurrentHashMap.newKeySet();
+    private volatile boolean loaded;
+
+    public LowStockMonitor(BookVariantsRepository bookVariantsRepository,
+                           UserRepository userRepository,
+                           OutboxService outboxService,
+                           TransactionTemplate transactionTemplate,
+                           @Value("${inventory.low-stock.default-threshold:5}") int defaultThreshold,
+                           @Value("${inventory.low-stock.realert-after:PT6H}") Duration realertAfter) {
+        this.bookVariantsRepository = bookVariantsRepository;
+        this.userRepository = userRepository;
+        this.outboxService = outboxService;
+        this.transactionTemplate = transactionTemplate;
+        this.defaultThreshold = defaultThreshold;
+        this.realertMillis = realertAfter.toMillis();
+    }
+
+    // Nạp ngay lúc khởi động: nạp trễ ở lượt job đầu tiên sẽ coi variant vừa rơi xuống dưới ngưỡng là "đã báo"
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        try {
+            ensureLoaded();
+        } catch (RuntimeException ex) {
+            // Lượt job / trang admin sau sẽ nạp lại
+            logger.error("Không nạp được danh sách sắp hết hàng lúc khởi động: {}", ex.getMessage());
+        }
+    }
+
+    // quantity của variant vừa đổi trong transaction hiện tại
+    public void onStockChanged(Long variantId) {
+        TransactionUtils.afterCommit(() -> pendingVariants.add(variantId));
+    }
+
+    // Sách được tạo / sửa / xóa: kiểm tra lại mọi variant của sách
+    public void onBookChanged(Long bookId) {
+        TransactionUtils.afterCommit(() -> pendingBooks.add(bookId));
+    }
+
+    public Page<Entry> page(Pageable pageable) {
+        ensureLoaded();
+        List<Entry> content = new ArrayList<>(pageable.isPaged() ? pageable.getPageSize() : lowStock.size());
+        Iterator<Entry> iterator = lowStock.iterator();
+        long offset = pageable.isPaged() ? pageable.getOffset() : 0;
+        for (long i = 0; i < offset && iterator.hasNext(); i++) {
+            iterator.next();
+        }
+        while (iterator.hasNext() && (pageable.isUnpaged() || content.size() < pageable.getPageSize())) {
+            content.add(iterator.next());
+        }
+        return new PageImpl<>(content, pageable, lowStock.size());
+    }
+
+    // threshold null = quay về ngưỡng mặc định
+    public void updateThreshold(Long variantId, Integer threshold) {
+        if (threshold != null && threshold < 0) {
+            throw new IllegalArgumentException("Ngưỡng tồn kho phải lớn hơn hoặc bằng 0");
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            if (bookVariantsRepository.updateLowStockThreshold(variantId, threshold) == 0) {
+                throw new ResourceNotFoundException("Không tìm thấy biến thể: " + variantId);
+            }
+            onStockChanged(variantId);
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${inventory.low-stock.scan-ms:2000}")
+    public synchronized void processPending() {
+        if (pendingVariants.isEmpty() && pendingBooks.isEmpty()) {
+            return;
+        }
+        Set<Long> variantIds = drain(pendingVariants);
+        Set<Long> bookIds = drain(pendingBooks);
+        try {
+            ensureLoaded();
+            List<Object[]> rows = new ArrayList<>();
+            if (!variantIds.isEmpty()) {
+                rows.addAll(bookVariantsRepository.findStockRows(variantIds));
+            }
+            if (!bookIds.isEmpty()) {
+                rows.addAll(bookVariantsRepository.findStockRowsByBookIds(bookIds));
+            }
+
+            long now = System.currentTimeMillis();
+            Set<Long> seen = new HashSet<>();
+            List<Entry> newlyLow = new ArrayList<>();
+            for (Object[] row : rows) {
+                Entry entry = toEntry(row);
+                if (seen.add(entry.variantId()) && apply(entry, now)) {
+                    newlyLow.add(entry);
+                }
+            }
+            // Variant / sách đã bị xóa
+            for (Long variantId : variantIds) {
+                if (!seen.contains(variantId)) {
+                    drop(variantId);
+                }
+            }
+            if (!bookIds.isEmpty()) {
+                for (Entry entry : List.copyOf(byVariant.values())) {
+                    if (bookIds.contains(entry.bookId()) && !seen.contains(entry.variantId())) {
+                        drop(entry.variantId());
+                    }
+                }
+            }
+            if (!newlyLow.isEmpty()) {
+                try {
+                    notifyStaff(newlyLow);
+                } catch (RuntimeException ex) {
+                    // Chưa báo được: gỡ ra để lượt sau vẫn thấy là vừa rơi xuống dưới ngưỡng
+                    newlyLow.forEach(entry -> drop(entry.variantId()));
+                    throw ex;
+                }
+                newlyLow.forEach(entry -> alertedAt.put(entry.variantId(), now));
+            }
+        } catch (RuntimeException ex) {
+            // Lượt sau đọc lại
+            pendingVariants.addAll(variantIds);
+            pendingBooks.addAll(bookIds);
+            logger.warn("Không cập nhật được danh sách sắp hết hàng: {}", ex.getMessage());
+        }
+    }
+
+    // Cập nhật một variant; true nếu vừa rơi xuống dưới ngưỡng và cần báo (alertedAt ghi sau khi outbox commit)
+    private boolean apply(Entry entry, long now) {
+        Entry previous = byVariant.get(entry.variantId());
+        if (entry.quantity() > entry.threshold()) {
+            drop(entry.variantId());
+            return false;
+        }
+        if (previous != null) {
+            lowStock.remove(previous);
+        }
+        byVariant.put(entry.variantId(), entry);
+        lowStock.add(entry);
+        if (previous != null) {
+            return false;
+        }
+        Long last = alertedAt.get(entry.variantId());
+        return last == null || now - last >= realertMillis;
+    }
+
+    private void drop(Long variantId) {
+        Entry previous = byVariant.remove(variantId);
+        if (previous != null) {
+            lowStock.remove(previous);
+        }
+    }
+
+    // Một thông báo cho mỗi nhân viên / admin, ghi outbox trong một transaction
+    private void notifyStaff(List<Entry> entries) {
+        StringBuilder content = new StringBuilder("Sắp hết hàng: ");
+        for (int i = 0; i < Math.min(entries.size(), NOTIFY_LIST_SIZE); i++) {
+            Entry entry = entries.get(i);
+            if (i > 0) {
+                content.append("; ");
+            }
+            content.append(entry.title()).append(" (biến thể #").append(entry.variantId())
+                    .append(", còn ").append(entry.quantity()).append(")");
+        }
+        if (entries.size() > NOTIFY_LIST_SIZE) {
+            content.append(" và ").append(entries.size() - NOTIFY_LIST_SIZE).append(" biến thể khác");
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            for (Long userId : userRepository.findIdsByRoleIn(List.of(UserRole.ADMIN, UserRole.STAFF))) {
+                outboxService.enqueueNotification(NotificationRequestDTO.builder()
+                        .content(content.toString())
+                        .url("http://localhost:5173/admin/low-stock")
+                        .type(NotificationType.PERSONAL)
+                        .userId(userId)
+                        .build());
+            }
+        });
+        logger.info("Cảnh báo sắp hết hàng cho {} biến thể", entries.size());
+    }
+
+    private Entry toEntry(Object[] row) {
+        Integer quantity = (Integer) row[4];
+        Integer threshold = (Integer) row[5];
+        return new Entry((Long) row[0], (Long) row[1], (String) row[2], (String) row[3],
+                quantity != null ? quantity : 0, threshold != null ? threshold : defaultThreshold);
+    }
+
+    private static Set<Long> drain(Set<Long> pending) {
+        Set<Long> drained = new HashSet<>();
+        Iterator<Long> iterator = pending.iterator();
+        while (iterator.hasNext()) {
+            drained.add(iterator.next());
+            iterator.remove();
+        }
+        return drained;
+    }
+
+    private void ensureLoaded() {
+        if (!loaded) {
+            load();
+        }
+    }
+
+    // Dựng lại từ DB (một query lúc khởi động); các variant đang thấp coi như đã báo để không gửi lại hàng loạt
+    private synchronized void load() {
+        if (loaded) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (Object[] row : bookVariantsRepository.findLowStockRows(defaultThreshold)) {
+            Entry entry = toEntry(row);
+            byVariant.put(entry.variantId(), entry);
+            lowStock.add(entry);
+            alertedAt.put(entry.variantId(), now);
+        }
+        loaded = true;
+        logger.info("Đã nạp {} biến thể sắp hết hàng", byVariant.size());
+    }
+}
@@ -0,0 +1,84 @@
+package com.bookstore.backend.service;
+
+import com.bookstore.backend.DTO.OrderDetailDTO;
+import com.bookstore.backend.exception.BusinessException;
+import com.bookstore.backend.exception.ResourceNotFoundException;
+import com.bookstore.backend.model.BookVariants;
+import com.bookstore.backend.model.enums.BookStatus;
+import com.bookstore.backend.repository.BookVariantsRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Chuẩn hóa các dòng đơn hàng client gửi lên: load toàn bộ variant bằng một query,
+ * gộp dòng trùng variant, kiểm tra trạng thái bán và lấy giá hiện tại từ DB
+ * (bỏ qua pricePurchased của client).
+ */
+@Component
+@RequiredArgsConstructor
+public class OrderLineResolver {
+
+    // Một dòng đơn đã được định giá phía server
+    public record OrderLine(BookVariants variant, int quantity, double unitPrice) {
+
+        public double subtotal() {
+            return unitPrice * quantity;
+        }
+    }
+
+    private final BookVariantsRepository bookVariantsRepository;
+
+    public List<OrderLine> resolve(List<OrderDetailDTO> details) {
+        if (details == null || details.isEmpty()) {
+            throw new BusinessException("Đơn hàng phải có ít nhất một sản phẩm");
+        }
+
+        // Gộp số lượng theo variant, giữ thứ tự client gửi
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
+        for (OrderDetailDTO detail : details) {
+            if (detail.getBookVariantId() == null) {
+                throw new BusinessException("Thiếu bookVariantId trong đơn hàng");
+            }
+            if (detail.getQuantity() == null || detail.getQuantity() <= 0) {
+                throw new BusinessException("Số lượng không hợp lệ cho biến thể: " + detail.getBookVariantId());
+            }
+            quantities.merge(detail.getBookVariantId(), detail.getQuantity(), Integer::sum);
+        }
+
+        Map<Long, BookVariants> variants = new HashMap<>();
+        for (BookVariants variant : bookVariantsRepository.findAllWithBookByIdIn(quantities.keySet())) {
+            variants.put(variant.getId(), variant);
+        }
+
+        Set<Long> missing = new TreeSet<>();
+        Set<Long> unavailable = new TreeSet<>();
+        List<OrderLine> lines = new ArrayList<>(quantities.size());
+        for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+            BookVariants variant = variants.get(entry.getKey());
+            if (variant == null) {
+                missing.add(entry.getKey());
+            } else if (!BookStatus.AVAILABLE.name().equals(variant.getStatus())
+                    || Boolean.TRUE.equals(variant.getBook().getIsDeleted())) {
+                unavailable.add(entry.getKey());
+            } else {
+                lines.add(new OrderLine(variant, entry.getValue(), variant.getPrice()));
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            throw new ResourceNotFoundException("Không tìm thấy biến thể: " + missing);
+        }
+        if (!unavailable.isEmpty()) {
+            throw new BusinessException("Biến thể đang ngừng bán: " + unavailable);
+        }
+        return lines;
+    }
+}
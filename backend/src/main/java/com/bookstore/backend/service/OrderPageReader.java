@@ -0,0 +1,217 @@
+package com.bookstore.backend.service;
+
+import com.bookstore.backend.DTO.OrderDetailDTO;
+import com.bookstore.backend.DTO.OrdersDTO;
+import com.bookstore.backend.model.BookVariants;
+import com.bookstore.backend.model.OrderDetails;
+import com.bookstore.backend.model.Orders;
+import com.bookstore.backend.model.enums.PaymentStatus;
+import com.bookstore.backend.model.enums.StatusOrder;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Đọc danh sách đơn hàng theo trang với số query cố định:
+ * 1 query id theo bộ lọc (+ count), 1 query fetch join đơn/user/voucher/chi tiết/variant/book,
+ * 1 query lấy ảnh đầu tiên của các variant. Không phụ thuộc số đơn hay số dòng trong đơn.
+ */
+@Component
+@Transactional(readOnly = true)
+public class OrderPageReader {
+
+    // Bộ lọc danh sách đơn, field null = không lọc
+    public record Filter(StatusOrder status, PaymentStatus paymentStatus,
+                         LocalDateTime from, LocalDateTime to, Long userId) {
+    }
+
+    // Chỉ cho sort theo các cột này, luôn thêm id để thứ tự ổn định giữa các trang
+    private static final Map<String, String> SORTABLE = Map.of(
+            "orderDate", "o.orderDate",
+            "totalAmount", "o.totalAmount",
+            "id", "o.id");
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public Page<OrdersDTO> loadPage(Filter filter, Pageable pageable) {
+        StringBuilder where = new StringBuilder(" WHERE 1 = 1");
+        Map<String, Object> params = new HashMap<>();
+        if (filter.status() != null) {
+            where.append(" AND o.status = :status");
+            params.put("status", filter.status());
+        }
+        if (filter.paymentStatus() != null) {
+            where.append(" AND o.paymentStatus = :paymentStatus");
+            params.put("paymentStatus", filter.paymentStatus());
+        }
+        if (filter.from() != null) {
+            where.append(" AND o.orderDate >= :from");
+            params.put("from", filter.from());
+        }
+        if (filter.to() != null) {
+            where.append(" AND o.orderDate < :to");
+            params.put("to", filter.to());
+        }
+        if (filter.userId() != null) {
+            where.append(" AND o.users.id = :userId");
+            params.put("userId", filter.userId());
+        }
+
+        TypedQuery<Long> idQuery = entityManager.createQuery(
+                "SELECT o.id FROM Orders o" + where + orderBy(pageable.getSort()), Long.class);
+        params.forEach(idQuery::setParameter);
+        if (pageable.isPaged()) {
+            idQuery.setFirstResult((int) pageable.getOffset()).setMaxResults(pageable.getPageSize());
+        }
+        List<Long> ids = idQuery.getResultList();
+
+        // Chỉ chạy count khi không suy ra được tổng từ trang hiện tại
+        String filterClause = where.toString();
+        return PageableExecutionUtils.getPage(loadOrders(ids), pageable, () -> count(filterClause, params));
+    }
+
+    // Load đầy đủ các đơn theo id, giữ thứ tự của ids
+    public List<OrdersDTO> loadOrders(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        List<Orders> orders = entityManager.createQuery("""
+                SELECT DISTINCT o FROM Orders o
+                LEFT JOIN FETCH o.users u
+                LEFT JOIN FETCH u.account
+                LEFT JOIN FETCH o.voucher
+                LEFT JOIN FETCH o.orderDetails od
+                LEFT JOIN FETCH od.bookVariant v
+                LEFT JOIN FETCH v.book
+                WHERE o.id IN :ids
+                """, Orders.class)
+                .setParameter("ids", ids)
+                .getResultList();
+
+        Set<Long> variantIds = orders.stream()
+                .flatMap(order -> order.getOrderDetails().stream())
+                .map(detail -> detail.getBookVariant().getId())
+                .collect(Collectors.toSet());
+        Map<Long, String> firstImages = firstImages(variantIds);
+
+        Map<Long, OrdersDTO> byId = new LinkedHashMap<>();
+        for (Orders order : orders) {
+            byId.put(order.getId(), toDTO(order, variant -> firstImages.get(variant.getId())));
+        }
+        List<OrdersDTO> result = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            OrdersDTO dto = byId.get(id);
+            if (dto != null) {
+                result.add(dto);
+            }
+        }
+        return result;
+    }
+
+    // Order -> DTO; imageOf quyết định cách lấy ảnh đại diện của variant
+    public static OrdersDTO toDTO(Orders order, Function<BookVariants, String> imageOf) {
+        OrdersDTO dto = new OrdersDTO();
+
+        dto.setId(order.getId());
+        dto.setUserId(order.getUsers() != null ? order.getUsers().getId() : null);
+        dto.setUserFullName(order.getUsers() != null ? order.getUsers().getFullName() : null);
+        dto.setShippingAddress(order.getShippingAddress());
+        dto.setPhoneNumber(order.getPhoneNumber());
+        dto.setPaymentType(order.getPaymentType());
+        dto.setPaymentStatus(order.getPaymentStatus());
+        dto.setStatus(order.getStatus());
+        dto.setOrderDate(order.getOrderDate());
+        dto.setTotalAmount(order.getTotalAmount());
+
+        if (order.getVoucher() != null) {
+            dto.setVoucherCode(order.getVoucher().getCode());
+        }
+
+        // Mapping order details
+        dto.setOrderDetails(
+                order.getOrderDetails()
+                        .stream()
+                        .sorted(Comparator.comparing(OrderDetails::getId))
+                        .map(od -> new OrderDetailDTO(
+                                od.getId(),
+                                od.getBookVariant().getId(),
+                                od.getBookVariant().getBook().getTitle(),
+                                od.getQuantity(),
+                                od.getPricePurchased(),
+
+                                // total price
+                                od.getQuantity() * od.getPricePurchased(),
+
+                                // imageUrl (ảnh đầu tiên)
+                                imageOf.apply(od.getBookVariant())
+                        ))
+                        .collect(Collectors.toList())
+        );
+        return dto;
+    }
+
+    private long count(String where, Map<String, Object> params) {
+        TypedQuery<Long> countQuery = entityManager.createQuery("SELECT COUNT(o) FROM Orders o" + where, Long.class);
+        params.forEach(countQuery::setParameter);
+        return countQuery.getSingleResult();
+    }
+
+    // Ảnh có id nhỏ nhất của mỗi variant
+    private Map<Long, String> firstImages(Set<Long> variantIds) {
+        Map<Long, String> images = new HashMap<>();
+        if (variantIds.isEmpty()) {
+            return images;
+        }
+        List<Object[]> rows = entityManager.createQuery("""
+                SELECT i.bookVariant.id, i.imageUrl FROM BookImages i
+                WHERE i.id IN (
+                    SELECT MIN(i2.id) FROM BookImages i2
+                    WHERE i2.bookVariant.id IN :variantIds
+                    GROUP BY i2.bookVariant.id)
+                """, Object[].class)
+                .setParameter("variantIds", variantIds)
+                .getResultList();
+        for (Object[] row : rows) {
+            images.put((Long) row[0], (String) row[1]);
+        }
+        return images;
+    }
+
+    private static String orderBy(Sort sort) {
+        List<String> parts = new ArrayList<>();
+        boolean hasId = false;
+        for (Sort.Order order : sort) {
+            String column = SORTABLE.get(order.getProperty());
+            if (column == null) {
+                throw new IllegalArgumentException("Không hỗ trợ sắp xếp theo: " + order.getProperty());
+            }
+            parts.add(column + (order.isAscending() ? " ASC" : " DESC"));
+            hasId |= "id".equals(order.getProperty());
+        }
+        if (parts.isEmpty()) {
+            parts.add("o.orderDate DESC");
+        }
+        if (!hasId) {
+            parts.add("o.id DESC");
+        }
+        return " ORDER BY " + String.join(", ", parts);
+    }
+}
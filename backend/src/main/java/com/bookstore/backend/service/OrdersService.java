@@ -1,25 +1,42 @@
 package com.bookstore.backend.service;
 
+import com.bookstore.backend.DTO.BulkOrderStatusResultDTO;
+import com.bookstore.backend.DTO.NotificationRequestDTO;
 import com.bookstore.backend.DTO.OrderDetailDTO;
 import com.bookstore.backend.DTO.OrdersDTO;
+import com.bookstore.backend.exception.BusinessException;
 import com.bookstore.backend.exception.ResourceNotFoundException;
 import com.bookstore.backend.model.*;
+import com.bookstore.backend.model.enums.NotificationType;
 import com.bookstore.backend.model.enums.PaymentType;
 import com.bookstore.backend.model.enums.StatusOrder;
 import com.bookstore.backend.model.enums.PaymentStatus;
 import com.bookstore.backend.model.enums.UserRole;
 import com.bookstore.backend.repository.*;
+import com.bookstore.backend.service.metrics.LiveSalesMetrics;
+import com.bookstore.backend.service.outbox.OutboxService;
 import com.bookstore.backend.utils.SecurityUtils;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.stream.Collectors;
 
 @Service
@@ -32,8 +49,16 @@ public class OrdersService {
     private final SecurityUtils securityUtils;
     private final CartService cartService;
     private final VoucherService voucherService;
-
-    public OrdersService(OrdersRepository ordersRepository, BookVariantsRepository bookVariantsRepository, VoucherRepository voucherRepository, UserRepository userRepository, OrderDetailRepository orderDetailRepository, SecurityUtils securityUtils, CartService cartService, VoucherService voucherService) {
+    private final InventoryReservationService inventoryReservationService;
+    private final OrderLineResolver orderLineResolver;
+    private final JdbcTemplate jdbcTemplate;
+    private final OrderPageReader orderPageReader;
+    private final OutboxService outboxService;
+    private final TransactionTemplate transactionTemplate;
+    private final DailySalesRollup dailySalesRollup;
+    private final LiveSalesMetrics liveSalesMetrics;
+
+    public OrdersService(OrdersRepository ordersRepository, BookVariantsRepository bookVariantsRepository, VoucherRepository voucherRepository, UserRepository userRepository, OrderDetailRepository orderDetailRepository, SecurityUtils securityUtils, CartService cartService, VoucherService voucherService, InventoryReservationService inventoryReservationService, OrderLineResolver orderLineResolver, JdbcTemplate jdbcTemplate, OrderPageReader orderPageReader, OutboxService outboxService, TransactionTemplate transactionTemplate, DailySalesRollup dailySalesRollup, LiveSalesMetrics liveSalesMetrics) {
         this.ordersRepository = ordersRepository;
         this.bookVariantsRepository = bookVariantsRepository;
         this.voucherRepository = voucherRepository;
@@ -42,12 +67,21 @@ public class OrdersService {
         this.securityUtils = securityUtils;
         this.cartService = cartService;
         this.voucherService = voucherService;
+        this.inventoryReservationService = inventoryReservationService;
+        this.orderLineResolver = orderLineResolver;
+        this.jdbcTemplate = jdbcTemplate;
+        this.orderPageReader = orderPageReader;
+        this.outboxService = outboxService;
+        this.transactionTemplate = transactionTemplate;
+        this.dailySalesRollup = dailySalesRollup;
+        this.liveSalesMetrics = liveSalesMetrics;
     }
 
     // ------------------- CREATE ORDER -------------------
     @Transactional
     public OrdersDTO createOrder(List<OrderDetailDTO> details, String voucherCode,
                                  PaymentType paymentType, String shippingAddress, String phoneNumber) {
+        liveSalesMetrics.onCheckoutStarted();
         var userInfo = securityUtils.getCurrentUser();
         Orders order = new Orders();
 
@@ -63,41 +97,66 @@ public class OrdersService {
         order.setPaymentStatus(PaymentStatus.PENDING);
         order.setOrderDate(LocalDateTime.now());
 
-        // Voucher
+        // Load variant theo lô, giá lấy từ DB
+        List<OrderLineResolver.OrderLine> lines = orderLineResolver.resolve(details);
+
+        // Voucher: ở đây chỉ kiểm tra, lượt dùng được lấy ở cuối để giữ khóa dòng voucher ngắn nhất
         Voucher voucher = null;
         if (voucherCode != null && !voucherCode.isEmpty()) {
             try {
-                voucher = voucherService.applyVoucher(voucherCode);
+                voucher = voucherService.getVoucherByCode(voucherCode);
+                if (!voucher.isValid()) {
+                    throw new IllegalArgumentException("Voucher không hợp lệ hoặc đã hết hạn");
+                }
                 order.setVoucher(voucher);
             } catch (Exception e) {
                 throw new RuntimeException("Lỗi áp dụng voucher: " + e.getMessage());
             }
         }
 
-        // Mapping OrderDetails
-        Set<OrderDetails> orderDetails = details.stream().map(d -> {
-            OrderDetails od = new OrderDetails();
-            od.setOrders(order);
-            od.setBookVariant(bookVariantsRepository.findById(d.getBookVariantId()).orElse(null));
-            od.setQuantity(d.getQuantity());
-            od.setPricePurchased(d.getPricePurchased());
-            return od;
-        }).collect(Collectors.toSet());
-
-        order.setOrderDetails(orderDetails);
         // ===== TOTAL AMOUNT (SAU GIẢM GIÁ) =====
-        BigDecimal totalAmount = calculateTotalAmount(orderDetails, voucher);
+        BigDecimal totalAmount = calculateTotalAmount(lines, voucher);
         BigDecimal shippingFee = BigDecimal.valueOf(32000); 
         order.setTotalAmount(totalAmount.add(shippingFee));
+        order.setOrderDetails(new HashSet<>());
 
         Orders savedOrder = ordersRepository.save(order);
 
+        // Chi tiết đơn ghi bằng một JDBC batch rồi load lại (variant đã có sẵn trong persistence context)
+        insertOrderDetails(savedOrder.getId(), lines);
+        List<OrderDetails> orderDetails = orderDetailRepository.findByOrdersId(savedOrder.getId());
+        savedOrder.getOrderDetails().addAll(orderDetails);
+
+        // Giữ hàng ngay khi đặt; không đủ hàng -> rollback cả đơn
+        inventoryReservationService.reserve(savedOrder, orderDetails);
+
         List<Long> purchasedVariantIds = details.stream()
                 .map(OrderDetailDTO::getBookVariantId)
                 .collect(Collectors.toList());
 
         cartService.removePurchasedItems(purchasedVariantIds);
 
+        if (voucher != null) {
+            try {
+                voucherService.applyVoucher(voucherCode, user.getId(), savedOrder.getId());
+            } catch (Exception e) {
+                throw new RuntimeException("Lỗi áp dụng voucher: " + e.getMessage());
+            }
+        }
+
+        // COD: thông báo + email xác nhận ghi vào outbox cùng transaction, gửi ở nền sau khi commit
+        // (BANKING gửi khi thanh toán thành công)
+        if (paymentType == PaymentType.COD) {
+            outboxService.enqueueNotification(NotificationRequestDTO.builder()
+                    .content("Thanh toán thành công cho đơn hàng #" + savedOrder.getId() + " của bạn")
+                    .url("http://localhost:5173/payment/pending?orderId=" + savedOrder.getId())
+                    .type(NotificationType.PERSONAL)
+                    .userId(user.getId())
+                    .build());
+            outboxService.enqueueOrderConfirmationEmail(savedOrder.getId(), user.getEmail(), user.getFullName());
+        }
+
+        liveSalesMetrics.onOrderPlaced(savedOrder.getTotalAmount());
         return mapToDTO(savedOrder);
     }
 
@@ -105,34 +164,53 @@ public class OrdersService {
     // ------------------- GET ORDERS BY USER -------------------
     public List<OrdersDTO> getOrdersByUser() {
         var userInfo = securityUtils.getCurrentUser();
-        return ordersRepository.findByUsersId(userInfo.getId())
-                .stream()
-                .map(this::mapToDTO)
-                .collect(Collectors.toList());
+        return orderPageReader.loadPage(
+                new OrderPageReader.Filter(null, null, null, null, userInfo.getId()),
+                Pageable.unpaged()).getContent();
+    }
+
+    // Lịch sử đơn của user hiện tại theo trang, bộ lọc userId luôn là user đang đăng nhập
+    public Page<OrdersDTO> getOrdersByUser(OrderPageReader.Filter filter, Pageable pageable) {
+        var userInfo = securityUtils.getCurrentUser();
+        return orderPageReader.loadPage(new OrderPageReader.Filter(
+                filter.status(), filter.paymentStatus(), filter.from(), filter.to(), userInfo.getId()), pageable);
     }
 
 
     // ------------------- UPDATE STATUS -------------------
+    @Transactional
     public OrdersDTO updateOrderStatus(Long orderId, StatusOrder newStatus) {
         Orders order = ordersRepository.findById(orderId).orElse(null);
         if (order == null) return null;
 
         StatusOrder oldStatus = order.getStatus();
+        // DELIVERY / SUCCESS: hàng đã xuất kho (sold đã cộng)
+        boolean wasShipped = DailySalesRollup.isCounted(oldStatus);
+        boolean shipped = DailySalesRollup.isCounted(newStatus);
 
         try {
-            // 1. DELIVERY → trừ kho
-            if (oldStatus != StatusOrder.DELIVERY && newStatus == StatusOrder.DELIVERY) {
-                deductVariantStock(orderId);
+            // 1. Vào DELIVERY / SUCCESS từ trạng thái chưa xuất kho (kể cả PENDING -> SUCCESS) → xác nhận hàng đã giữ
+            if (!wasShipped && shipped) {
+                inventoryReservationService.confirm(order);
             }
 
-            // 2. DELIVERY → RESTORE → hoàn kho
-            if (oldStatus == StatusOrder.DELIVERY && newStatus == StatusOrder.RESTORE) {
-                restoreVariantStock(orderId);
+            // 2. Hủy / hoàn → nhả hàng còn đang giữ; DELIVERY / SUCCESS → RESTORE / CANCELLED → hoàn kho
+            // (doanh thu của đơn cũng bị trừ và voucher được trả, nên hàng đã xuất phải về lại kho)
+            if (newStatus == StatusOrder.CANCELLED || newStatus == StatusOrder.RESTORE) {
+                inventoryReservationService.release(orderId);
+                if (wasShipped) {
+                    inventoryReservationService.restore(orderId);
+                }
+            }
+            // Hủy đơn → trả lại lượt dùng voucher
+            if (newStatus == StatusOrder.CANCELLED && oldStatus != StatusOrder.CANCELLED) {
+                voucherService.releaseVoucher(orderId);
             }
 
-            // 3. Cập nhật trạng thái
+            // 3. Cập nhật trạng thái và doanh số theo ngày
             order.setStatus(newStatus);
             Orders updated = ordersRepository.save(order);
+            dailySalesRollup.onStatusChange(orderId, oldStatus, newStatus);
 
             return mapToDTO(updated);
 
@@ -143,6 +221,98 @@ public class OrdersService {
     }
 
 
+    // ------------------- BULK UPDATE STATUS -------------------
+    // Kho chuyển cả lô đơn sang DELIVERY / SUCCESS: một transaction cho cả lô, sold cộng dồn theo variant.
+    // Đơn không hợp lệ hoặc lỗi được báo riêng trong kết quả, không làm hỏng các đơn khác.
+    // Lô chính lỗi thì xử lý lại từng đơn; mọi id đều nằm trong updated, unchanged hoặc failures.
+    public BulkOrderStatusResultDTO bulkUpdateOrderStatus(List<Long> orderIds, StatusOrder target) {
+        if (target != StatusOrder.DELIVERY && target != StatusOrder.SUCCESS) {
+            throw new IllegalArgumentException("Chỉ hỗ trợ chuyển hàng loạt sang DELIVERY hoặc SUCCESS");
+        }
+        BulkOrderStatusResultDTO result = new BulkOrderStatusResultDTO(target);
+        Set<Long> ids = orderIds.stream().filter(Objects::nonNull).collect(Collectors.toCollection(TreeSet::new));
+        if (ids.isEmpty()) {
+            return result;
+        }
+
+        // Đơn chưa có hàng đang giữ (đơn cũ, hàng đã bị nhả) được xử lý riêng từng đơn sau lô chính
+        List<Long> individually = new ArrayList<>();
+        List<Long> batch = new ArrayList<>();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                Map<Long, StatusOrder> current = new HashMap<>();
+                for (Object[] row : ordersRepository.lockStatuses(ids)) {
+                    current.put(((Number) row[0]).longValue(), StatusOrder.valueOf(row[1].toString()));
+                }
+
+                List<Long> toShip = new ArrayList<>();
+                for (Long id : ids) {
+                    StatusOrder from = current.get(id);
+                    if (from == null) {
+                        result.getFailures().put(id, "Order không tồn tại");
+                    } else if (from == target) {
+                        result.getUnchanged().add(id);
+                    } else if (from == StatusOrder.PENDING) {
+                        toShip.add(id);
+                    } else if (from == StatusOrder.DELIVERY) {
+                        batch.add(id); // DELIVERY -> SUCCESS: hàng đã xác nhận từ trước
+                    } else {
+                        result.getFailures().put(id, "Không thể chuyển đơn từ " + from + " sang " + target);
+                    }
+                }
+
+                Set<Long> confirmed = inventoryReservationService.confirmAll(toShip);
+                for (Long id : toShip) {
+                    (confirmed.contains(id) ? batch : individually).add(id);
+                }
+                if (!batch.isEmpty()) {
+                    ordersRepository.updateStatus(batch, target);
+                }
+                // Chỉ đơn đi từ PENDING mới bắt đầu được tính doanh thu
+                dailySalesRollup.addOrders(confirmed);
+            });
+            result.getUpdated().addAll(batch);
+        } catch (RuntimeException ex) {
+            // Lô chính đã rollback: một đơn lỗi không được kéo cả lô theo, xử lý lại từng đơn chưa có kết quả
+            individually.clear();
+            for (Long id : ids) {
+                if (!result.getUnchanged().contains(id) && !result.getFailures().containsKey(id)) {
+                    individually.add(id);
+                }
+            }
+        }
+
+        for (Long id : individually) {
+            try {
+                boolean changed = Boolean.TRUE.equals(transactionTemplate.execute(status -> shipOrder(id, target)));
+                (changed ? result.getUpdated() : result.getUnchanged()).add(id);
+            } catch (RuntimeException ex) {
+                result.getFailures().put(id, ex instanceof ResponseStatusException rse ? rse.getReason() : ex.getMessage());
+            }
+        }
+        return result;
+    }
+
+    // Chuyển một đơn; false nếu đơn vốn đã ở target
+    private boolean shipOrder(Long orderId, StatusOrder target) {
+        Orders order = ordersRepository.findById(orderId)
+                .orElseThrow(() -> new ResourceNotFoundException("Order không tồn tại"));
+        // Trạng thái có thể đã đổi sau khi lô chính commit / rollback
+        StatusOrder from = order.getStatus();
+        if (from == target) {
+            return false;
+        }
+        if (from == StatusOrder.PENDING) {
+            inventoryReservationService.confirm(order);
+        } else if (from != StatusOrder.DELIVERY) {
+            throw new BusinessException("Không thể chuyển đơn từ " + from + " sang " + target);
+        }
+        order.setStatus(target);
+        dailySalesRollup.onStatusChange(orderId, from, target);
+        return true;
+    }
+
+
     // ------------------- GET ORDER BY ID -------------------
     public OrdersDTO getOrderById(Long orderId) {
         var currentUser = securityUtils.getCurrentUser();
@@ -166,23 +336,68 @@ public class OrdersService {
 
     // ------------------- GET ALL ORDERS -------------------
     public List<OrdersDTO> getAllOrders() {
-        return ordersRepository.findAll()
-                .stream()
-                .map(this::mapToDTO)
-                .collect(Collectors.toList());
+        return orderPageReader.loadPage(
+                new OrderPageReader.Filter(null, null, null, null, null),
+                Pageable.unpaged()).getContent();
+    }
+
+    // Admin: danh sách đơn theo trang + bộ lọc
+    public Page<OrdersDTO> searchOrders(OrderPageReader.Filter filter, Pageable pageable) {
+        return orderPageReader.loadPage(filter, pageable);
+    }
+
+    // Admin: số đơn theo từng trạng thái
+    public Map<StatusOrder, Long> countOrdersByStatus() {
+        Map<StatusOrder, Long> counts = new EnumMap<>(StatusOrder.class);
+        for (StatusOrder status : StatusOrder.values()) {
+            counts.put(status, 0L);
+        }
+        for (Object[] row : ordersRepository.countByStatus()) {
+            counts.put((StatusOrder) row[0], (Long) row[1]);
+        }
+        return counts;
     }
 
     // ------------------- UPDATE PAYMENT STATUS -------------------
-    public void updatePaymentStatus(Long orderId, PaymentStatus paymentStatus, PaymentType paymentType) {
+    // false nếu tiền về cho đơn đã bị hủy / hoàn (job quá hạn đã nhả hàng, hoặc admin hủy): đơn giữ nguyên trạng thái,
+    // ghi PAID để đối soát hoàn tiền và báo nhân viên thay vì coi như đơn đã thanh toán bình thường
+    @Transactional
+    public boolean updatePaymentStatus(Long orderId, PaymentStatus paymentStatus, PaymentType paymentType) {
         Orders order = ordersRepository.findById(orderId)
                 .orElseThrow(() -> new RuntimeException("Order not found: " + orderId));
 
+        boolean accepted = true;
+        if (paymentStatus == PaymentStatus.PAID) {
+            // Bỏ hạn giữ hàng trước rồi mới khóa đơn: cùng thứ tự khóa với job nhả hàng quá hạn
+            int held = inventoryReservationService.markPaid(orderId);
+            StatusOrder current = StatusOrder.valueOf(
+                    ordersRepository.lockStatuses(List.of(orderId)).get(0)[1].toString());
+            // Entity có thể đọc trước khi job hủy đơn commit, không được ghi đè trạng thái mới
+            order.setStatus(current);
+            accepted = held > 0 || (current != StatusOrder.CANCELLED && current != StatusOrder.RESTORE);
+            if (!accepted) {
+                notifyRefundNeeded(orderId, current);
+            }
+        }
+
         order.setPaymentStatus(paymentStatus);
         if (paymentType != null) {
             order.setPaymentType(paymentType);
         }
 
         ordersRepository.save(order);
+        return accepted;
+    }
+
+    private void notifyRefundNeeded(Long orderId, StatusOrder status) {
+        for (Long staffId : userRepository.findIdsByRoleIn(List.of(UserRole.ADMIN, UserRole.STAFF))) {
+            outboxService.enqueueNotification(NotificationRequestDTO.builder()
+                    .content("Đơn hàng #" + orderId + " đã " + status + " nhưng vừa được thanh toán, cần hoàn tiền")
+                    .url("http://localhost:5173/admin/OrderAdmin")
+                    .type(NotificationType.PERSONAL)
+                    .userId(staffId)
+                    .build());
+        }
     }
 
 
@@ -197,91 +412,32 @@ public class OrdersService {
     private OrdersDTO mapToDTO(Orders order) {
         if (order == null) return null;
 
-        OrdersDTO dto = new OrdersDTO();
-
-        dto.setId(order.getId());
-        dto.setUserId(order.getUsers() != null ? order.getUsers().getId() : null);
-        dto.setUserFullName(order.getUsers().getFullName());
-        dto.setShippingAddress(order.getShippingAddress());
-        dto.setPhoneNumber(order.getPhoneNumber());
-        dto.setPaymentType(order.getPaymentType());
-        dto.setPaymentStatus(order.getPaymentStatus());
-        dto.setStatus(order.getStatus());
-        dto.setOrderDate(order.getOrderDate());
-        dto.setTotalAmount(order.getTotalAmount());
-
-        if (order.getVoucher() != null) {
-            dto.setVoucherCode(order.getVoucher().getCode());
-        }
-
-        // Mapping order details
-        dto.setOrderDetails(
-                order.getOrderDetails()
-                        .stream()
-                        .map(od -> new OrderDetailDTO(
-                                od.getId(),
-                                od.getBookVariant().getId(),
-                                od.getBookVariant().getBook().getTitle(),
-                                od.getQuantity(),
-                                od.getPricePurchased(),
-
-                                // total price
-                                od.getQuantity() * od.getPricePurchased(),
-
-                                // imageUrl (ảnh đầu tiên)
-                                (od.getBookVariant().getImages() != null
-                                        && !od.getBookVariant().getImages().isEmpty())
-                                        ? od.getBookVariant().getImages().iterator().next().getImageUrl()
-                                        : null
-                        ))
-                        .collect(Collectors.toList())
-        );
-        return dto;
+        // Đơn lẻ: ảnh lấy qua lazy load của variant
+        return OrderPageReader.toDTO(order, variant ->
+                (variant.getImages() != null && !variant.getImages().isEmpty())
+                        ? variant.getImages().iterator().next().getImageUrl()
+                        : null);
     }
-    private void deductVariantStock(Long orderId) {
-
-        List<OrderDetails> details = orderDetailRepository.findByOrdersId(orderId);
-
-        for (OrderDetails detail : details) {
-            BookVariants variant = detail.getBookVariant();
-
-            int qty = detail.getQuantity();
-
-            if (variant.getQuantity() < qty) {
-                throw new RuntimeException("Không đủ hàng cho biến thể: " + variant.getId());
-            }
-
-            variant.setQuantity(variant.getQuantity() - qty);
 
-            variant.setSold(variant.getSold() + qty);
-
-            bookVariantsRepository.save(variant);
-        }
+    private void insertOrderDetails(Long orderId, List<OrderLineResolver.OrderLine> lines) {
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO orders_details (order_id, book_variant_id, quantity, price_purchased) VALUES (?, ?, ?, ?)",
+                lines,
+                lines.size(),
+                (ps, line) -> {
+                    ps.setLong(1, orderId);
+                    ps.setLong(2, line.variant().getId());
+                    ps.setInt(3, line.quantity());
+                    ps.setDouble(4, line.unitPrice());
+                });
     }
-    private void restoreVariantStock(Long orderId) {
-
-        List<OrderDetails> details = orderDetailRepository.findByOrdersId(orderId);
-
-        for (OrderDetails detail : details) {
-            BookVariants variant = detail.getBookVariant();
-
-            int qty = detail.getQuantity();
 
-            variant.setQuantity(variant.getQuantity() + qty);
-
-            variant.setSold(variant.getSold() - qty);
-
-            bookVariantsRepository.save(variant);
-        }
-    }
     // ================= HELPER: TOTAL AMOUNT =================
-    private BigDecimal calculateTotalAmount(Set<OrderDetails> details, Voucher voucher) {
+    private BigDecimal calculateTotalAmount(List<OrderLineResolver.OrderLine> lines, Voucher voucher) {
 
         // 1. Tính tổng từ Double → BigDecimal
-        BigDecimal total = details.stream()
-                .map(d -> BigDecimal.valueOf(
-                        d.getPricePurchased() * d.getQuantity()
-                ))
+        BigDecimal total = lines.stream()
+                .map(line -> BigDecimal.valueOf(line.subtotal()))
                 .reduce(BigDecimal.ZERO, BigDecimal::add);
 
         // 2. Áp dụng voucher
@@ -7,24 +7,26 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import com.bookstore.backend.DTO.NotificationRequestDTO;
+import com.bookstore.backend.service.metrics.LiveSalesMetrics;
+import com.bookstore.backend.service.outbox.OutboxService;
+import com.bookstore.backend.utils.TransactionUtils;
 
 import java.math.BigDecimal;
-import java.util.HashMap;
-import java.util.Map;
 
 @Service
 public class PaymentService {
 
     private final OrdersService ordersService;
-    private final NotificationService notificationService;
-    private final EmailService emailService;
-    private final Map<String, Long> pendingPayments = new HashMap<>();
+    private final OutboxService outboxService;
+    private final PendingPaymentRegistry pendingPayments;
+    private final LiveSalesMetrics liveSalesMetrics;
 
     @Autowired
-    public PaymentService(OrdersService ordersService, NotificationService notificationService, EmailService emailService) {
+    public PaymentService(OrdersService ordersService, OutboxService outboxService, PendingPaymentRegistry pendingPayments, LiveSalesMetrics liveSalesMetrics) {
         this.ordersService = ordersService;
-        this.notificationService = notificationService;
-        this.emailService = emailService;
+        this.outboxService = outboxService;
+        this.pendingPayments = pendingPayments;
+        this.liveSalesMetrics = liveSalesMetrics;
     }
 
     @Transactional
@@ -41,109 +43,81 @@ public class PaymentService {
         
         String paymentKey = "payment_" + orderId + "_" + System.currentTimeMillis();
         
-        pendingPayments.put(paymentKey, orderId);
+        pendingPayments.register(paymentKey, orderId);
         
         return paymentKey;
     }
 
     @Transactional
     public void markPaymentSuccess(String paymentKey, String transactionNo, String transactionDate) throws Exception {
-        Long orderId = pendingPayments.get(paymentKey);
-        if (orderId == null) {
-            throw new Exception("Payment information not found or expired");
+        Long orderId = pendingPayments.findOrderId(paymentKey)
+                .orElseThrow(() -> new Exception("Payment information not found or expired"));
+        // Callback trùng / node khác đã xử lý -> không cập nhật và gửi thông báo lần nữa
+        if (!pendingPayments.complete(paymentKey, PaymentStatus.PAID, transactionNo)) {
+            throw new Exception("Payment has already been processed");
         }
 
         Orders order = ordersService.getOrderEntityById(orderId);
         Long userIdFromOrder = order.getUsers().getId();
 
-        ordersService.updatePaymentStatus(orderId, PaymentStatus.PAID, PaymentType.BANKING);
-        
-        pendingPayments.remove(paymentKey);
-        
+        if (!ordersService.updatePaymentStatus(orderId, PaymentStatus.PAID, PaymentType.BANKING)) {
+            // Tiền về sau khi đơn đã hủy (quá hạn giữ hàng): không xác nhận đơn, nhân viên đã được báo để hoàn tiền
+            System.out.println("⚠️ Order #" + orderId + " was cancelled before payment arrived. Transaction: " + transactionNo);
+            outboxService.enqueueNotification(NotificationRequestDTO.builder()
+                    .content("Đơn hàng #" + orderId + " đã bị hủy do quá hạn thanh toán, khoản thanh toán sẽ được hoàn lại")
+                    .url("http://localhost:5173/payment/result?orderId=" + orderId)
+                    .type(com.bookstore.backend.model.enums.NotificationType.PERSONAL)
+                    .userId(userIdFromOrder)
+                    .build());
+            return;
+        }
+
         System.out.println("✅ Order #" + orderId + " marked as PAID. Transaction: " + transactionNo);
-        NotificationRequestDTO notificationRequest = NotificationRequestDTO.builder()
+
+        // Ghi outbox cùng transaction: callback thanh toán không phải chờ WebSocket / SMTP
+        outboxService.enqueueNotification(NotificationRequestDTO.builder()
                 .content("Thanh toán thành công cho đơn hàng #" + orderId + " của bạn")
                 .url("http://localhost:5173/payment/result?orderId=" + orderId)
                 .type(com.bookstore.backend.model.enums.NotificationType.PERSONAL)
                 .userId(userIdFromOrder)
-                .build();
-        notificationService.sendNotification(notificationRequest);
-
-        // Gửi email xác nhận đơn hàng
-        try {
-            Users user = order.getUsers();
-            com.bookstore.backend.DTO.OrdersDTO orderDTO = ordersService.getOrderById(orderId);
-            
-            emailService.sendOrderConfirmationEmail(
-                user.getEmail(),
-                user.getFullName(),
-                orderDTO
-            );
-            System.out.println("📧 Order confirmation email sent to: " + user.getEmail());
-        } catch (Exception e) {
-            System.err.println("⚠️ Failed to send order confirmation email: " + e.getMessage());
-        }
+                .build());
+
+        Users user = order.getUsers();
+        outboxService.enqueueOrderConfirmationEmail(orderId, user.getEmail(), user.getFullName());
     }
 
     @Transactional
     public void markPaymentFailed(String paymentKey) throws Exception {
-        Long orderId = pendingPayments.get(paymentKey);
-        if (orderId == null) {
-            throw new Exception("Payment information not found or expired");
+        Long orderId = pendingPayments.findOrderId(paymentKey)
+                .orElseThrow(() -> new Exception("Payment information not found or expired"));
+        if (!pendingPayments.complete(paymentKey, PaymentStatus.FAILED, null)) {
+            throw new Exception("Payment has already been processed");
         }
 
         ordersService.updatePaymentStatus(orderId, PaymentStatus.FAILED, null);
-        
-        pendingPayments.remove(paymentKey);
-        
+        // Thanh toán online thất bại cũng là một lần checkout thất bại trên dashboard
+        TransactionUtils.afterCommit(liveSalesMetrics::recordCheckoutFailure);
+
         System.out.println("❌ Order #" + orderId + " marked as FAILED");
     }
 
+    // null nếu chưa xử lý (hoặc không có), ngược lại PAID / FAILED
     public String getPaymentStatus(String paymentKey) {
-        try {
-            Long orderId = pendingPayments.get(paymentKey);
-            if (orderId == null) {
-                // Payment key không tồn tại trong pending -> đã được xử lý rồi
-                // Thử tìm order bằng cách parse orderId từ paymentKey
-                String[] parts = paymentKey.split("_");
-                if (parts.length >= 2) {
-                    orderId = Long.parseLong(parts[1]);
-                    Orders order = ordersService.getOrderEntityById(orderId);
-                    return order.getPaymentStatus() != null ? order.getPaymentStatus().name() : null;
-                }
-                return null;
-            }
-            
-            // Nếu vẫn còn trong pending, chưa xử lý
-            return null;
-        } catch (Exception e) {
-            return null;
-        }
+        return pendingPayments.find(paymentKey)
+                .map(PendingPaymentRegistry.Entry::status)
+                .filter(status -> status != PaymentStatus.PENDING)
+                .map(PaymentStatus::name)
+                .orElse(null);
     }
 
     public BigDecimal calculateFinalAmount(String paymentKey) throws Exception {
-        Long orderId = pendingPayments.get(paymentKey);
-        if (orderId == null) {
-            throw new Exception("Payment information not found");
-        }
-        
+        Long orderId = pendingPayments.findOrderId(paymentKey)
+                .orElseThrow(() -> new Exception("Payment information not found"));
+
         return ordersService.getOrderEntityById(orderId).getTotalAmount();
     }
 
     public Long getOrderIdByPaymentKey(String paymentKey) {
-        Long orderId = pendingPayments.get(paymentKey);
-        if (orderId != null) {
-            return orderId;
-        }
-
-        try {
-            String[] parts = paymentKey.split("_");
-            if (parts.length >= 2) {
-                return Long.parseLong(parts[1]);
-            }
-        } catch (NumberFormatException e) {
-        }
-        
-        return null;
+        return pendingPayments.findOrderId(paymentKey).orElse(null);
     }
 }
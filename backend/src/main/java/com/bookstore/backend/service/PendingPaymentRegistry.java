@@ -0,0 +1,122 @@
+package com.bookstore.backend.service;
+
+import com.bookstore.backend.model.PendingPayment;
+import com.bookstore.backend.model.enums.PaymentStatus;
+import com.bookstore.backend.repository.PendingPaymentRepository;
+import com.bookstore.backend.utils.TransactionUtils;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * Sổ các lượt thanh toán VNPay đang chờ: bảng pending_payment là nguồn chính (dùng chung giữa các node,
+ * không mất khi restart), phía trước là cache in-memory hết hạn theo thời hạn thanh toán của VNPay.
+ * Tra cứu theo paymentKey là tra khóa chính; chuyển trạng thái bằng UPDATE có điều kiện nên
+ * hai callback đồng thời chỉ một cái được xử lý.
+ */
+@Component
+public class PendingPaymentRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(PendingPaymentRegistry.class);
+
+    public record Entry(Long orderId, PaymentStatus status) {
+    }
+
+    private final PendingPaymentRepository pendingPaymentRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration ttl;
+    private final Duration retention;
+    private final Duration completedRetention;
+    private final Cache<String, Entry> cache;
+
+    public PendingPaymentRegistry(PendingPaymentRepository pendingPaymentRepository,
+                                  TransactionTemplate transactionTemplate,
+                                  @Value("${payment.pending.ttl:PT15M}") Duration ttl,
+                                  @Value("${payment.pending.retention:P1D}") Duration retention,
+                                  @Value("${payment.pending.completed-retention:P30D}") Duration completedRetention,
+                                  @Value("${payment.pending.cache-size:10000}") long cacheSize) {
+        this.pendingPaymentRepository = pendingPaymentRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.ttl = ttl;
+        this.retention = retention;
+        this.completedRetention = completedRetention;
+        this.cache = CacheBuilder.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(cacheSize)
+                .build();
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void register(String paymentKey, Long orderId) {
+        LocalDateTime now = LocalDateTime.now();
+        pendingPaymentRepository.save(PendingPayment.builder()
+                .paymentKey(paymentKey)
+                .orderId(orderId)
+                .status(PaymentStatus.PENDING)
+                .createdAt(now)
+                .expiresAt(now.plus(ttl))
+                .build());
+        TransactionUtils.afterCommit(() -> cache.put(paymentKey, new Entry(orderId, PaymentStatus.PENDING)));
+    }
+
+    // orderId không đổi nên cache là đủ
+    public Optional<Long> findOrderId(String paymentKey) {
+        Entry cached = cache.getIfPresent(paymentKey);
+        if (cached != null) {
+            return Optional.of(cached.orderId());
+        }
+        return load(paymentKey).map(Entry::orderId);
+    }
+
+    // Trạng thái PENDING trong cache có thể đã cũ (node khác vừa xử lý callback) -> đọc lại DB
+    public Optional<Entry> find(String paymentKey) {
+        Entry cached = cache.getIfPresent(paymentKey);
+        if (cached != null && cached.status() != PaymentStatus.PENDING) {
+            return Optional.of(cached);
+        }
+        return load(paymentKey);
+    }
+
+    // true nếu lượt gọi này chuyển được PENDING -> status
+    @Transactional(propagation = Propagation.MANDATORY)
+    public boolean complete(String paymentKey, PaymentStatus status, String transactionNo) {
+        if (pendingPaymentRepository.complete(paymentKey, status, transactionNo, LocalDateTime.now()) == 0) {
+            return false;
+        }
+        TransactionUtils.afterCommit(() -> cache.invalidate(paymentKey));
+        return true;
+    }
+
+    // Lượt thanh toán bỏ dở (vẫn PENDING): giữ thêm retention sau khi hết hạn cho callback đến muộn rồi xóa.
+    // Lượt đã PAID / FAILED chỉ xóa sau completed-retention kể từ lúc hoàn tất, để callback lặp lại
+    // vẫn thấy trạng thái cuối thay vì "không tìm thấy"
+    @Scheduled(fixedDelayString = "${payment.pending.sweep-ms:600000}")
+    public int purgeExpired() {
+        LocalDateTime now = LocalDateTime.now();
+        Integer deleted = transactionTemplate.execute(status ->
+                pendingPaymentRepository.deleteAbandonedBefore(now.minus(retention))
+                        + pendingPaymentRepository.deleteCompletedBefore(now.minus(completedRetention)));
+        if (deleted != null && deleted > 0) {
+            logger.info("Đã xóa {} lượt thanh toán quá hạn", deleted);
+        }
+        return deleted != null ? deleted : 0;
+    }
+
+    private Optional<Entry> load(String paymentKey) {
+        Optional<Entry> entry = pendingPaymentRepository.findById(paymentKey)
+                .map(payment -> new Entry(payment.getOrderId(), payment.getStatus()));
+        entry.ifPresent(value -> cache.put(paymentKey, value));
+        return entry;
+    }
+}
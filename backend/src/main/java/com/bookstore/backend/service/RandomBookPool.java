@@ -0,0 +1,125 @@
+package com.bookstore.backend.service;
+
+import com.bookstore.backend.DTO.BookDTO;
+import com.bookstore.backend.service.search.BookDocument;
+import com.bookstore.backend.service.search.BookSearchIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
+
+/**
+ * Pool sách ngẫu nhiên cho trang chủ: định kỳ lấy mẫu id từ index in-memory,
+ * load sẵn BookDTO theo lô rồi phục vụ từ bộ nhớ thay vì ORDER BY RANDOM() mỗi request.
+ * Với session key, mỗi sách được xếp theo hash(session key, id sách) (rendezvous hashing) nên thứ tự
+ * không phụ thuộc lượt làm mới pool: các sách còn nằm trong pool giữ nguyên thứ tự tương đối với nhau,
+ * chỉ sách mới vào pool chen vào vị trí của nó. Pool lấy mẫu lại định kỳ nên tập sách vẫn thay đổi dần.
+ */
+@Component
+public class RandomBookPool {
+
+    private static final Logger logger = LoggerFactory.getLogger(RandomBookPool.class);
+
+    private final BookSearchIndex bookSearchIndex;
+    private final BookCatalogReader bookCatalogReader;
+    private final int poolSize;
+
+    private volatile List<BookDTO> books = List.of();
+
+    public RandomBookPool(BookSearchIndex bookSearchIndex,
+                          BookCatalogReader bookCatalogReader,
+                          @Value("${catalog.random-pool.size:270}") int poolSize) {
+        this.bookSearchIndex = bookSearchIndex;
+        this.bookCatalogReader = bookCatalogReader;
+        this.poolSize = poolSize;
+    }
+
+    // Lần đầu được gọi bởi CatalogIndexer sau khi build index, sau đó chạy định kỳ
+    @Scheduled(fixedDelayString = "${catalog.random-pool.refresh-ms:600000}",
+            initialDelayString = "${catalog.random-pool.refresh-ms:600000}")
+    public void reshuffle() {
+        List<Long> ids = new ArrayList<>();
+        for (BookDocument document : bookSearchIndex.allDocuments()) {
+            ids.add(document.id());
+        }
+        List<Long> sample = shuffledPrefix(ids, poolSize, new SplittableRandom());
+        List<BookDTO> loaded = bookCatalogReader.loadBooks(sample);
+
+        synchronized (this) {
+            books = List.copyOf(loaded);
+        }
+        logger.debug("Đã làm mới pool sách ngẫu nhiên: {} sách", loaded.size());
+    }
+
+    // Lấy count sách từ pool; sessionKey null -> thứ tự ngẫu nhiên mỗi lần gọi
+    public List<BookDTO> pick(String sessionKey, int count) {
+        List<BookDTO> current = books;
+        if (sessionKey == null) {
+            return shuffledPrefix(current, count, new SplittableRandom());
+        }
+        long seed = mix(sessionKey.hashCode());
+        return current.stream()
+                .sorted(Comparator.comparingLong(book -> mix(seed + book.getId() * 0x9E3779B97F4A7C15L)))
+                .limit(count)
+                .toList();
+    }
+
+    // Sách trong pool vừa được sửa -> load lại DTO của riêng sách đó
+    public void refreshBook(Long bookId) {
+        if (!contains(bookId)) {
+            return;
+        }
+        List<BookDTO> reloaded = bookCatalogReader.loadBooks(List.of(bookId));
+        synchronized (this) {
+            List<BookDTO> updated = new ArrayList<>(books.size());
+            for (BookDTO book : books) {
+                if (!book.getId().equals(bookId)) {
+                    updated.add(book);
+                } else if (!reloaded.isEmpty()) {
+                    updated.add(reloaded.get(0));
+                }
+            }
+            books = List.copyOf(updated);
+        }
+    }
+
+    public synchronized void removeBook(Long bookId) {
+        if (!contains(bookId)) {
+            return;
+        }
+        books = books.stream()
+                .filter(book -> !book.getId().equals(bookId))
+                .toList();
+    }
+
+    private boolean contains(Long bookId) {
+        return books.stream().anyMatch(book -> book.getId().equals(bookId));
+    }
+
+    // Bộ trộn 64-bit của SplitMix64: id liền nhau cho điểm rải đều
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    // Fisher-Yates dừng sớm: chỉ xáo count phần tử đầu, không động vào list gốc
+    private static <T> List<T> shuffledPrefix(List<T> source, int count, RandomGenerator random) {
+        List<T> items = new ArrayList<>(source);
+        int limit = Math.min(count, items.size());
+        for (int i = 0; i < limit; i++) {
+            int j = i + random.nextInt(items.size() - i);
+            T tmp = items.get(i);
+            items.set(i, items.get(j));
+            items.set(j, tmp);
+        }
+        return new ArrayList<>(items.subList(0, limit));
+    }
+}
@@ -1,55 +1,45 @@
 package com.bookstore.backend.service;
 
-import com.bookstore.backend.repository.OrderDetailRepository;
-import com.bookstore.backend.repository.OrdersRepository;
+import com.bookstore.backend.model.DailySales;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalDateTime;
+import java.time.LocalDate;
 import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.stream.Collectors;
 
+// Thống kê doanh thu đọc từ bảng daily_sales (tối đa 366 dòng mỗi lần), không load đơn hàng
 @Service
 @RequiredArgsConstructor
 public class StatisticsService {
 
-    private final OrdersRepository ordersRepository;
-    private final OrderDetailRepository orderDetailRepository;
+    private final DailySalesRollup dailySalesRollup;
 
     public Map<String, Object> getRevenueLast6Months() {
-        LocalDateTime now = LocalDateTime.now();
-        LocalDateTime sixMonthsAgo = now.minusMonths(6).withDayOfMonth(1).withHour(0).withMinute(0).withSecond(0);
-
-        // Lấy tất cả orders trong 6 tháng gần nhất
-        var orders = ordersRepository.findAllByOrderDateBetween(sixMonthsAgo, now);
+        LocalDate today = dailySalesRollup.today();
+        YearMonth current = YearMonth.from(today);
+        YearMonth first = current.minusMonths(5);
 
         // Tạo map để lưu dữ liệu theo tháng
         Map<String, MonthlyStats> monthlyStatsMap = new LinkedHashMap<>();
-        
+
         // Khởi tạo 6 tháng gần nhất với giá trị 0
         for (int i = 5; i >= 0; i--) {
-            YearMonth yearMonth = YearMonth.now().minusMonths(i);
+            YearMonth yearMonth = current.minusMonths(i);
             String monthKey = yearMonth.format(DateTimeFormatter.ofPattern("MM/yyyy"));
             monthlyStatsMap.put(monthKey, new MonthlyStats(0, 0.0));
         }
 
-        // Tính toán thống kê cho từng order
-        orders.forEach(order -> {
-            YearMonth orderMonth = YearMonth.from(order.getOrderDate());
-            String monthKey = orderMonth.format(DateTimeFormatter.ofPattern("MM/yyyy"));
-            
-            if (monthlyStatsMap.containsKey(monthKey)) {
-                MonthlyStats stats = monthlyStatsMap.get(monthKey);
-                
-                // Tính tổng số lượng sách và tổng tiền từ order details
-                order.getOrderDetails().forEach(detail -> {
-                    stats.totalBooks += detail.getQuantity();
-                    stats.totalRevenue += detail.getQuantity() * detail.getPricePurchased();
-                });
+        // Cộng các ngày vào tháng tương ứng
+        for (DailySales day : dailySalesRollup.findRange(first.atDay(1), today)) {
+            String monthKey = YearMonth.from(day.getSaleDate()).format(DateTimeFormatter.ofPattern("MM/yyyy"));
+            MonthlyStats stats = monthlyStatsMap.get(monthKey);
+            if (stats != null) {
+                stats.add(day);
             }
-        });
+        }
 
         // Chuyển đổi sang format trả về
         List<String> months = new ArrayList<>(monthlyStatsMap.keySet());
@@ -75,40 +65,27 @@ public class StatisticsService {
     }
 
     public Map<String, Object> getRevenueCurrentYear() {
-        LocalDateTime now = LocalDateTime.now();
-        int currentYear = now.getYear();
-        LocalDateTime startOfYear = LocalDateTime.of(currentYear, 1, 1, 0, 0, 0);
-        LocalDateTime endOfYear = LocalDateTime.of(currentYear, 12, 31, 23, 59, 59);
-
-        // Lấy tất cả orders trong năm hiện tại
-        var orders = ordersRepository.findAllByOrderDateBetween(startOfYear, endOfYear);
+        int currentYear = dailySalesRollup.today().getYear();
 
         // Tạo map để lưu dữ liệu theo tháng (12 tháng)
         Map<Integer, MonthlyStats> monthlyStatsMap = new LinkedHashMap<>();
-        
+
         // Khởi tạo 12 tháng với giá trị 0
         for (int i = 1; i <= 12; i++) {
             monthlyStatsMap.put(i, new MonthlyStats(0, 0.0));
         }
 
-        // Tính toán thống kê cho từng order
-        orders.forEach(order -> {
-            int orderMonth = order.getOrderDate().getMonthValue();
-            MonthlyStats stats = monthlyStatsMap.get(orderMonth);
-            
-            // Tính tổng số lượng sách và tổng tiền từ order details
-            order.getOrderDetails().forEach(detail -> {
-                stats.totalBooks += detail.getQuantity();
-                stats.totalRevenue += detail.getQuantity() * detail.getPricePurchased();
-            });
-        });
+        // Cộng các ngày trong năm vào tháng tương ứng
+        for (DailySales day : dailySalesRollup.findRange(LocalDate.of(currentYear, 1, 1), LocalDate.of(currentYear, 12, 31))) {
+            monthlyStatsMap.get(day.getSaleDate().getMonthValue()).add(day);
+        }
 
         // Chuyển đổi sang format trả về
         List<String> months = new ArrayList<>();
         for (int i = 1; i <= 12; i++) {
             months.add("Tháng " + i);
         }
-        
+
         List<Integer> booksSold = new ArrayList<>();
         List<Double> revenues = new ArrayList<>();
         for (int i = 1; i <= 12; i++) {
@@ -132,6 +109,19 @@ public class StatisticsService {
         return result;
     }
 
+    // Tính lại daily_sales cho khoảng ngày (dữ liệu cũ, đối soát); to null = hôm nay
+    public Map<String, Object> backfill(LocalDate from, LocalDate to) {
+        if (to == null) {
+            to = dailySalesRollup.today();
+        }
+        int days = dailySalesRollup.backfill(from, to);
+        Map<String, Object> result = new HashMap<>();
+        result.put("from", from);
+        result.put("to", to);
+        result.put("days", days);
+        return result;
+    }
+
     // Inner class để lưu thống kê theo tháng
     private static class MonthlyStats {
         int totalBooks;
@@ -141,5 +131,10 @@ public class StatisticsService {
             this.totalBooks = totalBooks;
             this.totalRevenue = totalRevenue;
         }
+
+        void add(DailySales day) {
+            totalBooks += day.getBooksSold().intValue();
+            totalRevenue += day.getRevenue().doubleValue();
+        }
     }
 }
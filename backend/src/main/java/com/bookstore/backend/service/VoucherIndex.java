@@ -0,0 +1,195 @@
+package com.bookstore.backend.service;
+
+import com.bookstore.backend.model.Voucher;
+import com.bookstore.backend.repository.VoucherRepository;
+import com.bookstore.backend.utils.TimingWheel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Index in-memory các voucher đang ACTIVE theo code, để validate / liệt kê voucher không phải query DB.
+ * - startDate / endDate được đặt lên timing wheel; tới mốc thì voucher được bật / gỡ khỏi tập đang hiệu lực,
+ *   nên đọc chỉ là tra map, không so ngày mỗi lần gọi
+ * - ghi qua VoucherServiceImpl (tạo, sửa, xóa, dùng / trả lượt voucher) báo id voucher sau khi commit, index đọc lại
+ *   dòng mới nhất từ DB thay vì nhận bản entity của transaction đó: hook afterCommit của các transaction đồng thời
+ *   có thể chạy sai thứ tự, bản ACTIVE cũ không được phép đè lên bản đã EXPIRED / hết lượt
+ * - nạp lại toàn bộ định kỳ để theo kịp thay đổi từ node khác
+ * Index chỉ phục vụ hiển thị / kiểm tra trước; lượt dùng thật vẫn được lấy bằng UPDATE có điều kiện trong DB.
+ */
+@Component
+public class VoucherIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(VoucherIndex.class);
+    private static final int WHEEL_SIZE = 3600;
+
+    private final VoucherRepository voucherRepository;
+    // Đọc trong transaction riêng: afterCommit vẫn gắn với EntityManager cũ, findById sẽ trả lại entity đã cache
+    private final TransactionTemplate readTransaction;
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final TimingWheel<String> wheel;
+
+    // Voucher status ACTIVE chưa quá endDate
+    private final Map<String, Voucher> byCode = new ConcurrentHashMap<>();
+    // Tập con của byCode đang trong khoảng [startDate, endDate)
+    private final Set<String> inWindow = ConcurrentHashMap.newKeySet();
+    private volatile boolean loaded;
+
+    public VoucherIndex(VoucherRepository voucherRepository,
+                        PlatformTransactionManager transactionManager,
+                        @Value("${voucher.index.tick-ms:1000}") long tickMillis) {
+        this.voucherRepository = voucherRepository;
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.readTransaction.setReadOnly(true);
+        this.wheel = new TimingWheel<>(tickMillis, WHEEL_SIZE, System.currentTimeMillis());
+    }
+
+    public Optional<Voucher> find(String code) {
+        ensureLoaded();
+        return Optional.ofNullable(code).map(byCode::get);
+    }
+
+    // Tương đương Voucher.isValid() nhưng không đọc DB và không so ngày
+    public boolean isValid(String code) {
+        ensureLoaded();
+        if (code == null || !inWindow.contains(code)) {
+            return false;
+        }
+        Voucher voucher = byCode.get(code);
+        return voucher != null && hasRemaining(voucher);
+    }
+
+    public List<Voucher> activeVouchers() {
+        ensureLoaded();
+        return inWindow.stream()
+                .map(byCode::get)
+                .filter(voucher -> voucher != null && hasRemaining(voucher))
+                .sorted(Comparator.comparing(Voucher::getId))
+                .toList();
+    }
+
+    // Gọi sau khi voucher được lưu (sau commit). Đọc lại dòng trong lock: lượt refresh chạy sau cùng luôn
+    // thấy mọi commit đã gọi tới nó, nên index hội tụ về trạng thái mới nhất bất kể thứ tự các hook
+    public synchronized void refresh(Long voucherId) {
+        if (!loaded) {
+            return; // lần nạp đầu tiên sẽ đọc bản mới nhất từ DB
+        }
+        Optional<Voucher> current = readTransaction.execute(status -> voucherRepository.findById(voucherId));
+        Voucher voucher = current != null ? current.orElse(null) : null;
+        // Voucher đã bị xóa hoặc đổi code: gỡ bản theo code cũ
+        byCode.values().stream()
+                .filter(existing -> voucherId.equals(existing.getId())
+                        && (voucher == null || !existing.getCode().equals(voucher.getCode())))
+                .map(Voucher::getCode)
+                .toList()
+                .forEach(this::remove);
+        if (voucher != null) {
+            index(voucher, LocalDateTime.now());
+        }
+    }
+
+    public synchronized void remove(String code) {
+        byCode.remove(code);
+        inWindow.remove(code);
+    }
+
+    // Mỗi tick: lấy các voucher tới mốc bắt đầu / kết thúc và tính lại trạng thái
+    @Scheduled(fixedRateString = "${voucher.index.tick-ms:1000}")
+    public synchronized void tick() {
+        if (!loaded) {
+            return;
+        }
+        List<String> due = wheel.advance(System.currentTimeMillis());
+        LocalDateTime now = LocalDateTime.now();
+        for (String code : due) {
+            Voucher voucher = byCode.get(code);
+            if (voucher != null) {
+                evaluate(voucher, now);
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${voucher.index.reload-ms:300000}")
+    public synchronized void reload() {
+        List<Voucher> vouchers = voucherRepository.findByStatus(Voucher.VoucherStatus.ACTIVE);
+        byCode.clear();
+        inWindow.clear();
+        wheel.clear();
+        LocalDateTime now = LocalDateTime.now();
+        for (Voucher voucher : vouchers) {
+            index(voucher, now);
+        }
+        loaded = true;
+        logger.debug("Voucher index: {} voucher ACTIVE, {} đang hiệu lực", byCode.size(), inWindow.size());
+    }
+
+    private void ensureLoaded() {
+        if (!loaded) {
+            synchronized (this) {
+                if (!loaded) {
+                    reload();
+                }
+            }
+        }
+    }
+
+    private void index(Voucher voucher, LocalDateTime now) {
+        String code = voucher.getCode();
+        if (voucher.getStatus() != Voucher.VoucherStatus.ACTIVE
+                || (voucher.getEndDate() != null && !now.isBefore(voucher.getEndDate()))) {
+            remove(code);
+            return;
+        }
+        Voucher previous = byCode.put(code, voucher);
+        // Chỉ đặt mốc khi ngày thay đổi (mỗi lượt dùng voucher đều put lại).
+        // Mốc cũ còn trên wheel khi tới hạn chỉ tính lại trạng thái nên vô hại.
+        boolean datesChanged = previous == null
+                || !Objects.equals(previous.getStartDate(), voucher.getStartDate())
+                || !Objects.equals(previous.getEndDate(), voucher.getEndDate());
+        if (datesChanged) {
+            if (voucher.getStartDate() != null && now.isBefore(voucher.getStartDate())) {
+                wheel.schedule(code, toMillis(voucher.getStartDate()));
+            }
+            if (voucher.getEndDate() != null) {
+                wheel.schedule(code, toMillis(voucher.getEndDate()));
+            }
+        }
+        evaluate(voucher, now);
+    }
+
+    private void evaluate(Voucher voucher, LocalDateTime now) {
+        String code = voucher.getCode();
+        if (voucher.getEndDate() != null && !now.isBefore(voucher.getEndDate())) {
+            remove(code);
+        } else if (voucher.getStartDate() == null || !now.isBefore(voucher.getStartDate())) {
+            inWindow.add(code);
+        } else {
+            inWindow.remove(code);
+        }
+    }
+
+    private static boolean hasRemaining(Voucher voucher) {
+        return voucher.getQuantity() == null
+                || (voucher.getUsedCount() != null ? voucher.getUsedCount() : 0) < voucher.getQuantity();
+    }
+
+    private long toMillis(LocalDateTime dateTime) {
+        return dateTime.atZone(zone).toInstant().toEpochMilli();
+    }
+}
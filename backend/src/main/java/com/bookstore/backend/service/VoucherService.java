@@ -2,6 +2,7 @@ package com.bookstore.backend.service;
 
 import com.bookstore.backend.model.Voucher;
 import java.util.List;
+import java.util.Optional;
 
 public interface VoucherService {
     List<Voucher> getAllVouchers();
@@ -13,5 +14,13 @@ public interface VoucherService {
     List<Voucher> searchVouchers(String keyword);
     List<Voucher> getActiveVouchers();
     boolean validateVoucher(String code);
+    // Voucher đang hiệu lực từ index in-memory
+    Optional<Voucher> findActiveVoucher(String code);
     Voucher applyVoucher(String code);
+    // Lấy một lượt dùng cho user (mỗi user một lần); userId null = không ghi theo user
+    Voucher applyVoucher(String code, Long userId);
+    // Như trên, ghi kèm đơn dùng lượt này để trả lại khi đơn bị hủy
+    Voucher applyVoucher(String code, Long userId, Long orderId);
+    // Đơn bị hủy / hết hạn thanh toán: xóa lượt dùng của user và trả lại quantity cho voucher (chỉ một lần)
+    void releaseVoucher(Long orderId);
 }
@@ -0,0 +1,73 @@
+package com.bookstore.backend.service.exporter;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Ghi CSV (RFC 4180), ngược với CsvRecordReader: trường chứa dấu phẩy, nháy kép hoặc xuống dòng
+ * được đặt trong nháy kép, nháy kép bên trong nhân đôi.
+ * Chuỗi bắt đầu bằng = + - @ (hoặc tab / CR) được thêm dấu ' phía trước để Excel không chạy như công thức
+ * (CSV injection); giá trị số giữ nguyên nên số âm không bị đổi.
+ */
+public class CsvRecordWriter implements RecordWriter {
+
+    // BOM để Excel nhận đúng UTF-8 (tên sách, tên khách hàng tiếng Việt)
+    private static final char BOM = '﻿';
+
+    private final Writer writer;
+
+    public CsvRecordWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    @Override
+    public void header(List<String> columns) throws IOException {
+        writer.write(BOM);
+        row(columns.toArray());
+    }
+
+    @Override
+    public void row(Object[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            if (values[i] instanceof Number) {
+                writeField(values[i].toString());
+            } else if (values[i] != null) {
+                writeField(neutralize(values[i].toString()));
+            }
+        }
+        writer.write("\r\n");
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    private static String neutralize(String value) {
+        if (value.isEmpty()) {
+            return value;
+        }
+        char first = value.charAt(0);
+        boolean formula = first == '=' || first == '+' || first == '-' || first == '@' || first == '\t' || first == '\r';
+        return formula ? "'" + value : value;
+    }
+
+    private void writeField(String value) throws IOException {
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+}
@@ -0,0 +1,24 @@
+package com.bookstore.backend.service.exporter;
+
+// Định dạng file export: CSV (mở bằng Excel) hoặc NDJSON (mỗi dòng một object JSON)
+public enum ExportFormat {
+
+    CSV("text/csv;charset=UTF-8", "csv"),
+    NDJSON("application/x-ndjson", "ndjson");
+
+    private final String contentType;
+    private final String extension;
+
+    ExportFormat(String contentType, String extension) {
+        this.contentType = contentType;
+        this.extension = extension;
+    }
+
+    public String contentType() {
+        return contentType;
+    }
+
+    public String extension() {
+        return extension;
+    }
+}
@@ -0,0 +1,58 @@
+package com.bookstore.backend.service.exporter;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.util.List;
+
+// Mỗi bản ghi là một object JSON trên một dòng, key là tên cột
+public class NdjsonRecordWriter implements RecordWriter {
+
+    private final JsonGenerator generator;
+    private List<String> columns = List.of();
+
+    public NdjsonRecordWriter(Writer writer) throws IOException {
+        this.generator = new JsonFactory().createGenerator(writer);
+        // Ngăn cách các object bằng xuống dòng thay vì khoảng trắng
+        this.generator.setRootValueSeparator(new SerializedString("\n"));
+    }
+
+    @Override
+    public void header(List<String> columns) {
+        this.columns = List.copyOf(columns);
+    }
+
+    @Override
+    public void row(Object[] values) throws IOException {
+        generator.writeStartObject();
+        for (int i = 0; i < values.length; i++) {
+            generator.writeFieldName(columns.get(i));
+            writeValue(values[i]);
+        }
+        generator.writeEndObject();
+    }
+
+    @Override
+    public void close() throws IOException {
+        generator.writeRaw('\n');
+        generator.close();
+    }
+
+    private void writeValue(Object value) throws IOException {
+        if (value == null) {
+            generator.writeNull();
+        } else if (value instanceof BigDecimal decimal) {
+            generator.writeNumber(decimal);
+        } else if (value instanceof Long || value instanceof Integer) {
+            generator.writeNumber(((Number) value).longValue());
+        } else if (value instanceof Number number) {
+            generator.writeNumber(number.doubleValue());
+        } else {
+            generator.writeString(value.toString());
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.bookstore.backend.service.exporter;
+
+import com.bookstore.backend.model.enums.StatusOrder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataRetrievalFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Export đơn hàng, chi tiết đơn và doanh thu theo ngày cho admin.
+ * Dữ liệu đọc bằng cursor JDBC forward-only (fetch size cố định) và ghi thẳng ra response từng dòng,
+ * nên bộ nhớ không tăng theo số đơn và không có Hibernate session nào mở suốt lượt export.
+ * Số lượt export chạy cùng lúc bị giới hạn để không chiếm hết connection pool.
+ */
+@Service
+public class OrderExportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderExportService.class);
+
+    // Khoảng ngày đặt hàng [from, to] (tính cả ngày to) và trạng thái; null = không lọc
+    public record Filter(LocalDate from, LocalDate to, StatusOrder status) {
+    }
+
+    private static final List<String> ORDER_COLUMNS = List.of(
+            "id", "orderDate", "status", "paymentStatus", "paymentType", "totalAmount",
+            "customerName", "customerEmail", "phoneNumber", "shippingAddress", "voucherCode");
+
+    private static final String ORDER_SQL = """
+            SELECT o.id, o.order_date, o.status, o.payment_status, o.payment_type, o.total_amount,
+                   u.fullname, u.email, o.phone_number, o.shipping_address, v.code
+            FROM orders o
+            LEFT JOIN users u ON u.id = o.user_id
+            LEFT JOIN voucher v ON v.id = o.voucher_code
+            """;
+
+    private static final List<String> DETAIL_COLUMNS = List.of(
+            "orderId", "orderDate", "status", "variantId", "isbn", "title", "quantity", "pricePurchased");
+
+    private static final String DETAIL_SQL = """
+            SELECT o.id, o.order_date, o.status, d.book_variant_id, bv.isbn, b.title, d.quantity, d.price_purchased
+            FROM orders_details d
+            JOIN orders o ON o.id = d.order_id
+            LEFT JOIN book_variants bv ON bv.id = d.book_variant_id
+            LEFT JOIN book b ON b.id = bv.book_id
+            """;
+
+    private static final List<String> REVENUE_COLUMNS = List.of("date", "orderCount", "booksSold", "revenue");
+
+    private static final String REVENUE_SQL = "SELECT sale_date, order_count, books_sold, revenue FROM daily_sales";
+
+    private final DataSource dataSource;
+    private final int fetchSize;
+    private final Semaphore slots;
+
+    public OrderExportService(DataSource dataSource,
+                              @Value("${export.fetch-size:500}") int fetchSize,
+                              @Value("${export.max-concurrent:2}") int maxConcurrent) {
+        this.dataSource = dataSource;
+        this.fetchSize = fetchSize;
+        this.slots = new Semaphore(maxConcurrent);
+    }
+
+    public StreamingResponseBody exportOrders(ExportFormat format, Filter filter) {
+        Query query = orderQuery(ORDER_SQL, filter);
+        query.sql.append(" ORDER BY o.id");
+        return stream(format, ORDER_COLUMNS, query);
+    }
+
+    public StreamingResponseBody exportOrderDetails(ExportFormat format, Filter filter) {
+        Query query = orderQuery(DETAIL_SQL, filter);
+        query.sql.append(" ORDER BY o.id, d.id");
+        return stream(format, DETAIL_COLUMNS, query);
+    }
+
+    // Doanh thu lấy từ daily_sales nên không lọc theo trạng thái (chỉ gồm đơn DELIVERY / SUCCESS)
+    public StreamingResponseBody exportRevenue(ExportFormat format, LocalDate from, LocalDate to) {
+        Query query = new Query(REVENUE_SQL);
+        if (from != null) {
+            query.where("sale_date >= ?", from);
+        }
+        if (to != null) {
+            query.where("sale_date <= ?", to);
+        }
+        query.sql.append(" ORDER BY sale_date");
+        return stream(format, REVENUE_COLUMNS, query);
+    }
+
+    private static Query orderQuery(String select, Filter filter) {
+        if (filter.from() != null && filter.to() != null && filter.from().isAfter(filter.to())) {
+            throw new IllegalArgumentException("from phải trước hoặc bằng to");
+        }
+        Query query = new Query(select);
+        // order_date lưu giờ địa phương của DB, so sánh theo mốc đầu ngày để dùng được index
+        if (filter.from() != null) {
+            query.where("o.order_date >= ?", filter.from().atStartOfDay());
+        }
+        if (filter.to() != null) {
+            query.where("o.order_date < ?", filter.to().plusDays(1).atStartOfDay());
+        }
+        if (filter.status() != null) {
+            query.where("o.status = ?", filter.status().name());
+        }
+        return query;
+    }
+
+    // Chỗ chỉ được giữ bên trong body: request hết hạn / lỗi trước khi body chạy thì không có gì để trả.
+    // Kiểm tra trước khi trả body để phần lớn request bị từ chối nhận 429 ngay, chưa gửi header file.
+    private StreamingResponseBody stream(ExportFormat format, List<String> columns, Query query) {
+        if (slots.availablePermits() == 0) {
+            throw busy();
+        }
+        return out -> {
+            if (!slots.tryAcquire()) {
+                throw busy();
+            }
+            try {
+                write(out, format, columns, query);
+            } finally {
+                slots.release();
+            }
+        };
+    }
+
+    private static ResponseStatusException busy() {
+        return new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "Đang có quá nhiều lượt export, vui lòng thử lại sau");
+    }
+
+    private void write(OutputStream out, ExportFormat format, List<String> columns, Query query) throws IOException {
+        long started = System.currentTimeMillis();
+        long rows = 0;
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        try (Connection connection = dataSource.getConnection()) {
+            // PostgreSQL chỉ dùng cursor (fetch size) khi tắt autocommit
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            connection.setReadOnly(true);
+            try (PreparedStatement statement = connection.prepareStatement(query.sql.toString(),
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                statement.setFetchSize(fetchSize);
+                for (int i = 0; i < query.params.size(); i++) {
+                    statement.setObject(i + 1, query.params.get(i));
+                }
+                try (ResultSet rs = statement.executeQuery();
+                     RecordWriter records = createWriter(format, writer)) {
+                    records.header(columns);
+                    Object[] values = new Object[columns.size()];
+                    while (rs.next()) {
+                        for (int i = 0; i < values.length; i++) {
+                            values[i] = readValue(rs, i + 1);
+                        }
+                        records.row(values);
+                        rows++;
+                    }
+                }
+            } finally {
+                connection.rollback();
+                connection.setReadOnly(false);
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException ex) {
+            throw new DataRetrievalFailureException("Không thể đọc dữ liệu export: " + ex.getMessage(), ex);
+        }
+        logger.info("Export {} xong: {} dòng trong {} ms", format, rows, System.currentTimeMillis() - started);
+    }
+
+    private static RecordWriter createWriter(ExportFormat format, BufferedWriter writer) throws IOException {
+        return format == ExportFormat.NDJSON ? new NdjsonRecordWriter(writer) : new CsvRecordWriter(writer);
+    }
+
+    // Ngày giờ xuất dạng ISO-8601 (không đổi múi giờ), số giữ nguyên kiểu
+    private static Object readValue(ResultSet rs, int column) throws SQLException {
+        Object value = rs.getObject(column);
+        if (value instanceof java.sql.Timestamp timestamp) {
+            return timestamp.toLocalDateTime().toString();
+        }
+        if (value instanceof java.sql.Date date) {
+            return date.toLocalDate().toString();
+        }
+        return value;
+    }
+
+    private static final class Query {
+        final StringBuilder sql;
+        final List<Object> params = new ArrayList<>();
+        boolean hasWhere;
+
+        Query(String select) {
+            this.sql = new StringBuilder(select);
+        }
+
+        void where(String condition, Object param) {
+            sql.append(hasWhere ? " AND " : " WHERE ").append(condition);
+            params.add(param);
+            hasWhere = true;
+        }
+    }
+}
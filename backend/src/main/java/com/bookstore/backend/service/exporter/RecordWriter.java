@@ -0,0 +1,14 @@
+package com.bookstore.backend.service.exporter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+// Ghi từng bản ghi ra stream, không giữ bản ghi nào trong bộ nhớ
+public interface RecordWriter extends Closeable {
+
+    void header(List<String> columns) throws IOException;
+
+    // values theo đúng thứ tự cột của header
+    void row(Object[] values) throws IOException;
+}
@@ -3,14 +3,23 @@ package com.bookstore.backend.service.impl;
 import com.bookstore.backend.DTO.VoucherDTO;
 import com.bookstore.backend.exception.ResourceNotFoundException;
 import com.bookstore.backend.model.Voucher;
+import com.bookstore.backend.model.VoucherRedemption;
+import com.bookstore.backend.repository.UserRepository;
+import com.bookstore.backend.repository.VoucherRedemptionRepository;
 import com.bookstore.backend.repository.VoucherRepository;
+import com.bookstore.backend.service.VoucherIndex;
 import com.bookstore.backend.service.VoucherService;
+import com.bookstore.backend.utils.TransactionUtils;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @Service
 @Transactional
@@ -19,6 +28,18 @@ public class VoucherServiceImpl implements VoucherService {
     @Autowired
     private VoucherRepository voucherRepository;
 
+    @Autowired
+    private VoucherRedemptionRepository voucherRedemptionRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private VoucherIndex voucherIndex;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
     @Override
     public List<Voucher> getAllVouchers() {
         return voucherRepository.findAll();
@@ -57,12 +78,15 @@ public class VoucherServiceImpl implements VoucherService {
             }
         }
 
-        return voucherRepository.save(voucher);
+        Voucher saved = voucherRepository.save(voucher);
+        TransactionUtils.afterCommit(() -> voucherIndex.refresh(saved.getId()));
+        return saved;
     }
 
     @Override
     public Voucher updateVoucher(Long id, Voucher voucherDetails) {
         Voucher existingVoucher = getVoucherById(id);
+        String oldCode = existingVoucher.getCode();
 
         // Check if code is being changed and if new code already exists
         if (!existingVoucher.getCode().equals(voucherDetails.getCode())) {
@@ -98,13 +122,21 @@ public class VoucherServiceImpl implements VoucherService {
         existingVoucher.setEndDate(voucherDetails.getEndDate());
         existingVoucher.setStatus(voucherDetails.getStatus());
 
-        return voucherRepository.save(existingVoucher);
+        Voucher saved = voucherRepository.save(existingVoucher);
+        TransactionUtils.afterCommit(() -> {
+            if (!oldCode.equals(saved.getCode())) {
+                voucherIndex.remove(oldCode);
+            }
+            voucherIndex.refresh(saved.getId());
+        });
+        return saved;
     }
 
     @Override
     public void deleteVoucher(Long id) {
         Voucher voucher = getVoucherById(id);
         voucherRepository.delete(voucher);
+        TransactionUtils.afterCommit(() -> voucherIndex.remove(voucher.getCode()));
     }
 
     @Override
@@ -114,41 +146,76 @@ public class VoucherServiceImpl implements VoucherService {
 
     @Override
     public List<Voucher> getActiveVouchers() {
-        LocalDateTime now = LocalDateTime.now();
-        return voucherRepository.findByStatusAndStartDateBeforeAndEndDateAfter(
-            Voucher.VoucherStatus.ACTIVE, 
-            now, 
-            now
-        );
+        // Đọc từ index in-memory, không query DB
+        return voucherIndex.activeVouchers();
     }
 
     @Override
     public boolean validateVoucher(String code) {
-        try {
-            Voucher voucher = getVoucherByCode(code);
-            return voucher.isValid();
-        } catch (ResourceNotFoundException e) {
-            return false;
-        }
+        return voucherIndex.isValid(code);
+    }
+
+    @Override
+    public Optional<Voucher> findActiveVoucher(String code) {
+        return voucherIndex.isValid(code) ? voucherIndex.find(code) : Optional.empty();
     }
 
     @Override
     public Voucher applyVoucher(String code) {
+        return applyVoucher(code, null);
+    }
+
+    @Override
+    public Voucher applyVoucher(String code, Long userId) {
+        return applyVoucher(code, userId, null);
+    }
+
+    @Override
+    public Voucher applyVoucher(String code, Long userId, Long orderId) {
         Voucher voucher = getVoucherByCode(code);
         
         if (!voucher.isValid()) {
             throw new IllegalArgumentException("Voucher không hợp lệ hoặc đã hết hạn");
         }
 
-        // Increment used count
-        voucher.setUsedCount(voucher.getUsedCount() + 1);
-        
-        // Update status if quantity is reached
-        if (voucher.getQuantity() != null && voucher.getUsedCount() >= voucher.getQuantity()) {
-            voucher.setStatus(Voucher.VoucherStatus.EXPIRED);
+        LocalDateTime now = LocalDateTime.now();
+
+        // Ghi lượt dùng của user trước: hai checkout đồng thời của cùng user va nhau ở unique index
+        if (userId != null) {
+            if (voucherRedemptionRepository.existsByVoucherIdAndUserId(voucher.getId(), userId)) {
+                throw new IllegalArgumentException("Bạn đã sử dụng voucher này");
+            }
+            try {
+                voucherRedemptionRepository.saveAndFlush(VoucherRedemption.builder()
+                        .voucher(voucher)
+                        .user(userRepository.getReferenceById(userId))
+                        .redeemedAt(now)
+                        .orderId(orderId)
+                        .build());
+            } catch (DataIntegrityViolationException e) {
+                throw new IllegalArgumentException("Bạn đã sử dụng voucher này");
+            }
         }
 
-        return voucherRepository.save(voucher);
+        // Tăng usedCount và chuyển EXPIRED khi hết lượt trong cùng một câu UPDATE
+        if (voucherRepository.redeem(voucher.getId(), now) == 0) {
+            throw new IllegalArgumentException("Voucher đã hết lượt sử dụng hoặc hết hạn");
+        }
+        entityManager.refresh(voucher);
+        TransactionUtils.afterCommit(() -> voucherIndex.refresh(voucher.getId()));
+        return voucher;
+    }
+
+    @Override
+    public void releaseVoucher(Long orderId) {
+        LocalDateTime now = LocalDateTime.now();
+        for (Object[] row : voucherRedemptionRepository.findByOrderId(orderId)) {
+            Long voucherId = (Long) row[1];
+            if (voucherRedemptionRepository.deleteRedemption((Long) row[0]) == 1
+                    && voucherRepository.unredeem(voucherId, now) == 1) {
+                TransactionUtils.afterCommit(() -> voucherIndex.refresh(voucherId));
+            }
+        }
     }
 
     // Helper methods for DTO conversion
@@ -0,0 +1,47 @@
+package com.bookstore.backend.service.importer;
+
+import com.bookstore.backend.model.CatalogImportJob;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Import catalog từ dòng lệnh, ví dụ:
+ * java -jar backend.jar --import-catalog=datas/data.csv --import-categories=datas/categories.csv
+ * Thêm --import-resume=<jobId> để chạy tiếp một job bị lỗi.
+ */
+@Component
+@RequiredArgsConstructor
+public class CatalogImportRunner implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(CatalogImportRunner.class);
+
+    private final CatalogImportService catalogImportService;
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        String dataPath = option(args, "import-catalog");
+        if (dataPath == null) {
+            return;
+        }
+        String categoriesPath = option(args, "import-categories");
+        String resume = option(args, "import-resume");
+
+        CatalogImportJob job = catalogImportService.runImport(
+                Path.of(dataPath),
+                categoriesPath != null ? Path.of(categoriesPath) : null,
+                resume != null ? Long.valueOf(resume) : null);
+        logger.info("Import catalog từ {} kết thúc với trạng thái {} (job {})", dataPath, job.getStatus(), job.getId());
+    }
+
+    private static String option(ApplicationArguments args, String name) {
+        List<String> values = args.getOptionValues(name);
+        return values == null || values.isEmpty() ? null : values.get(0);
+    }
+}
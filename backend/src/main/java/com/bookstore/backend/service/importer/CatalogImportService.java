@@ -0,0 +1,455 @@
+package com.bookstore.backend.service.importer;
+
+import com.bookstore.backend.exception.BusinessException;
+import com.bookstore.backend.exception.ResourceNotFoundException;
+import com.bookstore.backend.model.CatalogImportJob;
+import com.bookstore.backend.model.enums.ImportStatus;
+import com.bookstore.backend.repository.CatalogImportJobRepository;
+import com.bookstore.backend.service.search.CatalogIndexer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Import catalog từ datas/data.csv (+ categories.csv) theo luồng:
+ * đọc CSV từng dòng, gom thành chunk, dedup author/publisher/ISBN bằng bộ nhớ,
+ * cấp id trước từ sequence rồi ghi bằng JDBC batch. Mỗi chunk là một transaction
+ * và cập nhật checkpoint của job trong cùng transaction, nên có thể chạy tiếp sau lỗi.
+ */
+@Service
+public class CatalogImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CatalogImportService.class);
+
+    // Một dòng data.csv sau khi parse
+    private record CatalogRow(String title, List<String> authors, String publisher, Integer publishYear,
+                              Long categoryId, Double price, Integer sold, String isbn) {
+    }
+
+    // Dữ liệu đã có trong DB, load một lần khi bắt đầu import
+    private static final class ImportState {
+        final Map<String, Long> authors = new HashMap<>();
+        final Map<String, Long> publishers = new HashMap<>();
+        final Set<String> isbns = new HashSet<>();
+        final Set<Long> categoryIds = new HashSet<>();
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final CatalogImportJobRepository jobRepository;
+    private final CatalogIndexer catalogIndexer;
+    private final int chunkSize;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "catalog-import");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public CatalogImportService(JdbcTemplate jdbcTemplate,
+                                TransactionTemplate transactionTemplate,
+                                CatalogImportJobRepository jobRepository,
+                                CatalogIndexer catalogIndexer,
+                                @Value("${catalog.import.chunk-size:1000}") int chunkSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.jobRepository = jobRepository;
+        this.catalogIndexer = catalogIndexer;
+        this.chunkSize = chunkSize;
+    }
+
+    // Chạy nền (endpoint admin): trả về job ngay để client theo dõi tiến độ.
+    // Các file tạm sẽ bị xóa sau khi import xong.
+    public CatalogImportJob startImport(Path dataFile, Path categoriesFile, String sourceName, Long resumeJobId) {
+        if (!running.compareAndSet(false, true)) {
+            throw new BusinessException("Đang có một lượt import catalog khác chạy");
+        }
+        CatalogImportJob job;
+        try {
+            job = prepareJob(dataFile, sourceName, resumeJobId);
+        } catch (RuntimeException | IOException ex) {
+            running.set(false);
+            deleteQuietly(dataFile, categoriesFile);
+            throw ex instanceof RuntimeException runtime ? runtime : new BusinessException(ex.getMessage());
+        }
+
+        executor.submit(() -> {
+            try {
+                execute(job, dataFile, categoriesFile);
+            } finally {
+                running.set(false);
+                deleteQuietly(dataFile, categoriesFile);
+            }
+        });
+        return job;
+    }
+
+    // Chạy đồng bộ (CLI runner)
+    public CatalogImportJob runImport(Path dataFile, Path categoriesFile, Long resumeJobId) throws IOException {
+        if (!running.compareAndSet(false, true)) {
+            throw new BusinessException("Đang có một lượt import catalog khác chạy");
+        }
+        try {
+            CatalogImportJob job = prepareJob(dataFile, dataFile.getFileName().toString(), resumeJobId);
+            execute(job, dataFile, categoriesFile);
+            return job;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    public CatalogImportJob getJob(Long jobId) {
+        return jobRepository.findById(jobId)
+                .orElseThrow(() -> new ResourceNotFoundException("Import job not found with id: " + jobId));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private CatalogImportJob prepareJob(Path dataFile, String sourceName, Long resumeJobId) throws IOException {
+        long size = Files.size(dataFile);
+        LocalDateTime now = LocalDateTime.now();
+
+        if (resumeJobId == null) {
+            return jobRepository.save(CatalogImportJob.builder()
+                    .sourceName(sourceName)
+                    .sourceSize(size)
+                    .status(ImportStatus.RUNNING)
+                    .startedAt(now)
+                    .updatedAt(now)
+                    .build());
+        }
+
+        CatalogImportJob job = getJob(resumeJobId);
+        if (job.getStatus() == ImportStatus.COMPLETED) {
+            throw new BusinessException("Job " + resumeJobId + " đã hoàn tất, không thể chạy tiếp");
+        }
+        if (!sourceName.equals(job.getSourceName()) || size != job.getSourceSize()) {
+            throw new BusinessException("File không khớp với file của job " + resumeJobId);
+        }
+        job.setStatus(ImportStatus.RUNNING);
+        job.setMessage(null);
+        job.setUpdatedAt(now);
+        job.setFinishedAt(null);
+        return jobRepository.save(job);
+    }
+
+    private void execute(CatalogImportJob job, Path dataFile, Path categoriesFile) {
+        long start = System.currentTimeMillis();
+        try {
+            if (categoriesFile != null) {
+                importCategories(categoriesFile);
+            }
+            importBooks(job, dataFile);
+
+            job.setStatus(ImportStatus.COMPLETED);
+            job.setFinishedAt(LocalDateTime.now());
+            job.setUpdatedAt(job.getFinishedAt());
+            jobRepository.save(job);
+            logger.info("Import catalog job {} xong: {} sách, bỏ qua {} dòng trong {} ms",
+                    job.getId(), job.getImportedBooks(), job.getSkippedRows(), System.currentTimeMillis() - start);
+
+            catalogIndexer.rebuild();
+        } catch (Exception ex) {
+            logger.error("Import catalog job {} lỗi sau {} dòng: {}", job.getId(), job.getProcessedRows(), ex.getMessage(), ex);
+            job.setStatus(ImportStatus.FAILED);
+            job.setMessage(ex.getMessage());
+            job.setUpdatedAt(LocalDateTime.now());
+            jobRepository.save(job);
+        }
+    }
+
+    // categories.csv: id,parent_id,name,is_leaf — giữ nguyên id gốc
+    private void importCategories(Path categoriesFile) throws IOException {
+        List<Object[]> rows = new ArrayList<>();
+        try (CsvRecordReader csv = new CsvRecordReader(Files.newBufferedReader(categoriesFile, StandardCharsets.UTF_8))) {
+            Map<String, Integer> columns = readHeader(csv);
+            List<String> record;
+            while ((record = csv.next()) != null) {
+                Long id = parseLong(field(record, columns, "id"));
+                String name = field(record, columns, "name");
+                if (id != null && name != null) {
+                    rows.add(new Object[]{id, name});
+                }
+            }
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate("""
+                    INSERT INTO category (id, name) VALUES (?, ?)
+                    ON CONFLICT (id) DO UPDATE SET name = EXCLUDED.name
+                    """, rows);
+            // Id được chèn tay -> đẩy sequence lên để insert sau này không trùng
+            jdbcTemplate.queryForObject(
+                    "SELECT setval(pg_get_serial_sequence('category', 'id'), (SELECT GREATEST(MAX(id), 1) FROM category))",
+                    Long.class);
+        });
+        logger.info("Đã import {} category", rows.size());
+    }
+
+    private void importBooks(CatalogImportJob job, Path dataFile) throws IOException {
+        ImportState state = loadState();
+        long alreadyProcessed = job.getProcessedRows();
+
+        try (CsvRecordReader csv = new CsvRecordReader(Files.newBufferedReader(dataFile, StandardCharsets.UTF_8))) {
+            Map<String, Integer> columns = readHeader(csv);
+            List<CatalogRow> chunk = new ArrayList<>(chunkSize);
+            long rowNumber = 0;
+
+            List<String> record;
+            while ((record = csv.next()) != null) {
+                if (record.size() == 1 && record.get(0).isBlank()) {
+                    continue;
+                }
+                rowNumber++;
+                // Resume: bỏ qua các dòng đã commit ở lần chạy trước
+                if (rowNumber <= alreadyProcessed) {
+                    continue;
+                }
+                chunk.add(parseRow(record, columns));
+                if (chunk.size() >= chunkSize) {
+                    writeChunk(job, chunk, state, rowNumber);
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                writeChunk(job, chunk, state, rowNumber);
+            }
+        }
+    }
+
+    private ImportState loadState() {
+        ImportState state = new ImportState();
+        jdbcTemplate.query("SELECT id, name FROM author", rs -> {
+            state.authors.putIfAbsent(rs.getString(2), rs.getLong(1));
+        });
+        jdbcTemplate.query("SELECT id, name FROM publisher", rs -> {
+            state.publishers.putIfAbsent(rs.getString(2), rs.getLong(1));
+        });
+        jdbcTemplate.query("SELECT isbn FROM book_variants WHERE isbn IS NOT NULL", rs -> {
+            state.isbns.add(rs.getString(1));
+        });
+        state.categoryIds.addAll(jdbcTemplate.queryForList("SELECT id FROM category", Long.class));
+        return state;
+    }
+
+    private void writeChunk(CatalogImportJob job, List<CatalogRow> rows, ImportState state, long lastRowNumber) {
+        long[] counters = new long[2]; // [imported, skipped]
+
+        transactionTemplate.executeWithoutResult(status -> {
+            List<CatalogRow> accepted = new ArrayList<>(rows.size());
+            for (CatalogRow row : rows) {
+                if (row.isbn() != null && !state.isbns.add(row.isbn())) {
+                    counters[1]++;
+                } else {
+                    accepted.add(row);
+                }
+            }
+
+            // Author / publisher mới trong chunk
+            Set<String> newAuthors = new LinkedHashSet<>();
+            Set<String> newPublishers = new LinkedHashSet<>();
+            for (CatalogRow row : accepted) {
+                for (String author : row.authors()) {
+                    if (!state.authors.containsKey(author)) {
+                        newAuthors.add(author);
+                    }
+                }
+                if (row.publisher() != null && !state.publishers.containsKey(row.publisher())) {
+                    newPublishers.add(row.publisher());
+                }
+            }
+            insertNamed("author", newAuthors, state.authors);
+            insertNamed("publisher", newPublishers, state.publishers);
+
+            List<Long> bookIds = allocateIds("book", accepted.size());
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+            List<Object[]> books = new ArrayList<>(accepted.size());
+            List<Object[]> bookAuthors = new ArrayList<>();
+            List<Object[]> bookCategories = new ArrayList<>();
+            List<Object[]> variants = new ArrayList<>(accepted.size());
+
+            for (int i = 0; i < accepted.size(); i++) {
+                CatalogRow row = accepted.get(i);
+                Long bookId = bookIds.get(i);
+                Long publisherId = row.publisher() != null ? state.publishers.get(row.publisher()) : null;
+                books.add(new Object[]{bookId, row.title(), publisherId, row.publishYear(), now, now});
+
+                Set<Long> authorIds = new LinkedHashSet<>();
+                for (String author : row.authors()) {
+                    authorIds.add(state.authors.get(author));
+                }
+                for (Long authorId : authorIds) {
+                    bookAuthors.add(new Object[]{bookId, authorId});
+                }
+                // Category không có trong DB thì bỏ liên kết (tránh lỗi khóa ngoại)
+                if (row.categoryId() != null && state.categoryIds.contains(row.categoryId())) {
+                    bookCategories.add(new Object[]{bookId, row.categoryId()});
+                }
+                // Giống seeder: quantity mặc định 0, trạng thái AVAILABLE
+                variants.add(new Object[]{bookId, row.price() != null ? row.price() : 0.0,
+                        row.sold() != null ? row.sold() : 0, row.isbn()});
+            }
+
+            jdbcTemplate.batchUpdate("""
+                    INSERT INTO book (id, title, publisher_id, publisher_year, published_at, updated_at, is_deleted)
+                    VALUES (?, ?, ?, ?, ?, ?, FALSE)
+                    """, books);
+            jdbcTemplate.batchUpdate("INSERT INTO book_author (book_id, author_id) VALUES (?, ?)", bookAuthors);
+            jdbcTemplate.batchUpdate("INSERT INTO book_category (book_id, category_id) VALUES (?, ?)", bookCategories);
+            jdbcTemplate.batchUpdate("""
+                    INSERT INTO book_variants (book_id, price, quantity, sold, status, isbn)
+                    VALUES (?, ?, 0, ?, 'AVAILABLE', ?)
+                    """, variants);
+            counters[0] = accepted.size();
+
+            // Checkpoint nằm trong cùng transaction với dữ liệu của chunk
+            jdbcTemplate.update("""
+                    UPDATE catalog_import_job
+                    SET processed_rows = ?, imported_books = imported_books + ?,
+                        skipped_rows = skipped_rows + ?, updated_at = ?
+                    WHERE id = ?
+                    """, lastRowNumber, counters[0], counters[1], now, job.getId());
+        });
+
+        job.setProcessedRows(lastRowNumber);
+        job.setImportedBooks(job.getImportedBooks() + counters[0]);
+        job.setSkippedRows(job.getSkippedRows() + counters[1]);
+        logger.info("Import catalog job {}: {} dòng, {} sách, bỏ qua {}",
+                job.getId(), lastRowNumber, job.getImportedBooks(), job.getSkippedRows());
+    }
+
+    // Insert các tên mới (author/publisher) với id cấp trước, rồi cập nhật map tên -> id
+    private void insertNamed(String table, Set<String> names, Map<String, Long> ids) {
+        if (names.isEmpty()) {
+            return;
+        }
+        List<Long> allocated = allocateIds(table, names.size());
+        List<Object[]> rows = new ArrayList<>(names.size());
+        int i = 0;
+        for (String name : names) {
+            Long id = allocated.get(i++);
+            rows.add(new Object[]{id, name});
+            ids.put(name, id);
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO " + table + " (id, name) VALUES (?, ?)", rows);
+    }
+
+    // Lấy trước n id từ sequence của bảng để biết id ngay mà không cần RETURNING từng dòng
+    private List<Long> allocateIds(String table, int count) {
+        if (count == 0) {
+            return List.of();
+        }
+        return jdbcTemplate.queryForList(
+                "SELECT nextval(pg_get_serial_sequence(?, 'id')) FROM generate_series(1, ?)",
+                Long.class, table, count);
+    }
+
+    private static CatalogRow parseRow(List<String> record, Map<String, Integer> columns) {
+        String title = field(record, columns, "title");
+        String authorField = field(record, columns, "author");
+        List<String> authors = new ArrayList<>();
+        if (authorField != null) {
+            for (String name : authorField.split(",")) {
+                if (!name.isBlank()) {
+                    authors.add(name.trim());
+                }
+            }
+        }
+        Long publishYear = parseLong(field(record, columns, "publish_year"));
+        Double sold = parseDouble(field(record, columns, "quantity_sold"));
+
+        return new CatalogRow(
+                title != null ? title : "Untitled",
+                authors,
+                field(record, columns, "publisher"),
+                publishYear != null ? publishYear.intValue() : null,
+                parseLong(field(record, columns, "category_id")),
+                parseDouble(field(record, columns, "price")),
+                sold != null ? sold.intValue() : null,
+                field(record, columns, "isbn13")
+        );
+    }
+
+    private static Map<String, Integer> readHeader(CsvRecordReader csv) throws IOException {
+        List<String> header = csv.next();
+        if (header == null) {
+            throw new IOException("File CSV rỗng");
+        }
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            // Bỏ BOM nếu file được lưu từ Excel
+            columns.put(header.get(i).replace("\uFEFF", "").trim(), i);
+        }
+        return columns;
+    }
+
+    // Giá trị đã trim của cột, null nếu thiếu cột hoặc rỗng
+    private static String field(List<String> record, Map<String, Integer> columns, String name) {
+        Integer index = columns.get(name);
+        if (index == null || index >= record.size()) {
+            return null;
+        }
+        String value = record.get(index).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private static Long parseLong(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return (long) Double.parseDouble(value);
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+
+    private static Double parseDouble(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+
+    private static void deleteQuietly(Path... files) {
+        for (Path file : files) {
+            if (file == null) {
+                continue;
+            }
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException ex) {
+                logger.warn("Không xóa được file tạm {}: {}", file, ex.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.bookstore.backend.service.importer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Đọc CSV (RFC 4180) theo từng bản ghi, không load cả file vào bộ nhớ.
+ * Hỗ trợ trường trong dấu nháy kép, nháy kép escape ("") và xuống dòng bên trong trường.
+ */
+public class CsvRecordReader implements Closeable {
+
+    private final Reader reader;
+    private int pending = -1;
+    private long recordNumber;
+
+    public CsvRecordReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    // Trả về bản ghi tiếp theo, null khi hết file
+    public List<String> next() throws IOException {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean inQuotes = false;
+        boolean consumed = false;
+
+        int c;
+        while ((c = read()) != -1) {
+            consumed = true;
+            if (inQuotes) {
+                if (c == '"') {
+                    int next = read();
+                    if (next == '"') {
+                        field.append('"');
+                    } else {
+                        inQuotes = false;
+                        pending = next;
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == '"') {
+                inQuotes = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n') {
+                fields.add(field.toString());
+                recordNumber++;
+                return fields;
+            } else if (c != '\r') {
+                field.append((char) c);
+            }
+        }
+
+        if (!consumed) {
+            return null;
+        }
+        if (inQuotes) {
+            throw new IOException("Trường chưa đóng dấu nháy ở bản ghi " + (recordNumber + 1));
+        }
+        fields.add(field.toString());
+        recordNumber++;
+        return fields;
+    }
+
+    public long getRecordNumber() {
+        return recordNumber;
+    }
+
+    private int read() throws IOException {
+        if (pending != -1) {
+            int c = pending;
+            pending = -1;
+            return c;
+        }
+        return reader.read();
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,82 @@
+package com.bookstore.backend.service.metrics;
+
+import com.bookstore.backend.utils.TransactionUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Số liệu bán hàng trực tiếp cho dashboard admin: đơn / phút, doanh thu / phút, checkout thất bại / phút
+ * và số giỏ hàng đang hoạt động. OrdersService, PaymentService, CartService ghi vào bộ đếm in-memory
+ * (không khóa), mỗi giây đẩy một snapshot lên /topic/admin/metrics nên dashboard không tạo truy vấn DB nào.
+ * Số liệu tính riêng trên từng instance và mất khi restart.
+ */
+@Component
+public class LiveSalesMetrics {
+
+    public static final String DESTINATION = "/topic/admin/metrics";
+
+    private static final int WINDOW_SECONDS = 60;
+
+    public record Snapshot(long timestamp, long ordersPerMinute, long revenuePerMinute,
+                           long checkoutFailuresPerMinute, int activeCarts) {
+    }
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final long cartIdleMillis;
+    private final SlidingWindowCounter orders = new SlidingWindowCounter(WINDOW_SECONDS);
+    private final SlidingWindowCounter revenue = new SlidingWindowCounter(WINDOW_SECONDS);
+    private final SlidingWindowCounter checkoutFailures = new SlidingWindowCounter(WINDOW_SECONDS);
+    // userId -> lần cuối thao tác giỏ hàng
+    private final Map<Long, Long> cartActivity = new ConcurrentHashMap<>();
+
+    public LiveSalesMetrics(SimpMessagingTemplate messagingTemplate,
+                            @Value("${metrics.live.cart-idle:PT30M}") Duration cartIdle) {
+        this.messagingTemplate = messagingTemplate;
+        this.cartIdleMillis = cartIdle.toMillis();
+    }
+
+    // Gọi đầu transaction đặt hàng: transaction rollback (hết hàng, voucher lỗi...) -> tính checkout thất bại
+    public void onCheckoutStarted() {
+        TransactionUtils.afterRollback(this::recordCheckoutFailure);
+    }
+
+    // Đơn chỉ được tính khi transaction đặt hàng commit
+    public void onOrderPlaced(BigDecimal totalAmount) {
+        TransactionUtils.afterCommit(() -> {
+            long now = System.currentTimeMillis();
+            orders.add(now, 1);
+            revenue.add(now, totalAmount != null ? totalAmount.longValue() : 0);
+        });
+    }
+
+    public void recordCheckoutFailure() {
+        checkoutFailures.add(System.currentTimeMillis(), 1);
+    }
+
+    public void onCartActivity(Long userId) {
+        cartActivity.put(userId, System.currentTimeMillis());
+    }
+
+    // Giỏ đã được đặt hàng hết
+    public void onCartEmptied(Long userId) {
+        cartActivity.remove(userId);
+    }
+
+    public Snapshot snapshot() {
+        long now = System.currentTimeMillis();
+        cartActivity.values().removeIf(last -> now - last > cartIdleMillis);
+        return new Snapshot(now, orders.sum(now), revenue.sum(now), checkoutFailures.sum(now), cartActivity.size());
+    }
+
+    @Scheduled(fixedRateString = "${metrics.live.publish-ms:1000}")
+    public void publish() {
+        messagingTemplate.convertAndSend(DESTINATION, snapshot());
+    }
+}
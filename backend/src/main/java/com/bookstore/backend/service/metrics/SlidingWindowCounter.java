@@ -0,0 +1,55 @@
+package com.bookstore.backend.service.metrics;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bộ đếm cửa sổ trượt theo giây, không khóa: vòng tròn các bucket một giây, mỗi bucket mang số giây của nó.
+ * Ghi vào bucket của giây hiện tại (thay bucket cũ bằng CAS khi sang giây mới), đọc cộng các bucket còn trong cửa sổ.
+ */
+public class SlidingWindowCounter {
+
+    private record Bucket(long second, LongAdder sum) {
+    }
+
+    private final AtomicReferenceArray<Bucket> buckets;
+
+    public SlidingWindowCounter(int windowSeconds) {
+        this.buckets = new AtomicReferenceArray<>(windowSeconds);
+    }
+
+    public void add(long nowMillis, long delta) {
+        long second = nowMillis / 1000;
+        int index = (int) (second % buckets.length());
+        while (true) {
+            Bucket bucket = buckets.get(index);
+            if (bucket != null && bucket.second() == second) {
+                bucket.sum().add(delta);
+                return;
+            }
+            // Bucket của vòng trước (hoặc chưa có): thay mới; thua CAS thì đọc lại bucket thắng
+            if (bucket != null && bucket.second() > second) {
+                return;
+            }
+            Bucket fresh = new Bucket(second, new LongAdder());
+            if (buckets.compareAndSet(index, bucket, fresh)) {
+                fresh.sum().add(delta);
+                return;
+            }
+        }
+    }
+
+    // Tổng trong windowSeconds giây gần nhất, tính cả giây hiện tại
+    public long sum(long nowMillis) {
+        long second = nowMillis / 1000;
+        long oldest = second - buckets.length();
+        long total = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            Bucket bucket = buckets.get(i);
+            if (bucket != null && bucket.second() > oldest && bucket.second() <= second) {
+                total += bucket.sum().sum();
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,197 @@
+package com.bookstore.backend.service.outbox;
+
+import com.bookstore.backend.DTO.NotificationRequestDTO;
+import com.bookstore.backend.DTO.OrdersDTO;
+import com.bookstore.backend.model.OutboxEvent;
+import com.bookstore.backend.repository.OutboxEventRepository;
+import com.bookstore.backend.service.EmailService;
+import com.bookstore.backend.service.NotificationService;
+import com.bookstore.backend.service.OrderPageReader;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Gửi các event trong outbox_event bằng một pool worker cố định (hàng đợi có giới hạn):
+ * - poll định kỳ, chỉ nhận số event vừa đủ chỗ trống trong hàng đợi
+ * - nhận event bằng UPDATE có điều kiện PENDING -> PROCESSING nên chạy nhiều instance vẫn không gửi trùng
+ * - gửi lỗi thì thử lại với backoff lũy thừa, quá maxAttempts thì đánh dấu FAILED
+ * - event kẹt ở PROCESSING (server tắt giữa chừng) được trả về PENDING sau processingTimeout
+ * Đảm bảo gửi ít nhất một lần; việc gửi không giữ connection DB.
+ */
+@Component
+public class OutboxDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutboxDispatcher.class);
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final NotificationService notificationService;
+    private final EmailService emailService;
+    private final OrderPageReader orderPageReader;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final ThreadPoolExecutor workers;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final Duration baseDelay;
+    private final Duration maxDelay;
+    private final Duration processingTimeout;
+    private final Duration retention;
+
+    public OutboxDispatcher(OutboxEventRepository outboxEventRepository,
+                            NotificationService notificationService,
+                            EmailService emailService,
+                            OrderPageReader orderPageReader,
+                            ObjectMapper objectMapper,
+                            TransactionTemplate transactionTemplate,
+                            @Value("${outbox.workers:4}") int workerCount,
+                            @Value("${outbox.queue-capacity:200}") int queueCapacity,
+                            @Value("${outbox.batch-size:50}") int batchSize,
+                            @Value("${outbox.max-attempts:8}") int maxAttempts,
+                            @Value("${outbox.retry.base-delay:PT10S}") Duration baseDelay,
+                            @Value("${outbox.retry.max-delay:PT1H}") Duration maxDelay,
+                            @Value("${outbox.processing-timeout:PT5M}") Duration processingTimeout,
+                            @Value("${outbox.retention:P7D}") Duration retention) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.notificationService = notificationService;
+        this.emailService = emailService;
+        this.orderPageReader = orderPageReader;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.baseDelay = baseDelay;
+        this.maxDelay = maxDelay;
+        this.processingTimeout = processingTimeout;
+        this.retention = retention;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread thread = new Thread(r, "outbox-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    // Trả về số event đã nhận và giao cho worker
+    @Scheduled(fixedDelayString = "${outbox.poll-ms:1000}")
+    public int poll() {
+        LocalDateTime now = LocalDateTime.now();
+        Integer recovered = transactionTemplate.execute(status ->
+                outboxEventRepository.recoverStuck(now.minus(processingTimeout)));
+        if (recovered != null && recovered > 0) {
+            logger.warn("Trả lại {} outbox event bị kẹt ở PROCESSING", recovered);
+        }
+
+        // Không nhận quá chỗ trống của hàng đợi: event chưa nhận vẫn nằm an toàn trong DB
+        int capacity = Math.min(batchSize, workers.getQueue().remainingCapacity());
+        if (capacity <= 0) {
+            return 0;
+        }
+        List<Long> ids = outboxEventRepository.findDueIds(now, PageRequest.of(0, capacity));
+
+        int claimed = 0;
+        for (Long id : ids) {
+            Integer updated = transactionTemplate.execute(status -> outboxEventRepository.claim(id, now));
+            if (updated == null || updated == 0) {
+                continue; // instance khác đã nhận
+            }
+            try {
+                workers.execute(() -> process(id));
+                claimed++;
+            } catch (RejectedExecutionException ex) {
+                // Đang shutdown: trả event về PENDING cho lần sau
+                transactionTemplate.execute(status -> outboxEventRepository.reschedule(id, now, "Worker pool rejected"));
+            }
+        }
+        return claimed;
+    }
+
+    // Dọn event đã gửi lâu ngày để bảng không phình mãi
+    @Scheduled(cron = "${outbox.cleanup-cron:0 30 3 * * *}")
+    public int purgeSent() {
+        Integer deleted = transactionTemplate.execute(status ->
+                outboxEventRepository.deleteSentBefore(LocalDateTime.now().minus(retention)));
+        return deleted != null ? deleted : 0;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        workers.shutdown();
+        // Event chưa gửi xong sẽ được recoverStuck trả lại khi khởi động lần sau
+        workers.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    private void process(Long id) {
+        OutboxEvent event = outboxEventRepository.findById(id).orElse(null);
+        if (event == null) {
+            return;
+        }
+        try {
+            dispatch(event);
+            transactionTemplate.execute(status -> outboxEventRepository.markSent(id, LocalDateTime.now()));
+        } catch (Exception ex) {
+            handleFailure(event, ex);
+        }
+    }
+
+    private void dispatch(OutboxEvent event) throws Exception {
+        switch (event.getType()) {
+            case NOTIFICATION -> notificationService.sendNotification(
+                    objectMapper.readValue(event.getPayload(), NotificationRequestDTO.class));
+            case ORDER_CONFIRMATION_EMAIL -> {
+                OutboxService.OrderEmail email = objectMapper.readValue(event.getPayload(), OutboxService.OrderEmail.class);
+                List<OrdersDTO> orders = orderPageReader.loadOrders(List.of(email.orderId()));
+                if (orders.isEmpty()) {
+                    throw new IllegalStateException("Order không tồn tại: " + email.orderId());
+                }
+                emailService.sendOrderConfirmationEmail(email.toEmail(), email.customerName(), orders.get(0));
+            }
+        }
+    }
+
+    private void handleFailure(OutboxEvent event, Exception ex) {
+        String error = truncate(ex.getClass().getSimpleName() + ": " + ex.getMessage());
+        // attempts đã được tăng khi claim
+        int attempts = event.getAttempts();
+        LocalDateTime now = LocalDateTime.now();
+        if (attempts >= maxAttempts) {
+            transactionTemplate.execute(status -> outboxEventRepository.markFailed(event.getId(), now, error));
+            logger.error("Outbox event #{} ({}) thất bại sau {} lần: {}", event.getId(), event.getType(), attempts, error);
+            return;
+        }
+        LocalDateTime nextAttemptAt = now.plus(backoff(attempts));
+        transactionTemplate.execute(status -> outboxEventRepository.reschedule(event.getId(), nextAttemptAt, error));
+        logger.warn("Outbox event #{} ({}) lỗi lần {}, thử lại lúc {}: {}",
+                event.getId(), event.getType(), attempts, nextAttemptAt, error);
+    }
+
+    // baseDelay * 2^(attempts-1), tối đa maxDelay
+    private Duration backoff(int attempts) {
+        int shift = Math.min(attempts - 1, 30);
+        Duration delay = baseDelay.multipliedBy(1L << shift);
+        return delay.compareTo(maxDelay) > 0 ? maxDelay : delay;
+    }
+
+    private static String truncate(String message) {
+        return message.length() > MAX_ERROR_LENGTH ? message.substring(0, MAX_ERROR_LENGTH) : message;
+    }
+}
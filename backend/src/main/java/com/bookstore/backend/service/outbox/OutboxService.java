@@ -0,0 +1,61 @@
+package com.bookstore.backend.service.outbox;
+
+import com.bookstore.backend.DTO.NotificationRequestDTO;
+import com.bookstore.backend.model.OutboxEvent;
+import com.bookstore.backend.model.enums.OutboxEventType;
+import com.bookstore.backend.model.enums.OutboxStatus;
+import com.bookstore.backend.repository.OutboxEventRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+/**
+ * Ghi việc cần gửi ra ngoài (notification WebSocket, email xác nhận đơn) vào bảng outbox_event
+ * trong chính transaction của nghiệp vụ. Rollback thì không có gì được gửi; commit thì
+ * OutboxDispatcher sẽ gửi ở nền, request không phải chờ SMTP hay WebSocket.
+ */
+@Service
+public class OutboxService {
+
+    // Payload email xác nhận: nội dung đơn được đọc lại lúc gửi
+    public record OrderEmail(Long orderId, String toEmail, String customerName) {
+    }
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final ObjectMapper objectMapper;
+
+    public OutboxService(OutboxEventRepository outboxEventRepository, ObjectMapper objectMapper) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.objectMapper = objectMapper;
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueueNotification(NotificationRequestDTO request) {
+        enqueue(OutboxEventType.NOTIFICATION, request);
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueueOrderConfirmationEmail(Long orderId, String toEmail, String customerName) {
+        enqueue(OutboxEventType.ORDER_CONFIRMATION_EMAIL, new OrderEmail(orderId, toEmail, customerName));
+    }
+
+    private void enqueue(OutboxEventType type, Object payload) {
+        LocalDateTime now = LocalDateTime.now();
+        try {
+            outboxEventRepository.save(OutboxEvent.builder()
+                    .type(type)
+                    .payload(objectMapper.writeValueAsString(payload))
+                    .status(OutboxStatus.PENDING)
+                    .attempts(0)
+                    .nextAttemptAt(now)
+                    .createdAt(now)
+                    .build());
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Không serialize được payload outbox " + type, e);
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.bookstore.backend.service.search;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Bảng xếp hạng bán chạy in-memory, toàn catalog và theo từng category (theo tên, như /trendingManga).
+ * Mỗi phạm vi giữ hai tập có thứ tự: theo tổng số đã bán và theo điểm "trending" giảm dần theo thời gian
+ * (mỗi sản phẩm bán ra mất một nửa trọng số sau mỗi half-life). Cập nhật khi đơn hàng cộng / trừ sold,
+ * đọc top-K chỉ là duyệt K phần tử đầu của tập, không gọi DB.
+ * Điểm trending lưu dưới dạng đã nhân e^(λ(t - t0)) nên thứ tự không đổi theo thời gian,
+ * chỉ cần chuẩn hóa lại khi số mũ quá lớn.
+ */
+@Component
+public class BestSellerRanking {
+
+    public enum Window {
+        ALL_TIME, TRENDING
+    }
+
+    // Một cửa sổ kết quả: id theo thứ tự xếp hạng và tổng số sách trong phạm vi
+    public record Slice(List<Long> ids, long total) {
+    }
+
+    // Số lượng bán trong một ngày, dùng để dựng lại điểm trending lúc khởi động
+    public record DailySale(Long bookId, long epochMillis, long quantity) {
+    }
+
+    private record Rank(Long bookId, long sold, double trend) {
+    }
+
+    private static final Comparator<Rank> BY_SOLD = Comparator
+            .comparingLong(Rank::sold).reversed()
+            .thenComparing(Rank::bookId);
+
+    private static final Comparator<Rank> BY_TREND = Comparator
+            .comparingDouble(Rank::trend).reversed()
+            .thenComparing(BY_SOLD);
+
+    // e^40 còn xa giới hạn double, chuẩn hóa trước khi tới đó
+    private static final double MAX_EXPONENT = 40;
+
+    private static final class Scope {
+        final NavigableSet<Rank> bySold = new TreeSet<>(BY_SOLD);
+        final NavigableSet<Rank> byTrend = new TreeSet<>(BY_TREND);
+
+        void add(Rank rank) {
+            bySold.add(rank);
+            byTrend.add(rank);
+        }
+
+        void remove(Rank rank) {
+            bySold.remove(rank);
+            byTrend.remove(rank);
+        }
+
+        NavigableSet<Rank> ordered(Window window) {
+            return window == Window.TRENDING ? byTrend : bySold;
+        }
+    }
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Duration halfLife;
+    // λ theo mili giây
+    private final double decayRate;
+    private final Scope global = new Scope();
+    private final Map<String, Scope> byCategory = new HashMap<>();
+    private final Map<Long, Rank> ranks = new HashMap<>();
+    private final Map<Long, Set<String>> categoriesOf = new HashMap<>();
+    private long epochMillis;
+
+    public BestSellerRanking(@Value("${catalog.best-sellers.half-life:P7D}") Duration halfLife) {
+        this.halfLife = halfLife;
+        this.decayRate = Math.log(2) / halfLife.toMillis();
+        this.epochMillis = System.currentTimeMillis();
+    }
+
+    // Lượt bán cũ hơn 4 half-life chỉ còn dưới 1/16 trọng số, không cần nạp lại khi khởi động
+    public Duration trendingLookback() {
+        return halfLife.multipliedBy(4);
+    }
+
+    public void rebuild(Collection<BookDocument> documents, Collection<DailySale> recentSales) {
+        lock.writeLock().lock();
+        try {
+            global.bySold.clear();
+            global.byTrend.clear();
+            byCategory.clear();
+            ranks.clear();
+            categoriesOf.clear();
+            epochMillis = System.currentTimeMillis();
+
+            Map<Long, Double> trends = new HashMap<>();
+            for (DailySale sale : recentSales) {
+                trends.merge(sale.bookId(), weight(sale.epochMillis()) * sale.quantity(), Double::sum);
+            }
+            for (BookDocument document : documents) {
+                insertUnlocked(new Rank(document.id(), document.sold(), trends.getOrDefault(document.id(), 0.0)),
+                        Set.copyOf(document.categories().values()));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Sách mới / vừa sửa: giữ nguyên số liệu bán, cập nhật category và sold theo snapshot
+    public void index(BookDocument document) {
+        lock.writeLock().lock();
+        try {
+            Rank current = removeUnlocked(document.id());
+            double trend = current != null ? current.trend() : 0.0;
+            insertUnlocked(new Rank(document.id(), document.sold(), trend), Set.copyOf(document.categories().values()));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long bookId) {
+        lock.writeLock().lock();
+        try {
+            removeUnlocked(bookId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Đơn hàng cộng (delta > 0) hoặc hoàn (delta < 0) số đã bán của sách
+    public void recordSale(Long bookId, long delta) {
+        lock.writeLock().lock();
+        try {
+            Rank current = ranks.get(bookId);
+            if (current == null) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            if (decayRate * (now - epochMillis) > MAX_EXPONENT) {
+                rebaseUnlocked(now);
+            }
+            Set<String> categories = categoriesOf.get(bookId);
+            removeUnlocked(bookId);
+            insertUnlocked(new Rank(bookId,
+                    Math.max(0, current.sold() + delta),
+                    Math.max(0.0, current.trend() + delta * weight(now))), categories);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // category null = toàn catalog
+    public Slice slice(String category, Window window, int offset, int limit) {
+        lock.readLock().lock();
+        try {
+            Scope scope = category == null ? global : byCategory.get(category);
+            if (scope == null) {
+                return new Slice(List.of(), 0);
+            }
+            NavigableSet<Rank> ordered = scope.ordered(window);
+            List<Long> ids = new ArrayList<>(Math.min(limit, Math.max(0, ordered.size() - offset)));
+            Iterator<Rank> iterator = ordered.iterator();
+            for (int i = 0; i < offset && iterator.hasNext(); i++) {
+                iterator.next();
+            }
+            while (ids.size() < limit && iterator.hasNext()) {
+                ids.add(iterator.next().bookId());
+            }
+            return new Slice(ids, ordered.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<Long> top(String category, Window window, int limit) {
+        return slice(category, window, 0, limit).ids();
+    }
+
+    // Trọng số của một lượt bán tại thời điểm millis so với mốc epochMillis
+    private double weight(long millis) {
+        return Math.exp(decayRate * (millis - epochMillis));
+    }
+
+    // Dời mốc về now: chia mọi điểm cho cùng một hệ số nên thứ tự giữ nguyên, nhưng phải dựng lại các tập
+    private void rebaseUnlocked(long now) {
+        double factor = Math.exp(-decayRate * (now - epochMillis));
+        List<Rank> current = new ArrayList<>(ranks.values());
+        Map<Long, Set<String>> categories = new HashMap<>(categoriesOf);
+        global.bySold.clear();
+        global.byTrend.clear();
+        byCategory.clear();
+        ranks.clear();
+        categoriesOf.clear();
+        epochMillis = now;
+        for (Rank rank : current) {
+            insertUnlocked(new Rank(rank.bookId(), rank.sold(), rank.trend() * factor), categories.get(rank.bookId()));
+        }
+    }
+
+    private void insertUnlocked(Rank rank, Set<String> categories) {
+        Set<String> names = categories != null ? categories : Set.of();
+        ranks.put(rank.bookId(), rank);
+        categoriesOf.put(rank.bookId(), names);
+        global.add(rank);
+        for (String name : names) {
+            byCategory.computeIfAbsent(name, key -> new Scope()).add(rank);
+        }
+    }
+
+    private Rank removeUnlocked(Long bookId) {
+        Rank rank = ranks.remove(bookId);
+        if (rank == null) {
+            return null;
+        }
+        global.remove(rank);
+        for (String name : categoriesOf.getOrDefault(bookId, Set.of())) {
+            Scope scope = byCategory.get(name);
+            if (scope != null) {
+                scope.remove(rank);
+                if (scope.bySold.isEmpty()) {
+                    byCategory.remove(name);
+                }
+            }
+        }
+        categoriesOf.remove(bookId);
+        return rank;
+    }
+}
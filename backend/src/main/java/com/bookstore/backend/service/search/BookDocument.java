@@ -0,0 +1,88 @@
+package com.bookstore.backend.service.search;
+
+import com.bookstore.backend.model.Author;
+import com.bookstore.backend.model.Book;
+import com.bookstore.backend.model.BookVariants;
+import com.bookstore.backend.model.Category;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bản chụp gọn của một cuốn sách dùng cho các index in-memory (search, gợi ý...).
+ * Bất biến để có thể chia sẻ giữa các thread mà không cần khóa.
+ */
+public record BookDocument(
+        Long id,
+        String title,
+        Long publisherId,
+        String publisherName,
+        Integer publisherYear,
+        Map<Long, String> authors,
+        Map<Long, String> categories,
+        double[] prices,
+        long sold
+) {
+
+    public BookDocument {
+        authors = Map.copyOf(authors);
+        categories = Map.copyOf(categories);
+        prices = prices.clone();
+    }
+
+    // Build từ entity (gọi trong transaction để lazy collection còn load được)
+    public static BookDocument from(Book book) {
+        Map<Long, String> authors = new LinkedHashMap<>();
+        if (book.getAuthors() != null) {
+            for (Author author : book.getAuthors()) {
+                authors.put(author.getId(), author.getName());
+            }
+        }
+
+        Map<Long, String> categories = new LinkedHashMap<>();
+        if (book.getCategories() != null) {
+            for (Category category : book.getCategories()) {
+                categories.put(category.getId(), category.getName());
+            }
+        }
+
+        double[] prices = book.getVariants() == null ? new double[0]
+                : book.getVariants().stream()
+                        .map(BookVariants::getPrice)
+                        .filter(price -> price != null)
+                        .mapToDouble(Double::doubleValue)
+                        .toArray();
+
+        long sold = book.getVariants() == null ? 0
+                : book.getVariants().stream()
+                        .map(BookVariants::getSold)
+                        .filter(value -> value != null)
+                        .mapToLong(Integer::longValue)
+                        .sum();
+
+        return new BookDocument(
+                book.getId(),
+                book.getTitle(),
+                book.getPublisher() != null ? book.getPublisher().getId() : null,
+                book.getPublisher() != null ? book.getPublisher().getName() : null,
+                book.getPublisherYear(),
+                authors,
+                categories,
+                prices,
+                sold
+        );
+    }
+
+    // Có ít nhất một variant nằm trong khoảng giá (null = không giới hạn)
+    public boolean hasPriceBetween(Double minPrice, Double maxPrice) {
+        if (minPrice == null && maxPrice == null) {
+            return true;
+        }
+        for (double price : prices) {
+            if ((minPrice == null || price >= minPrice) && (maxPrice == null || price <= maxPrice)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
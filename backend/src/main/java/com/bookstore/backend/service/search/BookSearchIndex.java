@@ -0,0 +1,216 @@
+package com.bookstore.backend.service.search;
+
+import com.bookstore.backend.utils.TextNormalizer;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Inverted index in-memory cho catalog sách.
+ * Mỗi token (đã bỏ dấu) trỏ tới posting list: bookId -> bitmask các field chứa token.
+ * Token trong câu truy vấn được khớp theo prefix, tất cả token phải khớp (AND),
+ * điểm = tổng trọng số field tốt nhất của từng token.
+ */
+@Component
+public class BookSearchIndex {
+
+    public enum Field {
+        TITLE(3.0),
+        AUTHOR(2.0),
+        CATEGORY(1.0),
+        PUBLISHER(1.0);
+
+        private final double weight;
+
+        Field(double weight) {
+            this.weight = weight;
+        }
+
+        int bit() {
+            return 1 << ordinal();
+        }
+    }
+
+    public static final Set<Field> ALL_FIELDS = EnumSet.allOf(Field.class);
+
+    // Token khớp chính xác được điểm cao hơn token chỉ khớp prefix
+    private static final double PREFIX_MATCH_FACTOR = 0.5;
+
+    public record Hit(BookDocument document, double score) {
+    }
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, BookDocument> documents = new HashMap<>();
+    private final TreeMap<String, Map<Long, Integer>> postings = new TreeMap<>();
+
+    // Xây lại toàn bộ index (lúc khởi động hoặc sau import)
+    public void rebuild(Collection<BookDocument> docs) {
+        lock.writeLock().lock();
+        try {
+            documents.clear();
+            postings.clear();
+            docs.forEach(this::addUnlocked);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Thêm mới hoặc cập nhật một sách
+    public void index(BookDocument doc) {
+        lock.writeLock().lock();
+        try {
+            removeUnlocked(doc.id());
+            addUnlocked(doc);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long bookId) {
+        lock.writeLock().lock();
+        try {
+            removeUnlocked(bookId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<BookDocument> allDocuments() {
+        lock.readLock().lock();
+        try {
+            return new ArrayList<>(documents.values());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Tìm theo keyword trên các field chỉ định, kết quả sắp theo điểm giảm dần rồi id giảm dần
+    public List<Hit> search(String query, Set<Field> fields) {
+        List<String> queryTokens = TextNormalizer.tokenize(query);
+        int fieldMask = 0;
+        for (Field field : fields) {
+            fieldMask |= field.bit();
+        }
+
+        lock.readLock().lock();
+        try {
+            Map<Long, Double> scores;
+            if (queryTokens.isEmpty()) {
+                // Keyword rỗng -> trả toàn bộ catalog (giống LIKE '%%' trước đây)
+                scores = new HashMap<>();
+                for (Long id : documents.keySet()) {
+                    scores.put(id, 0.0);
+                }
+            } else {
+                scores = null;
+                for (String token : queryTokens) {
+                    Map<Long, Double> tokenScores = scoreToken(token, fieldMask);
+                    if (scores == null) {
+                        scores = tokenScores;
+                    } else {
+                        scores.keySet().retainAll(tokenScores.keySet());
+                        scores.replaceAll((id, score) -> score + tokenScores.get(id));
+                    }
+                    if (scores.isEmpty()) {
+                        break;
+                    }
+                }
+            }
+
+            List<Hit> hits = new ArrayList<>(scores.size());
+            scores.forEach((id, score) -> hits.add(new Hit(documents.get(id), score)));
+            hits.sort(Comparator.comparingDouble(Hit::score).reversed()
+                    .thenComparing(hit -> hit.document().id(), Comparator.reverseOrder()));
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Điểm của một token truy vấn cho từng sách: lấy field có trọng số cao nhất khớp prefix
+    private Map<Long, Double> scoreToken(String token, int fieldMask) {
+        Map<Long, Double> result = new HashMap<>();
+        NavigableMap<String, Map<Long, Integer>> matches =
+                postings.subMap(token, true, token + Character.MAX_VALUE, false);
+
+        for (Map.Entry<String, Map<Long, Integer>> entry : matches.entrySet()) {
+            double factor = entry.getKey().equals(token) ? 1.0 : PREFIX_MATCH_FACTOR;
+            for (Map.Entry<Long, Integer> posting : entry.getValue().entrySet()) {
+                int mask = posting.getValue() & fieldMask;
+                if (mask == 0) {
+                    continue;
+                }
+                double score = bestWeight(mask) * factor;
+                result.merge(posting.getKey(), score, Math::max);
+            }
+        }
+        return result;
+    }
+
+    private static double bestWeight(int mask) {
+        double best = 0;
+        for (Field field : Field.values()) {
+            if ((mask & field.bit()) != 0) {
+                best = Math.max(best, field.weight);
+            }
+        }
+        return best;
+    }
+
+    private void addUnlocked(BookDocument doc) {
+        documents.put(doc.id(), doc);
+        addTokens(doc.id(), doc.title(), Field.TITLE);
+        doc.authors().values().forEach(name -> addTokens(doc.id(), name, Field.AUTHOR));
+        doc.categories().values().forEach(name -> addTokens(doc.id(), name, Field.CATEGORY));
+        addTokens(doc.id(), doc.publisherName(), Field.PUBLISHER);
+    }
+
+    private void addTokens(Long bookId, String text, Field field) {
+        for (String token : TextNormalizer.tokenize(text)) {
+            postings.computeIfAbsent(token, t -> new HashMap<>())
+                    .merge(bookId, field.bit(), (a, b) -> a | b);
+        }
+    }
+
+    private void removeUnlocked(Long bookId) {
+        BookDocument old = documents.remove(bookId);
+        if (old == null) {
+            return;
+        }
+        List<String> texts = new ArrayList<>();
+        texts.add(old.title());
+        texts.addAll(old.authors().values());
+        texts.addAll(old.categories().values());
+        texts.add(old.publisherName());
+        for (String text : texts) {
+            for (String token : TextNormalizer.tokenize(text)) {
+                Map<Long, Integer> posting = postings.get(token);
+                if (posting != null) {
+                    posting.remove(bookId);
+                    if (posting.isEmpty()) {
+                        postings.remove(token);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.bookstore.backend.service.search;
+
+import com.bookstore.backend.model.Book;
+import com.bookstore.backend.repository.BookRepository;
+import com.bookstore.backend.repository.BookVariantsRepository;
+import com.bookstore.backend.repository.StockReservationRepository;
+import com.bookstore.backend.service.RandomBookPool;
+import com.bookstore.backend.utils.TransactionUtils;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Nạp catalog vào các index in-memory lúc khởi động và đồng bộ khi sách thay đổi.
+ * Các thay đổi chỉ được áp dụng sau khi transaction commit.
+ */
+@Service
+@RequiredArgsConstructor
+public class CatalogIndexer {
+
+    private static final Logger logger = LoggerFactory.getLogger(CatalogIndexer.class);
+
+    private final BookRepository bookRepository;
+    private final BookVariantsRepository bookVariantsRepository;
+    private final BookSearchIndex bookSearchIndex;
+    private final TitleSuggester titleSuggester;
+    private final FacetEngine facetEngine;
+    private final RandomBookPool randomBookPool;
+    private final BestSellerRanking bestSellerRanking;
+    private final StockReservationRepository stockReservationRepository;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        try {
+            rebuild();
+        } catch (RuntimeException ex) {
+            logger.error("Không thể build index catalog lúc khởi động: {}", ex.getMessage(), ex);
+        }
+    }
+
+    // Load toàn bộ catalog bằng 4 query phẳng rồi build lại các index
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        List<BookDocument> documents = loadDocuments();
+        bookSearchIndex.rebuild(documents);
+        titleSuggester.rebuild(documents);
+        facetEngine.rebuild(documents);
+        randomBookPool.reshuffle();
+        bestSellerRanking.rebuild(documents, loadRecentSales());
+        logger.info("Đã index {} sách trong {} ms", documents.size(), System.currentTimeMillis() - start);
+    }
+
+    // Gọi trong transaction ghi sách: snapshot ngay, áp dụng vào index sau commit
+    public void indexBook(Book book) {
+        BookDocument document = BookDocument.from(book);
+        TransactionUtils.afterCommit(() -> {
+            bookSearchIndex.index(document);
+            titleSuggester.index(document);
+            facetEngine.index(document);
+            randomBookPool.refreshBook(document.id());
+            bestSellerRanking.index(document);
+        });
+    }
+
+    // Tên tác giả / category / NXB đổi: sau commit index lại các sách tham chiếu tới nó
+    public void reindexAuthor(Long authorId) {
+        TransactionUtils.afterCommit(() -> reindexBooks(bookRepository.findIdsByAuthorId(authorId)));
+    }
+
+    public void reindexCategory(Long categoryId) {
+        TransactionUtils.afterCommit(() -> reindexBooks(bookRepository.findIdsByCategoryId(categoryId)));
+    }
+
+    public void reindexPublisher(Long publisherId) {
+        TransactionUtils.afterCommit(() -> reindexBooks(bookRepository.findIdsByPublisherId(publisherId)));
+    }
+
+    public void removeBook(Long bookId) {
+        TransactionUtils.afterCommit(() -> {
+            bookSearchIndex.remove(bookId);
+            titleSuggester.remove(bookId);
+            facetEngine.remove(bookId);
+            randomBookPool.removeBook(bookId);
+            bestSellerRanking.remove(bookId);
+        });
+    }
+
+    // Số lượng đã bán thay đổi khi đơn hàng trừ/hoàn kho
+    public void adjustSold(Long bookId, int delta) {
+        TransactionUtils.afterCommit(() -> {
+            titleSuggester.adjustSold(bookId, delta);
+            bestSellerRanking.recordSale(bookId, delta);
+        });
+    }
+
+    private void reindexBooks(Collection<Long> bookIds) {
+        if (bookIds.isEmpty()) {
+            return;
+        }
+        for (BookDocument document : loadDocuments(bookIds)) {
+            bookSearchIndex.index(document);
+            titleSuggester.index(document);
+            facetEngine.index(document);
+            bestSellerRanking.index(document);
+        }
+        logger.info("Đã index lại {} sách sau khi đổi tác giả / category / NXB", bookIds.size());
+    }
+
+    // Lượt bán đã xác nhận gần đây, gộp theo ngày (tính giữa ngày) cho điểm trending
+    private List<BestSellerRanking.DailySale> loadRecentSales() {
+        LocalDateTime since = LocalDateTime.now().minus(bestSellerRanking.trendingLookback());
+        List<BestSellerRanking.DailySale> sales = new ArrayList<>();
+        for (Object[] row : stockReservationRepository.sumConfirmedByBookAndDay(since)) {
+            long millis = ((LocalDate) row[1]).atTime(LocalTime.NOON).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            sales.add(new BestSellerRanking.DailySale((Long) row[0], millis, ((Number) row[2]).longValue()));
+        }
+        return sales;
+    }
+
+    private List<BookDocument> loadDocuments() {
+        return buildDocuments(bookRepository.findAllIndexRows(),
+                bookRepository.findAllAuthorRows(),
+                bookRepository.findAllCategoryRows(),
+                bookVariantsRepository.findAllVariantRows());
+    }
+
+    private List<BookDocument> loadDocuments(Collection<Long> bookIds) {
+        return buildDocuments(bookRepository.findIndexRowsByIds(bookIds),
+                bookRepository.findAuthorRowsByBookIds(bookIds),
+                bookRepository.findCategoryRowsByBookIds(bookIds),
+                bookVariantsRepository.findVariantRowsByBookIds(bookIds));
+    }
+
+    private static List<BookDocument> buildDocuments(List<Object[]> bookRows, List<Object[]> authorRows,
+                                                     List<Object[]> categoryRows, List<Object[]> variantRows) {
+        Map<Long, Object[]> books = new LinkedHashMap<>();
+        for (Object[] row : bookRows) {
+            books.put((Long) row[0], row);
+        }
+
+        Map<Long, Map<Long, String>> authors = new HashMap<>();
+        for (Object[] row : authorRows) {
+            authors.computeIfAbsent((Long) row[0], id -> new LinkedHashMap<>()).put((Long) row[1], (String) row[2]);
+        }
+
+        Map<Long, Map<Long, String>> categories = new HashMap<>();
+        for (Object[] row : categoryRows) {
+            categories.computeIfAbsent((Long) row[0], id -> new LinkedHashMap<>()).put((Long) row[1], (String) row[2]);
+        }
+
+        Map<Long, List<Double>> prices = new HashMap<>();
+        Map<Long, Long> sold = new HashMap<>();
+        for (Object[] row : variantRows) {
+            if (row[0] == null) {
+                continue;
+            }
+            Long bookId = (Long) row[0];
+            if (row[1] != null) {
+                prices.computeIfAbsent(bookId, id -> new ArrayList<>()).add((Double) row[1]);
+            }
+            if (row[2] != null) {
+                sold.merge(bookId, ((Integer) row[2]).longValue(), Long::sum);
+            }
+        }
+
+        List<BookDocument> documents = new ArrayList<>(books.size());
+        for (Object[] row : books.values()) {
+            Long id = (Long) row[0];
+            documents.add(new BookDocument(
+                    id,
+                    (String) row[1],
+                    (Long) row[2],
+                    (String) row[3],
+                    (Integer) row[4],
+                    authors.getOrDefault(id, Map.of()),
+                    categories.getOrDefault(id, Map.of()),
+                    prices.getOrDefault(id, List.of()).stream().mapToDouble(Double::doubleValue).toArray(),
+                    sold.getOrDefault(id, 0L)
+            ));
+        }
+        return documents;
+    }
+}
@@ -0,0 +1,38 @@
+package com.bookstore.backend.service.search;
+
+import com.bookstore.backend.model.Author;
+import com.bookstore.backend.model.Category;
+import com.bookstore.backend.model.Publisher;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+/**
+ * Entity listener của Author / Category / Publisher: tên đổi qua bất kỳ đường ghi nào thì các sách
+ * tham chiếu được index lại sau commit, để tìm kiếm / facet không trả tên cũ.
+ * CatalogIndexer lấy lười vì listener được tạo cùng EntityManagerFactory.
+ */
+@Component
+public class CatalogReferenceListener {
+
+    private final ObjectProvider<CatalogIndexer> catalogIndexer;
+
+    public CatalogReferenceListener(ObjectProvider<CatalogIndexer> catalogIndexer) {
+        this.catalogIndexer = catalogIndexer;
+    }
+
+    @PostUpdate
+    public void onUpdate(Object entity) {
+        CatalogIndexer indexer = catalogIndexer.getIfAvailable();
+        if (indexer == null) {
+            return;
+        }
+        if (entity instanceof Author author) {
+            indexer.reindexAuthor(author.getId());
+        } else if (entity instanceof Category category) {
+            indexer.reindexCategory(category.getId());
+        } else if (entity instanceof Publisher publisher) {
+            indexer.reindexPublisher(publisher.getId());
+        }
+    }
+}
@@ -0,0 +1,351 @@
+package com.bookstore.backend.service.search;
+
+import com.bookstore.backend.DTO.FacetedSearchDTO.FacetValueDTO;
+import com.bookstore.backend.DTO.FacetedSearchDTO.PriceRangeDTO;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.IntStream;
+
+/**
+ * Facet in-memory cho catalog: mỗi sách có một ordinal dày, mỗi giá trị facet
+ * (category, author, publisher, khoảng giá) giữ một BitSet các ordinal chứa nó.
+ * Lọc = AND các BitSet, đếm facet = một lượt duyệt qua các bit khớp, không cần SQL.
+ */
+@Component
+public class FacetEngine {
+
+    // Cận dưới các khoảng giá (VND), khoảng cuối không có cận trên
+    static final double[] PRICE_BOUNDS = {0, 50_000, 100_000, 200_000, 500_000};
+
+    // Chỉ trả về các giá trị có nhiều kết quả nhất cho mỗi facet
+    private static final int MAX_VALUES_PER_FACET = 20;
+
+    public record Filter(Double minPrice, Double maxPrice, Long categoryId, Long authorId, Long publisherId) {
+    }
+
+    // bookIds giữ nguyên thứ tự của danh sách đầu vào
+    public record Result(List<Long> bookIds,
+                         List<FacetValueDTO> categories,
+                         List<FacetValueDTO> authors,
+                         List<FacetValueDTO> publishers,
+                         List<PriceRangeDTO> priceRanges) {
+    }
+
+    // Các giá trị của một chiều facet: id -> ordinal, mỗi ordinal có BitSet các sách
+    private static final class Dimension {
+        final Map<Long, Integer> ordinals = new HashMap<>();
+        final List<Long> ids = new ArrayList<>();
+        final List<String> names = new ArrayList<>();
+        final List<BitSet> postings = new ArrayList<>();
+
+        int ordinalOf(Long id, String name) {
+            Integer ordinal = ordinals.get(id);
+            if (ordinal == null) {
+                ordinal = ids.size();
+                ordinals.put(id, ordinal);
+                ids.add(id);
+                names.add(name);
+                postings.add(new BitSet());
+            } else {
+                names.set(ordinal, name);
+            }
+            return ordinal;
+        }
+
+        BitSet postingOf(Long id) {
+            Integer ordinal = ordinals.get(id);
+            return ordinal == null ? null : postings.get(ordinal);
+        }
+
+        int size() {
+            return ids.size();
+        }
+    }
+
+    // Ordinal facet của từng sách, dùng cho lượt đếm
+    private record Entry(BookDocument document, int[] categories, int[] authors, int publisher, int priceMask) {
+    }
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Integer> docOrdinals = new HashMap<>();
+    // Theo ordinal sách, null = ordinal trống (sách đã bị xóa, chờ sách mới dùng lại)
+    private final List<Entry> entries = new ArrayList<>();
+    // Các ordinal trống; lấy ordinal nhỏ nhất trước để BitSet không phình theo số lần thêm / xóa
+    private final BitSet freeOrdinals = new BitSet();
+    private Dimension categories = new Dimension();
+    private Dimension authors = new Dimension();
+    private Dimension publishers = new Dimension();
+    private final BitSet[] priceBuckets = new BitSet[PRICE_BOUNDS.length];
+
+    public FacetEngine() {
+        for (int i = 0; i < priceBuckets.length; i++) {
+            priceBuckets[i] = new BitSet();
+        }
+    }
+
+    public void rebuild(Collection<BookDocument> documents) {
+        lock.writeLock().lock();
+        try {
+            docOrdinals.clear();
+            entries.clear();
+            freeOrdinals.clear();
+            categories = new Dimension();
+            authors = new Dimension();
+            publishers = new Dimension();
+            for (BitSet bucket : priceBuckets) {
+                bucket.clear();
+            }
+            documents.forEach(document -> addUnlocked(document, entries.size()));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Sách đã có trong index giữ nguyên ordinal cũ, sách mới dùng lại ordinal trống nếu có
+    public void index(BookDocument document) {
+        lock.writeLock().lock();
+        try {
+            Integer ordinal = docOrdinals.get(document.id());
+            if (ordinal != null) {
+                clearUnlocked(ordinal);
+            } else {
+                ordinal = nextOrdinal();
+            }
+            addUnlocked(document, ordinal);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long bookId) {
+        lock.writeLock().lock();
+        try {
+            removeUnlocked(bookId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Lọc danh sách sách đã xếp hạng theo filter và đếm facet trên toàn bộ kết quả
+    public Result apply(List<Long> rankedIds, Filter filter) {
+        lock.readLock().lock();
+        try {
+            BitSet matches = new BitSet(entries.size());
+            for (Long id : rankedIds) {
+                Integer ordinal = docOrdinals.get(id);
+                if (ordinal != null) {
+                    matches.set(ordinal);
+                }
+            }
+
+            intersect(matches, categories, filter.categoryId());
+            intersect(matches, authors, filter.authorId());
+            intersect(matches, publishers, filter.publisherId());
+            if (filter.minPrice() != null || filter.maxPrice() != null) {
+                filterByPrice(matches, filter.minPrice(), filter.maxPrice());
+            }
+
+            // Một lượt qua các sách khớp, tăng bộ đếm của mọi giá trị facet của sách đó
+            int[] categoryCounts = new int[categories.size()];
+            int[] authorCounts = new int[authors.size()];
+            int[] publisherCounts = new int[publishers.size()];
+            int[] priceCounts = new int[PRICE_BOUNDS.length];
+            for (int ord = matches.nextSetBit(0); ord >= 0; ord = matches.nextSetBit(ord + 1)) {
+                Entry entry = entries.get(ord);
+                for (int category : entry.categories()) {
+                    categoryCounts[category]++;
+                }
+                for (int author : entry.authors()) {
+                    authorCounts[author]++;
+                }
+                if (entry.publisher() >= 0) {
+                    publisherCounts[entry.publisher()]++;
+                }
+                for (int mask = entry.priceMask(); mask != 0; mask &= mask - 1) {
+                    priceCounts[Integer.numberOfTrailingZeros(mask)]++;
+                }
+            }
+
+            List<Long> bookIds = new ArrayList<>(matches.cardinality());
+            for (Long id : rankedIds) {
+                Integer ordinal = docOrdinals.get(id);
+                if (ordinal != null && matches.get(ordinal)) {
+                    bookIds.add(id);
+                }
+            }
+
+            return new Result(
+                    bookIds,
+                    topValues(categories, categoryCounts),
+                    topValues(authors, authorCounts),
+                    topValues(publishers, publisherCounts),
+                    priceRanges(priceCounts)
+            );
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static void intersect(BitSet matches, Dimension dimension, Long valueId) {
+        if (valueId == null) {
+            return;
+        }
+        BitSet posting = dimension.postingOf(valueId);
+        if (posting == null) {
+            matches.clear();
+        } else {
+            matches.and(posting);
+        }
+    }
+
+    // Khoảng giá nằm trọn trong [min, max] thì nhận cả BitSet, chỉ kiểm tra từng sách
+    // ở các khoảng giá bị cắt ngang
+    private void filterByPrice(BitSet matches, Double minPrice, Double maxPrice) {
+        BitSet overlapping = new BitSet();
+        BitSet covered = new BitSet();
+        for (int i = 0; i < PRICE_BOUNDS.length; i++) {
+            double low = PRICE_BOUNDS[i];
+            double high = i + 1 < PRICE_BOUNDS.length ? PRICE_BOUNDS[i + 1] : Double.POSITIVE_INFINITY;
+            if ((maxPrice != null && low > maxPrice) || (minPrice != null && high <= minPrice)) {
+                continue;
+            }
+            overlapping.or(priceBuckets[i]);
+            if ((minPrice == null || minPrice <= low) && (maxPrice == null || high <= maxPrice)) {
+                covered.or(priceBuckets[i]);
+            }
+        }
+        matches.and(overlapping);
+
+        BitSet partial = (BitSet) matches.clone();
+        partial.andNot(covered);
+        for (int ord = partial.nextSetBit(0); ord >= 0; ord = partial.nextSetBit(ord + 1)) {
+            if (!entries.get(ord).document().hasPriceBetween(minPrice, maxPrice)) {
+                matches.clear(ord);
+            }
+        }
+    }
+
+    private static List<FacetValueDTO> topValues(Dimension dimension, int[] counts) {
+        return IntStream.range(0, counts.length)
+                .filter(ord -> counts[ord] > 0)
+                .boxed()
+                .sorted(Comparator.<Integer>comparingInt(ord -> counts[ord]).reversed()
+                        .thenComparing(ord -> dimension.names.get(ord), Comparator.nullsLast(Comparator.naturalOrder())))
+                .limit(MAX_VALUES_PER_FACET)
+                .map(ord -> new FacetValueDTO(dimension.ids.get(ord), dimension.names.get(ord), counts[ord]))
+                .toList();
+    }
+
+    private static List<PriceRangeDTO> priceRanges(int[] counts) {
+        List<PriceRangeDTO> ranges = new ArrayList<>(PRICE_BOUNDS.length);
+        for (int i = 0; i < PRICE_BOUNDS.length; i++) {
+            Double max = i + 1 < PRICE_BOUNDS.length ? PRICE_BOUNDS[i + 1] : null;
+            ranges.add(new PriceRangeDTO(PRICE_BOUNDS[i], max, counts[i]));
+        }
+        return ranges;
+    }
+
+    private static int priceBucketOf(double price) {
+        for (int i = PRICE_BOUNDS.length - 1; i >= 0; i--) {
+            if (price >= PRICE_BOUNDS[i]) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int nextOrdinal() {
+        int free = freeOrdinals.nextSetBit(0);
+        if (free < 0) {
+            return entries.size();
+        }
+        freeOrdinals.clear(free);
+        return free;
+    }
+
+    private void addUnlocked(BookDocument document, int ordinal) {
+        docOrdinals.put(document.id(), ordinal);
+
+        int[] categoryOrds = document.categories().entrySet().stream()
+                .mapToInt(e -> categories.ordinalOf(e.getKey(), e.getValue()))
+                .toArray();
+        int[] authorOrds = document.authors().entrySet().stream()
+                .mapToInt(e -> authors.ordinalOf(e.getKey(), e.getValue()))
+                .toArray();
+        int publisherOrd = document.publisherId() != null
+                ? publishers.ordinalOf(document.publisherId(), document.publisherName())
+                : -1;
+        int priceMask = 0;
+        for (double price : document.prices()) {
+            int bucket = priceBucketOf(price);
+            if (bucket >= 0) {
+                priceMask |= 1 << bucket;
+            }
+        }
+
+        for (int category : categoryOrds) {
+            categories.postings.get(category).set(ordinal);
+        }
+        for (int author : authorOrds) {
+            authors.postings.get(author).set(ordinal);
+        }
+        if (publisherOrd >= 0) {
+            publishers.postings.get(publisherOrd).set(ordinal);
+        }
+        for (int mask = priceMask; mask != 0; mask &= mask - 1) {
+            priceBuckets[Integer.numberOfTrailingZeros(mask)].set(ordinal);
+        }
+
+        Entry entry = new Entry(document, categoryOrds, authorOrds, publisherOrd, priceMask);
+        if (ordinal == entries.size()) {
+            entries.add(entry);
+        } else {
+            entries.set(ordinal, entry);
+        }
+    }
+
+    private void removeUnlocked(Long bookId) {
+        Integer ordinal = docOrdinals.remove(bookId);
+        if (ordinal == null) {
+            return;
+        }
+        clearUnlocked(ordinal);
+        entries.set(ordinal, null);
+        freeOrdinals.set(ordinal);
+    }
+
+    // Gỡ ordinal khỏi mọi BitSet facet
+    private void clearUnlocked(int ordinal) {
+        Entry entry = entries.get(ordinal);
+        for (int category : entry.categories()) {
+            categories.postings.get(category).clear(ordinal);
+        }
+        for (int author : entry.authors()) {
+            authors.postings.get(author).clear(ordinal);
+        }
+        if (entry.publisher() >= 0) {
+            publishers.postings.get(entry.publisher()).clear(ordinal);
+        }
+        for (int mask = entry.priceMask(); mask != 0; mask &= mask - 1) {
+            priceBuckets[Integer.numberOfTrailingZeros(mask)].clear(ordinal);
+        }
+    }
+
+    // Số ordinal đã cấp (kể cả ordinal trống)
+    int capacity() {
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
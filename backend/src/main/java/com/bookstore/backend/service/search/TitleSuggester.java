@@ -0,0 +1,266 @@
+package com.bookstore.backend.service.search;
+
+import com.bookstore.backend.utils.TextNormalizer;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Gợi ý tiêu đề cho ô tìm kiếm bằng radix trie (trie nén) trên tiêu đề đã bỏ dấu.
+ * Mỗi tiêu đề được chèn với mọi hậu tố bắt đầu tại đầu một từ, nên "attack" khớp
+ * "Series các tập ATTACK ON TITAN". Mỗi node giữ sẵn top-K theo số lượng đã bán,
+ * nên tra cứu chỉ là đi xuống trie, không quét cây con và không gọi DB.
+ */
+@Component
+public class TitleSuggester {
+
+    static final int TOP_K = 5;
+
+    // Giới hạn độ dài key để bộ nhớ không tăng theo tiêu đề quá dài
+    private static final int MAX_KEY_LENGTH = 64;
+
+    private static final Comparator<Suggestion> RANKING = Comparator
+            .comparingLong(Suggestion::sold).reversed()
+            .thenComparing(Suggestion::title)
+            .thenComparing(Suggestion::bookId);
+
+    record Suggestion(Long bookId, String title, long sold) {
+    }
+
+    private static final class Node {
+        String label;
+        final Map<Character, Node> children = new HashMap<>();
+        // Các sách có key kết thúc đúng tại node này
+        final Map<Long, Suggestion> terminals = new HashMap<>();
+        List<Suggestion> top = List.of();
+
+        Node(String label) {
+            this.label = label;
+        }
+    }
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private Node root = new Node("");
+    private final Map<Long, Suggestion> entries = new HashMap<>();
+
+    public void rebuild(Collection<BookDocument> documents) {
+        lock.writeLock().lock();
+        try {
+            root = new Node("");
+            entries.clear();
+            documents.forEach(doc -> insertUnlocked(new Suggestion(doc.id(), doc.title(), doc.sold())));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void index(BookDocument document) {
+        lock.writeLock().lock();
+        try {
+            removeUnlocked(document.id());
+            insertUnlocked(new Suggestion(document.id(), document.title(), document.sold()));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long bookId) {
+        lock.writeLock().lock();
+        try {
+            removeUnlocked(bookId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Cập nhật số lượng đã bán khi đơn hàng trừ/hoàn kho
+    public void adjustSold(Long bookId, long delta) {
+        lock.writeLock().lock();
+        try {
+            Suggestion current = entries.get(bookId);
+            if (current == null) {
+                return;
+            }
+            removeUnlocked(bookId);
+            insertUnlocked(new Suggestion(bookId, current.title(), Math.max(0, current.sold() + delta)));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Trả về tối đa limit tiêu đề (không trùng) có một từ bắt đầu bằng keyword
+    public List<String> suggest(String keyword, int limit) {
+        String key = normalizeQuery(keyword);
+        if (key.isEmpty()) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            int pos = 0;
+            while (pos < key.length()) {
+                Node child = node.children.get(key.charAt(pos));
+                if (child == null) {
+                    return List.of();
+                }
+                String label = child.label;
+                int common = commonPrefix(label, key, pos);
+                if (pos + common == key.length()) {
+                    // Keyword kết thúc ở giữa hoặc cuối cạnh -> mọi key dưới child đều khớp
+                    node = child;
+                    break;
+                }
+                if (common < label.length()) {
+                    return List.of();
+                }
+                pos += common;
+                node = child;
+            }
+
+            Set<String> titles = new LinkedHashSet<>();
+            for (Suggestion suggestion : node.top) {
+                titles.add(suggestion.title());
+                if (titles.size() >= limit) {
+                    break;
+                }
+            }
+            return new ArrayList<>(titles);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void insertUnlocked(Suggestion suggestion) {
+        entries.put(suggestion.bookId(), suggestion);
+        for (String key : keysOf(suggestion.title())) {
+            insertKey(key, suggestion);
+        }
+    }
+
+    private void insertKey(String key, Suggestion suggestion) {
+        Node node = root;
+        int pos = 0;
+        while (pos < key.length()) {
+            char first = key.charAt(pos);
+            Node child = node.children.get(first);
+            if (child == null) {
+                child = new Node(key.substring(pos));
+                node.children.put(first, child);
+                pos = key.length();
+            } else {
+                int common = commonPrefix(child.label, key, pos);
+                if (common < child.label.length()) {
+                    child = split(node, child, common);
+                }
+                pos += common;
+            }
+            offer(child, suggestion);
+            node = child;
+        }
+        node.terminals.put(suggestion.bookId(), suggestion);
+    }
+
+    // Tách cạnh tại vị trí at: parent -> mid(label[0..at]) -> child(label[at..])
+    private Node split(Node parent, Node child, int at) {
+        Node mid = new Node(child.label.substring(0, at));
+        child.label = child.label.substring(at);
+        mid.children.put(child.label.charAt(0), child);
+        mid.top = child.top;
+        parent.children.put(mid.label.charAt(0), mid);
+        return mid;
+    }
+
+    private void removeUnlocked(Long bookId) {
+        Suggestion old = entries.remove(bookId);
+        if (old == null) {
+            return;
+        }
+        for (String key : keysOf(old.title())) {
+            removeKey(root, key, 0, bookId);
+        }
+    }
+
+    // Xóa đệ quy rồi tính lại top-K của các node trên đường đi (bottom-up)
+    private void removeKey(Node node, String key, int pos, Long bookId) {
+        if (pos == key.length()) {
+            node.terminals.remove(bookId);
+        } else {
+            Node child = node.children.get(key.charAt(pos));
+            if (child == null || !key.startsWith(child.label, pos)) {
+                return;
+            }
+            removeKey(child, key, pos + child.label.length(), bookId);
+            if (child.children.isEmpty() && child.terminals.isEmpty()) {
+                node.children.remove(key.charAt(pos));
+            }
+        }
+        if (node != root) {
+            recomputeTop(node);
+        }
+    }
+
+    // Top-K của node = top-K của (terminals của node + top-K của các con).
+    // Đúng kể cả khi một sách xuất hiện ở nhiều nhánh vì mỗi nhánh đã giữ top-K riêng.
+    private void recomputeTop(Node node) {
+        Map<Long, Suggestion> candidates = new HashMap<>(node.terminals);
+        for (Node child : node.children.values()) {
+            for (Suggestion suggestion : child.top) {
+                candidates.putIfAbsent(suggestion.bookId(), suggestion);
+            }
+        }
+        node.top = candidates.values().stream().sorted(RANKING).limit(TOP_K).toList();
+    }
+
+    private void offer(Node node, Suggestion suggestion) {
+        List<Suggestion> top = node.top;
+        for (Suggestion existing : top) {
+            if (existing.bookId().equals(suggestion.bookId())) {
+                return;
+            }
+        }
+        if (top.size() >= TOP_K && RANKING.compare(suggestion, top.get(top.size() - 1)) >= 0) {
+            return;
+        }
+        List<Suggestion> updated = new ArrayList<>(top);
+        updated.add(suggestion);
+        updated.sort(RANKING);
+        if (updated.size() > TOP_K) {
+            updated.remove(updated.size() - 1);
+        }
+        node.top = List.copyOf(updated);
+    }
+
+    // Các hậu tố của tiêu đề đã chuẩn hóa, bắt đầu tại đầu mỗi từ
+    private static Set<String> keysOf(String title) {
+        List<String> tokens = TextNormalizer.tokenize(title);
+        Set<String> keys = new LinkedHashSet<>();
+        for (int i = 0; i < tokens.size(); i++) {
+            String key = String.join(" ", tokens.subList(i, tokens.size()));
+            keys.add(key.length() > MAX_KEY_LENGTH ? key.substring(0, MAX_KEY_LENGTH) : key);
+        }
+        return keys;
+    }
+
+    private static String normalizeQuery(String keyword) {
+        String key = String.join(" ", TextNormalizer.tokenize(keyword));
+        return key.length() > MAX_KEY_LENGTH ? key.substring(0, MAX_KEY_LENGTH) : key;
+    }
+
+    private static int commonPrefix(String label, String key, int offset) {
+        int max = Math.min(label.length(), key.length() - offset);
+        int i = 0;
+        while (i < max && label.charAt(i) == key.charAt(offset + i)) {
+            i++;
+        }
+        return i;
+    }
+}
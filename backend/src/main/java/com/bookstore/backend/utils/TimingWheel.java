@@ -0,0 +1,85 @@
+package com.bookstore.backend.utils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Hashed timing wheel: mỗi slot ứng với một tick, mốc thời gian xa hơn một vòng nằm chung slot
+ * và chỉ được trả ra khi tới đúng tick của nó. Thêm mốc O(1), mỗi lần advance chỉ xét các slot vừa đi qua.
+ * Không tự chạy thread: bên dùng gọi advance() theo chu kỳ tick.
+ */
+public class TimingWheel<T> {
+
+    private record Timeout<T>(T item, long deadlineTick) {
+    }
+
+    private final long tickMillis;
+    private final List<ArrayDeque<Timeout<T>>> slots;
+    private long currentTick;
+
+    public TimingWheel(long tickMillis, int wheelSize, long nowMillis) {
+        if (tickMillis <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException("tickMillis và wheelSize phải > 0");
+        }
+        this.tickMillis = tickMillis;
+        this.slots = new ArrayList<>(wheelSize);
+        for (int i = 0; i < wheelSize; i++) {
+            slots.add(new ArrayDeque<>());
+        }
+        this.currentTick = nowMillis / tickMillis;
+    }
+
+    // Mốc đã qua được trả ra ở lần advance kế tiếp
+    public synchronized void schedule(T item, long deadlineMillis) {
+        long deadlineTick = Math.max(ceilDiv(deadlineMillis, tickMillis), currentTick + 1);
+        slots.get(slotOf(deadlineTick)).add(new Timeout<>(item, deadlineTick));
+    }
+
+    // Đi tới thời điểm nowMillis, trả về các item đã tới hạn
+    public synchronized List<T> advance(long nowMillis) {
+        long targetTick = nowMillis / tickMillis;
+        List<T> due = new ArrayList<>();
+        if (targetTick - currentTick >= slots.size()) {
+            // Bị trễ hơn một vòng (GC, server treo): quét toàn bộ một lần thay vì từng tick
+            for (ArrayDeque<Timeout<T>> slot : slots) {
+                collect(slot, targetTick, due);
+            }
+            currentTick = targetTick;
+            return due;
+        }
+        while (currentTick < targetTick) {
+            currentTick++;
+            collect(slots.get(slotOf(currentTick)), currentTick, due);
+        }
+        return due;
+    }
+
+    public synchronized void clear() {
+        slots.forEach(ArrayDeque::clear);
+    }
+
+    public synchronized int size() {
+        return slots.stream().mapToInt(ArrayDeque::size).sum();
+    }
+
+    private void collect(ArrayDeque<Timeout<T>> slot, long tick, List<T> due) {
+        Iterator<Timeout<T>> iterator = slot.iterator();
+        while (iterator.hasNext()) {
+            Timeout<T> timeout = iterator.next();
+            if (timeout.deadlineTick() <= tick) {
+                due.add(timeout.item());
+                iterator.remove();
+            }
+        }
+    }
+
+    private int slotOf(long tick) {
+        return (int) Math.floorMod(tick, (long) slots.size());
+    }
+
+    private static long ceilDiv(long value, long divisor) {
+        return -Math.floorDiv(-value, divisor);
+    }
+}
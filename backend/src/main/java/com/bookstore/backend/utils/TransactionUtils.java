@@ -0,0 +1,42 @@
+package com.bookstore.backend.utils;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Chạy tác vụ sau khi transaction hiện tại commit thành công.
+ * Dùng để cập nhật các cấu trúc in-memory (index, cache) chỉ khi dữ liệu đã thật sự được lưu.
+ */
+public final class TransactionUtils {
+
+    private TransactionUtils() {
+    }
+
+    public static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            // Không có transaction -> chạy ngay
+            action.run();
+        }
+    }
+
+    // Chạy khi transaction hiện tại rollback (không có transaction -> không bao giờ rollback, bỏ qua)
+    public static void afterRollback(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_ROLLED_BACK) {
+                        action.run();
+                    }
+                }
+            });
+        }
+    }
+}
@@ -16,3 +16,6 @@ INSERT INTO accounts (userid, username, email, password, is_account_verified, cr
 
 -- Create default cart for test customer
 INSERT INTO cart (user_id, created_at) VALUES (2, NOW());
+
+-- Index biểu thức cho phân trang keyset theo năm xuất bản (COALESCE(publisher_year, 0), id)
+CREATE INDEX IF NOT EXISTS idx_book_publisher_year_id ON book ((COALESCE(publisher_year, 0)), id);
@@ -0,0 +1,63 @@
+package com.bookstore.backend.config;
+
+import com.bookstore.backend.utils.JwtUtils;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetailsService;
+
+import java.security.Principal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+
+// SUBSCRIBE topic admin: chặn cả đường vòng bằng pattern của simple broker
+class WebSocketAuthChannelInterceptorTest {
+
+    private final WebSocketAuthChannelInterceptor interceptor =
+            new WebSocketAuthChannelInterceptor(mock(JwtUtils.class), mock(UserDetailsService.class));
+    private final MessageChannel channel = mock(MessageChannel.class);
+
+    @Test
+    void nonAdminCannotSubscribeToAdminTopicOrWildcards() {
+        Principal customer = user("ROLE_USER");
+        for (String destination : List.of("/topic/admin/metrics", "/topic/**", "/topic/*/metrics", "/topic/admin/*")) {
+            assertThrows(AccessDeniedException.class, () -> subscribe(destination, customer), destination);
+            assertThrows(AccessDeniedException.class, () -> subscribe(destination, null), destination);
+        }
+    }
+
+    @Test
+    void nonAdminCanSubscribeToPublicTopics() {
+        assertDoesNotThrow(() -> subscribe("/topic/notifications", user("ROLE_USER")));
+        assertDoesNotThrow(() -> subscribe("/topic/notifications", null));
+    }
+
+    @Test
+    void adminCanSubscribeToAnything() {
+        Principal admin = user("ROLE_ADMIN");
+        assertDoesNotThrow(() -> subscribe("/topic/admin/metrics", admin));
+        assertDoesNotThrow(() -> subscribe("/topic/**", admin));
+    }
+
+    private void subscribe(String destination, Principal user) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+        accessor.setDestination(destination);
+        accessor.setUser(user);
+        accessor.setLeaveMutable(true);
+        Message<byte[]> message = MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+        interceptor.preSend(message, channel);
+    }
+
+    private static Principal user(String role) {
+        return new UsernamePasswordAuthenticationToken("user@example.com", null, List.of(new SimpleGrantedAuthority(role)));
+    }
+}
@@ -0,0 +1,100 @@
+package com.bookstore.backend.service;
+
+import com.bookstore.backend.DTO.BookDTO;
+import com.bookstore.backend.service.search.BestSellerRanking;
+import com.bookstore.backend.service.search.BookDocument;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// Trang trong top-K lấy từ bộ nhớ, trang vượt top-K load theo id từ ranking
+class BestSellerCatalogTest {
+
+    private static final int CATALOG_SIZE = 10;
+    private static final int TOP_SIZE = 4;
+
+    private final BestSellerRanking bestSellerRanking = new BestSellerRanking(Duration.ofDays(7));
+    private final BookCatalogReader bookCatalogReader = mock(BookCatalogReader.class);
+    private BestSellerCatalog catalog;
+
+    @BeforeEach
+    void setUp() {
+        // Sách id lớn bán nhiều hơn: thứ tự bán chạy là 10, 9, ..., 1
+        bestSellerRanking.rebuild(LongStream.rangeClosed(1, CATALOG_SIZE)
+                .mapToObj(id -> new BookDocument(id, "Sách " + id, null, null, null, Map.of(), Map.of(1L, "Manga"),
+                        new double[0], id * 10))
+                .toList(), List.of());
+        when(bookCatalogReader.loadBooks(anyList())).thenAnswer(invocation -> {
+            List<Long> ids = invocation.getArgument(0);
+            return ids.stream().map(id -> BookDTO.builder().id(id).build()).toList();
+        });
+        when(bookCatalogReader.loadPage(any())).thenAnswer(invocation -> {
+            Page<Long> ids = invocation.getArgument(0);
+            return ids.map(id -> BookDTO.builder().id(id).build());
+        });
+        catalog = new BestSellerCatalog(bestSellerRanking, bookCatalogReader, TOP_SIZE, Duration.ofMinutes(1));
+    }
+
+    @Test
+    void pagesInsideTopAreServedFromMemory() {
+        Page<BookDTO> first = catalog.page("Manga", BestSellerRanking.Window.ALL_TIME, PageRequest.of(0, 2));
+        Page<BookDTO> second = catalog.page("Manga", BestSellerRanking.Window.ALL_TIME, PageRequest.of(1, 2));
+
+        assertEquals(List.of(10L, 9L), ids(first));
+        assertEquals(List.of(8L, 7L), ids(second));
+        assertEquals(CATALOG_SIZE, second.getTotalElements());
+        // Top-K chỉ load một lần cho cả hai trang
+        verify(bookCatalogReader).loadBooks(List.of(10L, 9L, 8L, 7L));
+        verify(bookCatalogReader, never()).loadPage(any());
+    }
+
+    @Test
+    void pagesBeyondTopLoadByIds() {
+        Pageable pageable = PageRequest.of(1, 3);
+
+        Page<BookDTO> page = catalog.page(null, BestSellerRanking.Window.ALL_TIME, pageable);
+
+        assertEquals(List.of(7L, 6L, 5L), ids(page));
+        assertEquals(CATALOG_SIZE, page.getTotalElements());
+        verify(bookCatalogReader).loadPage(new PageImpl<>(List.of(7L, 6L, 5L), pageable, CATALOG_SIZE));
+        verify(bookCatalogReader, never()).loadBooks(anyList());
+    }
+
+    @Test
+    void cachedTopIsKeptUntilRefresh() {
+        catalog.top(null, BestSellerRanking.Window.TRENDING, TOP_SIZE);
+        clearInvocations(bookCatalogReader);
+
+        // Bán thêm không làm top đọc lại DB trước lượt làm mới, nhưng trang ngoài top-K thấy ngay
+        bestSellerRanking.recordSale(1L, 5);
+        assertEquals(List.of(10L, 9L, 8L, 7L), ids(catalog.top(null, BestSellerRanking.Window.TRENDING, TOP_SIZE)));
+        assertEquals(List.of(1L, 10L, 9L, 8L, 7L),
+                ids(catalog.page(null, BestSellerRanking.Window.TRENDING, PageRequest.of(0, 5)).getContent()));
+        verify(bookCatalogReader, never()).loadBooks(anyList());
+    }
+
+    private static List<Long> ids(Page<BookDTO> page) {
+        return ids(page.getContent());
+    }
+
+    private static List<Long> ids(List<BookDTO> books) {
+        return books.stream().map(BookDTO::getId).toList();
+    }
+}
@@ -0,0 +1,149 @@
+package com.bookstore.backend.service;
+
+import com.bookstore.backend.DTO.BookDTO;
+import com.bookstore.backend.model.Author;
+import com.bookstore.backend.model.Book;
+import com.bookstore.backend.model.BookImages;
+import com.bookstore.backend.model.BookVariants;
+import com.bookstore.backend.model.Category;
+import com.bookstore.backend.model.Publisher;
+import com.bookstore.backend.repository.BookRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Mỗi trang sách phải được load bằng số query cố định, không phụ thuộc số sách/variant/ảnh
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(BookCatalogReader.class)
+class BookCatalogReaderTest {
+
+    // 1 query id + 1 count + 5 query theo lô
+    private static final long QUERIES_PER_PAGE = 7;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private BookCatalogReader bookCatalogReader;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    private Statistics statistics;
+    private final List<Long> bookIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        Publisher publisher = entityManager.persist(Publisher.builder().name("NXB Trẻ").build());
+        Author first = entityManager.persist(Author.builder().name("Nguyễn Nhật Ánh").build());
+        Author second = entityManager.persist(Author.builder().name("Gosho Aoyama").build());
+        Category manga = entityManager.persist(Category.builder().name("Manga").build());
+        Category novel = entityManager.persist(Category.builder().name("Tiểu thuyết").build());
+
+        for (int i = 0; i < 30; i++) {
+            Book book = Book.builder()
+                    .title("Sách " + i)
+                    .publisher(publisher)
+                    .publisherYear(2000 + i)
+                    .isDeleted(false)
+                    .authors(Set.of(first, second))
+                    .categories(i % 2 == 0 ? Set.of(manga, novel) : Set.of(novel))
+                    .build();
+            for (int v = 0; v < 3; v++) {
+                BookVariants variant = BookVariants.builder()
+                        .price(10000.0 * (v + 1))
+                        .quantity(5)
+                        .sold(i)
+                        .status("AVAILABLE")
+                        .isbn("978-" + i + "-" + v)
+                        .images(new ArrayList<>())
+                        .build();
+                for (int img = 0; img < 2; img++) {
+                    variant.getImages().add(BookImages.builder()
+                            .imageUrl("https://cdn/" + i + "/" + v + "/" + img + ".jpg")
+                            .bookVariant(variant)
+                            .build());
+                }
+                book.addVariant(variant);
+            }
+            bookIds.add(entityManager.persist(book).getId());
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+    }
+
+    @Test
+    void allBooksPageLoadsInFixedNumberOfQueries() {
+        Page<BookDTO> page = bookCatalogReader.loadPage(bookRepository.findAllBookIds(PageRequest.of(0, 20, Sort.by("id"))));
+
+        assertEquals(QUERIES_PER_PAGE, statistics.getPrepareStatementCount());
+        assertEquals(20, page.getNumberOfElements());
+        assertEquals(30, page.getTotalElements());
+
+        BookDTO dto = page.getContent().get(0);
+        assertEquals(bookIds.get(0), dto.getId());
+        assertEquals("NXB Trẻ", dto.getPublisherName());
+        assertEquals(2, dto.getAuthorIds().size());
+        assertEquals(2, dto.getCategoryNames().size());
+        assertEquals(3, dto.getVariants().size());
+        assertEquals(2, dto.getVariants().get(0).getImageUrls().size());
+    }
+
+    @Test
+    void queryCountDoesNotGrowWithPageSize() {
+        bookCatalogReader.loadPage(bookRepository.findAllBookIds(PageRequest.of(0, 5)));
+        long smallPage = statistics.getPrepareStatementCount();
+
+        statistics.clear();
+        bookCatalogReader.loadPage(bookRepository.findAllBookIds(PageRequest.of(0, 30)));
+
+        assertEquals(smallPage, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void categoryPageLoadsInFixedNumberOfQueries() {
+        Page<BookDTO> page = bookCatalogReader.loadPage(
+                bookRepository.findIdsByCategoryName("Manga", PageRequest.of(0, 10, Sort.by("title"))));
+
+        assertEquals(QUERIES_PER_PAGE, statistics.getPrepareStatementCount());
+        assertEquals(15, page.getTotalElements());
+        page.forEach(dto -> assertEquals(true, dto.getCategoryNames().contains("Manga")));
+    }
+
+    @Test
+    void loadBooksKeepsRequestedOrderAndSkipsMissingIds() {
+        List<Long> ids = List.of(bookIds.get(5), -1L, bookIds.get(2), bookIds.get(9));
+
+        List<BookDTO> books = bookCatalogReader.loadBooks(ids);
+
+        assertEquals(5, statistics.getPrepareStatementCount());
+        assertEquals(List.of(bookIds.get(5), bookIds.get(2), bookIds.get(9)), books.stream().map(BookDTO::getId).toList());
+        assertEquals(6, books.get(1).getVariants().stream().mapToInt(v -> v.getImageUrls().size()).sum());
+    }
+}
@@ -0,0 +1,63 @@
+package com.bookstore.backend.service;
+
+import com.bookstore.backend.DTO.BookDTO;
+import com.bookstore.backend.DTO.CursorPageDTO;
+import com.bookstore.backend.service.search.BookDocument;
+import com.bookstore.backend.service.search.BookSearchIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// Tìm kiếm theo cursor: sort title không phân biệt hoa thường, hòa title thì theo id, không lặp / sót qua các trang
+class BookCursorPagerTest {
+
+    private final BookSearchIndex bookSearchIndex = new BookSearchIndex();
+    private final BookCatalogReader bookCatalogReader = mock(BookCatalogReader.class);
+    private final BookCursorPager pager = new BookCursorPager(bookCatalogReader, bookSearchIndex);
+
+    @BeforeEach
+    void setUp() {
+        bookSearchIndex.rebuild(List.of(
+                document(1L, "sách Toán"),
+                document(2L, "Sách Văn"),
+                document(3L, "SÁCH ANH"),
+                document(4L, "sách anh"),
+                document(5L, "Sách Địa")));
+        when(bookCatalogReader.loadBooks(anyList())).thenAnswer(invocation -> {
+            List<Long> ids = invocation.getArgument(0);
+            return ids.stream().map(id -> BookDTO.builder().id(id).build()).toList();
+        });
+    }
+
+    @Test
+    void titleSortIgnoresCaseAndBreaksTiesById() {
+        assertEquals(List.of(3L, 4L, 1L, 2L, 5L), walk(false));
+        assertEquals(List.of(5L, 2L, 1L, 4L, 3L), walk(true));
+    }
+
+    private List<Long> walk(boolean descending) {
+        List<Long> ids = new ArrayList<>();
+        String cursor = null;
+        do {
+            CursorPageDTO<BookDTO> page = pager.search("sách", BookSearchIndex.Field.TITLE,
+                    BookCursorPager.SortKey.TITLE, descending, cursor, 2, false);
+            assertEquals(5L, page.getTotalElements());
+            page.getContent().forEach(book -> ids.add(book.getId()));
+            cursor = page.getNextCursor();
+            assertEquals(cursor != null, page.isHasNext());
+        } while (cursor != null);
+        return ids;
+    }
+
+    private static BookDocument document(Long id, String title) {
+        return new BookDocument(id, title, null, null, null, Map.of(), Map.of(), new double[0], 0);
+    }
+}
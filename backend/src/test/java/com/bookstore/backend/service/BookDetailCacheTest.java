@@ -0,0 +1,118 @@
+package com.bookstore.backend.service;
+
+import com.bookstore.backend.DTO.BookDTO;
+import com.bookstore.backend.exception.ResourceNotFoundException;
+import com.bookstore.backend.model.Book;
+import com.bookstore.backend.model.BookImages;
+import com.bookstore.backend.model.BookVariants;
+import com.bookstore.backend.model.Publisher;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// Chi tiết sách: lần đầu load theo lô, các lần sau lấy từ cache tới khi bị invalidate
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({BookCatalogReader.class, BookDetailCache.class})
+class BookDetailCacheTest {
+
+    // Sách + publisher, authors, categories, variants, images
+    private static final long QUERIES_PER_BOOK = 5;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private BookDetailCache bookDetailCache;
+
+    private Statistics statistics;
+    private Long bookId;
+
+    @BeforeEach
+    void setUp() {
+        Publisher publisher = entityManager.persist(Publisher.builder().name("NXB Trẻ").build());
+        Book book = Book.builder()
+                .title("Sách 3")
+                .publisher(publisher)
+                .isDeleted(false)
+                .build();
+        for (int v = 0; v < 3; v++) {
+            BookVariants variant = BookVariants.builder()
+                    .price(10000.0 * (v + 1))
+                    .quantity(5)
+                    .sold(0)
+                    .status("AVAILABLE")
+                    .isbn("978-3-" + v)
+                    .images(new ArrayList<>())
+                    .build();
+            for (int img = 0; img < 2; img++) {
+                variant.getImages().add(BookImages.builder()
+                        .imageUrl("https://cdn/3/" + v + "/" + img + ".jpg")
+                        .bookVariant(variant)
+                        .build());
+            }
+            book.addVariant(variant);
+        }
+        bookId = entityManager.persist(book).getId();
+        entityManager.flush();
+        entityManager.clear();
+        // Bean dùng chung giữa các test, id có thể trùng sau khi rollback
+        bookDetailCache.invalidate(bookId);
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+    }
+
+    @Test
+    void secondReadIsServedFromCache() {
+        BookDTO dto = bookDetailCache.get(bookId);
+
+        assertEquals(QUERIES_PER_BOOK, statistics.getPrepareStatementCount());
+        assertEquals("Sách 3", dto.getTitle());
+        assertEquals(6, dto.getVariants().stream().mapToInt(v -> v.getImageUrls().size()).sum());
+
+        statistics.clear();
+        bookDetailCache.get(bookId);
+        assertEquals(0, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void invalidateReloadsLatestRow() {
+        bookDetailCache.get(bookId);
+        entityManager.getEntityManager().createQuery("UPDATE Book b SET b.title = 'Sách 3 (tái bản)' WHERE b.id = :id")
+                .setParameter("id", bookId)
+                .executeUpdate();
+
+        // Ghi chưa commit: cache giữ bản cũ
+        bookDetailCache.invalidateAfterCommit(bookId);
+        assertEquals("Sách 3", bookDetailCache.get(bookId).getTitle());
+
+        bookDetailCache.invalidate(bookId);
+        statistics.clear();
+        assertEquals("Sách 3 (tái bản)", bookDetailCache.get(bookId).getTitle());
+        assertEquals(QUERIES_PER_BOOK, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void missingBookIsNotFound() {
+        assertThrows(ResourceNotFoundException.class, () -> bookDetailCache.get(bookId + 1000));
+    }
+}
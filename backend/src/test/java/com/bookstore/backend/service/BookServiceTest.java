@@ -0,0 +1,204 @@
+package com.bookstore.backend.service;
+
+import com.bookstore.backend.DTO.BookDTO;
+import com.bookstore.backend.DTO.BookDTO.BookVariantDTO;
+import com.bookstore.backend.exception.BusinessException;
+import com.bookstore.backend.model.Book;
+import com.bookstore.backend.model.BookVariants;
+import com.bookstore.backend.repository.BookRepository;
+import com.bookstore.backend.service.search.BestSellerRanking;
+import com.bookstore.backend.service.search.BookSearchIndex;
+import com.bookstore.backend.service.search.CatalogIndexer;
+import com.bookstore.backend.service.search.FacetEngine;
+import com.bookstore.backend.service.search.TitleSuggester;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.when;
+
+// Admin sửa số lượng variant: áp dụng chênh lệch so với giá trị đã đọc, không ghi đè lượt giữ hàng chen vào giữa
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(BookService.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class BookServiceTest {
+
+    private static final int STOCK = 10;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockitoBean
+    private S3Service s3Service;
+
+    @MockitoBean
+    private BookSearchIndex bookSearchIndex;
+
+    @MockitoBean
+    private CatalogIndexer catalogIndexer;
+
+    @MockitoBean
+    private TitleSuggester titleSuggester;
+
+    @MockitoBean
+    private BookCatalogReader bookCatalogReader;
+
+    @MockitoBean
+    private FacetEngine facetEngine;
+
+    @MockitoBean
+    private FlashSaleInventory flashSaleInventory;
+
+    @MockitoBean
+    private BestSellerCatalog bestSellerCatalog;
+
+    @MockitoBean
+    private BestSellerRanking bestSellerRanking;
+
+    @MockitoBean
+    private LowStockMonitor lowStockMonitor;
+
+    @MockitoBean
+    private RandomBookPool randomBookPool;
+
+    @MockitoBean
+    private BookDetailCache bookDetailCache;
+
+    @MockitoBean
+    private BookReferenceResolver bookReferenceResolver;
+
+    private Long bookId;
+    private Long variantId;
+
+    @BeforeEach
+    void setUp() {
+        Book book = Book.builder().title("Conan tập 100").isDeleted(false).build();
+        book.addVariant(BookVariants.builder()
+                .price(25000.0)
+                .quantity(STOCK)
+                .sold(0)
+                .status("AVAILABLE")
+                .build());
+        Book saved = bookRepository.save(book);
+        bookId = saved.getId();
+        variantId = saved.getVariants().get(0).getId();
+        when(bookReferenceResolver.resolve(any()))
+                .thenReturn(new BookReferenceResolver.ResolvedReferences(null, Set.of(), Set.of()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM book_variants");
+        jdbcTemplate.update("DELETE FROM book");
+    }
+
+    @Test
+    void quantityEditIsAppliedAsDeltaOverConcurrentReservation() {
+        // Đơn hàng giữ 3 cuốn sau khi admin mở form (đọc được 10)
+        reserve(3);
+
+        BookDTO updated = bookService.updateBook(bookId, edit(25000.0, 15, STOCK));
+
+        assertEquals(12, quantity());
+        assertEquals(12, updated.getVariants().get(0).getQuantity());
+    }
+
+    @Test
+    void editingOtherFieldsKeepsConcurrentReservation() {
+        reserve(3);
+
+        bookService.updateBook(bookId, edit(30000.0, STOCK, STOCK));
+
+        assertEquals(7, quantity());
+        assertEquals(30000.0, jdbcTemplate.queryForObject(
+                "SELECT price FROM book_variants WHERE id = ?", Double.class, variantId));
+    }
+
+    @Test
+    void decreaseBelowReservedStockIsRejected() {
+        reserve(3);
+
+        assertThrows(BusinessException.class, () -> bookService.updateBook(bookId, edit(25000.0, 0, STOCK)));
+        assertEquals(7, quantity());
+    }
+
+    @Test
+    void reachingZeroMarksVariantOutOfStock() {
+        bookService.updateBook(bookId, edit(25000.0, 0, STOCK));
+
+        assertEquals(0, quantity());
+        assertEquals("OUT_OF_STOCK", jdbcTemplate.queryForObject(
+                "SELECT status FROM book_variants WHERE id = ?", String.class, variantId));
+    }
+
+    @Test
+    void editKeepsSoldFromConfirmationsBeforeAndDuringIt() {
+        // Form admin mở lúc sold = 0, sau đó một đơn được xác nhận
+        confirm(2);
+        // Một đơn khác được xác nhận khi transaction sửa sách đang chạy, trước lúc flush
+        doAnswer(invocation -> {
+            CompletableFuture.runAsync(() -> confirm(3)).join();
+            return null;
+        }).when(catalogIndexer).indexBook(any());
+
+        bookService.updateBook(bookId, edit(30000.0, STOCK, STOCK));
+
+        assertEquals(5, jdbcTemplate.queryForObject(
+                "SELECT sold FROM book_variants WHERE id = ?", Integer.class, variantId));
+        assertEquals(30000.0, jdbcTemplate.queryForObject(
+                "SELECT price FROM book_variants WHERE id = ?", Double.class, variantId));
+    }
+
+    private BookDTO edit(double price, int quantity, int originalQuantity) {
+        BookDTO dto = new BookDTO();
+        dto.setTitle("Conan tập 100");
+        dto.setVariants(List.of(BookVariantDTO.builder()
+                .id(variantId)
+                .price(price)
+                .quantity(quantity)
+                .originalQuantity(originalQuantity)
+                .sold(0)
+                .status("AVAILABLE")
+                .build()));
+        return dto;
+    }
+
+    // Lượt giữ hàng của một đơn khác, commit ngay
+    private void reserve(int qty) {
+        jdbcTemplate.update("UPDATE book_variants SET quantity = quantity - ? WHERE id = ?", qty, variantId);
+    }
+
+    // Xác nhận đơn đã giữ hàng: chỉ cộng sold (InventoryReservationService.confirm), commit ngay
+    private void confirm(int qty) {
+        jdbcTemplate.update("UPDATE book_variants SET sold = sold + ? WHERE id = ?", qty, variantId);
+    }
+
+    private int quantity() {
+        return jdbcTemplate.queryForObject("SELECT quantity FROM book_variants WHERE id = ?", Integer.class, variantId);
+    }
+}
@@ -0,0 +1,209 @@
+package com.bookstore.backend.service;
+
+import com.bookstore.backend.model.Book;
+import com.bookstore.backend.model.BookVariants;
+import com.bookstore.backend.model.DailySales;
+import com.bookstore.backend.model.OrderDetails;
+import com.bookstore.backend.model.Orders;
+import com.bookstore.backend.model.enums.PaymentStatus;
+import com.bookstore.backend.model.enums.PaymentType;
+import com.bookstore.backend.model.enums.StatusOrder;
+import com.bookstore.backend.repository.BookRepository;
+import com.bookstore.backend.repository.BookVariantsRepository;
+import com.bookstore.backend.repository.DailySalesRepository;
+import com.bookstore.backend.repository.OrdersRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// daily_sales: cộng / trừ theo ngày khi đơn vào / ra khỏi DELIVERY / SUCCESS, backfill tính lại từ bảng đơn hàng
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(DailySalesRollup.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class DailySalesRollupTest {
+
+    private static final LocalDate DAY = LocalDate.of(2024, 3, 1);
+
+    @Autowired
+    private DailySalesRollup dailySalesRollup;
+
+    @Autowired
+    private DailySalesRepository dailySalesRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private BookVariantsRepository bookVariantsRepository;
+
+    @Autowired
+    private OrdersRepository ordersRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Long variantId;
+
+    @BeforeEach
+    void setUp() {
+        Book book = Book.builder().title("Conan tập 100").isDeleted(false).build();
+        book.addVariant(BookVariants.builder()
+                .price(25000.0)
+                .quantity(100)
+                .sold(0)
+                .status("AVAILABLE")
+                .build());
+        variantId = bookRepository.save(book).getVariants().get(0).getId();
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM daily_sales");
+        jdbcTemplate.update("DELETE FROM orders_details");
+        jdbcTemplate.update("DELETE FROM orders");
+        jdbcTemplate.update("DELETE FROM book_variants");
+        jdbcTemplate.update("DELETE FROM book");
+    }
+
+    @Test
+    void ordersMovingInAndOutOfCountedStatusesUpdateTheirDay() {
+        Long first = order(DAY, StatusOrder.PENDING, 2, 25000.0);
+        Long second = order(DAY, StatusOrder.PENDING, 1, 30000.0);
+        Long nextDay = order(DAY.plusDays(1), StatusOrder.PENDING, 4, 10000.0);
+
+        // Lô xác nhận hàng loạt và một đơn đổi trạng thái riêng
+        transactionTemplate.executeWithoutResult(status -> {
+            dailySalesRollup.addOrders(List.of(first, nextDay));
+            dailySalesRollup.onStatusChange(second, StatusOrder.PENDING, StatusOrder.DELIVERY);
+        });
+        assertDay(DAY, 3, "80000.00", 2);
+        assertDay(DAY.plusDays(1), 4, "40000.00", 1);
+
+        // Trong nhóm được tính hoặc ngoài nhóm: không đổi
+        transactionTemplate.executeWithoutResult(status -> {
+            dailySalesRollup.onStatusChange(second, StatusOrder.DELIVERY, StatusOrder.SUCCESS);
+            dailySalesRollup.onStatusChange(nextDay, StatusOrder.PENDING, StatusOrder.CANCELLED);
+        });
+        assertDay(DAY, 3, "80000.00", 2);
+
+        // Hoàn / hủy đơn đã giao: trừ lại đúng phần của đơn
+        transactionTemplate.executeWithoutResult(status -> {
+            dailySalesRollup.onStatusChange(first, StatusOrder.SUCCESS, StatusOrder.RESTORE);
+            dailySalesRollup.onStatusChange(nextDay, StatusOrder.DELIVERY, StatusOrder.CANCELLED);
+        });
+        assertDay(DAY, 1, "30000.00", 1);
+        assertDay(DAY.plusDays(1), 0, "0.00", 0);
+        assertEquals(2, dailySalesRepository.count());
+    }
+
+    @Test
+    void rolledBackStatusChangeLeavesNoTrace() {
+        Long orderId = order(DAY, StatusOrder.PENDING, 2, 25000.0);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            dailySalesRollup.onStatusChange(orderId, StatusOrder.PENDING, StatusOrder.SUCCESS);
+            status.setRollbackOnly();
+        });
+
+        assertEquals(0, dailySalesRepository.count());
+    }
+
+    @Test
+    void backfillRebuildsDaysAcrossChunkBoundary() {
+        // Đoạn đầu là [DAY, DAY + 31), ngày 30 và 31 nằm ở hai transaction khác nhau
+        order(DAY, StatusOrder.SUCCESS, 1, 25000.0);
+        order(DAY.plusDays(30), StatusOrder.DELIVERY, 2, 25000.0);
+        order(DAY.plusDays(31), StatusOrder.SUCCESS, 3, 25000.0);
+        order(DAY.plusDays(31), StatusOrder.DELIVERY, 1, 10000.0);
+        order(DAY.plusDays(31), StatusOrder.PENDING, 5, 25000.0);
+        order(DAY.plusDays(40), StatusOrder.SUCCESS, 1, 25000.0);
+        order(DAY.plusDays(45), StatusOrder.SUCCESS, 9, 25000.0);
+        // Dòng lệch trong khoảng bị tính lại, dòng ngoài khoảng giữ nguyên
+        saveDay(DAY.plusDays(31), 99, "1.00", 99);
+        saveDay(DAY.plusDays(35), 7, "7.00", 7);
+        saveDay(DAY.plusDays(45), 5, "5.00", 5);
+
+        int days = dailySalesRollup.backfill(DAY, DAY.plusDays(40));
+
+        assertEquals(4, days);
+        assertDay(DAY, 1, "25000.00", 1);
+        assertDay(DAY.plusDays(30), 2, "50000.00", 1);
+        assertDay(DAY.plusDays(31), 4, "85000.00", 2);
+        assertDay(DAY.plusDays(40), 1, "25000.00", 1);
+        assertTrue(dailySalesRepository.findById(DAY.plusDays(35)).isEmpty());
+        assertDay(DAY.plusDays(45), 5, "5.00", 5);
+    }
+
+    @Test
+    void startupBackfillRunsOnlyOnEmptyTable() {
+        LocalDate today = dailySalesRollup.today();
+        order(today.minusDays(40), StatusOrder.SUCCESS, 2, 25000.0);
+        order(today.minusDays(3), StatusOrder.DELIVERY, 1, 25000.0);
+
+        dailySalesRollup.onApplicationReady();
+        assertDay(today.minusDays(40), 2, "50000.00", 1);
+        assertDay(today.minusDays(3), 1, "25000.00", 1);
+
+        // Bảng đã có dữ liệu: không tính lại
+        order(today.minusDays(2), StatusOrder.SUCCESS, 1, 25000.0);
+        dailySalesRollup.onApplicationReady();
+        assertEquals(2, dailySalesRepository.count());
+    }
+
+    private Long order(LocalDate day, StatusOrder status, int quantity, double price) {
+        Long orderId = transactionTemplate.execute(tx -> {
+            Orders order = new Orders();
+            order.setShippingAddress("12 Nguyễn Huệ");
+            order.setPhoneNumber("0900000000");
+            order.setStatus(status);
+            order.setPaymentStatus(PaymentStatus.PAID);
+            order.setPaymentType(PaymentType.COD);
+
+            OrderDetails detail = new OrderDetails();
+            detail.setOrders(order);
+            detail.setBookVariant(bookVariantsRepository.findById(variantId).orElseThrow());
+            detail.setQuantity(quantity);
+            detail.setPricePurchased(price);
+            Set<OrderDetails> details = new HashSet<>(List.of(detail));
+            order.setOrderDetails(details);
+            return ordersRepository.save(order).getId();
+        });
+        // orderDate được gán lúc persist, đặt lại ngày đặt hàng trực tiếp
+        jdbcTemplate.update("UPDATE orders SET order_date = ? WHERE id = ?", day.atTime(12, 0), orderId);
+        return orderId;
+    }
+
+    private void saveDay(LocalDate day, long booksSold, String revenue, long orderCount) {
+        dailySalesRepository.save(new DailySales(day, booksSold, new BigDecimal(revenue), orderCount));
+    }
+
+    private void assertDay(LocalDate day, long booksSold, String revenue, long orderCount) {
+        DailySales sales = dailySalesRepository.findById(day).orElseThrow();
+        assertEquals(booksSold, sales.getBooksSold());
+        assertEquals(new BigDecimal(revenue), sales.getRevenue());
+        assertEquals(orderCount, sales.getOrderCount());
+    }
+}
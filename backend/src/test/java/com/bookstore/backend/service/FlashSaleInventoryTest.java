@@ -0,0 +1,300 @@
+package com.bookstore.backend.service;
+
+import com.bookstore.backend.exception.BusinessException;
+import com.bookstore.backend.model.Book;
+import com.bookstore.backend.model.BookVariants;
+import com.bookstore.backend.model.OrderDetails;
+import com.bookstore.backend.model.Orders;
+import com.bookstore.backend.model.enums.PaymentStatus;
+import com.bookstore.backend.model.enums.PaymentType;
+import com.bookstore.backend.model.enums.StatusOrder;
+import com.bookstore.backend.repository.BookRepository;
+import com.bookstore.backend.repository.BookVariantsRepository;
+import com.bookstore.backend.repository.FlashSaleVariantRepository;
+import com.bookstore.backend.repository.OrdersRepository;
+import com.bookstore.backend.repository.StockReservationRepository;
+import com.bookstore.backend.service.search.CatalogIndexer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Flash sale: giữ hàng bằng CAS trên counter in-memory, flush chênh lệch xuống DB, dựng lại counter từ reservation
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({InventoryReservationService.class, FlashSaleInventory.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class FlashSaleInventoryTest {
+
+    private static final int STOCK = 500;
+    private static final int CHECKOUTS = 2000;
+    private static final int THREADS = 32;
+
+    @Autowired
+    private FlashSaleInventory flashSaleInventory;
+
+    @Autowired
+    private InventoryReservationService inventoryReservationService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private BookVariantsRepository bookVariantsRepository;
+
+    @Autowired
+    private FlashSaleVariantRepository flashSaleVariantRepository;
+
+    @Autowired
+    private OrdersRepository ordersRepository;
+
+    @Autowired
+    private StockReservationRepository reservationRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockitoBean
+    private CatalogIndexer catalogIndexer;
+
+    @MockitoBean
+    private BookDetailCache bookDetailCache;
+
+    @MockitoBean
+    private LowStockMonitor lowStockMonitor;
+
+    @MockitoBean
+    private VoucherService voucherService;
+
+    private Long variantId;
+
+    @BeforeEach
+    void setUp() {
+        Book book = Book.builder().title("Conan tập 100").isDeleted(false).build();
+        book.addVariant(BookVariants.builder()
+                .price(25000.0)
+                .quantity(STOCK)
+                .sold(0)
+                .status("AVAILABLE")
+                .build());
+        variantId = bookRepository.save(book).getVariants().get(0).getId();
+    }
+
+    @AfterEach
+    void tearDown() {
+        // Bean dùng chung giữa các test: đóng counter trước khi xóa dữ liệu
+        flashSaleInventory.activeSales().forEach(sale -> flashSaleInventory.disable(sale.variantId()));
+        jdbcTemplate.update("DELETE FROM stock_reservation");
+        jdbcTemplate.update("DELETE FROM orders_details");
+        jdbcTemplate.update("DELETE FROM orders");
+        jdbcTemplate.update("DELETE FROM flash_sale_variant");
+        jdbcTemplate.update("DELETE FROM book_variants");
+        jdbcTemplate.update("DELETE FROM book");
+    }
+
+    @Test
+    void concurrentCheckoutsNeverOversellFromCounter() throws Exception {
+        flashSaleInventory.enable(variantId);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < CHECKOUTS; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        transactionTemplate.executeWithoutResult(status -> placeOrder(1));
+                        succeeded.incrementAndGet();
+                    } catch (BusinessException ex) {
+                        rejected.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(STOCK, succeeded.get());
+        assertEquals(CHECKOUTS - STOCK, rejected.get());
+        assertEquals(0, remaining());
+        assertEquals(STOCK, reservationRepository.count());
+        assertEquals(STOCK, ordersRepository.count());
+
+        flashSaleInventory.flush();
+        assertEquals(0, quantity());
+    }
+
+    @Test
+    void oversizedReserveIsRejectedWithoutTouchingCounter() {
+        flashSaleInventory.enable(variantId);
+
+        assertThrows(BusinessException.class, () -> transactionTemplate.execute(status -> placeOrder(STOCK + 1)));
+
+        assertEquals(STOCK, remaining());
+    }
+
+    @Test
+    void rolledBackCheckoutGivesStockBack() {
+        flashSaleInventory.enable(variantId);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            placeOrder(7);
+            assertEquals(STOCK - 7, remaining());
+            status.setRollbackOnly();
+        });
+
+        assertEquals(STOCK, remaining());
+        assertEquals(0, reservationRepository.count());
+    }
+
+    @Test
+    void releasedOrderReturnsToCounterAfterCommit() {
+        flashSaleInventory.enable(variantId);
+        Long orderId = transactionTemplate.execute(status -> placeOrder(4));
+
+        transactionTemplate.executeWithoutResult(status -> {
+            inventoryReservationService.release(orderId);
+            // Chỉ trả về counter khi reservation đã commit RELEASED
+            assertEquals(STOCK - 4, remaining());
+        });
+
+        assertEquals(STOCK, remaining());
+    }
+
+    @Test
+    void flushWritesOnlyTheDelta() {
+        flashSaleInventory.enable(variantId);
+        // Toàn bộ tồn kho đã chuyển sang counter
+        assertEquals(0, quantity());
+
+        transactionTemplate.executeWithoutResult(status -> placeOrder(5));
+        flashSaleInventory.flush();
+        assertEquals(STOCK - 5, quantity());
+        assertEquals(STOCK - 5, flashSaleVariantRepository.findActiveByVariantId(variantId).orElseThrow().getRemaining());
+
+        // Flush không có thay đổi thì không ghi; cập nhật khác vào dòng variant không bị ghi đè
+        jdbcTemplate.update("UPDATE book_variants SET quantity = quantity + 10 WHERE id = ?", variantId);
+        flashSaleInventory.flush();
+        assertEquals(STOCK - 5 + 10, quantity());
+
+        transactionTemplate.executeWithoutResult(status -> placeOrder(2));
+        flashSaleInventory.flush();
+        assertEquals(STOCK - 7 + 10, quantity());
+    }
+
+    @Test
+    void disableWritesRemainderAndFallsBackToDatabase() {
+        flashSaleInventory.enable(variantId);
+        Long orderId = transactionTemplate.execute(status -> placeOrder(4));
+        flashSaleInventory.flush();
+        transactionTemplate.executeWithoutResult(status -> placeOrder(3));
+
+        FlashSaleInventory.Status closed = flashSaleInventory.disable(variantId);
+
+        assertEquals(STOCK - 7, closed.remaining());
+        assertEquals(STOCK - 7, quantity());
+        assertFalse(flashSaleInventory.isActive(variantId));
+        assertTrue(flashSaleVariantRepository.findActiveByVariantId(variantId).isEmpty());
+
+        // Phiên đã đóng: hàng trả và hàng giữ mới đi thẳng vào DB
+        transactionTemplate.executeWithoutResult(status -> inventoryReservationService.release(orderId));
+        assertEquals(STOCK - 3, quantity());
+        transactionTemplate.executeWithoutResult(status -> placeOrder(1));
+        assertEquals(STOCK - 4, quantity());
+    }
+
+    @Test
+    void loadRebuildsCounterFromCommittedReservations() {
+        flashSaleInventory.enable(variantId);
+        transactionTemplate.executeWithoutResult(status -> placeOrder(6));
+        Long released = transactionTemplate.execute(status -> placeOrder(2));
+        transactionTemplate.executeWithoutResult(status -> inventoryReservationService.release(released));
+        flashSaleInventory.flush();
+        transactionTemplate.executeWithoutResult(status -> placeOrder(3));
+
+        // Giống lúc restart: instance mới chỉ có DB
+        FlashSaleInventory restarted = new FlashSaleInventory(flashSaleVariantRepository, bookVariantsRepository,
+                reservationRepository, bookDetailCache, lowStockMonitor, transactionManager);
+
+        FlashSaleInventory.Status status = restarted.activeSales().get(0);
+        assertEquals(STOCK, status.allocated());
+        assertEquals(STOCK - 9, status.remaining());
+        assertEquals(STOCK - 6, status.flushed());
+
+        restarted.flush();
+        assertEquals(STOCK - 9, quantity());
+    }
+
+    private int remaining() {
+        return flashSaleInventory.activeSales().stream()
+                .filter(sale -> sale.variantId().equals(variantId))
+                .findFirst().orElseThrow().remaining();
+    }
+
+    private int quantity() {
+        return bookVariantsRepository.findById(variantId).orElseThrow().getQuantity();
+    }
+
+    private Long placeOrder(int quantity) {
+        Orders order = new Orders();
+        order.setShippingAddress("12 Nguyễn Huệ");
+        order.setPhoneNumber("0900000000");
+        order.setStatus(StatusOrder.PENDING);
+        order.setPaymentStatus(PaymentStatus.PENDING);
+        order.setPaymentType(PaymentType.COD);
+        order.setOrderDate(LocalDateTime.now());
+
+        OrderDetails detail = new OrderDetails();
+        detail.setOrders(order);
+        detail.setBookVariant(bookVariantsRepository.findById(variantId).orElseThrow());
+        detail.setQuantity(quantity);
+        detail.setPricePurchased(25000.0);
+        Set<OrderDetails> details = new HashSet<>(List.of(detail));
+        order.setOrderDetails(details);
+
+        Orders saved = ordersRepository.save(order);
+        inventoryReservationService.reserve(saved, details);
+        return saved.getId();
+    }
+}
@@ -0,0 +1,104 @@
+package com.bookstore.backend.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Cùng Idempotency-Key: request trùng chờ và nhận lại response, lỗi thì cho chạy lại, khác nội dung thì 422
+class IdempotencyServiceTest {
+
+    private final IdempotencyService idempotencyService = new IdempotencyService(Duration.ofMinutes(30), 1000);
+    private final AtomicInteger runs = new AtomicInteger();
+
+    @Test
+    void concurrentDuplicateWaitsForFirstResponse() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<ResponseEntity<String>> first = CompletableFuture.supplyAsync(() ->
+                idempotencyService.execute("user@example.com", "key-1", "cart-1", () -> {
+                    started.countDown();
+                    await(release);
+                    return ResponseEntity.status(HttpStatus.CREATED).body("order-" + runs.incrementAndGet());
+                }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<ResponseEntity<String>> duplicate = CompletableFuture.supplyAsync(() ->
+                idempotencyService.execute("user@example.com", "key-1", "cart-1",
+                        () -> ResponseEntity.ok("order-" + runs.incrementAndGet())));
+
+        // Lần đầu chưa xong thì bản trùng vẫn đang chờ
+        Thread.sleep(100);
+        assertFalse(duplicate.isDone());
+        release.countDown();
+
+        ResponseEntity<String> original = first.get(5, TimeUnit.SECONDS);
+        ResponseEntity<String> replayed = duplicate.get(5, TimeUnit.SECONDS);
+        assertEquals(1, runs.get());
+        assertEquals(HttpStatus.CREATED, replayed.getStatusCode());
+        assertEquals("order-1", replayed.getBody());
+        assertEquals("true", replayed.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+        assertNull(original.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+
+        // Lặp lại sau khi xong: trả ngay từ cache
+        ResponseEntity<String> later = idempotencyService.execute("user@example.com", "key-1", "cart-1",
+                () -> ResponseEntity.ok("order-" + runs.incrementAndGet()));
+        assertEquals("order-1", later.getBody());
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    void failedResultIsEvictedSoRetryRunsAgain() {
+        ResponseEntity<String> rejected = idempotencyService.execute("user@example.com", "key-2", "cart-1", () -> {
+            runs.incrementAndGet();
+            return ResponseEntity.badRequest().body("Hết hàng");
+        });
+        assertEquals(HttpStatus.BAD_REQUEST, rejected.getStatusCode());
+
+        assertThrows(IllegalStateException.class, () ->
+                idempotencyService.execute("user@example.com", "key-2", "cart-1", () -> {
+                    runs.incrementAndGet();
+                    throw new IllegalStateException("Lỗi kết nối");
+                }));
+
+        ResponseEntity<String> retried = idempotencyService.execute("user@example.com", "key-2", "cart-1",
+                () -> ResponseEntity.ok("order-" + runs.incrementAndGet()));
+        assertEquals("order-3", retried.getBody());
+        assertNull(retried.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+    }
+
+    @Test
+    void sameKeyWithDifferentRequestIsRejected() {
+        idempotencyService.execute("user@example.com", "key-3", "cart-1", () -> ResponseEntity.ok("order-1"));
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class, () ->
+                idempotencyService.execute("user@example.com", "key-3", "cart-2", () -> ResponseEntity.ok("order-2")));
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, ex.getStatusCode());
+
+        // Key được tách theo user
+        ResponseEntity<String> other = idempotencyService.execute("other@example.com", "key-3", "cart-2",
+                () -> ResponseEntity.ok("order-2"));
+        assertEquals("order-2", other.getBody());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ex);
+        }
+    }
+}
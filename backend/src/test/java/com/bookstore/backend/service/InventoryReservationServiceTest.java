@@ -0,0 +1,233 @@
+package com.bookstore.backend.service;
+
+import com.bookstore.backend.exception.BusinessException;
+import com.bookstore.backend.model.Book;
+import com.bookstore.backend.model.BookVariants;
+import com.bookstore.backend.model.OrderDetails;
+import com.bookstore.backend.model.Orders;
+import com.bookstore.backend.model.enums.PaymentStatus;
+import com.bookstore.backend.model.enums.PaymentType;
+import com.bookstore.backend.model.enums.ReservationStatus;
+import com.bookstore.backend.model.enums.StatusOrder;
+import com.bookstore.backend.repository.BookRepository;
+import com.bookstore.backend.repository.BookVariantsRepository;
+import com.bookstore.backend.repository.OrdersRepository;
+import com.bookstore.backend.repository.StockReservationRepository;
+import com.bookstore.backend.service.search.CatalogIndexer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+// Giữ hàng bằng UPDATE có điều kiện: không bán vượt tồn kho kể cả khi nhiều checkout chạy đồng thời
+@DataJpaTest(properties = "inventory.reservation.ttl=-PT1M")
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({InventoryReservationService.class, FlashSaleInventory.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class InventoryReservationServiceTest {
+
+    private static final int STOCK = 500;
+    private static final int CHECKOUTS = 2000;
+    private static final int THREADS = 32;
+
+    @Autowired
+    private InventoryReservationService inventoryReservationService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private BookVariantsRepository bookVariantsRepository;
+
+    @Autowired
+    private OrdersRepository ordersRepository;
+
+    @Autowired
+    private StockReservationRepository reservationRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockitoBean
+    private CatalogIndexer catalogIndexer;
+
+    @MockitoBean
+    private BookDetailCache bookDetailCache;
+
+    @MockitoBean
+    private LowStockMonitor lowStockMonitor;
+
+    @MockitoBean
+    private VoucherService voucherService;
+
+    private Long variantId;
+
+    @BeforeEach
+    void setUp() {
+        Book book = Book.builder().title("Conan tập 100").isDeleted(false).build();
+        book.addVariant(BookVariants.builder()
+                .price(25000.0)
+                .quantity(STOCK)
+                .sold(0)
+                .status("AVAILABLE")
+                .build());
+        variantId = bookRepository.save(book).getVariants().get(0).getId();
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM stock_reservation");
+        jdbcTemplate.update("DELETE FROM orders_details");
+        jdbcTemplate.update("DELETE FROM orders");
+        jdbcTemplate.update("DELETE FROM book_variants");
+        jdbcTemplate.update("DELETE FROM book");
+    }
+
+    @Test
+    void concurrentCheckoutsNeverOversell() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < CHECKOUTS; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        transactionTemplate.executeWithoutResult(status -> placeOrder(PaymentType.COD, 1));
+                        succeeded.incrementAndGet();
+                    } catch (BusinessException ex) {
+                        rejected.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(STOCK, succeeded.get());
+        assertEquals(CHECKOUTS - STOCK, rejected.get());
+        assertEquals(0, bookVariantsRepository.findById(variantId).orElseThrow().getQuantity());
+        assertEquals(STOCK, reservationRepository.count());
+        // Đơn không giữ được hàng bị rollback hoàn toàn
+        assertEquals(STOCK, ordersRepository.count());
+    }
+
+    @Test
+    void confirmAndRestoreMoveQuantityAndSold() {
+        Long orderId = transactionTemplate.execute(status -> placeOrder(PaymentType.COD, 3));
+        assertStock(STOCK - 3, 0);
+
+        transactionTemplate.executeWithoutResult(status ->
+                inventoryReservationService.confirm(ordersRepository.findById(orderId).orElseThrow()));
+        assertStock(STOCK - 3, 3);
+
+        // Xác nhận lần hai không trừ thêm
+        transactionTemplate.executeWithoutResult(status ->
+                inventoryReservationService.confirm(ordersRepository.findById(orderId).orElseThrow()));
+        assertStock(STOCK - 3, 3);
+
+        transactionTemplate.executeWithoutResult(status -> inventoryReservationService.restore(orderId));
+        assertStock(STOCK, 0);
+        assertEquals(ReservationStatus.RESTORED, reservationRepository.findAll().get(0).getStatus());
+    }
+
+    @Test
+    void releaseIsAppliedOnlyOnce() {
+        Long orderId = transactionTemplate.execute(status -> placeOrder(PaymentType.COD, 5));
+
+        transactionTemplate.executeWithoutResult(status -> inventoryReservationService.release(orderId));
+        transactionTemplate.executeWithoutResult(status -> inventoryReservationService.release(orderId));
+
+        assertStock(STOCK, 0);
+    }
+
+    @Test
+    void expiredBankingReservationIsReleasedAndOrderCancelled() {
+        // ttl âm trong test -> reservation của đơn BANKING hết hạn ngay
+        Long expired = transactionTemplate.execute(status -> placeOrder(PaymentType.BANKING, 4));
+        Long paid = transactionTemplate.execute(status -> placeOrder(PaymentType.BANKING, 2));
+        transactionTemplate.executeWithoutResult(status -> inventoryReservationService.markPaid(paid));
+
+        assertEquals(1, inventoryReservationService.releaseExpired());
+
+        assertStock(STOCK - 2, 0);
+        Orders cancelled = ordersRepository.findById(expired).orElseThrow();
+        assertEquals(StatusOrder.CANCELLED, cancelled.getStatus());
+        assertEquals(PaymentStatus.FAILED, cancelled.getPaymentStatus());
+        assertEquals(StatusOrder.PENDING, ordersRepository.findById(paid).orElseThrow().getStatus());
+        verify(voucherService).releaseVoucher(expired);
+        verify(voucherService, never()).releaseVoucher(paid);
+    }
+
+    @Test
+    void reserveFailsWhenStockIsInsufficient() {
+        assertThrows(BusinessException.class,
+                () -> transactionTemplate.execute(status -> placeOrder(PaymentType.COD, STOCK + 1)));
+        assertStock(STOCK, 0);
+    }
+
+    private Long placeOrder(PaymentType paymentType, int quantity) {
+        Orders order = new Orders();
+        order.setShippingAddress("12 Nguyễn Huệ");
+        order.setPhoneNumber("0900000000");
+        order.setStatus(StatusOrder.PENDING);
+        order.setPaymentStatus(PaymentStatus.PENDING);
+        order.setPaymentType(paymentType);
+        order.setOrderDate(LocalDateTime.now());
+
+        OrderDetails detail = new OrderDetails();
+        detail.setOrders(order);
+        detail.setBookVariant(bookVariantsRepository.findById(variantId).orElseThrow());
+        detail.setQuantity(quantity);
+        detail.setPricePurchased(25000.0);
+        Set<OrderDetails> details = new HashSet<>(List.of(detail));
+        order.setOrderDetails(details);
+
+        Orders saved = ordersRepository.save(order);
+        inventoryReservationService.reserve(saved, details);
+        return saved.getId();
+    }
+
+    private void assertStock(int quantity, int sold) {
+        BookVariants variant = bookVariantsRepository.findById(variantId).orElseThrow();
+        assertEquals(quantity, variant.getQuantity());
+        assertEquals(sold, variant.getSold());
+    }
+}
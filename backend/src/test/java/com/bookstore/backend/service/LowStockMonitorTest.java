@@ -0,0 +1,129 @@
+package com.bookstore.backend.service;
+
+import com.bookstore.backend.DTO.NotificationRequestDTO;
+import com.bookstore.backend.repository.BookVariantsRepository;
+import com.bookstore.backend.repository.UserRepository;
+import com.bookstore.backend.service.outbox.OutboxService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// Báo sắp hết hàng: một lần mỗi lần rơi xuống dưới ngưỡng, báo lại sau khi hồi và quá realert-after
+class LowStockMonitorTest {
+
+    private static final Long VARIANT = 7L;
+    private static final int THRESHOLD = 5;
+
+    private final BookVariantsRepository bookVariantsRepository = mock(BookVariantsRepository.class);
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final OutboxService outboxService = mock(OutboxService.class);
+    private final TransactionTemplate transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
+
+    @BeforeEach
+    void setUp() {
+        when(userRepository.findIdsByRoleIn(anyCollection())).thenReturn(List.of(1L));
+        when(bookVariantsRepository.findLowStockRows(anyInt())).thenReturn(List.of());
+    }
+
+    @Test
+    void variantsLowAtStartupAreNotAlertedAgain() {
+        when(bookVariantsRepository.findLowStockRows(anyInt())).thenReturn(List.<Object[]>of(row(2)));
+        LowStockMonitor monitor = monitor(Duration.ofHours(6));
+        monitor.onApplicationReady();
+
+        stock(monitor, 1);
+
+        verify(outboxService, never()).enqueueNotification(any());
+        assertEquals(1, monitor.page(Pageable.unpaged()).getContent().get(0).quantity());
+    }
+
+    @Test
+    void firstDropAfterStartupIsAlertedOnce() {
+        LowStockMonitor monitor = monitor(Duration.ofHours(6));
+        monitor.onApplicationReady();
+
+        stock(monitor, 4);
+        stock(monitor, 3);
+        stock(monitor, 0);
+
+        verify(outboxService, times(1)).enqueueNotification(any(NotificationRequestDTO.class));
+        assertEquals(1, monitor.page(Pageable.unpaged()).getTotalElements());
+    }
+
+    @Test
+    void recoveringDoesNotRealertBeforeDelay() {
+        LowStockMonitor monitor = monitor(Duration.ofHours(6));
+        monitor.onApplicationReady();
+
+        stock(monitor, 4);
+        stock(monitor, 50);
+        assertEquals(0, monitor.page(Pageable.unpaged()).getTotalElements());
+        stock(monitor, 4);
+
+        verify(outboxService, times(1)).enqueueNotification(any());
+    }
+
+    @Test
+    void realertsAfterRecoveryOnceDelayPassed() {
+        LowStockMonitor monitor = monitor(Duration.ZERO);
+        monitor.onApplicationReady();
+
+        stock(monitor, 4);
+        stock(monitor, 3); // vẫn thấp, chưa hồi: không báo lại
+        stock(monitor, 50);
+        stock(monitor, 4);
+
+        verify(outboxService, times(2)).enqueueNotification(any());
+    }
+
+    @Test
+    void outboxFailureKeepsAlertPending() {
+        LowStockMonitor monitor = monitor(Duration.ofHours(6));
+        monitor.onApplicationReady();
+        doThrow(new IllegalStateException("outbox down")).doNothing()
+                .when(outboxService).enqueueNotification(any());
+
+        stock(monitor, 4);
+        // Variant được đưa lại hàng chờ, lượt job sau báo lại
+        monitor.processPending();
+
+        verify(outboxService, times(2)).enqueueNotification(any());
+        assertEquals(1, monitor.page(Pageable.unpaged()).getTotalElements());
+
+        monitor.processPending();
+        stock(monitor, 3);
+        verify(outboxService, times(2)).enqueueNotification(any());
+    }
+
+    private LowStockMonitor monitor(Duration realertAfter) {
+        return new LowStockMonitor(bookVariantsRepository, userRepository, outboxService, transactionTemplate,
+                THRESHOLD, realertAfter);
+    }
+
+    // Không có transaction: onStockChanged đưa vào hàng chờ ngay
+    private void stock(LowStockMonitor monitor, int quantity) {
+        when(bookVariantsRepository.findStockRows(anyCollection())).thenReturn(List.<Object[]>of(row(quantity)));
+        monitor.onStockChanged(VARIANT);
+        monitor.processPending();
+    }
+
+    private static Object[] row(int quantity) {
+        return new Object[]{VARIANT, 3L, "Conan tập 100", "978-604-0-00000-0", quantity, null};
+    }
+}
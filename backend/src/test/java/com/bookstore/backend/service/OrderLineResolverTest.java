@@ -0,0 +1,118 @@
+package com.bookstore.backend.service;
+
+import com.bookstore.backend.DTO.OrderDetailDTO;
+import com.bookstore.backend.exception.BusinessException;
+import com.bookstore.backend.exception.ResourceNotFoundException;
+import com.bookstore.backend.model.Book;
+import com.bookstore.backend.model.BookVariants;
+import com.bookstore.backend.repository.BookRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Dòng đơn hàng: gộp variant trùng, giá lấy từ DB, variant không tồn tại / ngừng bán bị từ chối
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(OrderLineResolver.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class OrderLineResolverTest {
+
+    @Autowired
+    private OrderLineResolver orderLineResolver;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM book_variants");
+        jdbcTemplate.update("DELETE FROM book");
+    }
+
+    @Test
+    void duplicateLinesAreMergedAndPricedFromDatabase() {
+        Long paperback = variant("Conan tập 100", 25000.0, "AVAILABLE", false);
+        Long hardcover = variant("Conan tập 101", 40000.0, "AVAILABLE", false);
+
+        // Giá client gửi lên bị bỏ qua
+        List<OrderLineResolver.OrderLine> lines = orderLineResolver.resolve(List.of(
+                line(hardcover, 1, 1.0),
+                line(paperback, 2, 1.0),
+                line(hardcover, 3, 1.0)));
+
+        assertEquals(2, lines.size());
+        assertEquals(hardcover, lines.get(0).variant().getId());
+        assertEquals(4, lines.get(0).quantity());
+        assertEquals(40000.0, lines.get(0).unitPrice());
+        assertEquals(160000.0, lines.get(0).subtotal());
+        assertEquals(paperback, lines.get(1).variant().getId());
+        assertEquals(2, lines.get(1).quantity());
+        assertEquals(25000.0, lines.get(1).unitPrice());
+    }
+
+    @Test
+    void unknownVariantsAreRejected() {
+        Long available = variant("Conan tập 100", 25000.0, "AVAILABLE", false);
+
+        ResourceNotFoundException ex = assertThrows(ResourceNotFoundException.class, () ->
+                orderLineResolver.resolve(List.of(line(available, 1, null), line(-2L, 1, null), line(-1L, 1, null))));
+        assertTrue(ex.getMessage().contains("[-2, -1]"));
+    }
+
+    @Test
+    void unavailableVariantsAreRejected() {
+        Long available = variant("Conan tập 100", 25000.0, "AVAILABLE", false);
+        Long stopped = variant("Conan tập 1", 20000.0, "OUT_OF_STOCK", false);
+        Long deletedBook = variant("Conan tập 2", 20000.0, "AVAILABLE", true);
+
+        BusinessException ex = assertThrows(BusinessException.class, () ->
+                orderLineResolver.resolve(List.of(line(available, 1, null), line(stopped, 1, null), line(deletedBook, 1, null))));
+        assertTrue(ex.getMessage().contains(stopped.toString()));
+        assertTrue(ex.getMessage().contains(deletedBook.toString()));
+    }
+
+    @Test
+    void invalidLinesAreRejectedBeforeLoading() {
+        Long available = variant("Conan tập 100", 25000.0, "AVAILABLE", false);
+
+        assertThrows(BusinessException.class, () -> orderLineResolver.resolve(List.of()));
+        assertThrows(BusinessException.class, () -> orderLineResolver.resolve(List.of(line(null, 1, null))));
+        assertThrows(BusinessException.class, () -> orderLineResolver.resolve(List.of(line(available, 0, null))));
+    }
+
+    private Long variant(String title, double price, String status, boolean deleted) {
+        Book book = Book.builder().title(title).isDeleted(deleted).build();
+        book.addVariant(BookVariants.builder()
+                .price(price)
+                .quantity(10)
+                .sold(0)
+                .status(status)
+                .build());
+        return bookRepository.save(book).getVariants().get(0).getId();
+    }
+
+    private static OrderDetailDTO line(Long variantId, int quantity, Double pricePurchased) {
+        OrderDetailDTO detail = new OrderDetailDTO();
+        detail.setBookVariantId(variantId);
+        detail.setQuantity(quantity);
+        detail.setPricePurchased(pricePurchased);
+        return detail;
+    }
+}
@@ -0,0 +1,347 @@
+package com.bookstore.backend.service;
+
+import com.bookstore.backend.DTO.BulkOrderStatusResultDTO;
+import com.bookstore.backend.model.Book;
+import com.bookstore.backend.model.BookVariants;
+import com.bookstore.backend.model.OrderDetails;
+import com.bookstore.backend.model.Orders;
+import com.bookstore.backend.model.Users;
+import com.bookstore.backend.model.enums.PaymentStatus;
+import com.bookstore.backend.model.enums.PaymentType;
+import com.bookstore.backend.model.enums.ReservationStatus;
+import com.bookstore.backend.model.enums.StatusOrder;
+import com.bookstore.backend.model.enums.UserRole;
+import com.bookstore.backend.repository.BookRepository;
+import com.bookstore.backend.repository.BookVariantsRepository;
+import com.bookstore.backend.repository.OrdersRepository;
+import com.bookstore.backend.repository.StockReservationRepository;
+import com.bookstore.backend.repository.UserRepository;
+import com.bookstore.backend.service.metrics.LiveSalesMetrics;
+import com.bookstore.backend.service.outbox.OutboxService;
+import com.bookstore.backend.service.search.CatalogIndexer;
+import com.bookstore.backend.utils.SecurityUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+// Đổi trạng thái đơn: xác nhận / hoàn kho theo việc đơn vào hay ra khỏi nhóm đã xuất kho (DELIVERY / SUCCESS)
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({OrdersService.class, InventoryReservationService.class, FlashSaleInventory.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class OrdersServiceTest {
+
+    private static final int STOCK = 100;
+
+    @Autowired
+    private OrdersService ordersService;
+
+    @Autowired
+    private InventoryReservationService inventoryReservationService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private BookVariantsRepository bookVariantsRepository;
+
+    @Autowired
+    private OrdersRepository ordersRepository;
+
+    @Autowired
+    private StockReservationRepository reservationRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockitoBean
+    private SecurityUtils securityUtils;
+
+    @MockitoBean
+    private CartService cartService;
+
+    @MockitoBean
+    private VoucherService voucherService;
+
+    @MockitoBean
+    private OrderLineResolver orderLineResolver;
+
+    @MockitoBean
+    private OrderPageReader orderPageReader;
+
+    @MockitoBean
+    private OutboxService outboxService;
+
+    @MockitoBean
+    private DailySalesRollup dailySalesRollup;
+
+    @MockitoBean
+    private LiveSalesMetrics liveSalesMetrics;
+
+    @MockitoBean
+    private CatalogIndexer catalogIndexer;
+
+    @MockitoBean
+    private BookDetailCache bookDetailCache;
+
+    @MockitoBean
+    private LowStockMonitor lowStockMonitor;
+
+    private Long variantId;
+
+    @BeforeEach
+    void setUp() {
+        Book book = Book.builder().title("Conan tập 100").isDeleted(false).build();
+        book.addVariant(BookVariants.builder()
+                .price(25000.0)
+                .quantity(STOCK)
+                .sold(0)
+                .status("AVAILABLE")
+                .build());
+        variantId = bookRepository.save(book).getVariants().get(0).getId();
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM stock_reservation");
+        jdbcTemplate.update("DELETE FROM orders_details");
+        jdbcTemplate.update("DELETE FROM orders");
+        jdbcTemplate.update("DELETE FROM users");
+        jdbcTemplate.update("DELETE FROM book_variants");
+        jdbcTemplate.update("DELETE FROM book");
+    }
+
+    @Test
+    void pendingToSuccessConfirmsReservation() {
+        Long orderId = transactionTemplate.execute(status -> placeOrder(3));
+
+        ordersService.updateOrderStatus(orderId, StatusOrder.SUCCESS);
+
+        assertStock(STOCK - 3, 3);
+        assertEquals(ReservationStatus.CONFIRMED, reservationRepository.findAll().get(0).getStatus());
+        assertEquals(StatusOrder.SUCCESS, ordersRepository.findById(orderId).orElseThrow().getStatus());
+    }
+
+    @Test
+    void deliveryToSuccessDoesNotConfirmTwice() {
+        Long orderId = transactionTemplate.execute(status -> placeOrder(3));
+
+        ordersService.updateOrderStatus(orderId, StatusOrder.DELIVERY);
+        ordersService.updateOrderStatus(orderId, StatusOrder.SUCCESS);
+
+        assertStock(STOCK - 3, 3);
+    }
+
+    @Test
+    void successToRestoreGivesStockBack() {
+        Long orderId = transactionTemplate.execute(status -> placeOrder(4));
+        ordersService.updateOrderStatus(orderId, StatusOrder.SUCCESS);
+
+        ordersService.updateOrderStatus(orderId, StatusOrder.RESTORE);
+
+        assertStock(STOCK, 0);
+        assertEquals(ReservationStatus.RESTORED, reservationRepository.findAll().get(0).getStatus());
+    }
+
+    @Test
+    void cancellingShippedOrderGivesStockBack() {
+        Long orderId = transactionTemplate.execute(status -> placeOrder(4));
+        ordersService.updateOrderStatus(orderId, StatusOrder.DELIVERY);
+
+        ordersService.updateOrderStatus(orderId, StatusOrder.CANCELLED);
+
+        assertStock(STOCK, 0);
+        assertEquals(ReservationStatus.RESTORED, reservationRepository.findAll().get(0).getStatus());
+        verify(voucherService, times(1)).releaseVoucher(orderId);
+        verify(dailySalesRollup).onStatusChange(orderId, StatusOrder.DELIVERY, StatusOrder.CANCELLED);
+    }
+
+    @Test
+    void pendingToRestoreOnlyReleasesHeldStock() {
+        Long orderId = transactionTemplate.execute(status -> placeOrder(4));
+
+        ordersService.updateOrderStatus(orderId, StatusOrder.RESTORE);
+
+        assertStock(STOCK, 0);
+        assertEquals(ReservationStatus.RELEASED, reservationRepository.findAll().get(0).getStatus());
+    }
+
+    @Test
+    void cancellingReleasesStockAndVoucherOnce() {
+        Long orderId = transactionTemplate.execute(status -> placeOrder(2));
+
+        ordersService.updateOrderStatus(orderId, StatusOrder.CANCELLED);
+        ordersService.updateOrderStatus(orderId, StatusOrder.CANCELLED);
+
+        assertStock(STOCK, 0);
+        verify(voucherService, times(1)).releaseVoucher(orderId);
+    }
+
+    @Test
+    void bulkUpdateReportsEveryIdByStatus() {
+        Long pending = transactionTemplate.execute(status -> placeOrder(2));
+        Long delivering = transactionTemplate.execute(status -> placeOrder(3));
+        Long done = transactionTemplate.execute(status -> placeOrder(1));
+        Long cancelled = transactionTemplate.execute(status -> placeOrder(4));
+        ordersService.updateOrderStatus(delivering, StatusOrder.DELIVERY);
+        ordersService.updateOrderStatus(done, StatusOrder.SUCCESS);
+        ordersService.updateOrderStatus(cancelled, StatusOrder.CANCELLED);
+        Long missing = cancelled + 1000;
+
+        BulkOrderStatusResultDTO result = ordersService.bulkUpdateOrderStatus(
+                List.of(pending, delivering, done, cancelled, missing), StatusOrder.SUCCESS);
+
+        assertEquals(Set.of(pending, delivering), Set.copyOf(result.getUpdated()));
+        assertEquals(List.of(done), result.getUnchanged());
+        assertEquals(Set.of(cancelled, missing), result.getFailures().keySet());
+        assertStock(STOCK - 6, 6);
+        assertEquals(StatusOrder.SUCCESS, ordersRepository.findById(pending).orElseThrow().getStatus());
+        assertEquals(StatusOrder.CANCELLED, ordersRepository.findById(cancelled).orElseThrow().getStatus());
+    }
+
+    @Test
+    void failedBatchFallsBackToPerOrderUpdates() {
+        Long first = transactionTemplate.execute(status -> placeOrder(2));
+        Long bad = transactionTemplate.execute(status -> placeOrder(3));
+        Long third = transactionTemplate.execute(status -> placeOrder(5));
+        Long missing = third + 1000;
+        // Lô chính lỗi; khi xử lý từng đơn thì chỉ đơn "bad" lỗi
+        doThrow(new IllegalStateException("Lỗi ghi doanh số")).when(dailySalesRollup).addOrders(anyCollection());
+        doThrow(new IllegalStateException("Lỗi ghi doanh số"))
+                .when(dailySalesRollup).onStatusChange(eq(bad), any(), any());
+
+        BulkOrderStatusResultDTO result = ordersService.bulkUpdateOrderStatus(
+                List.of(first, bad, third, missing), StatusOrder.DELIVERY);
+
+        assertEquals(List.of(first, third), result.getUpdated());
+        assertEquals(Set.of(bad, missing), result.getFailures().keySet());
+        assertEquals("Lỗi ghi doanh số", result.getFailures().get(bad));
+        // Đơn lỗi rollback: hàng vẫn đang giữ, đơn vẫn PENDING
+        assertStock(STOCK - 10, 7);
+        assertEquals(StatusOrder.PENDING, ordersRepository.findById(bad).orElseThrow().getStatus());
+        assertEquals(StatusOrder.DELIVERY, ordersRepository.findById(third).orElseThrow().getStatus());
+    }
+
+    @Test
+    void failedBatchStillAccountsForDeliveryOrders() {
+        Long delivering = transactionTemplate.execute(status -> placeOrder(1));
+        ordersService.updateOrderStatus(delivering, StatusOrder.DELIVERY);
+        Long pending = transactionTemplate.execute(status -> placeOrder(2));
+        doThrow(new IllegalStateException("Lỗi ghi doanh số")).when(dailySalesRollup).addOrders(anyCollection());
+
+        BulkOrderStatusResultDTO result = ordersService.bulkUpdateOrderStatus(
+                List.of(delivering, pending), StatusOrder.SUCCESS);
+
+        assertEquals(List.of(delivering, pending), result.getUpdated());
+        assertTrue(result.getFailures().isEmpty());
+        assertStock(STOCK - 3, 3);
+    }
+
+    @Test
+    void paymentBeforeExpiryKeepsStockHeld() {
+        Long orderId = transactionTemplate.execute(status -> placeOrder(PaymentType.BANKING, 3));
+
+        assertEquals(Boolean.TRUE, transactionTemplate.execute(status ->
+                ordersService.updatePaymentStatus(orderId, PaymentStatus.PAID, PaymentType.BANKING)));
+        expireReservations(orderId);
+
+        // Đã thanh toán: job quá hạn không nhả hàng nữa
+        assertEquals(0, inventoryReservationService.releaseExpired());
+        assertStock(STOCK - 3, 0);
+        Orders order = ordersRepository.findById(orderId).orElseThrow();
+        assertEquals(StatusOrder.PENDING, order.getStatus());
+        assertEquals(PaymentStatus.PAID, order.getPaymentStatus());
+    }
+
+    @Test
+    void paymentAfterExpirySweepIsFlaggedForRefund() {
+        Long staffId = userRepository.save(Users.builder()
+                .fullName("Nhân viên kho").email("kho@example.com").role(UserRole.STAFF).build()).getId();
+        Long orderId = transactionTemplate.execute(status -> placeOrder(PaymentType.BANKING, 3));
+        expireReservations(orderId);
+
+        // Callback VNPay đã đọc đơn (PENDING) thì job quá hạn nhả hàng, hủy đơn và commit trước
+        assertEquals(Boolean.FALSE, transactionTemplate.execute(status -> {
+            assertEquals(StatusOrder.PENDING, ordersRepository.findById(orderId).orElseThrow().getStatus());
+            assertEquals(1, CompletableFuture.supplyAsync(inventoryReservationService::releaseExpired).join());
+            return ordersService.updatePaymentStatus(orderId, PaymentStatus.PAID, PaymentType.BANKING);
+        }));
+
+        Orders order = ordersRepository.findById(orderId).orElseThrow();
+        assertEquals(StatusOrder.CANCELLED, order.getStatus());
+        assertEquals(PaymentStatus.PAID, order.getPaymentStatus());
+        assertStock(STOCK, 0);
+        assertEquals(ReservationStatus.RELEASED, reservationRepository.findAll().get(0).getStatus());
+        verify(outboxService).enqueueNotification(argThat(request -> staffId.equals(request.getUserId())));
+    }
+
+    private void expireReservations(Long orderId) {
+        jdbcTemplate.update("UPDATE stock_reservation SET expires_at = ? WHERE order_id = ? AND expires_at IS NOT NULL",
+                LocalDateTime.now().minusMinutes(1), orderId);
+    }
+
+    private Long placeOrder(int quantity) {
+        return placeOrder(PaymentType.COD, quantity);
+    }
+
+    private Long placeOrder(PaymentType paymentType, int quantity) {
+        Orders order = new Orders();
+        order.setShippingAddress("12 Nguyễn Huệ");
+        order.setPhoneNumber("0900000000");
+        order.setStatus(StatusOrder.PENDING);
+        order.setPaymentStatus(PaymentStatus.PENDING);
+        order.setPaymentType(paymentType);
+        order.setOrderDate(LocalDateTime.now());
+
+        OrderDetails detail = new OrderDetails();
+        detail.setOrders(order);
+        detail.setBookVariant(bookVariantsRepository.findById(variantId).orElseThrow());
+        detail.setQuantity(quantity);
+        detail.setPricePurchased(25000.0);
+        Set<OrderDetails> details = new HashSet<>(List.of(detail));
+        order.setOrderDetails(details);
+
+        Orders saved = ordersRepository.save(order);
+        inventoryReservationService.reserve(saved, details);
+        return saved.getId();
+    }
+
+    private void assertStock(int quantity, int sold) {
+        BookVariants variant = bookVariantsRepository.findById(variantId).orElseThrow();
+        assertEquals(quantity, variant.getQuantity());
+        assertEquals(sold, variant.getSold());
+    }
+}
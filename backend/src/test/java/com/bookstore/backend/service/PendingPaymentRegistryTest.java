@@ -0,0 +1,130 @@
+package com.bookstore.backend.service;
+
+import com.bookstore.backend.model.PendingPayment;
+import com.bookstore.backend.model.enums.PaymentStatus;
+import com.bookstore.backend.repository.PendingPaymentRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Callback VNPay đồng thời chỉ một lượt thắng; job dọn chỉ xóa lượt bỏ dở, lượt đã hoàn tất giữ lâu hơn
+@DataJpaTest(properties = {
+        "payment.pending.retention=PT1H",
+        "payment.pending.completed-retention=P7D"
+})
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(PendingPaymentRegistry.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class PendingPaymentRegistryTest {
+
+    private static final int CALLBACKS = 16;
+
+    @Autowired
+    private PendingPaymentRegistry registry;
+
+    @Autowired
+    private PendingPaymentRepository pendingPaymentRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @AfterEach
+    void tearDown() {
+        pendingPaymentRepository.deleteAll();
+    }
+
+    @Test
+    void concurrentCallbacksHaveExactlyOneWinner() throws Exception {
+        transactionTemplate.executeWithoutResult(status -> registry.register("PAY-1", 42L));
+
+        ExecutorService executor = Executors.newFixedThreadPool(CALLBACKS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger winners = new AtomicInteger();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < CALLBACKS; i++) {
+                PaymentStatus outcome = i % 2 == 0 ? PaymentStatus.PAID : PaymentStatus.FAILED;
+                String transactionNo = "TXN-" + i;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    if (Boolean.TRUE.equals(transactionTemplate.execute(status ->
+                            registry.complete("PAY-1", outcome, transactionNo)))) {
+                        winners.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, winners.get());
+        PendingPayment payment = pendingPaymentRepository.findById("PAY-1").orElseThrow();
+        assertTrue(payment.getStatus() != PaymentStatus.PENDING);
+        assertEquals(payment.getStatus(), registry.find("PAY-1").orElseThrow().status());
+        assertEquals(42L, registry.findOrderId("PAY-1").orElseThrow());
+    }
+
+    @Test
+    void completeIsRejectedOnceFinished() {
+        transactionTemplate.executeWithoutResult(status -> registry.register("PAY-2", 7L));
+
+        assertEquals(Boolean.TRUE, transactionTemplate.execute(status -> registry.complete("PAY-2", PaymentStatus.PAID, "TXN")));
+        assertEquals(Boolean.FALSE, transactionTemplate.execute(status -> registry.complete("PAY-2", PaymentStatus.FAILED, null)));
+        assertEquals(PaymentStatus.PAID, registry.find("PAY-2").orElseThrow().status());
+    }
+
+    @Test
+    void purgeKeepsCompletedPaymentsUntilTheirOwnRetention() {
+        LocalDateTime now = LocalDateTime.now();
+        pendingPaymentRepository.saveAll(List.of(
+                payment("ABANDONED-OLD", PaymentStatus.PENDING, now.minusHours(2), null),
+                payment("ABANDONED-RECENT", PaymentStatus.PENDING, now.minusMinutes(10), null),
+                payment("PAID-EXPIRED", PaymentStatus.PAID, now.minusHours(2), now.minusHours(2)),
+                payment("PAID-OLD", PaymentStatus.PAID, now.minusDays(8), now.minusDays(8)),
+                payment("FAILED-OLD", PaymentStatus.FAILED, now.minusDays(9), now.minusDays(8))));
+
+        assertEquals(3, registry.purgeExpired());
+
+        Set<String> remaining = new TreeSet<>();
+        pendingPaymentRepository.findAll().forEach(payment -> remaining.add(payment.getPaymentKey()));
+        assertEquals(Set.of("ABANDONED-RECENT", "PAID-EXPIRED"), remaining);
+    }
+
+    private static PendingPayment payment(String key, PaymentStatus status, LocalDateTime expiresAt, LocalDateTime completedAt) {
+        return PendingPayment.builder()
+                .paymentKey(key)
+                .orderId(1L)
+                .status(status)
+                .createdAt(expiresAt.minusMinutes(15))
+                .expiresAt(expiresAt)
+                .completedAt(completedAt)
+                .build();
+    }
+}
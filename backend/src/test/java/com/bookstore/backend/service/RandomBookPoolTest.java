@@ -0,0 +1,67 @@
+package com.bookstore.backend.service;
+
+import com.bookstore.backend.DTO.BookDTO;
+import com.bookstore.backend.service.search.BookDocument;
+import com.bookstore.backend.service.search.BookSearchIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// Thứ tự sách theo session key không đổi khi pool được lấy mẫu lại
+class RandomBookPoolTest {
+
+    private static final int CATALOG_SIZE = 60;
+
+    private final BookSearchIndex bookSearchIndex = new BookSearchIndex();
+    private final BookCatalogReader bookCatalogReader = mock(BookCatalogReader.class);
+
+    @BeforeEach
+    void setUp() {
+        bookSearchIndex.rebuild(LongStream.rangeClosed(1, CATALOG_SIZE)
+                .mapToObj(id -> new BookDocument(id, "Sách " + id, null, null, null, Map.of(), Map.of(), new double[0], 0))
+                .toList());
+        when(bookCatalogReader.loadBooks(anyList())).thenAnswer(invocation -> {
+            List<Long> ids = invocation.getArgument(0);
+            return ids.stream().map(id -> BookDTO.builder().id(id).build()).toList();
+        });
+    }
+
+    @Test
+    void sameSessionKeepsOrderAcrossRefreshes() {
+        RandomBookPool pool = new RandomBookPool(bookSearchIndex, bookCatalogReader, CATALOG_SIZE);
+        pool.reshuffle();
+        List<Long> first = ids(pool.pick("user@example.com", 20));
+        pool.reshuffle();
+        assertEquals(first, ids(pool.pick("user@example.com", 20)));
+        assertNotEquals(first, ids(pool.pick("other@example.com", 20)));
+    }
+
+    @Test
+    void booksStillInPoolKeepRelativeOrder() {
+        RandomBookPool pool = new RandomBookPool(bookSearchIndex, bookCatalogReader, CATALOG_SIZE / 2);
+        pool.reshuffle();
+        List<Long> before = ids(pool.pick("session-1", CATALOG_SIZE));
+        pool.reshuffle();
+        List<Long> after = ids(pool.pick("session-1", CATALOG_SIZE));
+
+        List<Long> common = new ArrayList<>(before);
+        common.retainAll(after);
+        List<Long> afterCommon = new ArrayList<>(after);
+        afterCommon.retainAll(before);
+        assertEquals(common, afterCommon);
+    }
+
+    private static List<Long> ids(List<BookDTO> books) {
+        return books.stream().map(BookDTO::getId).toList();
+    }
+}
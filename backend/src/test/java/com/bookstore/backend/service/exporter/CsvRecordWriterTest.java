@@ -0,0 +1,34 @@
+package com.bookstore.backend.service.exporter;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CsvRecordWriterTest {
+
+    @Test
+    void quotesFieldsWithSeparators() throws IOException {
+        assertEquals("\"Hà Nội, Việt Nam\",\"Sách \"\"hay\"\"\",abc\r\n",
+                write(new Object[]{"Hà Nội, Việt Nam", "Sách \"hay\"", "abc"}));
+    }
+
+    @Test
+    void neutralizesFormulaCells() throws IOException {
+        assertEquals("\"'=HYPERLINK(\"\"x\"\")\",'+1,'-2,'@SUM(A1),\"'=1,2\"\r\n",
+                write(new Object[]{"=HYPERLINK(\"x\")", "+1", "-2", "@SUM(A1)", "=1,2"}));
+    }
+
+    @Test
+    void keepsNegativeNumbersAndEmptyCells() throws IOException {
+        assertEquals("-15000.0,,-3,\r\n", write(new Object[]{-15000.0, null, -3, ""}));
+    }
+
+    private static String write(Object[] values) throws IOException {
+        StringWriter out = new StringWriter();
+        new CsvRecordWriter(out).row(values);
+        return out.toString();
+    }
+}
@@ -0,0 +1,40 @@
+package com.bookstore.backend.service.exporter;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataRetrievalFailureException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayOutputStream;
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// Giới hạn số lượt export: chỗ chỉ bị giữ khi body thực sự chạy và luôn được trả
+class OrderExportServiceTest {
+
+    @Test
+    void bodiesThatNeverRunDoNotHoldSlots() {
+        OrderExportService service = new OrderExportService(mock(DataSource.class), 500, 1);
+
+        // Request hết hạn / bị hủy trước khi body chạy
+        for (int i = 0; i < 5; i++) {
+            assertDoesNotThrow(() -> service.exportRevenue(ExportFormat.CSV, null, null));
+        }
+    }
+
+    @Test
+    void failedExportReleasesSlot() throws SQLException {
+        DataSource dataSource = mock(DataSource.class);
+        when(dataSource.getConnection()).thenThrow(new SQLException("connection refused"));
+        OrderExportService service = new OrderExportService(dataSource, 500, 1);
+
+        for (int i = 0; i < 3; i++) {
+            StreamingResponseBody body = service.exportRevenue(ExportFormat.CSV, null, null);
+            assertThrows(DataRetrievalFailureException.class, () -> body.writeTo(new ByteArrayOutputStream()));
+        }
+    }
+}
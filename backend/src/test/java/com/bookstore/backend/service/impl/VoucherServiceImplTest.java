@@ -0,0 +1,245 @@
+package com.bookstore.backend.service.impl;
+
+import com.bookstore.backend.model.Users;
+import com.bookstore.backend.model.Voucher;
+import com.bookstore.backend.model.enums.UserRole;
+import com.bookstore.backend.repository.UserRepository;
+import com.bookstore.backend.repository.VoucherRedemptionRepository;
+import com.bookstore.backend.repository.VoucherRepository;
+import com.bookstore.backend.service.VoucherIndex;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Lấy lượt dùng voucher bằng UPDATE có điều kiện: không mất lượt, không vượt quantity, mỗi user một lần
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({VoucherServiceImpl.class, VoucherIndex.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class VoucherServiceImplTest {
+
+    private static final int THREADS = 500;
+    private static final int QUANTITY = 100;
+
+    @Autowired
+    private VoucherServiceImpl voucherService;
+
+    @Autowired
+    private VoucherRepository voucherRepository;
+
+    @Autowired
+    private VoucherRedemptionRepository voucherRedemptionRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private VoucherIndex voucherIndex;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private List<Long> userIds;
+
+    @BeforeEach
+    void setUp() {
+        List<Users> users = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            users.add(Users.builder()
+                    .fullName("Khách " + i)
+                    .email("khach" + i + "@example.com")
+                    .role(UserRole.USER)
+                    .build());
+        }
+        userIds = userRepository.saveAll(users).stream().map(Users::getId).toList();
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM voucher_redemption");
+        jdbcTemplate.update("DELETE FROM voucher");
+        jdbcTemplate.update("DELETE FROM users");
+    }
+
+    @Test
+    void concurrentRedemptionsNeverExceedQuantity() throws Exception {
+        Voucher voucher = saveVoucher("FLASH100", QUANTITY);
+
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        runConcurrently(i -> {
+            try {
+                voucherService.applyVoucher("FLASH100", userIds.get(i));
+                succeeded.incrementAndGet();
+            } catch (IllegalArgumentException ex) {
+                rejected.incrementAndGet();
+            }
+        });
+
+        assertEquals(QUANTITY, succeeded.get());
+        assertEquals(THREADS - QUANTITY, rejected.get());
+        Voucher reloaded = voucherRepository.findById(voucher.getId()).orElseThrow();
+        assertEquals(QUANTITY, reloaded.getUsedCount());
+        assertEquals(Voucher.VoucherStatus.EXPIRED, reloaded.getStatus());
+        // Lượt bị từ chối rollback luôn bản ghi redemption
+        assertEquals(QUANTITY, voucherRedemptionRepository.countByVoucherId(voucher.getId()));
+    }
+
+    @Test
+    void sameUserCannotRedeemTwiceConcurrently() throws Exception {
+        Voucher voucher = saveVoucher("MOILAN", null);
+        Long userId = userIds.get(0);
+
+        AtomicInteger succeeded = new AtomicInteger();
+        runConcurrently(i -> {
+            try {
+                voucherService.applyVoucher("MOILAN", userId);
+                succeeded.incrementAndGet();
+            } catch (IllegalArgumentException ex) {
+                // đã dùng
+            }
+        });
+
+        assertEquals(1, succeeded.get());
+        assertEquals(1, voucherRepository.findById(voucher.getId()).orElseThrow().getUsedCount());
+        assertEquals(Voucher.VoucherStatus.ACTIVE, voucherRepository.findById(voucher.getId()).orElseThrow().getStatus());
+    }
+
+    @Test
+    void lastUseExpiresVoucher() {
+        saveVoucher("CUOI", 2);
+
+        assertEquals(Voucher.VoucherStatus.ACTIVE, voucherService.applyVoucher("CUOI", userIds.get(0)).getStatus());
+        Voucher last = voucherService.applyVoucher("CUOI", userIds.get(1));
+        assertEquals(2, last.getUsedCount());
+        assertEquals(Voucher.VoucherStatus.EXPIRED, last.getStatus());
+        assertThrows(IllegalArgumentException.class, () -> voucherService.applyVoucher("CUOI", userIds.get(2)));
+    }
+
+    @Test
+    void cancelledOrderGivesUseBackAndReopensExhaustedVoucher() {
+        Voucher voucher = saveVoucher("HUYDON", 1);
+        assertEquals(Voucher.VoucherStatus.EXPIRED,
+                voucherService.applyVoucher("HUYDON", userIds.get(0), 11L).getStatus());
+        assertFalse(voucherService.validateVoucher("HUYDON"));
+
+        voucherService.releaseVoucher(11L);
+
+        Voucher reloaded = voucherRepository.findById(voucher.getId()).orElseThrow();
+        assertEquals(0, reloaded.getUsedCount());
+        assertEquals(Voucher.VoucherStatus.ACTIVE, reloaded.getStatus());
+        assertEquals(0, voucherRedemptionRepository.countByVoucherId(voucher.getId()));
+        assertTrue(voucherService.validateVoucher("HUYDON"));
+        // User của đơn đã hủy được dùng lại
+        assertEquals(1, voucherService.applyVoucher("HUYDON", userIds.get(0), 12L).getUsedCount());
+    }
+
+    @Test
+    void releaseIsAppliedOnlyOncePerOrder() {
+        Voucher voucher = saveVoucher("MOTLAN", 5);
+        voucherService.applyVoucher("MOTLAN", userIds.get(0), 21L);
+        voucherService.applyVoucher("MOTLAN", userIds.get(1), 22L);
+
+        voucherService.releaseVoucher(21L);
+        voucherService.releaseVoucher(21L);
+        // Đơn không dùng voucher
+        voucherService.releaseVoucher(99L);
+
+        assertEquals(1, voucherRepository.findById(voucher.getId()).orElseThrow().getUsedCount());
+        assertEquals(1, voucherRedemptionRepository.countByVoucherId(voucher.getId()));
+    }
+
+    @Test
+    void releaseDoesNotReopenVoucherPastEndDate() {
+        Voucher voucher = saveVoucher("HETHAN", 1);
+        voucherService.applyVoucher("HETHAN", userIds.get(0), 31L);
+        jdbcTemplate.update("UPDATE voucher SET end_date = ? WHERE id = ?",
+                LocalDateTime.now().minusMinutes(1), voucher.getId());
+
+        voucherService.releaseVoucher(31L);
+
+        Voucher reloaded = voucherRepository.findById(voucher.getId()).orElseThrow();
+        assertEquals(0, reloaded.getUsedCount());
+        assertEquals(Voucher.VoucherStatus.EXPIRED, reloaded.getStatus());
+    }
+
+    @Test
+    void lateHookWithStaleSnapshotCannotReactivateExhaustedVoucher() {
+        Voucher voucher = saveVoucher("TRE", 1);
+        assertTrue(voucherService.validateVoucher("TRE"));
+
+        // Transaction A còn giữ bản ACTIVE trong persistence context; transaction B đã dùng lượt cuối và commit
+        transactionTemplate.executeWithoutResult(status -> {
+            assertEquals(Voucher.VoucherStatus.ACTIVE,
+                    voucherRepository.findById(voucher.getId()).orElseThrow().getStatus());
+            CompletableFuture.runAsync(() -> voucherService.applyVoucher("TRE", userIds.get(0))).join();
+            assertFalse(voucherService.validateVoucher("TRE"));
+            // Hook của A chạy sau B
+            voucherIndex.refresh(voucher.getId());
+        });
+
+        assertFalse(voucherService.validateVoucher("TRE"));
+        assertTrue(voucherService.getActiveVouchers().isEmpty());
+    }
+
+    private interface Attempt {
+        void run(int index);
+    }
+
+    private void runConcurrently(Attempt attempt) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                int index = i;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    attempt.run(index);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Voucher saveVoucher(String code, Integer quantity) {
+        Voucher voucher = new Voucher(code, "Flash sale " + code, Voucher.DiscountType.PERCENTAGE, 10.0,
+                Voucher.VoucherStatus.ACTIVE);
+        voucher.setQuantity(quantity);
+        return voucherRepository.save(voucher);
+    }
+}
@@ -0,0 +1,163 @@
+package com.bookstore.backend.service.importer;
+
+import com.bookstore.backend.exception.BusinessException;
+import com.bookstore.backend.model.CatalogImportJob;
+import com.bookstore.backend.model.enums.ImportStatus;
+import com.bookstore.backend.repository.CatalogImportJobRepository;
+import com.bookstore.backend.service.search.CatalogIndexer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.DefaultApplicationArguments;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+// Import catalog theo chunk: lỗi giữa chừng giữ checkpoint của chunk đã commit, chạy tiếp từ processedRows
+@DataJpaTest(properties = "catalog.import.chunk-size=2")
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({CatalogImportService.class, CatalogImportRunner.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class CatalogImportServiceTest {
+
+    @Autowired
+    private CatalogImportService catalogImportService;
+
+    @Autowired
+    private CatalogImportRunner catalogImportRunner;
+
+    @Autowired
+    private CatalogImportJobRepository jobRepository;
+
+    @MockitoSpyBean
+    private JdbcTemplate jdbcTemplate;
+
+    @MockitoBean
+    private CatalogIndexer catalogIndexer;
+
+    private Path dataFile;
+
+    // H2 không có pg_get_serial_sequence: trỏ mỗi bảng về một sequence riêng, đủ xa id identity của các test khác
+    public static final class H2Functions {
+
+        public static String serialSequence(String table, String column) {
+            return "import_" + table + "_seq";
+        }
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        for (String table : List.of("book", "author", "publisher")) {
+            jdbcTemplate.execute("CREATE SEQUENCE IF NOT EXISTS import_" + table + "_seq START WITH 1000000");
+        }
+        jdbcTemplate.execute("CREATE ALIAS IF NOT EXISTS pg_get_serial_sequence FOR '"
+                + H2Functions.class.getName() + ".serialSequence'");
+        // categories.csv dùng ON CONFLICT DO UPDATE (H2 không hỗ trợ), tạo category trực tiếp
+        jdbcTemplate.update("INSERT INTO category (id, name) VALUES (8322, 'Manga'), (316, 'Tiểu thuyết')");
+        dataFile = Path.of(getClass().getResource("/catalog/data.csv").toURI());
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM book_category");
+        jdbcTemplate.update("DELETE FROM book_author");
+        jdbcTemplate.update("DELETE FROM book_variants");
+        jdbcTemplate.update("DELETE FROM book");
+        jdbcTemplate.update("DELETE FROM author");
+        jdbcTemplate.update("DELETE FROM publisher");
+        jdbcTemplate.update("DELETE FROM category");
+        jdbcTemplate.update("DELETE FROM catalog_import_job");
+    }
+
+    @Test
+    void interruptedImportResumesFromCheckpoint() throws Exception {
+        // Chunk thứ hai (dòng 3-4) mất kết nối khi ghi variant
+        AtomicInteger variantBatches = new AtomicInteger();
+        doAnswer(invocation -> {
+            if (variantBatches.incrementAndGet() == 2) {
+                throw new DataAccessResourceFailureException("Mất kết nối DB");
+            }
+            return invocation.callRealMethod();
+        }).when(jdbcTemplate).batchUpdate(startsWith("INSERT INTO book_variants"), anyList());
+
+        catalogImportRunner.run(new DefaultApplicationArguments("--import-catalog=" + dataFile));
+
+        CatalogImportJob failed = jobRepository.findAll().get(0);
+        assertEquals(ImportStatus.FAILED, failed.getStatus());
+        assertTrue(failed.getMessage().contains("Mất kết nối DB"));
+        assertEquals(2, failed.getProcessedRows());
+        assertEquals(2, failed.getImportedBooks());
+        assertEquals(0, failed.getSkippedRows());
+        // Chunk lỗi rollback cùng checkpoint
+        assertEquals(2, count("book"));
+        verify(catalogIndexer, never()).rebuild();
+
+        catalogImportRunner.run(new DefaultApplicationArguments(
+                "--import-catalog=" + dataFile, "--import-resume=" + failed.getId()));
+
+        CatalogImportJob completed = catalogImportService.getJob(failed.getId());
+        assertEquals(ImportStatus.COMPLETED, completed.getStatus());
+        assertNotNull(completed.getFinishedAt());
+        assertEquals(5, completed.getProcessedRows());
+        assertEquals(4, completed.getImportedBooks());
+        // Dòng 3 trùng ISBN với dòng 1 đã import ở lần chạy trước
+        assertEquals(1, completed.getSkippedRows());
+        assertEquals(1, jobRepository.count());
+        verify(catalogIndexer).rebuild();
+
+        assertEquals(4, count("book"));
+        assertEquals(4, count("book_variants"));
+        assertEquals(3, count("author"));
+        assertEquals(2, count("publisher"));
+        assertEquals(4, count("book_author"));
+        // Category 999 không có trong DB: bỏ liên kết
+        assertEquals(3, count("book_category"));
+        assertEquals(List.of("Conan tập 100", "Doraemon, tập 1", "Mắt biếc", "Sổ tay không ISBN"),
+                jdbcTemplate.queryForList("SELECT title FROM book ORDER BY title", String.class));
+        assertEquals(300, jdbcTemplate.queryForObject(
+                "SELECT sold FROM book_variants WHERE isbn = '9786041000004'", Integer.class));
+    }
+
+    @Test
+    void completedJobCannotBeResumedAndFileMustMatch(@TempDir Path tempDir) throws Exception {
+        CatalogImportJob job = catalogImportService.runImport(dataFile, null, null);
+        assertEquals(ImportStatus.COMPLETED, job.getStatus());
+        assertEquals(1, job.getSkippedRows());
+
+        assertThrows(BusinessException.class, () -> catalogImportService.runImport(dataFile, null, job.getId()));
+
+        jdbcTemplate.update("UPDATE catalog_import_job SET status = 'FAILED' WHERE id = ?", job.getId());
+        Path other = Files.writeString(tempDir.resolve("data.csv"), "title\nSách khác\n");
+        assertThrows(BusinessException.class, () -> catalogImportService.runImport(other, null, job.getId()));
+        assertEquals(4, count("book"));
+    }
+
+    private long count(String table) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Long.class);
+    }
+}
@@ -0,0 +1,78 @@
+package com.bookstore.backend.service.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SlidingWindowCounterTest {
+
+    private static final int WINDOW = 60;
+    private static final long T0 = 1_700_000_000_000L;
+
+    @Test
+    void concurrentAddsAreNotLost() throws Exception {
+        SlidingWindowCounter counter = new SlidingWindowCounter(WINDOW);
+        int threads = 16;
+        int addsPerThread = 10_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    // Trải qua vài giây để các thread cùng tranh nhau tạo bucket mới
+                    for (int i = 0; i < addsPerThread; i++) {
+                        counter.add(T0 + (i / 2_500) * 1000L, 1);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals((long) threads * addsPerThread, counter.sum(T0 + 3_000));
+    }
+
+    @Test
+    void valuesLeaveTheWindowAfterWindowSeconds() {
+        SlidingWindowCounter counter = new SlidingWindowCounter(WINDOW);
+        counter.add(T0, 5);
+        counter.add(T0 + 10_000, 7);
+
+        assertEquals(12, counter.sum(T0 + 10_000));
+        assertEquals(12, counter.sum(T0 + (WINDOW - 1) * 1000L));
+        assertEquals(7, counter.sum(T0 + WINDOW * 1000L));
+        assertEquals(0, counter.sum(T0 + (WINDOW + 10) * 1000L));
+        // Chưa tới giây của bucket thì không tính
+        assertEquals(5, counter.sum(T0 + 999));
+    }
+
+    @Test
+    void staleBucketIsReplacedWhenTheSlotComesAround() {
+        SlidingWindowCounter counter = new SlidingWindowCounter(WINDOW);
+        counter.add(T0, 5);
+
+        // Cùng vị trí trong vòng, một vòng sau: bucket cũ bị thay, không cộng dồn
+        long nextLap = T0 + WINDOW * 1000L;
+        counter.add(nextLap, 3);
+        assertEquals(3, counter.sum(nextLap));
+
+        // Lượt ghi trễ cho giây đã bị thay thì bỏ qua, không đè bucket mới
+        counter.add(T0, 100);
+        assertEquals(3, counter.sum(nextLap));
+    }
+}
@@ -0,0 +1,199 @@
+package com.bookstore.backend.service.outbox;
+
+import com.bookstore.backend.DTO.NotificationRequestDTO;
+import com.bookstore.backend.model.OutboxEvent;
+import com.bookstore.backend.model.Orders;
+import com.bookstore.backend.model.enums.NotificationType;
+import com.bookstore.backend.model.enums.OutboxStatus;
+import com.bookstore.backend.model.enums.PaymentStatus;
+import com.bookstore.backend.model.enums.PaymentType;
+import com.bookstore.backend.model.enums.StatusOrder;
+import com.bookstore.backend.repository.OrdersRepository;
+import com.bookstore.backend.repository.OutboxEventRepository;
+import com.bookstore.backend.service.EmailService;
+import com.bookstore.backend.service.NotificationService;
+import com.bookstore.backend.service.OrderPageReader;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.IllegalTransactionStateException;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+// Outbox: chỉ gửi sau khi commit, gửi ở worker nền, lỗi thì retry với backoff
+@DataJpaTest(properties = "outbox.max-attempts=3")
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@Import({OutboxService.class, OutboxDispatcher.class, EmailService.class, OrderPageReader.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class OutboxDispatcherTest {
+
+    @Autowired
+    private OutboxService outboxService;
+
+    @Autowired
+    private OutboxDispatcher outboxDispatcher;
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private OrdersRepository ordersRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // SMTP giả: bắt lại email thay vì gửi qua relay
+    @MockitoBean
+    private JavaMailSender mailSender;
+
+    @MockitoBean
+    private NotificationService notificationService;
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM outbox_event");
+        jdbcTemplate.update("DELETE FROM orders");
+    }
+
+    @Test
+    void orderConfirmationEmailIsSentAfterCommit() {
+        Long orderId = transactionTemplate.execute(status -> {
+            Long id = saveOrder();
+            outboxService.enqueueOrderConfirmationEmail(id, "khach@example.com", "Nguyễn Văn A");
+            return id;
+        });
+
+        assertEquals(1, outboxDispatcher.poll());
+        OutboxEvent event = awaitProcessed();
+
+        assertEquals(OutboxStatus.SENT, event.getStatus());
+        assertEquals(1, event.getAttempts());
+        ArgumentCaptor<SimpleMailMessage> message = ArgumentCaptor.forClass(SimpleMailMessage.class);
+        verify(mailSender).send(message.capture());
+        assertArrayEquals(new String[]{"khach@example.com"}, message.getValue().getTo());
+        assertTrue(message.getValue().getSubject().contains("#" + orderId));
+    }
+
+    @Test
+    void rolledBackTransactionLeavesNothingToSend() {
+        transactionTemplate.executeWithoutResult(status -> {
+            outboxService.enqueueNotification(notification());
+            status.setRollbackOnly();
+        });
+
+        assertEquals(0, outboxEventRepository.count());
+        assertEquals(0, outboxDispatcher.poll());
+        // Không có transaction của nghiệp vụ -> không cho ghi outbox
+        assertThrows(IllegalTransactionStateException.class,
+                () -> outboxService.enqueueNotification(notification()));
+    }
+
+    @Test
+    void failedDeliveryIsRetriedWithBackoffThenMarkedFailed() {
+        doThrow(new IllegalStateException("WebSocket broker down"))
+                .when(notificationService).sendNotification(any(NotificationRequestDTO.class));
+        transactionTemplate.executeWithoutResult(status -> outboxService.enqueueNotification(notification()));
+
+        assertEquals(1, outboxDispatcher.poll());
+        OutboxEvent first = awaitProcessed();
+        assertEquals(OutboxStatus.PENDING, first.getStatus());
+        assertNotNull(first.getLastError());
+        // Chưa tới hạn retry -> poll không nhận lại
+        assertTrue(first.getNextAttemptAt().isAfter(LocalDateTime.now().plusSeconds(5)));
+        assertEquals(0, outboxDispatcher.poll());
+
+        makeDue();
+        assertEquals(1, outboxDispatcher.poll());
+        OutboxEvent second = awaitProcessed();
+        assertEquals(2, second.getAttempts());
+        // Backoff tăng gấp đôi sau mỗi lần lỗi
+        assertTrue(second.getNextAttemptAt().isAfter(LocalDateTime.now().plusSeconds(15)));
+
+        makeDue();
+        assertEquals(1, outboxDispatcher.poll());
+        awaitStatus(OutboxStatus.FAILED);
+        verify(notificationService, times(3)).sendNotification(any(NotificationRequestDTO.class));
+    }
+
+    @Test
+    void stuckProcessingEventIsRecovered() {
+        transactionTemplate.executeWithoutResult(status -> outboxService.enqueueNotification(notification()));
+        // Giả lập server tắt khi đang gửi
+        jdbcTemplate.update("UPDATE outbox_event SET status = 'PROCESSING', attempts = 1, locked_at = ?",
+                LocalDateTime.now().minusMinutes(10));
+
+        assertEquals(1, outboxDispatcher.poll());
+        awaitStatus(OutboxStatus.SENT);
+        verify(notificationService).sendNotification(any(NotificationRequestDTO.class));
+    }
+
+    private OutboxEvent awaitProcessed() {
+        await().atMost(Duration.ofSeconds(10)).until(() ->
+                outboxEventRepository.findAll().get(0).getStatus() != OutboxStatus.PROCESSING);
+        return outboxEventRepository.findAll().get(0);
+    }
+
+    private void awaitStatus(OutboxStatus expected) {
+        await().atMost(Duration.ofSeconds(10)).until(() ->
+                outboxEventRepository.findAll().get(0).getStatus() == expected);
+    }
+
+    private void makeDue() {
+        jdbcTemplate.update("UPDATE outbox_event SET next_attempt_at = ?", LocalDateTime.now().minusSeconds(1));
+    }
+
+    private Long saveOrder() {
+        Orders order = new Orders();
+        order.setShippingAddress("12 Nguyễn Huệ");
+        order.setPhoneNumber("0900000000");
+        order.setStatus(StatusOrder.PENDING);
+        order.setPaymentStatus(PaymentStatus.PENDING);
+        order.setPaymentType(PaymentType.COD);
+        order.setOrderDate(LocalDateTime.now());
+        order.setTotalAmount(BigDecimal.valueOf(32000));
+        order.setOrderDetails(new HashSet<>());
+        return ordersRepository.save(order).getId();
+    }
+
+    private static NotificationRequestDTO notification() {
+        return NotificationRequestDTO.builder()
+                .content("Thanh toán thành công cho đơn hàng #1 của bạn")
+                .url("http://localhost:5173/payment/result?orderId=1")
+                .type(NotificationType.PERSONAL)
+                .userId(1L)
+                .build();
+    }
+}
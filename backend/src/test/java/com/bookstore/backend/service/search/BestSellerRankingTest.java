@@ -0,0 +1,107 @@
+package com.bookstore.backend.service.search;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Xếp hạng theo tổng đã bán và theo điểm trending giảm dần, cập nhật khi bán / hoàn, phạm vi theo category
+class BestSellerRankingTest {
+
+    private static final Duration HALF_LIFE = Duration.ofDays(7);
+
+    private BestSellerRanking ranking;
+
+    @BeforeEach
+    void setUp() {
+        long now = System.currentTimeMillis();
+        ranking = new BestSellerRanking(HALF_LIFE);
+        ranking.rebuild(List.of(
+                        document(1L, 100, "Manga"),
+                        document(2L, 10, "Manga", "Thiếu nhi"),
+                        document(3L, 50, "Trinh thám")),
+                List.of(
+                        // Bán cách đây hai half-life chỉ còn 1/4 trọng số
+                        new BestSellerRanking.DailySale(3L, now - HALF_LIFE.multipliedBy(2).toMillis(), 20),
+                        new BestSellerRanking.DailySale(2L, now, 10)));
+    }
+
+    @Test
+    void allTimeOrdersBySoldAndTrendingByDecayedScore() {
+        assertEquals(List.of(1L, 3L, 2L), ranking.top(null, BestSellerRanking.Window.ALL_TIME, 10));
+        assertEquals(List.of(2L, 3L, 1L), ranking.top(null, BestSellerRanking.Window.TRENDING, 10));
+        assertEquals(List.of(1L, 2L), ranking.top("Manga", BestSellerRanking.Window.ALL_TIME, 10));
+
+        // Lượt bán mới đẩy sách lên đầu trending nhưng không vượt tổng đã bán
+        ranking.recordSale(1L, 20);
+        assertEquals(List.of(1L, 2L, 3L), ranking.top(null, BestSellerRanking.Window.TRENDING, 10));
+        assertEquals(List.of(1L, 3L, 2L), ranking.top(null, BestSellerRanking.Window.ALL_TIME, 10));
+
+        BestSellerRanking.Slice slice = ranking.slice(null, BestSellerRanking.Window.ALL_TIME, 1, 1);
+        assertEquals(List.of(3L), slice.ids());
+        assertEquals(3, slice.total());
+    }
+
+    @Test
+    void restoreLowersRankAndNeverGoesNegative() {
+        // Hoàn hết lượt bán gần đây: trend về 0, hòa điểm thì xếp theo tổng đã bán
+        ranking.recordSale(2L, -10);
+        assertEquals(List.of(3L, 1L, 2L), ranking.top(null, BestSellerRanking.Window.TRENDING, 10));
+
+        ranking.recordSale(3L, -1_000);
+        assertEquals(List.of(1L, 2L, 3L), ranking.top(null, BestSellerRanking.Window.ALL_TIME, 10));
+        // Đã về 0 thì hoàn thêm không đẩy xuống dưới sách chưa bán
+        ranking.index(document(4L, 0, "Trinh thám"));
+        assertEquals(List.of(3L, 4L), ranking.top("Trinh thám", BestSellerRanking.Window.ALL_TIME, 10));
+        assertEquals(List.of(3L, 4L), ranking.top("Trinh thám", BestSellerRanking.Window.TRENDING, 10));
+    }
+
+    @Test
+    void orderIsKeptAcrossRebase() throws InterruptedException {
+        // Half-life 5 ms: số mũ vượt ngưỡng sau khoảng 300 ms, lượt bán kế tiếp phải chuẩn hóa lại
+        BestSellerRanking fast = new BestSellerRanking(Duration.ofMillis(5));
+        fast.rebuild(List.of(document(1L, 10, "Manga"), document(2L, 20, "Manga"), document(3L, 30, "Manga")), List.of());
+        fast.recordSale(1L, 3);
+        fast.recordSale(2L, 2);
+        fast.recordSale(3L, 1);
+        assertEquals(List.of(1L, 2L, 3L), fast.top("Manga", BestSellerRanking.Window.TRENDING, 10));
+
+        Thread.sleep(400);
+        fast.recordSale(1L, 1);
+
+        assertEquals(List.of(1L, 2L, 3L), fast.top("Manga", BestSellerRanking.Window.TRENDING, 10));
+        assertEquals(List.of(1L, 2L, 3L), fast.top(null, BestSellerRanking.Window.TRENDING, 10));
+        assertEquals(List.of(3L, 2L, 1L), fast.top("Manga", BestSellerRanking.Window.ALL_TIME, 10));
+    }
+
+    @Test
+    void emptiedCategoryScopeIsRemoved() {
+        ranking.remove(3L);
+        assertEquals(0, ranking.slice("Trinh thám", BestSellerRanking.Window.ALL_TIME, 0, 10).total());
+
+        // Đổi category: phạm vi cũ không còn sách thì biến mất, số liệu bán được giữ
+        ranking.index(document(2L, 10, "Manga"));
+        assertTrue(ranking.top("Thiếu nhi", BestSellerRanking.Window.TRENDING, 10).isEmpty());
+        assertEquals(List.of(2L, 1L), ranking.top("Manga", BestSellerRanking.Window.TRENDING, 10));
+
+        ranking.remove(1L);
+        ranking.remove(2L);
+        assertEquals(0, ranking.slice("Manga", BestSellerRanking.Window.ALL_TIME, 0, 10).total());
+        assertEquals(0, ranking.slice(null, BestSellerRanking.Window.ALL_TIME, 0, 10).total());
+    }
+
+    private static BookDocument document(Long id, long sold, String... categories) {
+        Map<Long, String> byId = new HashMap<>();
+        for (int i = 0; i < categories.length; i++) {
+            byId.put((long) i + 1, categories[i]);
+        }
+        return new BookDocument(id, "Sách " + id, 1L, "NXB", 2020,
+                Map.of(1L, "Tác giả"), byId, new double[]{50_000}, sold);
+    }
+}
@@ -0,0 +1,81 @@
+package com.bookstore.backend.service.search;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Inverted index: khớp prefix không dấu, AND giữa các token, xếp theo trọng số field
+class BookSearchIndexTest {
+
+    private BookSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new BookSearchIndex();
+        index.rebuild(List.of(
+                document(1L, "Thám tử lừng danh Conan", "Gosho Aoyama", "Manga", "Kim Đồng"),
+                document(2L, "Doraemon", "Fujiko F. Fujio", "Manga", "Kim Đồng"),
+                document(3L, "Mắt biếc", "Nguyễn Nhật Ánh", "Tiểu thuyết", "NXB Trẻ")));
+    }
+
+    @Test
+    void matchesFoldedPrefixes() {
+        assertEquals(List.of(1L), ids(index.search("tham tu", BookSearchIndex.ALL_FIELDS)));
+        assertEquals(List.of(3L), ids(index.search("mat bi", BookSearchIndex.ALL_FIELDS)));
+    }
+
+    @Test
+    void allTokensMustMatch() {
+        assertEquals(List.of(1L), ids(index.search("manga conan", BookSearchIndex.ALL_FIELDS)));
+        assertTrue(index.search("conan doraemon", BookSearchIndex.ALL_FIELDS).isEmpty());
+    }
+
+    @Test
+    void titleMatchOutranksCategoryMatchAndExactOutranksPrefix() {
+        index.index(document(4L, "Manga là gì", "Tác giả", "Khảo cứu", "NXB Trẻ"));
+        List<BookSearchIndex.Hit> hits = index.search("manga", BookSearchIndex.ALL_FIELDS);
+        assertEquals(4L, hits.get(0).document().id());
+        assertEquals(3, hits.size());
+
+        index.index(document(5L, "Mangaka", "Tác giả", "Khảo cứu", "NXB Trẻ"));
+        List<BookSearchIndex.Hit> titleHits = index.search("manga", EnumSet.of(BookSearchIndex.Field.TITLE));
+        assertEquals(List.of(4L, 5L), ids(titleHits));
+    }
+
+    @Test
+    void fieldFilterRestrictsMatches() {
+        assertEquals(List.of(2L, 1L), ids(index.search("kim dong", EnumSet.of(BookSearchIndex.Field.PUBLISHER))));
+        assertTrue(index.search("kim dong", EnumSet.of(BookSearchIndex.Field.TITLE)).isEmpty());
+    }
+
+    @Test
+    void reindexReplacesOldTokensAndRemoveDropsBook() {
+        index.index(document(2L, "Doraemon", "Fujiko Fujio", "Thiếu nhi", "Kim Đồng"));
+        assertEquals(List.of(1L), ids(index.search("manga", BookSearchIndex.ALL_FIELDS)));
+        assertEquals(List.of(2L), ids(index.search("thieu nhi", BookSearchIndex.ALL_FIELDS)));
+
+        index.remove(1L);
+        assertTrue(index.search("conan", BookSearchIndex.ALL_FIELDS).isEmpty());
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    void blankQueryReturnsWholeCatalog() {
+        assertEquals(3, index.search("  ", BookSearchIndex.ALL_FIELDS).size());
+    }
+
+    private static List<Long> ids(List<BookSearchIndex.Hit> hits) {
+        return hits.stream().map(hit -> hit.document().id()).toList();
+    }
+
+    private static BookDocument document(Long id, String title, String author, String category, String publisher) {
+        return new BookDocument(id, title, id * 10, publisher, 2020,
+                Map.of(id * 100, author), Map.of(id * 1000, category), new double[]{50000}, 0);
+    }
+}
@@ -0,0 +1,150 @@
+package com.bookstore.backend.service.search;
+
+import com.bookstore.backend.model.Author;
+import com.bookstore.backend.model.Book;
+import com.bookstore.backend.model.Category;
+import com.bookstore.backend.model.Publisher;
+import com.bookstore.backend.repository.AuthorRepository;
+import com.bookstore.backend.repository.BookRepository;
+import com.bookstore.backend.repository.CategoryRepository;
+import com.bookstore.backend.repository.PublisherRepository;
+import com.bookstore.backend.service.RandomBookPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Đổi tên tác giả / category / NXB phải index lại các sách tham chiếu sau commit
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({CatalogIndexer.class, CatalogReferenceListener.class, BookSearchIndex.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class CatalogIndexerTest {
+
+    @Autowired
+    private CatalogIndexer catalogIndexer;
+
+    @Autowired
+    private BookSearchIndex bookSearchIndex;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private AuthorRepository authorRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private PublisherRepository publisherRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockitoBean
+    private TitleSuggester titleSuggester;
+
+    @MockitoBean
+    private FacetEngine facetEngine;
+
+    @MockitoBean
+    private RandomBookPool randomBookPool;
+
+    @MockitoBean
+    private BestSellerRanking bestSellerRanking;
+
+    private Long authorId;
+    private Long categoryId;
+    private Long publisherId;
+
+    @BeforeEach
+    void setUp() {
+        transactionTemplate.executeWithoutResult(status -> {
+            Author author = authorRepository.save(Author.builder().name("Gosho Aoyama").build());
+            Category category = categoryRepository.save(Category.builder().name("Manga").build());
+            Publisher publisher = publisherRepository.save(Publisher.builder().name("Kim Đồng").build());
+            authorId = author.getId();
+            categoryId = category.getId();
+            publisherId = publisher.getId();
+            bookRepository.save(Book.builder()
+                    .title("Thám tử lừng danh Conan")
+                    .publisher(publisher)
+                    .authors(new HashSet<>(Set.of(author)))
+                    .categories(new HashSet<>(Set.of(category)))
+                    .isDeleted(false)
+                    .build());
+        });
+        catalogIndexer.rebuild();
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM book_author");
+        jdbcTemplate.update("DELETE FROM book_category");
+        jdbcTemplate.update("DELETE FROM book");
+        jdbcTemplate.update("DELETE FROM author");
+        jdbcTemplate.update("DELETE FROM category");
+        jdbcTemplate.update("DELETE FROM publisher");
+    }
+
+    @Test
+    void renamingAuthorReindexesItsBooks() {
+        transactionTemplate.executeWithoutResult(status ->
+                authorRepository.findById(authorId).orElseThrow().setName("Tite Kubo"));
+
+        assertTrue(search("gosho").isEmpty());
+        assertEquals(1, search("tite kubo").size());
+    }
+
+    @Test
+    void renamingCategoryAndPublisherReindexesTheirBooks() {
+        transactionTemplate.executeWithoutResult(status -> {
+            categoryRepository.findById(categoryId).orElseThrow().setName("Truyện tranh");
+            publisherRepository.findById(publisherId).orElseThrow().setName("NXB Trẻ");
+        });
+
+        assertTrue(search("manga").isEmpty());
+        assertTrue(search("kim dong").isEmpty());
+        assertEquals(1, search("truyen tranh nxb tre").size());
+    }
+
+    @Test
+    void rolledBackRenameLeavesIndexUntouched() {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                authorRepository.findById(authorId).orElseThrow().setName("Người khác");
+                authorRepository.flush();
+                status.setRollbackOnly();
+            });
+        } catch (RuntimeException ignored) {
+            // rollback-only
+        }
+
+        assertEquals(1, search("gosho").size());
+    }
+
+    private List<BookSearchIndex.Hit> search(String query) {
+        return bookSearchIndex.search(query, BookSearchIndex.ALL_FIELDS);
+    }
+}
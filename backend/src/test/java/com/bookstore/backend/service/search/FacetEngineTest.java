@@ -0,0 +1,69 @@
+package com.bookstore.backend.service.search;
+
+import com.bookstore.backend.DTO.FacetedSearchDTO.FacetValueDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Ordinal sách được giữ khi index lại và thu hồi khi xóa, lọc / đếm facet vẫn đúng
+class FacetEngineTest {
+
+    private static final FacetEngine.Filter NO_FILTER = new FacetEngine.Filter(null, null, null, null, null);
+
+    private FacetEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        engine = new FacetEngine();
+        engine.rebuild(List.of(
+                document(1L, 10L, 60_000),
+                document(2L, 10L, 150_000),
+                document(3L, 20L, 30_000)));
+    }
+
+    @Test
+    void reindexKeepsOrdinalAndMovesFacets() {
+        for (int i = 0; i < 100; i++) {
+            engine.index(document(2L, i % 2 == 0 ? 20L : 10L, 150_000));
+        }
+        assertEquals(3, engine.capacity());
+
+        FacetEngine.Result result = engine.apply(List.of(1L, 2L, 3L),
+                new FacetEngine.Filter(null, null, 10L, null, null));
+        assertEquals(List.of(1L, 2L), result.bookIds());
+    }
+
+    @Test
+    void removedOrdinalIsReusedByNextBook() {
+        engine.remove(1L);
+        engine.index(document(4L, 20L, 250_000));
+        assertEquals(3, engine.capacity());
+
+        FacetEngine.Result result = engine.apply(List.of(1L, 2L, 3L, 4L), NO_FILTER);
+        assertEquals(List.of(2L, 3L, 4L), result.bookIds());
+        assertEquals(List.of(2, 1), result.categories().stream().map(FacetValueDTO::getCount).toList());
+        assertEquals(List.of(20L, 10L), result.categories().stream().map(FacetValueDTO::getId).toList());
+
+        FacetEngine.Result cheap = engine.apply(List.of(1L, 2L, 3L, 4L), new FacetEngine.Filter(null, 100_000d, null, null, null));
+        assertEquals(List.of(3L), cheap.bookIds());
+    }
+
+    @Test
+    void churnDoesNotGrowOrdinals() {
+        for (long id = 100; id < 1100; id++) {
+            engine.index(document(id, 30L, 80_000));
+            engine.remove(id);
+        }
+        assertEquals(4, engine.capacity());
+        assertEquals(List.of(1L, 2L, 3L), engine.apply(List.of(1L, 2L, 3L), NO_FILTER).bookIds());
+    }
+
+    private static BookDocument document(Long id, Long categoryId, double price) {
+        return new BookDocument(id, "Sách " + id, 1L, "NXB", 2020,
+                Map.of(1L, "Tác giả"), Map.of(categoryId, "Thể loại " + categoryId), new double[]{price}, 0);
+    }
+}
@@ -0,0 +1,87 @@
+package com.bookstore.backend.service.search;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Radix trie gợi ý tiêu đề: chèn / xóa / tra prefix và thứ tự top-K theo số đã bán
+class TitleSuggesterTest {
+
+    private TitleSuggester suggester;
+
+    @BeforeEach
+    void setUp() {
+        suggester = new TitleSuggester();
+        suggester.rebuild(List.of(
+                document(1L, "Attack on Titan", 120),
+                document(2L, "Atomic Habits", 300),
+                document(3L, "Đắc nhân tâm", 500),
+                document(4L, "Nhà giả kim", 80)));
+    }
+
+    @Test
+    void prefixLookupMatchesStartOfAnyWordWithoutDiacritics() {
+        assertEquals(List.of("Atomic Habits", "Attack on Titan"), suggester.suggest("at", 10));
+        assertEquals(List.of("Attack on Titan"), suggester.suggest("att", 10));
+        assertEquals(List.of("Attack on Titan"), suggester.suggest("TITAN", 10));
+        assertEquals(List.of("Đắc nhân tâm"), suggester.suggest("nhan t", 10));
+        assertEquals(List.of("Đắc nhân tâm", "Nhà giả kim"), suggester.suggest("nha", 10));
+    }
+
+    @Test
+    void noMatchInsideWordOrOnBlankKeyword() {
+        assertTrue(suggester.suggest("tack", 10).isEmpty());
+        assertTrue(suggester.suggest("attacks", 10).isEmpty());
+        assertTrue(suggester.suggest("  ", 10).isEmpty());
+    }
+
+    @Test
+    void topKIsOrderedBySoldAndBounded() {
+        for (long id = 10; id < 20; id++) {
+            suggester.index(document(id, "Sách số " + id, id * 10));
+        }
+        List<String> top = suggester.suggest("sach", 10);
+        assertEquals(TitleSuggester.TOP_K, top.size());
+        assertEquals(List.of("Sách số 19", "Sách số 18", "Sách số 17", "Sách số 16", "Sách số 15"), top);
+        assertEquals(List.of("Sách số 19", "Sách số 18"), suggester.suggest("sach", 2));
+    }
+
+    @Test
+    void removeDropsTitleAndPromotesNextCandidate() {
+        for (long id = 10; id < 16; id++) {
+            suggester.index(document(id, "Sách số " + id, id * 10));
+        }
+        suggester.remove(15L);
+        assertEquals(List.of("Sách số 14", "Sách số 13", "Sách số 12", "Sách số 11", "Sách số 10"),
+                suggester.suggest("sach so", 10));
+
+        suggester.remove(1L);
+        assertEquals(List.of("Atomic Habits"), suggester.suggest("at", 10));
+        assertTrue(suggester.suggest("titan", 10).isEmpty());
+    }
+
+    @Test
+    void reindexAndAdjustSoldUpdateRanking() {
+        suggester.adjustSold(1L, 1000);
+        assertEquals(List.of("Attack on Titan", "Atomic Habits"), suggester.suggest("at", 10));
+
+        suggester.index(document(1L, "Shingeki no Kyojin", 1120));
+        assertEquals(List.of("Atomic Habits"), suggester.suggest("at", 10));
+        assertEquals(List.of("Shingeki no Kyojin"), suggester.suggest("kyo", 10));
+    }
+
+    @Test
+    void duplicateTitlesAreReturnedOnce() {
+        suggester.index(document(5L, "Atomic Habits", 10));
+        assertEquals(List.of("Atomic Habits", "Attack on Titan"), suggester.suggest("at", 10));
+    }
+
+    private static BookDocument document(Long id, String title, long sold) {
+        return new BookDocument(id, title, null, null, null, Map.of(), Map.of(), new double[0], sold);
+    }
+}
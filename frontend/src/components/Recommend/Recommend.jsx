@@ -23,8 +23,15 @@ const Recommend = () => {
     useEffect(() => {
         const fetchBooks = async () => {
             try {
+                // Giữ nguyên danh sách gợi ý trong cùng một phiên trình duyệt
+                let seed = sessionStorage.getItem("recommendSeed");
+                if (!seed) {
+                    seed = Math.random().toString(36).slice(2);
+                    sessionStorage.setItem("recommendSeed", seed);
+                }
                 const response = await axios.get(
-                    "http://localhost:8080/api/books/random"
+                    "http://localhost:8080/api/books/random",
+                    { params: { seed } }
                 );
                 setAllBooks(response.data || []);
             } catch (error) {
@@ -191,7 +191,7 @@ export default function BookAdmin() {
   const handleEdit = (book) => {
     setModalMode("edit"); setActiveTab("general"); setSelectedBook(book); setAuthorSearch(""); setCategorySearch(""); setValidationErrors({});
     const mappedVariants = (book.variants || []).map(v => ({
-      id: v.id, price: v.price || 0, quantity: v.quantity || 0, status: v.status || "AVAILABLE", imageUrls: v.imageUrls || []
+      id: v.id, price: v.price || 0, quantity: v.quantity || 0, originalQuantity: v.quantity || 0, status: v.status || "AVAILABLE", imageUrls: v.imageUrls || []
     }));
     setFormData({
       title: book.title, description: book.description || "", publisherYear: book.publisherYear || new Date().getFullYear(),
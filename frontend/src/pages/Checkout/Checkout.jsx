@@ -1,4 +1,4 @@
-import React, { useState, useEffect } from "react";
+import React, { useState, useEffect, useRef } from "react";
 import axiosClient from "../../api/axiosClient";
 import { useLocation, useNavigate } from "react-router-dom";
 import "./Checkout.css";
@@ -6,6 +6,25 @@ import axios from "axios";
 import vnpayIcon from "../../assets/vnpay.png";
 import cashIcon from "../../assets/money.png";
 
+// crypto.randomUUID chỉ có trong secure context (https / localhost); truy cập qua IP nội bộ thì dùng getRandomValues
+function newIdempotencyKey() {
+    if (typeof crypto !== "undefined" && typeof crypto.randomUUID === "function") {
+        return crypto.randomUUID();
+    }
+    const bytes = new Uint8Array(16);
+    if (typeof crypto !== "undefined" && typeof crypto.getRandomValues === "function") {
+        crypto.getRandomValues(bytes);
+    } else {
+        for (let i = 0; i < bytes.length; i++) {
+            bytes[i] = Math.floor(Math.random() * 256);
+        }
+    }
+    bytes[6] = (bytes[6] & 0x0f) | 0x40;
+    bytes[8] = (bytes[8] & 0x3f) | 0x80;
+    const hex = Array.from(bytes, (b) => b.toString(16).padStart(2, "0")).join("");
+    return `${hex.slice(0, 8)}-${hex.slice(8, 12)}-${hex.slice(12, 16)}-${hex.slice(16, 20)}-${hex.slice(20)}`;
+}
+
 function Checkout() {
     const navigate = useNavigate();
     const location = useLocation();
@@ -104,6 +123,9 @@ function Checkout() {
     const [useFreeship, setUseFreeship] = useState(false);
     const [exportInvoice, setExportInvoice] = useState(false);
     const [orderLoading, setOrderLoading] = useState(false);
+    // Một key cho mỗi lần vào trang thanh toán: bấm lại / retry sẽ không tạo đơn trùng.
+    // Tạo ở lần đặt hàng đầu tiên, không tạo lại mỗi lần render
+    const idempotencyKeyRef = useRef(null);
 
     //Kiểm tra xem có hàng để thanh toán không
     useEffect(() => {
@@ -184,6 +206,9 @@ function Checkout() {
             return;
         }
 
+        if (!idempotencyKeyRef.current) {
+            idempotencyKeyRef.current = newIdempotencyKey();
+        }
         setOrderLoading(true);
         try {
             // Tìm tên Tỉnh/Huyện/Xã từ ID
@@ -227,7 +252,9 @@ function Checkout() {
             console.log("📦 Gửi order data:", orderPayload);
 
             // Gọi API backend để tạo order và nhận payment URL
-            const response = await axiosClient.post("/checkout", orderPayload);
+            const response = await axiosClient.post("/checkout", orderPayload, {
+                headers: { "Idempotency-Key": idempotencyKeyRef.current },
+            });
 
             console.log("✅ Response:", response.data);
 
@@ -3,11 +3,14 @@ import "./OrderAdmin.css";
 import { useNavigate } from "react-router-dom";
 
 const API_URL = "http://localhost:8080/api/orders";
+const ADMIN_API_URL = "http://localhost:8080/api/admin/orders";
 
 export default function OrderAdmin() {
   const navigate = useNavigate();
 
   const [orders, setOrders] = useState([]);
+  const [statusCounts, setStatusCounts] = useState({});
+  const [totalPages, setTotalPages] = useState(0);
   const [activeTab, setActiveTab] = useState("ALL");
   const [loading, setLoading] = useState(false);
   const [error, setError] = useState("");
@@ -30,25 +33,33 @@ export default function OrderAdmin() {
   useEffect(() => {
     if (!token) {
       navigate("/login");
-    } else {
-      fetchOrders();
     }
   }, []);
 
-  // fetch orders
+  // fetch orders (phân trang + lọc trạng thái phía server)
   const fetchOrders = async () => {
     setLoading(true);
     setError("");
 
     try {
-      const res = await fetch(API_URL, {
-        headers: { Authorization: `Bearer ${token}` },
+      const params = new URLSearchParams({
+        page: currentPage - 1,
+        size: pageSize,
       });
+      if (activeTab !== "ALL") params.append("status", activeTab);
+
+      const headers = { Authorization: `Bearer ${token}` };
+      const [res, countRes] = await Promise.all([
+        fetch(`${ADMIN_API_URL}?${params}`, { headers }),
+        fetch(`${ADMIN_API_URL}/status-counts`, { headers }),
+      ]);
 
-      if (!res.ok) throw new Error("Lỗi server");
+      if (!res.ok || !countRes.ok) throw new Error("Lỗi server");
 
       const data = await res.json();
-      setOrders(Array.isArray(data) ? data : []);
+      setOrders(Array.isArray(data.content) ? data.content : []);
+      setTotalPages(data.totalPages || 0);
+      setStatusCounts(await countRes.json());
     } catch (err) {
       console.error(err);
       setError("Không thể tải đơn hàng.");
@@ -57,24 +68,19 @@ export default function OrderAdmin() {
     }
   };
 
-  // filter by tab
-  const filteredOrders =
-    activeTab === "ALL"
-      ? orders
-      : orders.filter((o) => o.status?.toUpperCase() === activeTab);
+  useEffect(() => {
+    if (token) fetchOrders();
+  }, [activeTab, currentPage]);
 
-  // pagination logic
-  const totalPages = Math.ceil(filteredOrders.length / pageSize);
+  const tabCount = (key) =>
+    key === "ALL"
+      ? Object.values(statusCounts).reduce((sum, n) => sum + n, 0)
+      : statusCounts[key] || 0;
 
-  const paginatedOrders = filteredOrders.slice(
-    (currentPage - 1) * pageSize,
-    currentPage * pageSize
-  );
-
-  // reset page when change tab
-  useEffect(() => {
+  const changeTab = (key) => {
+    setActiveTab(key);
     setCurrentPage(1);
-  }, [activeTab]);
+  };
 
 //   const calcTotal = (details) =>
 //     details?.reduce((sum, d) => sum + d.pricePurchased * d.quantity, 0) || 0;
@@ -124,13 +130,9 @@ export default function OrderAdmin() {
           <div
             key={t.key}
             className={`tab ${activeTab === t.key ? "active" : ""}`}
-            onClick={() => setActiveTab(t.key)}
+            onClick={() => changeTab(t.key)}
           >
-            {
-              orders.filter(
-                (o) => t.key === "ALL" || o.status?.toUpperCase() === t.key
-              ).length
-            }{" "}
+            {tabCount(t.key)}{" "}
             {t.label}
           </div>
         ))}
@@ -139,13 +141,13 @@ export default function OrderAdmin() {
       {loading && <div className="loading">Đang tải...</div>}
       {error && <div className="error">{error}</div>}
 
-      {!loading && !error && filteredOrders.length === 0 && (
+      {!loading && !error && orders.length === 0 && (
         <div className="empty">Không có đơn hàng nào.</div>
       )}
 
       {!loading &&
         !error &&
-        paginatedOrders.map((order) => {
+        orders.map((order) => {
           const firstItem = order.orderDetails?.[0];
           const qty = order.orderDetails?.length || 0;
           const total = Number(order?.totalAmount || 0)+ 32000;